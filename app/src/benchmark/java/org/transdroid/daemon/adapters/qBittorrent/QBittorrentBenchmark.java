@@ -0,0 +1,44 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.adapters.qBittorrent;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.transdroid.daemon.DaemonSettings;
+import org.transdroid.daemon.TorrentTable;
+
+/**
+ * Gives the {@link org.transdroid.daemon.fake.ParserBenchmark} access to the torrents list parser of the
+ * {@link QBittorrentAdapter}.
+ *
+ * @author Eric Kok
+ */
+public final class QBittorrentBenchmark {
+
+    private final QBittorrentAdapter adapter;
+
+    public QBittorrentBenchmark(DaemonSettings settings) {
+        adapter = new QBittorrentAdapter(settings);
+        // As learned when logging in to the fake qBittorrent 4.6.3
+        adapter.setVersion(40603);
+    }
+
+    public TorrentTable parse(JSONArray torrents) throws JSONException {
+        return adapter.parseJsonTorrents(torrents);
+    }
+
+}
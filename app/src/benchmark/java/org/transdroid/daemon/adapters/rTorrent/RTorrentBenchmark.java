@@ -0,0 +1,45 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.adapters.rTorrent;
+
+import org.transdroid.daemon.DaemonException;
+import org.transdroid.daemon.DaemonSettings;
+import org.transdroid.daemon.TorrentTable;
+
+/**
+ * Gives the {@link org.transdroid.daemon.fake.ParserBenchmark} access to the torrents list parser of the
+ * {@link RTorrentAdapter}.
+ *
+ * @author Eric Kok
+ */
+public final class RTorrentBenchmark {
+
+    private final RTorrentAdapter adapter;
+
+    public RTorrentBenchmark(DaemonSettings settings) {
+        adapter = new RTorrentAdapter(settings);
+    }
+
+    public String[] getRetrieveFields() {
+        return RTorrentAdapter.RPC_FIELDS.clone();
+    }
+
+    public TorrentTable parse(Object response) throws DaemonException {
+        return adapter.onTorrentsRetrieved(response);
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.adapters.transmission;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.transdroid.daemon.DaemonSettings;
+import org.transdroid.daemon.TorrentTable;
+import org.transdroid.daemon.task.RetrieveTask.Projection;
+
+/**
+ * Gives the {@link org.transdroid.daemon.fake.ParserBenchmark} access to the torrents list parser of the
+ * {@link TransmissionAdapter}.
+ *
+ * @author Eric Kok
+ */
+public final class TransmissionBenchmark {
+
+    private final TransmissionAdapter adapter;
+
+    public TransmissionBenchmark(DaemonSettings settings) {
+        adapter = new TransmissionAdapter(settings);
+        // As learned when the session is set up with the fake Transmission 4.0.5
+        adapter.rpcVersion = 17;
+    }
+
+    public String[] getRetrieveFields() {
+        return adapter.getRetrieveFields(Projection.Full);
+    }
+
+    public TorrentTable parse(JSONObject arguments) throws JSONException {
+        return adapter.parseJsonRetrieveTorrents(arguments);
+    }
+
+}
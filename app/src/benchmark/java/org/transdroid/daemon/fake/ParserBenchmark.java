@@ -0,0 +1,564 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.fake;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.transdroid.daemon.Daemon;
+import org.transdroid.daemon.DaemonSettings;
+import org.transdroid.daemon.OS;
+import org.transdroid.daemon.adapters.bitComet.BitCometBenchmark;
+import org.transdroid.daemon.adapters.deluge.DelugeRpcBenchmark;
+import org.transdroid.daemon.adapters.qBittorrent.QBittorrentBenchmark;
+import org.transdroid.daemon.adapters.rTorrent.RTorrentBenchmark;
+import org.transdroid.daemon.adapters.transmission.TransmissionBenchmark;
+import org.transdroid.daemon.fake.FakeHttpServer.Request;
+import org.transdroid.daemon.fake.FakeHttpServer.Response;
+import org.transdroid.daemon.fake.FakeTorrents.FakeTorrent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import de.timroes.axmlrpc.ResponseParser;
+import se.dimovski.rencode.Rencode;
+
+/**
+ * Measures the time and memory that the adapters need to parse a torrents list, at 100, 1,000 and 10,000 torrents. It
+ * runs on a development machine (not on a device), so it lives in its own source set that is not part of any app
+ * build. It needs the Android framework classes from Robolectric's android-all jar and the kXML 2 parser (as the one
+ * in android-all needs the Android runtime) from Maven Central:
+ * <pre>
+ * javac -d /tmp/bench -cp android-all-5.0.2_r3-robolectric-0.jar \
+ *     -sourcepath app/src/main/java:app/src/debug/java:app/src/benchmark/java \
+ *     app/src/benchmark/java/org/transdroid/daemon/fake/ParserBenchmark.java
+ * java -cp /tmp/bench:kxml2-2.3.0.jar:android-all-5.0.2_r3-robolectric-0.jar org.transdroid.daemon.fake.ParserBenchmark
+ * </pre>
+ * Compile with the libraries that the app module depends on (such as the AndroidX annotations) on the class path as
+ * well and run it from the root of the project. The adapters' parsers are package-private; the benchmark source set
+ * reaches them through a small class in each adapter package, such as {@link TransmissionBenchmark}.
+ * <p>
+ * The responses are read from the (gzipped) corpora in app/src/benchmark/corpora, so that every run parses the exact
+ * same responses. These were captured from the fake daemons (see {@link FakeDaemon}) for Transmission, qBittorrent,
+ * rTorrent and Deluge RPC and generated in the same way for the kTorrent, Torrentflux-b4rt and BitComet (XML) formats,
+ * all from the same simulated torrents. Responses that are missing from the corpora directory are captured and written
+ * there, so deleting a file records it again, for example after an adapter requests other fields. Options (with their
+ * defaults) are --corpora app/src/benchmark/corpora, --seed 42 (to simulate torrents), --warmup 2 (seconds per size and
+ * adapter) and --iterations 20 (timed parses per size and adapter).
+ * <p>
+ * A parse includes decoding the raw response (JSON, XML-RPC, rencode) as the adapters do. The allocated bytes are
+ * measured per thread, which requires a HotSpot based JVM. BitComet's older HTML interface is not included, as it
+ * requests the details of every torrent while parsing. At 10,000 torrents, on JDK 17 with a single core:
+ * <pre>
+ * Adapter        Torrents  Response    Time/parse   Allocated/parse
+ * Transmission      10000    4.4 MB     139.73 ms           44.1 MB
+ * qBittorrent       10000    5.1 MB     182.85 ms           54.8 MB
+ * rTorrent          10000    8.5 MB     238.09 ms           76.2 MB
+ * DelugeRpc         10000    837 kB     196.75 ms           59.5 MB
+ * KTorrent          10000    5.7 MB     126.40 ms           36.0 MB
+ * Tfb4rt            10000    5.4 MB     111.12 ms           36.7 MB
+ * BitComet          10000    5.2 MB     135.77 ms           38.0 MB
+ * </pre>
+ *
+ * @author Eric Kok
+ */
+public final class ParserBenchmark {
+
+    private static final int[] SIZES = {100, 1000, 10000};
+
+    private ParserBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put("corpora", "app/src/benchmark/corpora");
+        options.put("seed", "42");
+        options.put("warmup", "2");
+        options.put("iterations", "20");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        long seed = Long.parseLong(options.get("seed"));
+        long warmup = Long.parseLong(options.get("warmup")) * 1000000000L;
+        int iterations = Integer.parseInt(options.get("iterations"));
+        File corpora = new File(options.get("corpora"));
+        if (!corpora.isDirectory() && !corpora.mkdirs()) {
+            throw new IOException("Cannot create " + corpora);
+        }
+
+        List<Parser> parsers = Arrays.asList(new TransmissionParser(), new QbittorrentParser(), new RtorrentParser(),
+                new DelugeRpcParser(), new KTorrentParser(), new Tfb4rtParser(), new BitCometParser());
+        System.out.println(String.format(Locale.US, "%-14s %8s %9s %13s %17s", "Adapter", "Torrents", "Response",
+                "Time/parse", "Allocated/parse"));
+        for (Parser parser : parsers) {
+            for (int size : SIZES) {
+                // Without churn and turnover the simulated torrents only differ in their (progressing) transfers
+                FakeTorrents torrents = new FakeTorrents(size, seed, 0, 0);
+                byte[] response = getResponse(parser, torrents, size, corpora);
+                int parsed = parser.parse(response);
+                if (parsed != size) {
+                    throw new IllegalStateException(parser + " parsed " + parsed + " instead of " + size + " torrents");
+                }
+
+                long warmupStart = System.nanoTime();
+                while (System.nanoTime() - warmupStart < warmup) {
+                    parser.parse(response);
+                }
+                long allocatedBefore = getAllocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    parser.parse(response);
+                }
+                long nanos = System.nanoTime() - start;
+                long allocated = getAllocatedBytes() - allocatedBefore;
+                System.out.println(String.format(Locale.US, "%-14s %8d %9s %10.2f ms %17s", parser, size,
+                        formatBytes(response.length), nanos / 1e6 / iterations,
+                        allocatedBefore < 0 ? "unknown" : formatBytes(allocated / iterations)));
+            }
+        }
+    }
+
+    private static byte[] getResponse(Parser parser, FakeTorrents torrents, int size, File corpora)
+            throws Exception {
+        File file = new File(corpora,
+                parser.toString().toLowerCase(Locale.US) + "-" + size + parser.getExtension() + ".gz");
+        if (file.exists()) {
+            try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+                return readFully(in);
+            }
+        }
+        byte[] response = parser.capture(torrents);
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write(response);
+        }
+        return response;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the number of bytes allocated by this thread so far, or -1 if the JVM cannot tell.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return String.format(Locale.US, bytes >= 100 * 1024 * 1024 ? "%.0f MB" : "%.1f MB",
+                    bytes / 1024D / 1024D);
+        }
+        return String.format(Locale.US, "%.0f kB", bytes / 1024D);
+    }
+
+    private static DaemonSettings createSettings(Daemon type) {
+        return new DaemonSettings("Benchmark", type, "127.0.0.1", 8080, false, false, null, null, false, null, null,
+                null, null, OS.Linux, "/downloads/", null, null, 10, false, false, "benchmark", false);
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static byte[] getBody(Response response) {
+        if (response.getStatus() != 200) {
+            throw new IllegalStateException("Unexpected response " + response.getStatus());
+        }
+        return response.getBody();
+    }
+
+    private abstract static class Parser {
+
+        private final String name;
+        private final String extension;
+
+        Parser(String name, String extension) {
+            this.name = name;
+            this.extension = extension;
+        }
+
+        String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Returns the raw response to a request for all torrents, with all fields, as the adapter would receive it.
+         */
+        abstract byte[] capture(FakeTorrents torrents) throws Exception;
+
+        /**
+         * Parses a response as the adapter does and returns the number of torrents.
+         */
+        abstract int parse(byte[] response) throws Exception;
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+    }
+
+    private static final class TransmissionParser extends Parser {
+
+        private final TransmissionBenchmark adapter = new TransmissionBenchmark(createSettings(Daemon.Transmission));
+
+        TransmissionParser() {
+            super("Transmission", ".json");
+        }
+
+        @Override
+        byte[] capture(FakeTorrents torrents) throws Exception {
+            String[] fields = adapter.getRetrieveFields();
+            String request = new JSONObject().put("method", "torrent-get")
+                    .put("arguments", new JSONObject().put("fields", new JSONArray(Arrays.asList(fields))))
+                    .toString();
+            TransmissionHandler handler = new TransmissionHandler(torrents);
+            Map<String, String> headers = new HashMap<>();
+            Response response = handler.handle(new Request("POST", "/transmission/rpc", headers, request));
+            headers.put("X-Transmission-Session-Id", response.getHeader("X-Transmission-Session-Id"));
+            return getBody(handler.handle(new Request("POST", "/transmission/rpc", headers, request)));
+        }
+
+        @Override
+        int parse(byte[] response) throws Exception {
+            JSONObject result = new JSONObject(new String(response, FakeHttpServer.UTF8));
+            return adapter.parse(result.getJSONObject("arguments")).size();
+        }
+
+    }
+
+    private static final class QbittorrentParser extends Parser {
+
+        private final QBittorrentBenchmark adapter = new QBittorrentBenchmark(createSettings(Daemon.qBittorrent));
+
+        QbittorrentParser() {
+            super("qBittorrent", ".json");
+        }
+
+        @Override
+        byte[] capture(FakeTorrents torrents) throws Exception {
+            QbittorrentHandler handler = new QbittorrentHandler(torrents);
+            Response login = handler.handle(new Request("POST", "/api/v2/auth/login",
+                    Collections.<String, String>emptyMap(), ""));
+            String cookie = login.getHeader("Set-Cookie");
+            return getBody(handler.handle(new Request("GET", "/api/v2/torrents/info",
+                    Collections.singletonMap("Cookie", cookie.substring(0, cookie.indexOf(';'))), "")));
+        }
+
+        @Override
+        int parse(byte[] response) throws Exception {
+            return adapter.parse(new JSONArray(new String(response, FakeHttpServer.UTF8))).size();
+        }
+
+    }
+
+    private static final class RtorrentParser extends Parser {
+
+        private final RTorrentBenchmark adapter = new RTorrentBenchmark(createSettings(Daemon.rTorrent));
+
+        RtorrentParser() {
+            super("rTorrent", ".xml");
+        }
+
+        @Override
+        byte[] capture(FakeTorrents torrents) throws Exception {
+            StringBuilder request = new StringBuilder("<?xml version=\"1.0\"?><methodCall>")
+                    .append("<methodName>d.multicall2</methodName><params>")
+                    .append("<param><value><string></string></value></param>")
+                    .append("<param><value><string>main</string></value></param>");
+            for (String field : adapter.getRetrieveFields()) {
+                request.append("<param><value><string>").append(field).append("</string></value></param>");
+            }
+            request.append("</params></methodCall>");
+            return getBody(new RtorrentHandler(torrents).handle(new Request("POST", "/RPC2",
+                    Collections.singletonMap("Content-Type", "text/xml"), request.toString())));
+        }
+
+        @Override
+        int parse(byte[] response) throws Exception {
+            Object result = new ResponseParser().parse(new ByteArrayInputStream(response), null);
+            return adapter.parse(result).size();
+        }
+
+    }
+
+    private static final class DelugeRpcParser extends Parser {
+
+        private final DelugeRpcBenchmark adapter = new DelugeRpcBenchmark(createSettings(Daemon.DelugeRpc));
+
+        DelugeRpcParser() {
+            super("DelugeRpc", ".rencode");
+        }
+
+        @Override
+        byte[] capture(FakeTorrents torrents) throws Exception {
+            String[] fields = adapter.getRetrieveFields();
+            List<Object> request = Collections.<Object>singletonList(Arrays.asList(1, "core.get_torrents_status",
+                    Arrays.asList(new HashMap<>(), Arrays.asList(fields)), new HashMap<>()));
+            return DelugeRpcServer.deflate(Rencode.encode(new DelugeRpcServer(null, torrents, null).handle(request)));
+        }
+
+        @Override
+        int parse(byte[] response) throws Exception {
+            byte[] inflated;
+            try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(response))) {
+                inflated = readFully(in);
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> status =
+                    (Map<String, Map<String, Object>>) ((List<?>) Rencode.decode(inflated)).get(2);
+            return adapter.parse(status.values()).size();
+        }
+
+    }
+
+    private static final class KTorrentParser extends Parser {
+
+        KTorrentParser() {
+            super("KTorrent", ".xml");
+        }
+
+        @Override
+        byte[] capture(FakeTorrents torrents) {
+            StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<torrents>\n");
+            for (FakeTorrent torrent : torrents.refresh()) {
+                xml.append("<torrent>").append("<name>").append(escape(torrent.name)).append("</name>")
+                        .append("<info_hash>").append(torrent.hash).append("</info_hash>")
+                        .append("<status>").append(getStatus(torrent)).append("</status>")
+                        .append("<bytes_downloaded>").append(formatSize(torrent.done)).append("</bytes_downloaded>")
+                        .append("<bytes_uploaded>").append(formatSize(torrent.uploaded)).append("</bytes_uploaded>")
+                        .append("<total_bytes_to_download>").append(formatSize(torrent.size))
+                        .append("</total_bytes_to_download>")
+                        .append("<download_rate>").append(formatRate(torrent.rateDown)).append("</download_rate>")
+                        .append("<upload_rate>").append(formatRate(torrent.rateUp)).append("</upload_rate>")
+                        .append("<num_peers>").append(torrent.seeds + torrent.peers).append("</num_peers>")
+                        .append("<seeders>").append(torrent.seeds).append("</seeders>")
+                        .append("<seeders_total>").append(torrent.seedsKnown).append("</seeders_total>")
+                        .append("<leechers>").append(torrent.peers).append("</leechers>")
+                        .append("<leechers_total>").append(torrent.peersKnown).append("</leechers_total>")
+                        .append("<running>").append(torrent.state == FakeTorrents.State.Paused ? 0 : 1)
+                        .append("</running>")
+                        .append("<percentage>").append(String.format(Locale.US, "%.2f", torrent.getProgress() * 100))
+                        .append("</percentage>")
+                        .append("<num_files>").append(torrent.fileCount).append("</num_files>")
+                        .append("</torrent>\n");
+            }
+            return xml.append("</torrents>\n").toString().getBytes(FakeHttpServer.UTF8);
+        }
+
+        private static String getStatus(FakeTorrent torrent) {
+            switch (torrent.state) {
+                case Downloading:
+                    // KTorrent calculates the eta from the shown rate, which is only downloading when not 0 KiB/s
+                    return torrent.rateDown >= 1024 ? "Downloading" : "Stalled";
+                case Seeding:
+                    return "Seeding";
+                case Paused:
+                    return torrent.isComplete() ? "Download completed" : "Stopped";
+                case Queued:
+                    return "Not started";
+                case Checking:
+                    return "Checking data";
+                default:
+                    return "Error";
+            }
+        }
+
+        private static String formatSize(long bytes) {
+            if (bytes >= 1024L * 1024 * 1024) {
+                return String.format(Locale.US, "%,.2f GiB", bytes / 1024D / 1024D / 1024D);
+            }
+            return String.format(Locale.US, "%,.1f MiB", bytes / 1024D / 1024D);
+        }
+
+        private static String formatRate(int rate) {
+            return String.format(Locale.US, "%,.1f KiB/s", rate / 1024D);
+        }
+
+        @Override
+        int parse(byte[] response) throws Exception {
+            return org.transdroid.daemon.adapters.kTorrent.StatsParser
+                    .parse(new InputStreamReader(new ByteArrayInputStream(response), FakeHttpServer.UTF8),
+                            "/downloads/", "/").size();
+        }
+
+    }
+
+    private static final class Tfb4rtParser extends Parser {
+
+        Tfb4rtParser() {
+            super("Tfb4rt", ".xml");
+        }
+
+        @Override
+        byte[] capture(FakeTorrents torrents) {
+            StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<tfb4rt>\n");
+            xml.append("<transfers>\n");
+            for (FakeTorrent torrent : torrents.refresh()) {
+                xml.append("<transfer name=\"").append(escape(torrent.name)).append(".torrent\">");
+                appendStat(xml, "Running", torrent.state == FakeTorrents.State.Paused ? "0" : "1");
+                appendStat(xml, "Progress", String.format(Locale.US, "%.1f%%", torrent.getProgress() * 100));
+                appendStat(xml, "Down", formatRate(torrent.rateDown));
+                appendStat(xml, "Up", formatRate(torrent.rateUp));
+                appendStat(xml, "Seeds", Integer.toString(torrent.seeds));
+                appendStat(xml, "Peers", Integer.toString(torrent.peers));
+                appendStat(xml, "Estimated Time", formatEta(torrent.getEta()));
+                appendStat(xml, "Status", getStatus(torrent));
+                appendStat(xml, "Size", formatSize(torrent.size));
+                appendStat(xml, "T. Up", formatSize(torrent.uploaded));
+                xml.append("</transfer>\n");
+            }
+            return xml.append("</transfers>\n</tfb4rt>\n").toString().getBytes(FakeHttpServer.UTF8);
+        }
+
+        private static void appendStat(StringBuilder xml, String name, String value) {
+            xml.append("<transferStat name=\"").append(name).append("\">").append(value).append("</transferStat>");
+        }
+
+        private static String getStatus(FakeTorrent torrent) {
+            switch (torrent.state) {
+                case Downloading:
+                    return "Leeching";
+                case Seeding:
+                    return "Seeding";
+                case Paused:
+                    return torrent.isComplete() ? "Done" : "Stopped";
+                case Queued:
+                    return "New";
+                default:
+                    return "Unknown";
+            }
+        }
+
+        private static String formatSize(long bytes) {
+            if (bytes >= 1024L * 1024 * 1024) {
+                return String.format(Locale.US, "%.2f GB", bytes / 1024D / 1024D / 1024D);
+            }
+            return String.format(Locale.US, "%.1f MB", bytes / 1024D / 1024D);
+        }
+
+        private static String formatRate(int rate) {
+            return String.format(Locale.US, "%.1f kB/s", rate / 1024D);
+        }
+
+        private static String formatEta(int eta) {
+            if (eta < 0) {
+                return "Torrent Stopped";
+            }
+            int days = eta / (24 * 60 * 60);
+            String time = String.format(Locale.US, "%02d:%02d:%02d", eta / (60 * 60) % 24, eta / 60 % 60, eta % 60);
+            return days > 0 ? days + "d " + time : time;
+        }
+
+        @Override
+        int parse(byte[] response) throws Exception {
+            return org.transdroid.daemon.adapters.tfb4rt.StatsParser
+                    .parse(new InputStreamReader(new ByteArrayInputStream(response), FakeHttpServer.UTF8)).size();
+        }
+
+    }
+
+    private static final class BitCometParser extends Parser {
+
+        private final BitCometBenchmark adapter = new BitCometBenchmark(createSettings(Daemon.BitComet));
+
+        BitCometParser() {
+            super("BitComet", ".xml");
+        }
+
+        @Override
+        byte[] capture(FakeTorrents torrents) {
+            StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<tasks>\n");
+            for (FakeTorrent torrent : torrents.refresh()) {
+                xml.append("<task>").append("<id>").append(torrent.id).append("</id>")
+                        .append("<type>BT</type>")
+                        .append("<infohash>").append(torrent.hash).append("</infohash>")
+                        .append("<name>").append(escape(torrent.name)).append("</name>")
+                        .append("<state>").append(getState(torrent)).append("</state>")
+                        .append("<bytes_downloaded>").append(torrent.done).append("</bytes_downloaded>")
+                        .append("<bytes_uploaded>").append(torrent.uploaded).append("</bytes_uploaded>")
+                        .append("<size>").append(torrent.size).append("</size>")
+                        .append("<down_speed>").append(torrent.rateDown).append("</down_speed>")
+                        .append("<up_speed>").append(torrent.rateUp).append("</up_speed>")
+                        .append("<seeders>").append(torrent.seeds).append("</seeders>")
+                        .append("<total_seeders>").append(torrent.seedsKnown).append("</total_seeders>")
+                        .append("<peers>").append(torrent.peers).append("</peers>")
+                        .append("<total_peers>").append(torrent.peersKnown).append("</total_peers>")
+                        .append("<progress_permillage>").append((int) (torrent.getProgress() * 1000))
+                        .append("</progress_permillage>")
+                        .append("<created_time>").append(torrent.addedAt * 1000).append("</created_time>")
+                        .append("<comment>").append(torrent.label == null ? "" : escape(torrent.label))
+                        .append("</comment>")
+                        .append("</task>\n");
+            }
+            return xml.append("</tasks>\n").toString().getBytes(FakeHttpServer.UTF8);
+        }
+
+        private static String getState(FakeTorrent torrent) {
+            switch (torrent.state) {
+                case Downloading:
+                case Seeding:
+                    return "running";
+                case Checking:
+                    return "hashing";
+                case Queued:
+                    return "queued";
+                default:
+                    return "stopped";
+            }
+        }
+
+        @Override
+        int parse(byte[] response) throws Exception {
+            return adapter.parse(new String(response, FakeHttpServer.UTF8)).size();
+        }
+
+    }
+
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.fake;
+
+import org.transdroid.daemon.fake.FakeTorrents.FakeTorrent;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import se.dimovski.rencode.Rencode;
+
+/**
+ * Fake Deluge daemon, speaking the native RPC protocol: zlib compressed rencoded messages over TLS. Both the Deluge 1
+ * framing (a bare zlib stream) and the Deluge 2 framing (a version byte and length header before every message) are
+ * accepted, per message, and answered in the same framing.
+ *
+ * @author Eric Kok
+ */
+final class DelugeRpcServer implements Runnable {
+
+    private static final int RPC_RESPONSE = 1;
+    private static final int RPC_ERROR = 2;
+    private static final byte V2_PROTOCOL_VERSION = 1;
+    private static final int V2_HEADER_SIZE = 5;
+    private static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+    private static final String[] METHODS = {"daemon.info", "daemon.login", "daemon.get_method_list",
+            "core.get_torrents_status", "core.get_torrent_status", "core.add_torrent_url", "core.add_torrent_magnet",
+            "core.add_torrent_file", "core.remove_torrent", "core.pause_torrent", "core.resume_torrent",
+            "core.pause_all_torrents", "core.resume_all_torrents", "core.force_recheck", "core.move_storage",
+            "core.set_config", "core.set_torrent_options", "core.set_torrent_file_priorities",
+            "core.set_torrent_trackers", "label.get_labels", "label.set_torrent"};
+
+    private final ServerSocket serverSocket;
+    private final FakeTorrents torrents;
+    private final Latency latency;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+
+    DelugeRpcServer(ServerSocket serverSocket, FakeTorrents torrents, Latency latency) {
+        this.serverSocket = serverSocket;
+        this.torrents = torrents;
+        this.latency = latency;
+    }
+
+    @Override
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Deluge: cannot accept connection: " + e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket connection = socket) {
+            PushbackInputStream in = new PushbackInputStream(new BufferedInputStream(connection.getInputStream()),
+                    64 * 1024);
+            OutputStream out = connection.getOutputStream();
+            while (true) {
+                int first = in.read();
+                if (first < 0) {
+                    return;
+                }
+                boolean isVersion2 = first == V2_PROTOCOL_VERSION;
+                byte[] message;
+                if (isVersion2) {
+                    DataInputStream header = new DataInputStream(in);
+                    byte[] compressed = new byte[checkSize(header.readInt())];
+                    header.readFully(compressed);
+                    message = inflate(compressed);
+                } else {
+                    in.unread(first);
+                    message = inflate(in);
+                }
+                byte[] response = deflate(Rencode.encode(handle(Rencode.decode(message))));
+                latency.inject();
+                if (isVersion2) {
+                    out.write(ByteBuffer.allocate(V2_HEADER_SIZE + response.length).put(V2_PROTOCOL_VERSION)
+                            .putInt(response.length).put(response).array());
+                } else {
+                    out.write(response);
+                }
+                out.flush();
+            }
+        } catch (SocketException | EOFException e) {
+            // Client closed the connection
+        } catch (IOException | DataFormatException | RuntimeException e) {
+            System.err.println("Deluge: connection error: " + e);
+        }
+    }
+
+    Object handle(Object request) {
+        // A request is a list of calls, of which the client only ever sends one: [id, method, args, kwargs]
+        List<?> call = (List<?>) ((List<?>) request).get(0);
+        Object id = call.get(0);
+        String method = call.get(1).toString();
+        List<?> args = call.get(2) instanceof List ? (List<?>) call.get(2) : Collections.emptyList();
+        try {
+            return Arrays.asList(RPC_RESPONSE, id, call(method, args));
+        } catch (RuntimeException e) {
+            return Arrays.asList(RPC_ERROR, id, Arrays.asList(e.getClass().getSimpleName(), e.toString(), ""));
+        }
+    }
+
+    private Object call(String method, List<?> args) {
+        String target = args.isEmpty() || !(args.get(0) instanceof String) ? null : (String) args.get(0);
+        switch (method) {
+            case "daemon.info":
+                return "2.1.1";
+            case "daemon.login":
+                // The authentication level of an admin
+                return 10;
+            case "daemon.get_method_list":
+                return Arrays.asList(METHODS);
+            case "label.get_labels":
+                return torrents.getLabels();
+            case "core.get_torrents_status":
+                Map<String, Object> all = new HashMap<>();
+                for (FakeTorrent torrent : torrents.refresh()) {
+                    all.put(torrent.hash, getStatus(torrent, (List<?>) args.get(1)));
+                }
+                return all;
+            case "core.get_torrent_status":
+                torrents.refresh();
+                FakeTorrent torrent = torrents.get(target);
+                return torrent == null ? new HashMap<>() : getStatus(torrent, (List<?>) args.get(1));
+            case "core.add_torrent_url":
+            case "core.add_torrent_magnet":
+            case "core.add_torrent_file":
+                return torrents.add(null).hash;
+            case "core.remove_torrent":
+                return torrents.remove(target);
+            case "core.pause_torrent":
+                for (Object hash : getIds(args)) {
+                    torrents.stop(hash.toString());
+                }
+                return null;
+            case "core.resume_torrent":
+                for (Object hash : getIds(args)) {
+                    torrents.start(hash.toString());
+                }
+                return null;
+            case "core.force_recheck":
+                for (Object hash : getIds(args)) {
+                    torrents.verify(hash.toString());
+                }
+                return null;
+            case "core.pause_all_torrents":
+                torrents.stop(null);
+                return null;
+            case "core.resume_all_torrents":
+                torrents.start(null);
+                return null;
+            case "label.set_torrent":
+                torrents.setLabel(target, args.size() > 1 ? (String) args.get(1) : null);
+                return null;
+            default:
+                if (Arrays.asList(METHODS).contains(method)) {
+                    // Accepted, but not simulated
+                    return null;
+                }
+                throw new IllegalArgumentException("Unknown method " + method);
+        }
+    }
+
+    private Map<String, Object> getStatus(FakeTorrent torrent, List<?> fields) {
+        Map<String, Object> status = new HashMap<>();
+        for (Object field : fields) {
+            status.put(field.toString(), getField(torrent, field.toString()));
+        }
+        return status;
+    }
+
+    private Object getField(FakeTorrent torrent, String field) {
+        switch (field) {
+            case "hash":
+                return torrent.hash;
+            case "name":
+                return torrent.name;
+            case "state":
+                return torrent.state.name();
+            case "save_path":
+            case "download_location":
+                return "/downloads" + (torrent.label == null ? "" : "/" + torrent.label);
+            case "download_payload_rate":
+                return torrent.rateDown;
+            case "upload_payload_rate":
+                return torrent.rateUp;
+            case "num_peers":
+                return torrent.peers;
+            case "num_seeds":
+                return torrent.seeds;
+            case "total_peers":
+                return torrent.peersKnown;
+            case "total_seeds":
+                return torrent.seedsKnown;
+            case "eta":
+                return Math.max(0, torrent.getEta());
+            case "total_done":
+                return torrent.done;
+            case "total_uploaded":
+                return torrent.uploaded;
+            case "total_size":
+                return torrent.size;
+            case "progress":
+                return torrent.getProgress() * 100F;
+            case "label":
+                return torrent.label == null ? "" : torrent.label;
+            case "message":
+                return torrent.error == null ? "OK" : torrent.error;
+            case "time_added":
+                return (float) torrent.addedAt;
+            case "tracker_status":
+                return torrent.error == null ? "Announce OK" : "Error: " + torrent.error;
+            case "trackers":
+                Map<String, Object> tracker = new HashMap<>();
+                tracker.put("url", torrent.tracker);
+                tracker.put("tier", 0);
+                return Collections.singletonList(tracker);
+            case "files":
+                List<Map<String, Object>> files = new ArrayList<>(torrent.fileCount);
+                long offset = 0;
+                for (int i = 0; i < torrent.fileCount; i++) {
+                    Map<String, Object> file = new HashMap<>();
+                    file.put("index", i);
+                    file.put("path", torrent.getFileName(i));
+                    file.put("size", torrent.getFileSize(i));
+                    file.put("offset", offset);
+                    offset += torrent.getFileSize(i);
+                    files.add(file);
+                }
+                return files;
+            case "file_progress":
+                List<Float> progress = new ArrayList<>(torrent.fileCount);
+                for (int i = 0; i < torrent.fileCount; i++) {
+                    long size = torrent.getFileSize(i);
+                    progress.add(size == 0 ? 1F : (float) torrent.getFileDone(i) / size);
+                }
+                return progress;
+            case "file_priorities":
+                // Deluge 2 uses priority 4 for normal
+                return Collections.nCopies(torrent.fileCount, 4);
+            default:
+                return null;
+        }
+    }
+
+    private List<?> getIds(List<?> args) {
+        if (args.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return args.get(0) instanceof List ? (List<?>) args.get(0) : Collections.singletonList(args.get(0));
+    }
+
+    private static int checkSize(int size) throws IOException {
+        if (size < 0 || size > MAX_MESSAGE_SIZE) {
+            throw new IOException("Invalid message size " + size);
+        }
+        return size;
+    }
+
+    private static byte[] inflate(byte[] compressed) throws DataFormatException, IOException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!inflater.finished()) {
+            int inflated = inflater.inflate(buffer);
+            if (inflated == 0 && inflater.needsInput()) {
+                throw new EOFException("Truncated message");
+            }
+            out.write(buffer, 0, inflated);
+        }
+        inflater.end();
+        return out.toByteArray();
+    }
+
+    /**
+     * Inflates a single zlib stream from the connection, pushing back any bytes that were read beyond its end.
+     */
+    private static byte[] inflate(PushbackInputStream in) throws DataFormatException, IOException {
+        Inflater inflater = new Inflater();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] input = new byte[8192];
+        byte[] buffer = new byte[8192];
+        int inputLength = 0;
+        while (!inflater.finished()) {
+            if (inflater.needsInput()) {
+                inputLength = in.read(input);
+                if (inputLength < 0) {
+                    throw new EOFException("Truncated message");
+                }
+                inflater.setInput(input, 0, inputLength);
+            }
+            out.write(buffer, 0, inflater.inflate(buffer));
+            if (out.size() > MAX_MESSAGE_SIZE) {
+                throw new IOException("Message too large");
+            }
+        }
+        int remaining = inflater.getRemaining();
+        if (remaining > 0) {
+            in.unread(input, inputLength - remaining, remaining);
+        }
+        inflater.end();
+        return out.toByteArray();
+    }
+
+    static byte[] deflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.fake;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocketFactory;
+
+/**
+ * Runs fake Transmission, qBittorrent, rTorrent and Deluge daemons that serve simulated torrents (see
+ * {@link FakeTorrents}) over their real wire protocols, to load test the adapters end to end without a real server or
+ * any network. The fake daemons only depend on the JDK (and the bundled rencode library), so they can be run on a
+ * development machine, from where an emulator reaches them on 10.0.2.2:
+ * <pre>
+ * javac -d /tmp/fake -sourcepath app/src/debug/java:app/src/main/java \
+ *     app/src/debug/java/org/transdroid/daemon/fake/FakeDaemon.java
+ * java -cp /tmp/fake org.transdroid.daemon.fake.FakeDaemon --torrents 5000 --latency 80 --jitter 40
+ * </pre>
+ * Options (with their defaults) are --protocols transmission,qbittorrent,rtorrent,deluge, --torrents 1000, --seed 42,
+ * --churn 0.01 (state changes per torrent per second), --turnover 6 (torrents replaced per minute), --latency 50 and
+ * --jitter 50 (ms), --bind 127.0.0.1 and --transmission-port 9091, --qbittorrent-port 8080, --rtorrent-port 8008,
+ * --deluge-port 58846. Deluge RPC requires TLS, for which a key store is needed, given with --keystore and
+ * --storepass; create one with keytool -genkeypair -keyalg RSA -keystore fake.p12 -storetype PKCS12. Refresh
+ * latencies and parse times as observed by the app are shown in its diagnostics report.
+ *
+ * @author Eric Kok
+ */
+public final class FakeDaemon {
+
+    private FakeDaemon() {
+    }
+
+    public static void main(String[] args) throws IOException, GeneralSecurityException {
+        Map<String, String> options = new HashMap<>();
+        options.put("protocols", "transmission,qbittorrent,rtorrent,deluge");
+        options.put("torrents", "1000");
+        options.put("seed", "42");
+        options.put("churn", "0.01");
+        options.put("turnover", "6");
+        options.put("latency", "50");
+        options.put("jitter", "50");
+        options.put("bind", "127.0.0.1");
+        options.put("transmission-port", "9091");
+        options.put("qbittorrent-port", "8080");
+        options.put("rtorrent-port", "8008");
+        options.put("deluge-port", "58846");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        FakeTorrents torrents = new FakeTorrents(Integer.parseInt(options.get("torrents")),
+                Long.parseLong(options.get("seed")), Double.parseDouble(options.get("churn")),
+                Double.parseDouble(options.get("turnover")));
+        Latency latency = new Latency(Integer.parseInt(options.get("latency")),
+                Integer.parseInt(options.get("jitter")));
+        InetAddress bind = InetAddress.getByName(options.get("bind"));
+        List<String> protocols = Arrays.asList(options.get("protocols").split(","));
+        System.out.println("Serving " + options.get("torrents") + " torrents with " + latency + " latency");
+
+        if (protocols.contains("transmission")) {
+            start("Transmission", new ServerSocket(getPort(options, "transmission"), 50, bind),
+                    new TransmissionHandler(torrents), latency, "/transmission/rpc");
+        }
+        if (protocols.contains("qbittorrent")) {
+            start("qBittorrent", new ServerSocket(getPort(options, "qbittorrent"), 50, bind),
+                    new QbittorrentHandler(torrents), latency, "/api/v2");
+        }
+        if (protocols.contains("rtorrent")) {
+            start("rTorrent", new ServerSocket(getPort(options, "rtorrent"), 50, bind),
+                    new RtorrentHandler(torrents), latency, "/RPC2");
+        }
+        if (protocols.contains("deluge")) {
+            if (!options.containsKey("keystore")) {
+                System.err.println("Deluge RPC requires TLS; skipped as no --keystore was given");
+            } else {
+                SSLServerSocketFactory factory = createSslContext(options.get("keystore"),
+                        options.get("storepass")).getServerSocketFactory();
+                ServerSocket socket = factory.createServerSocket(getPort(options, "deluge"), 50, bind);
+                startThread("Deluge", new DelugeRpcServer(socket, torrents, latency));
+                System.out.println("Deluge RPC (1 and 2) on " + bind.getHostAddress() + ":" + socket.getLocalPort()
+                        + " (enable SSL and trust all certificates)");
+            }
+        }
+    }
+
+    private static int getPort(Map<String, String> options, String protocol) {
+        return Integer.parseInt(options.get(protocol + "-port"));
+    }
+
+    private static void start(String name, ServerSocket socket, FakeHttpServer.Handler handler, Latency latency,
+                              String path) {
+        startThread(name, new FakeHttpServer(name, socket, handler, latency));
+        System.out.println(name + " on http://" + socket.getInetAddress().getHostAddress() + ":"
+                + socket.getLocalPort() + path);
+    }
+
+    private static void startThread(String name, Runnable server) {
+        Thread thread = new Thread(server, name);
+        thread.start();
+    }
+
+    private static SSLContext createSslContext(String keyStoreFile, String password)
+            throws IOException, GeneralSecurityException {
+        char[] passwordChars = password == null ? new char[0] : password.toCharArray();
+        KeyStore keyStore = KeyStore.getInstance(keyStoreFile.endsWith(".jks") ? "JKS" : "PKCS12");
+        try (InputStream in = new FileInputStream(keyStoreFile)) {
+            keyStore.load(in, passwordChars);
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, passwordChars);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return context;
+    }
+
+}
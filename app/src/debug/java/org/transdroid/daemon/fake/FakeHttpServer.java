@@ -0,0 +1,359 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.fake;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A minimal HTTP/1.1 server for the HTTP based fake daemons. It supports persistent connections, chunked and
+ * 100-continue request bodies, such that the real adapters (using Apache HttpClient) talk to it as they would to a real
+ * server. Every connection is served by its own thread.
+ *
+ * @author Eric Kok
+ */
+final class FakeHttpServer implements Runnable {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MAX_HEADER_LINE = 16 * 1024;
+
+    private final String name;
+    private final ServerSocket serverSocket;
+    private final Handler handler;
+    private final Latency latency;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+
+    FakeHttpServer(String name, ServerSocket serverSocket, Handler handler, Latency latency) {
+        this.name = name;
+        this.serverSocket = serverSocket;
+        this.handler = handler;
+        this.latency = latency;
+    }
+
+    @Override
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println(name + ": cannot accept connection: " + e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket connection = socket) {
+            connection.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(connection.getInputStream());
+            OutputStream out = connection.getOutputStream();
+            while (true) {
+                Request request = readRequest(in, out);
+                if (request == null) {
+                    return;
+                }
+                Response response;
+                try {
+                    response = handler.handle(request);
+                } catch (RuntimeException e) {
+                    response = Response.text(400, e.toString());
+                }
+                latency.inject();
+                boolean keepAlive = !"close".equalsIgnoreCase(request.getHeader("Connection"));
+                writeResponse(out, response, keepAlive);
+                if (!keepAlive) {
+                    return;
+                }
+            }
+        } catch (SocketException e) {
+            // Client closed the connection
+        } catch (IOException e) {
+            System.err.println(name + ": connection error: " + e);
+        }
+    }
+
+    private Request readRequest(InputStream in, OutputStream out) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null) {
+            return null;
+        }
+        String[] parts = requestLine.split(" ");
+        if (parts.length < 2) {
+            throw new IOException("Invalid request line " + requestLine);
+        }
+        Request request = new Request();
+        request.method = parts[0];
+        int queryStart = parts[1].indexOf('?');
+        request.path = queryStart < 0 ? parts[1] : parts[1].substring(0, queryStart);
+        request.query = queryStart < 0 ? null : parts[1].substring(queryStart + 1);
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                request.headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                        line.substring(colon + 1).trim());
+            }
+        }
+
+        if ("100-continue".equalsIgnoreCase(request.getHeader("Expect"))) {
+            out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(UTF8));
+            out.flush();
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if ("chunked".equalsIgnoreCase(request.getHeader("Transfer-Encoding"))) {
+            while (true) {
+                String size = readLine(in);
+                int semicolon = size == null ? -1 : size.indexOf(';');
+                int length = Integer.parseInt((semicolon < 0 ? size : size.substring(0, semicolon)).trim(), 16);
+                if (length == 0) {
+                    // Skip the trailers
+                    while ((line = readLine(in)) != null && !line.isEmpty()) {
+                        continue;
+                    }
+                    break;
+                }
+                copy(in, body, length);
+                readLine(in);
+            }
+        } else if (request.getHeader("Content-Length") != null) {
+            copy(in, body, Integer.parseInt(request.getHeader("Content-Length")));
+        }
+        request.body = body.toByteArray();
+        return request;
+    }
+
+    private void writeResponse(OutputStream out, Response response, boolean keepAlive) throws IOException {
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(response.status).append(' ').append(getReason(response.status)).append("\r\n");
+        head.append("Server: Transdroid fake daemon\r\n");
+        head.append("Content-Type: ").append(response.contentType).append("\r\n");
+        head.append("Content-Length: ").append(response.body.length).append("\r\n");
+        head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+        for (Map.Entry<String, String> header : response.headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        head.append("\r\n");
+        out.write(head.toString().getBytes(UTF8));
+        out.write(response.body);
+        out.flush();
+    }
+
+    private static String getReason(int status) {
+        switch (status) {
+            case 200:
+                return "OK";
+            case 400:
+                return "Bad Request";
+            case 401:
+                return "Unauthorized";
+            case 403:
+                return "Forbidden";
+            case 404:
+                return "Not Found";
+            case 409:
+                return "Conflict";
+            default:
+                return "Error";
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            if (line.length() >= MAX_HEADER_LINE) {
+                throw new IOException("Header line too long");
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    private static void copy(InputStream in, ByteArrayOutputStream out, int length) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (length > 0) {
+            int read = in.read(buffer, 0, Math.min(buffer.length, length));
+            if (read < 0) {
+                throw new IOException("Unexpected end of request body");
+            }
+            out.write(buffer, 0, read);
+            length -= read;
+        }
+    }
+
+    interface Handler {
+
+        Response handle(Request request) throws IOException;
+
+    }
+
+    static final class Request {
+
+        private final Map<String, String> headers = new HashMap<>();
+        private String method;
+        private String path;
+        private String query;
+        private byte[] body;
+
+        Request() {
+        }
+
+        /**
+         * Creates a request as if it was received, such that a handler can be called in process.
+         */
+        Request(String method, String path, Map<String, String> headers, String body) {
+            this.method = method;
+            this.path = path;
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                this.headers.put(header.getKey().toLowerCase(Locale.US), header.getValue());
+            }
+            this.body = body.getBytes(UTF8);
+        }
+
+        String getMethod() {
+            return method;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.US));
+        }
+
+        String getBodyText() {
+            return new String(body, UTF8);
+        }
+
+        /**
+         * Returns the url encoded parameters of both the query string and (if form encoded) the request body.
+         */
+        Map<String, String> getParameters() {
+            Map<String, String> parameters = new LinkedHashMap<>();
+            parseParameters(parameters, query);
+            String contentType = getHeader("Content-Type");
+            if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+                parseParameters(parameters, getBodyText());
+            }
+            return parameters;
+        }
+
+        /**
+         * Returns the value of some cookie as sent by the client, or null if it was not sent.
+         */
+        String getCookie(String name) {
+            String cookies = getHeader("Cookie");
+            if (cookies == null) {
+                return null;
+            }
+            for (String cookie : cookies.split(";")) {
+                int equals = cookie.indexOf('=');
+                if (equals > 0 && cookie.substring(0, equals).trim().equals(name)) {
+                    return cookie.substring(equals + 1).trim();
+                }
+            }
+            return null;
+        }
+
+        private static void parseParameters(Map<String, String> parameters, String encoded) {
+            if (encoded == null || encoded.isEmpty()) {
+                return;
+            }
+            try {
+                for (String pair : encoded.split("&")) {
+                    int equals = pair.indexOf('=');
+                    if (equals < 0) {
+                        parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+                    } else {
+                        parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                                URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                    }
+                }
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+    }
+
+    static final class Response {
+
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        private Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Response text(int status, String text) {
+            return new Response(status, "text/plain; charset=UTF-8", text.getBytes(UTF8));
+        }
+
+        static Response json(Object value) {
+            return new Response(200, "application/json", Json.write(value).getBytes(UTF8));
+        }
+
+        static Response xml(String xml) {
+            return new Response(200, "text/xml", xml.getBytes(UTF8));
+        }
+
+        Response withHeader(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+
+    }
+
+}
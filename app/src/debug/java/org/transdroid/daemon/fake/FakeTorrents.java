@@ -0,0 +1,414 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.fake;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The simulated torrents of a fake daemon. Torrents are generated from a seed, such that every run serves the same
+ * initial data, and get stable ids and info hashes. Every time the torrents are requested the simulation advances by
+ * the elapsed (wall clock) time: downloads progress with their transfer rates, rates drift, torrents are paused,
+ * resumed, checked or fail, and torrents are added and removed at the configured turnover rate.
+ *
+ * @author Eric Kok
+ */
+public final class FakeTorrents {
+
+    private static final String[] WORDS = {"Ubuntu", "Debian", "Fedora", "Arch", "Documentary", "Lecture", "Concert",
+            "Podcast", "Audiobook", "Dataset", "Archive", "Backup", "Collection", "Season", "Volume", "Edition",
+            "Remastered", "Complete", "Extended", "Anthology"};
+    private static final String[] LABELS = {"linux", "docs", "music", "books", "data", "video"};
+    private static final String[] TRACKERS = {"udp://tracker.example.org:6969/announce",
+            "https://tracker.example.net:443/announce", "udp://open.example.com:1337/announce"};
+    private static final long MIN_SIZE = 16L * 1024 * 1024;
+    private static final long MAX_SIZE = 64L * 1024 * 1024 * 1024;
+    private static final int MAX_RATE = 4 * 1024 * 1024;
+
+    public enum State {
+        Downloading, Seeding, Paused, Queued, Checking, Error
+    }
+
+    private final Random random;
+    private final double churn;
+    private final double turnover;
+    private final List<FakeTorrent> torrents = new ArrayList<>();
+    private final Map<String, FakeTorrent> byHash = new HashMap<>();
+    private final Map<Integer, FakeTorrent> byId = new HashMap<>();
+    private int nextId = 1;
+    private long lastTick;
+    private double pendingTurnover;
+
+    /**
+     * Generates a set of simulated torrents.
+     *
+     * @param count    The initial number of torrents
+     * @param seed     The seed from which all torrents (and their simulated changes) are generated
+     * @param churn    The chance per second per torrent that its state changes, such as 0.01
+     * @param turnover The number of torrents added and removed per minute
+     */
+    public FakeTorrents(int count, long seed, double churn, double turnover) {
+        this.random = new Random(seed);
+        this.churn = churn;
+        this.turnover = turnover;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            add(generateName(), now / 1000 - random.nextInt(365 * 24 * 60 * 60));
+        }
+        this.lastTick = now;
+    }
+
+    /**
+     * Advances the simulation to the current time and returns a copy of all torrents.
+     */
+    public synchronized List<FakeTorrent> refresh() {
+        tick();
+        List<FakeTorrent> copy = new ArrayList<>(torrents.size());
+        for (FakeTorrent torrent : torrents) {
+            copy.add(torrent.copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a copy of the torrent with the given info hash (case insensitive) or numeric id, or null if it does not
+     * exist (any more).
+     */
+    public synchronized FakeTorrent get(String hashOrId) {
+        FakeTorrent torrent = find(hashOrId);
+        return torrent == null ? null : torrent.copy();
+    }
+
+    public synchronized List<String> getLabels() {
+        List<String> labels = new ArrayList<>();
+        Collections.addAll(labels, LABELS);
+        return labels;
+    }
+
+    public synchronized FakeTorrent add(String name) {
+        FakeTorrent torrent = add(name == null ? generateName() : name, System.currentTimeMillis() / 1000);
+        torrent.state = State.Downloading;
+        torrent.done = 0;
+        torrent.doneAt = 0;
+        return torrent.copy();
+    }
+
+    public synchronized boolean remove(String hashOrId) {
+        FakeTorrent torrent = find(hashOrId);
+        if (torrent == null) {
+            return false;
+        }
+        torrents.remove(torrent);
+        byHash.remove(torrent.hash);
+        byId.remove(torrent.id);
+        return true;
+    }
+
+    /**
+     * Pauses the torrent with the given info hash or id, or all torrents if null is given.
+     */
+    public synchronized void stop(String hashOrId) {
+        for (FakeTorrent torrent : select(hashOrId)) {
+            torrent.state = State.Paused;
+            torrent.rateDown = 0;
+            torrent.rateUp = 0;
+        }
+    }
+
+    /**
+     * Resumes the torrent with the given info hash or id, or all torrents if null is given.
+     */
+    public synchronized void start(String hashOrId) {
+        for (FakeTorrent torrent : select(hashOrId)) {
+            if (torrent.state == State.Paused || torrent.state == State.Queued || torrent.state == State.Error) {
+                torrent.state = torrent.isComplete() ? State.Seeding : State.Downloading;
+                torrent.error = null;
+            }
+        }
+    }
+
+    public synchronized void verify(String hashOrId) {
+        for (FakeTorrent torrent : select(hashOrId)) {
+            torrent.state = State.Checking;
+        }
+    }
+
+    public synchronized void setLabel(String hashOrId, String label) {
+        for (FakeTorrent torrent : select(hashOrId)) {
+            torrent.label = label == null || label.isEmpty() ? null : label;
+        }
+    }
+
+    private FakeTorrent find(String hashOrId) {
+        if (hashOrId == null) {
+            return null;
+        }
+        FakeTorrent torrent = byHash.get(hashOrId.toLowerCase(Locale.US));
+        if (torrent == null) {
+            try {
+                torrent = byId.get(Integer.parseInt(hashOrId));
+            } catch (NumberFormatException e) {
+                // Not an id either
+            }
+        }
+        return torrent;
+    }
+
+    private List<FakeTorrent> select(String hashOrId) {
+        if (hashOrId == null) {
+            return torrents;
+        }
+        FakeTorrent torrent = find(hashOrId);
+        return torrent == null ? Collections.<FakeTorrent>emptyList() : Collections.singletonList(torrent);
+    }
+
+    private FakeTorrent add(String name, long addedAt) {
+        FakeTorrent torrent = new FakeTorrent();
+        torrent.id = nextId++;
+        torrent.hash = String.format(Locale.US, "%016x%016x%08x", random.nextLong(), random.nextLong(),
+                random.nextInt());
+        torrent.name = name;
+        torrent.label = random.nextInt(4) == 0 ? null : LABELS[random.nextInt(LABELS.length)];
+        torrent.size = MIN_SIZE + (long) (Math.pow(random.nextDouble(), 3) * (MAX_SIZE - MIN_SIZE));
+        torrent.fileCount = 1 + (random.nextInt(3) == 0 ? random.nextInt(200) : 0);
+        torrent.pieceSize = torrent.size > 4L * 1024 * 1024 * 1024 ? 16 * 1024 * 1024 : 1024 * 1024;
+        torrent.tracker = TRACKERS[random.nextInt(TRACKERS.length)];
+        torrent.addedAt = addedAt;
+        torrent.seedsKnown = random.nextInt(500);
+        torrent.peersKnown = random.nextInt(500);
+        int pick = random.nextInt(100);
+        if (pick < 55) {
+            torrent.state = State.Seeding;
+            torrent.done = torrent.size;
+            torrent.doneAt = addedAt + random.nextInt(24 * 60 * 60);
+        } else if (pick < 75) {
+            torrent.state = State.Downloading;
+            torrent.done = (long) (random.nextDouble() * torrent.size);
+        } else if (pick < 92) {
+            torrent.state = State.Paused;
+            torrent.done = random.nextBoolean() ? torrent.size : (long) (random.nextDouble() * torrent.size);
+        } else if (pick < 98) {
+            torrent.state = State.Queued;
+        } else {
+            torrent.state = State.Error;
+            torrent.error = "Tracker gave HTTP response code 404 (Not Found)";
+        }
+        torrent.uploaded = (long) (random.nextDouble() * 3 * torrent.done);
+        updatePeers(torrent);
+        torrents.add(torrent);
+        byHash.put(torrent.hash, torrent);
+        byId.put(torrent.id, torrent);
+        return torrent;
+    }
+
+    private String generateName() {
+        StringBuilder name = new StringBuilder();
+        int words = 2 + random.nextInt(4);
+        for (int i = 0; i < words; i++) {
+            name.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return name.append(2000 + random.nextInt(26)).append(random.nextBoolean() ? ".iso" : "").toString();
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        double seconds = (now - lastTick) / 1000D;
+        lastTick = now;
+        if (seconds <= 0) {
+            return;
+        }
+
+        // Replace some torrents by new ones
+        pendingTurnover += turnover * seconds / 60D;
+        while (pendingTurnover >= 1 && !torrents.isEmpty()) {
+            pendingTurnover--;
+            FakeTorrent removed = torrents.remove(random.nextInt(torrents.size()));
+            byHash.remove(removed.hash);
+            byId.remove(removed.id);
+            FakeTorrent added = add(generateName(), now / 1000);
+            added.state = State.Downloading;
+            added.done = 0;
+            added.doneAt = 0;
+        }
+
+        double changeChance = Math.min(1D, churn * seconds);
+        for (FakeTorrent torrent : torrents) {
+            if (random.nextDouble() < changeChance) {
+                changeState(torrent, now);
+            }
+            if (torrent.state == State.Downloading) {
+                torrent.done = Math.min(torrent.size, torrent.done + (long) (torrent.rateDown * seconds));
+                if (torrent.isComplete()) {
+                    torrent.state = State.Seeding;
+                    torrent.doneAt = now / 1000;
+                }
+            }
+            if (torrent.state == State.Downloading || torrent.state == State.Seeding) {
+                torrent.uploaded += (long) (torrent.rateUp * seconds);
+                updatePeers(torrent);
+            } else {
+                torrent.rateDown = 0;
+                torrent.rateUp = 0;
+                torrent.seeds = 0;
+                torrent.peers = 0;
+            }
+        }
+    }
+
+    private void changeState(FakeTorrent torrent, long now) {
+        switch (torrent.state) {
+            case Downloading:
+            case Seeding:
+                int pick = random.nextInt(10);
+                torrent.state = pick < 7 ? State.Paused : pick < 9 ? State.Queued : State.Error;
+                torrent.error = torrent.state == State.Error ? "Connection to tracker timed out" : null;
+                break;
+            case Checking:
+                torrent.state = torrent.isComplete() ? State.Seeding : State.Downloading;
+                break;
+            default:
+                torrent.state = random.nextInt(5) == 0 ? State.Checking
+                        : torrent.isComplete() ? State.Seeding : State.Downloading;
+                torrent.error = null;
+                if (torrent.state == State.Seeding && torrent.doneAt == 0) {
+                    torrent.doneAt = now / 1000;
+                }
+        }
+    }
+
+    private void updatePeers(FakeTorrent torrent) {
+        if (torrent.state == State.Downloading) {
+            torrent.rateDown = drift(torrent.rateDown);
+        } else {
+            torrent.rateDown = 0;
+        }
+        torrent.rateUp = random.nextInt(3) == 0 ? 0 : drift(torrent.rateUp) / 4;
+        torrent.seeds = torrent.state == State.Downloading ? random.nextInt(Math.min(50, torrent.seedsKnown + 1)) : 0;
+        torrent.peers = torrent.rateUp > 0 ? random.nextInt(Math.min(50, torrent.peersKnown + 1)) : 0;
+    }
+
+    private int drift(int rate) {
+        // Random walk, occasionally jumping to a fresh rate
+        if (rate <= 0 || random.nextInt(20) == 0) {
+            return random.nextInt(MAX_RATE);
+        }
+        return (int) Math.max(0, Math.min(MAX_RATE, rate * (0.8 + random.nextDouble() * 0.4)));
+    }
+
+    /**
+     * A snapshot of one simulated torrent.
+     */
+    public static final class FakeTorrent {
+
+        int id;
+        String hash;
+        String name;
+        String label;
+        String tracker;
+        String error;
+        State state;
+        long size;
+        long done;
+        long uploaded;
+        long addedAt;
+        long doneAt;
+        int rateDown;
+        int rateUp;
+        int seeds;
+        int seedsKnown;
+        int peers;
+        int peersKnown;
+        int fileCount;
+        int pieceSize;
+
+        FakeTorrent copy() {
+            FakeTorrent copy = new FakeTorrent();
+            copy.id = id;
+            copy.hash = hash;
+            copy.name = name;
+            copy.label = label;
+            copy.tracker = tracker;
+            copy.error = error;
+            copy.state = state;
+            copy.size = size;
+            copy.done = done;
+            copy.uploaded = uploaded;
+            copy.addedAt = addedAt;
+            copy.doneAt = doneAt;
+            copy.rateDown = rateDown;
+            copy.rateUp = rateUp;
+            copy.seeds = seeds;
+            copy.seedsKnown = seedsKnown;
+            copy.peers = peers;
+            copy.peersKnown = peersKnown;
+            copy.fileCount = fileCount;
+            copy.pieceSize = pieceSize;
+            return copy;
+        }
+
+        boolean isComplete() {
+            return done >= size;
+        }
+
+        float getProgress() {
+            return size == 0 ? 1F : (float) done / size;
+        }
+
+        int getEta() {
+            return rateDown <= 0 || isComplete() ? -1 : (int) ((size - done) / rateDown);
+        }
+
+        String getSavePath() {
+            return "/downloads/" + (label == null ? "" : label + "/");
+        }
+
+        String getFileName(int file) {
+            return fileCount == 1 ? name : name + "/" + String.format(Locale.US, "part%04d.bin", file + 1);
+        }
+
+        long getFileSize(int file) {
+            long base = size / fileCount;
+            return file == fileCount - 1 ? size - base * (fileCount - 1) : base;
+        }
+
+        /**
+         * Returns the completed bytes of some file, assuming files are downloaded in order.
+         */
+        long getFileDone(int file) {
+            long start = (size / fileCount) * file;
+            return Math.max(0, Math.min(getFileSize(file), done - start));
+        }
+
+        int getPieceCount() {
+            return (int) ((size + pieceSize - 1) / pieceSize);
+        }
+
+        /**
+         * Returns whether some piece is downloaded, assuming pieces are downloaded in order.
+         */
+        boolean hasPiece(int piece) {
+            return (long) (piece + 1) * pieceSize <= done || isComplete();
+        }
+
+    }
+
+}
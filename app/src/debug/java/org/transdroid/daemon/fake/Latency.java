@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.fake;
+
+import java.util.Random;
+
+/**
+ * Injects artificial latency before a fake daemon answers, to mimic servers behind slow or congested links. Every
+ * response is delayed by a base latency plus uniformly distributed jitter, and one in a hundred responses is delayed
+ * ten times as long, as real servers show a long tail when they are busy (e.g. hashing).
+ *
+ * @author Eric Kok
+ */
+final class Latency {
+
+    private static final int TAIL_CHANCE = 100;
+    private static final int TAIL_FACTOR = 10;
+
+    private final int baseMs;
+    private final int jitterMs;
+    private final Random random = new Random();
+
+    Latency(int baseMs, int jitterMs) {
+        this.baseMs = baseMs;
+        this.jitterMs = jitterMs;
+    }
+
+    void inject() {
+        long delay;
+        synchronized (random) {
+            delay = baseMs + (jitterMs > 0 ? random.nextInt(jitterMs + 1) : 0);
+            if (random.nextInt(TAIL_CHANCE) == 0) {
+                delay *= TAIL_FACTOR;
+            }
+        }
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return baseMs + "ms + 0-" + jitterMs + "ms jitter";
+    }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.fake;
+
+import org.transdroid.daemon.fake.FakeHttpServer.Request;
+import org.transdroid.daemon.fake.FakeHttpServer.Response;
+import org.transdroid.daemon.fake.FakeTorrents.FakeTorrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fake qBittorrent daemon, speaking the Web API v2 (as of qBittorrent 4.6) under /api/v2. Like the real server, all
+ * methods except the login require the SID cookie that is handed out on login.
+ *
+ * @author Eric Kok
+ */
+final class QbittorrentHandler implements FakeHttpServer.Handler {
+
+    private static final String API = "/api/v2/";
+    private static final String OK = "Ok.";
+
+    private final FakeTorrents torrents;
+    private final Random random = new Random();
+    private final Set<String> sessions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean altSpeedEnabled = false;
+
+    QbittorrentHandler(FakeTorrents torrents) {
+        this.torrents = torrents;
+    }
+
+    @Override
+    public Response handle(Request request) {
+        if (!request.getPath().startsWith(API)) {
+            return Response.text(404, "Not Found");
+        }
+        String method = request.getPath().substring(API.length());
+        Map<String, String> parameters = request.getParameters();
+        if (method.equals("auth/login")) {
+            String sid;
+            synchronized (random) {
+                sid = String.format(Locale.US, "%016x%016x", random.nextLong(), random.nextLong());
+            }
+            sessions.add(sid);
+            return Response.text(200, OK).withHeader("Set-Cookie", "SID=" + sid + "; HttpOnly; path=/");
+        }
+        String sid = request.getCookie("SID");
+        if (sid == null || !sessions.contains(sid)) {
+            return Response.text(403, "Forbidden");
+        }
+
+        String hash = parameters.get("hash");
+        switch (method) {
+            case "auth/logout":
+                sessions.remove(sid);
+                return Response.text(200, "");
+            case "app/version":
+                return Response.text(200, "v4.6.3");
+            case "app/webapiVersion":
+                return Response.text(200, "2.9.3");
+            case "torrents/info":
+                List<Map<String, Object>> info = new ArrayList<>();
+                for (FakeTorrent torrent : torrents.refresh()) {
+                    info.add(getInfo(torrent));
+                }
+                return Response.json(info);
+            case "sync/maindata":
+                return Response.json(getMainData());
+            case "torrents/categories":
+                Map<String, Object> categories = new LinkedHashMap<>();
+                for (String label : torrents.getLabels()) {
+                    Map<String, Object> category = new LinkedHashMap<>();
+                    category.put("name", label);
+                    category.put("savePath", "/downloads/" + label);
+                    categories.put(label, category);
+                }
+                return Response.json(categories);
+            case "torrents/trackers":
+                return Response.json(getTrackers(torrents.get(hash)));
+            case "torrents/pieceStates":
+                return Response.json(getPieceStates(torrents.get(hash)));
+            case "torrents/files":
+                return Response.json(getFiles(torrents.get(hash)));
+            case "torrents/add":
+                String urls = parameters.get("urls");
+                if (urls == null) {
+                    torrents.add(null);
+                } else {
+                    for (String url : urls.split("\n")) {
+                        torrents.add(url.startsWith("magnet:") ? null : url.trim());
+                    }
+                }
+                return Response.text(200, OK);
+            case "torrents/delete":
+                for (String id : getHashes(parameters)) {
+                    torrents.remove(id);
+                }
+                return Response.text(200, "");
+            case "torrents/pause":
+            case "torrents/stop":
+                for (String id : getHashes(parameters)) {
+                    torrents.stop(id);
+                }
+                return Response.text(200, "");
+            case "torrents/resume":
+            case "torrents/start":
+                for (String id : getHashes(parameters)) {
+                    torrents.start(id);
+                }
+                return Response.text(200, "");
+            case "torrents/recheck":
+                for (String id : getHashes(parameters)) {
+                    torrents.verify(id);
+                }
+                return Response.text(200, "");
+            case "torrents/setCategory":
+                for (String id : getHashes(parameters)) {
+                    torrents.setLabel(id, parameters.get("category"));
+                }
+                return Response.text(200, "");
+            case "transfer/toggleSpeedLimitsMode":
+                altSpeedEnabled = !altSpeedEnabled;
+                return Response.text(200, "");
+            case "transfer/speedLimitsMode":
+                return Response.text(200, altSpeedEnabled ? "1" : "0");
+            case "torrents/filePrio":
+            case "torrents/setLocation":
+            case "torrents/editTracker":
+            case "torrents/addTrackers":
+            case "torrents/removeTrackers":
+            case "torrents/toggleSequentialDownload":
+            case "torrents/toggleFirstLastPiecePrio":
+            case "transfer/setDownloadLimit":
+            case "transfer/setUploadLimit":
+                // Accepted, but not simulated
+                return Response.text(200, "");
+            default:
+                return Response.text(404, "Not Found");
+        }
+    }
+
+    private Map<String, Object> getMainData() {
+        Map<String, Object> serverState = new LinkedHashMap<>();
+        long downloadRate = 0, uploadRate = 0;
+        Map<String, Object> all = new LinkedHashMap<>();
+        for (FakeTorrent torrent : torrents.refresh()) {
+            all.put(torrent.hash, getInfo(torrent));
+            downloadRate += torrent.rateDown;
+            uploadRate += torrent.rateUp;
+        }
+        serverState.put("dl_info_speed", downloadRate);
+        serverState.put("up_info_speed", uploadRate);
+        serverState.put("free_space_on_disk", 512L * 1024 * 1024 * 1024);
+        serverState.put("use_alt_speed_limits", altSpeedEnabled);
+        serverState.put("connection_status", "connected");
+        Map<String, Object> mainData = new LinkedHashMap<>();
+        mainData.put("rid", 1);
+        mainData.put("full_update", true);
+        mainData.put("server_state", serverState);
+        mainData.put("torrents", all);
+        return mainData;
+    }
+
+    private Map<String, Object> getInfo(FakeTorrent torrent) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("hash", torrent.hash);
+        info.put("name", torrent.name);
+        info.put("state", getState(torrent));
+        info.put("save_path", torrent.getSavePath());
+        info.put("category", torrent.label == null ? "" : torrent.label);
+        info.put("size", torrent.size);
+        info.put("total_size", torrent.size);
+        info.put("progress", torrent.getProgress());
+        info.put("downloaded", torrent.done);
+        info.put("uploaded", torrent.uploaded);
+        info.put("ratio", torrent.done == 0 ? 0D : (double) torrent.uploaded / torrent.done);
+        info.put("dlspeed", torrent.rateDown);
+        info.put("upspeed", torrent.rateUp);
+        info.put("eta", torrent.getEta() < 0 ? 8640000 : torrent.getEta());
+        info.put("num_seeds", torrent.seeds);
+        info.put("num_leechs", torrent.peers);
+        info.put("num_complete", torrent.seedsKnown);
+        info.put("num_incomplete", torrent.peersKnown);
+        info.put("added_on", torrent.addedAt);
+        info.put("completion_on", torrent.doneAt == 0 ? -1 : torrent.doneAt);
+        info.put("tracker", torrent.tracker);
+        info.put("seq_dl", false);
+        info.put("f_l_piece_prio", false);
+        return info;
+    }
+
+    private String getState(FakeTorrent torrent) {
+        boolean complete = torrent.isComplete();
+        switch (torrent.state) {
+            case Downloading:
+                return torrent.rateDown > 0 ? "downloading" : "stalledDL";
+            case Seeding:
+                return torrent.rateUp > 0 ? "uploading" : "stalledUP";
+            case Paused:
+                return complete ? "pausedUP" : "pausedDL";
+            case Queued:
+                return complete ? "queuedUP" : "queuedDL";
+            case Checking:
+                return complete ? "checkingUP" : "checkingDL";
+            default:
+                return "error";
+        }
+    }
+
+    private List<Map<String, Object>> getTrackers(FakeTorrent torrent) {
+        List<Map<String, Object>> trackers = new ArrayList<>();
+        if (torrent != null) {
+            Map<String, Object> tracker = new LinkedHashMap<>();
+            tracker.put("url", torrent.tracker);
+            tracker.put("status", torrent.error == null ? 2 : 4);
+            tracker.put("num_seeds", torrent.seedsKnown);
+            tracker.put("num_leeches", torrent.peersKnown);
+            tracker.put("msg", torrent.error == null ? "" : torrent.error);
+            trackers.add(tracker);
+        }
+        return trackers;
+    }
+
+    private List<Integer> getPieceStates(FakeTorrent torrent) {
+        if (torrent == null) {
+            return Collections.emptyList();
+        }
+        int count = torrent.getPieceCount();
+        List<Integer> pieces = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // 0 is not downloaded, 1 is downloading, 2 is downloaded
+            pieces.add(torrent.hasPiece(i) ? 2 : (i > 0 && torrent.hasPiece(i - 1) ? 1 : 0));
+        }
+        return pieces;
+    }
+
+    private List<Map<String, Object>> getFiles(FakeTorrent torrent) {
+        List<Map<String, Object>> files = new ArrayList<>();
+        if (torrent == null) {
+            return files;
+        }
+        for (int i = 0; i < torrent.fileCount; i++) {
+            long size = torrent.getFileSize(i);
+            Map<String, Object> file = new LinkedHashMap<>();
+            file.put("index", i);
+            file.put("name", torrent.getFileName(i));
+            file.put("size", size);
+            file.put("progress", size == 0 ? 1D : (double) torrent.getFileDone(i) / size);
+            file.put("priority", 1);
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Returns the |-separated hashes of the request, or a single null if all torrents are targeted.
+     */
+    private List<String> getHashes(Map<String, String> parameters) {
+        String hashes = parameters.get("hashes");
+        if (hashes == null) {
+            hashes = parameters.get("hash");
+        }
+        if (hashes == null) {
+            return Collections.emptyList();
+        }
+        if (hashes.equals("all")) {
+            return Collections.singletonList(null);
+        }
+        List<String> result = new ArrayList<>();
+        Collections.addAll(result, hashes.split("\\|"));
+        return result;
+    }
+
+}
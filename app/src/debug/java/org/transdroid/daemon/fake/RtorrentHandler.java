@@ -0,0 +1,390 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.fake;
+
+import org.transdroid.daemon.fake.FakeHttpServer.Request;
+import org.transdroid.daemon.fake.FakeHttpServer.Response;
+import org.transdroid.daemon.fake.FakeTorrents.FakeTorrent;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * Fake rTorrent daemon, speaking XML-RPC (with the i8 extension for 64-bit integers) on /RPC2, as rTorrent does when
+ * exposed through an SCGI mount. Multicalls (d.multicall2, f.multicall, t.multicall) are evaluated per torrent, file
+ * or tracker for any of the commonly used getter commands.
+ *
+ * @author Eric Kok
+ */
+final class RtorrentHandler implements FakeHttpServer.Handler {
+
+    private final FakeTorrents torrents;
+    private final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+
+    RtorrentHandler(FakeTorrents torrents) {
+        this.torrents = torrents;
+    }
+
+    @Override
+    public Response handle(Request request) throws IOException {
+        if (!request.getPath().equals("/RPC2")) {
+            return Response.text(404, "Not found");
+        }
+        Document document;
+        try {
+            document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(request.getBodyText().getBytes(
+                    FakeHttpServer.UTF8)));
+        } catch (ParserConfigurationException | SAXException e) {
+            return Response.text(400, e.toString());
+        }
+        String method = getChild(document.getDocumentElement(), "methodName").getTextContent().trim();
+        List<Object> params = new ArrayList<>();
+        Element paramsElement = getChild(document.getDocumentElement(), "params");
+        if (paramsElement != null) {
+            for (Node param = paramsElement.getFirstChild(); param != null; param = param.getNextSibling()) {
+                if (param instanceof Element) {
+                    params.add(readValue(getChild((Element) param, "value")));
+                }
+            }
+        }
+
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?><methodResponse>");
+        try {
+            Object result = call(method, params);
+            xml.append("<params><param>");
+            writeValue(xml, result);
+            xml.append("</param></params>");
+        } catch (IllegalArgumentException e) {
+            xml.append("<fault><value><struct><member><name>faultCode</name><value><i4>-506</i4></value></member>")
+                    .append("<member><name>faultString</name><value><string>").append(escape(e.getMessage()))
+                    .append("</string></value></member></struct></value></fault>");
+        }
+        return Response.xml(xml.append("</methodResponse>").toString());
+    }
+
+    private Object call(String method, List<Object> params) {
+        String target = params.isEmpty() ? null : params.get(0).toString();
+        switch (method) {
+            case "system.client_version":
+            case "system.library_version":
+                return "0.9.8";
+            case "system.api_version":
+                return 10L;
+            case "d.multicall2":
+                return multicall(params.subList(2, params.size()));
+            case "f.multicall":
+                return fileMulticall(getTorrent(target), params.subList(2, params.size()));
+            case "t.multicall":
+                return trackerMulticall(getTorrent(target), params.subList(2, params.size()));
+            case "load.start":
+            case "load.start_verbose":
+            case "load.raw_start":
+            case "load.normal":
+            case "load.raw":
+                torrents.add(null);
+                return 0L;
+            default:
+                if (method.startsWith("d.") && target != null) {
+                    FakeTorrent torrent = getTorrent(target);
+                    Object value = execute(torrent, method, params.size() > 1 ? params.get(1).toString() : null);
+                    if (value == null) {
+                        value = get(torrent, method);
+                    }
+                    return value;
+                }
+                // Settings such as network.xmlrpc.size_limit.set and throttle.* are accepted, but not simulated
+                return 0L;
+        }
+    }
+
+    private List<List<Object>> multicall(List<Object> commands) {
+        List<FakeTorrent> all = torrents.refresh();
+        List<List<Object>> result = new ArrayList<>(all.size());
+        for (FakeTorrent torrent : all) {
+            List<Object> row = new ArrayList<>(commands.size());
+            for (Object command : commands) {
+                String name = command.toString();
+                int equals = name.indexOf('=');
+                String argument = equals < 0 || equals == name.length() - 1 ? null : name.substring(equals + 1);
+                name = equals < 0 ? name : name.substring(0, equals);
+                Object value = execute(torrent, name, argument);
+                row.add(value == null ? get(torrent, name + (argument == null ? "" : "=" + argument)) : value);
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * Executes a torrent command that changes the torrent, returning null if the command is not such a command.
+     */
+    private Object execute(FakeTorrent torrent, String command, String argument) {
+        switch (command) {
+            case "d.start":
+            case "d.open":
+            case "d.resume":
+                torrents.start(torrent.hash);
+                return 0L;
+            case "d.stop":
+            case "d.close":
+            case "d.pause":
+                torrents.stop(torrent.hash);
+                return 0L;
+            case "d.erase":
+                torrents.remove(torrent.hash);
+                return 0L;
+            case "d.check_hash":
+                torrents.verify(torrent.hash);
+                return 0L;
+            case "d.custom1.set":
+                torrents.setLabel(torrent.hash, argument);
+                return 0L;
+            case "d.custom5.set":
+            case "d.delete_tied":
+            case "d.directory.set":
+            case "d.update_priorities":
+                return 0L;
+            default:
+                return null;
+        }
+    }
+
+    private Object get(FakeTorrent torrent, String command) {
+        boolean started = torrent.state == FakeTorrents.State.Downloading
+                || torrent.state == FakeTorrents.State.Seeding || torrent.state == FakeTorrents.State.Checking;
+        switch (command) {
+            case "d.hash":
+                return torrent.hash.toUpperCase(Locale.US);
+            case "d.name":
+            case "d.base_filename":
+                return torrent.name;
+            case "d.base_path":
+            case "d.directory":
+                return torrent.getSavePath() + torrent.name;
+            case "d.state":
+                return started ? 1L : 0L;
+            case "d.is_open":
+                return torrent.state == FakeTorrents.State.Queued ? 0L : 1L;
+            case "d.is_active":
+                return started ? 1L : 0L;
+            case "d.is_hash_checking":
+                return torrent.state == FakeTorrents.State.Checking ? 1L : 0L;
+            case "d.complete":
+                return torrent.isComplete() ? 1L : 0L;
+            case "d.is_multi_file":
+                return torrent.fileCount > 1 ? 1L : 0L;
+            case "d.down.rate":
+                return (long) torrent.rateDown;
+            case "d.up.rate":
+                return (long) torrent.rateUp;
+            case "d.peers_connected":
+                return (long) (torrent.seeds + torrent.peers);
+            case "d.peers_not_connected":
+                return (long) (torrent.seedsKnown + torrent.peersKnown);
+            case "d.peers_accounted":
+                return (long) torrent.peers;
+            case "d.peers_complete":
+                return (long) torrent.seeds;
+            case "d.bytes_done":
+            case "d.completed_bytes":
+                return torrent.done;
+            case "d.up.total":
+                return torrent.uploaded;
+            case "d.size_bytes":
+                return torrent.size;
+            case "d.left_bytes":
+                return torrent.size - torrent.done;
+            case "d.creation_date":
+                return torrent.addedAt;
+            case "d.message":
+                return torrent.error == null ? "" : torrent.error;
+            case "d.custom=addtime":
+                return torrent.addedAt + "\n";
+            case "d.custom=seedingtime":
+                return torrent.doneAt == 0 ? "" : torrent.doneAt + "\n";
+            case "d.custom1":
+                return torrent.label == null ? "" : urlEncode(torrent.label);
+            case "d.size_chunks":
+                return (long) torrent.getPieceCount();
+            case "d.chunk_size":
+                return (long) torrent.pieceSize;
+            case "d.bitfield":
+                StringBuilder bitfield = new StringBuilder();
+                int pieces = torrent.getPieceCount();
+                for (int i = 0; i < pieces; i += 4) {
+                    int nibble = 0;
+                    for (int bit = 0; bit < 4; bit++) {
+                        nibble = nibble << 1 | (i + bit < pieces && torrent.hasPiece(i + bit) ? 1 : 0);
+                    }
+                    bitfield.append(Character.forDigit(nibble, 16));
+                }
+                return bitfield.toString().toUpperCase(Locale.US);
+            default:
+                // Unknown getters are answered like rTorrent answers unset custom values
+                return command.startsWith("d.custom") ? "" : 0L;
+        }
+    }
+
+    private List<List<Object>> fileMulticall(FakeTorrent torrent, List<Object> commands) {
+        List<List<Object>> result = new ArrayList<>(torrent.fileCount);
+        for (int i = 0; i < torrent.fileCount; i++) {
+            List<Object> row = new ArrayList<>(commands.size());
+            long size = torrent.getFileSize(i);
+            long chunks = (size + torrent.pieceSize - 1) / torrent.pieceSize;
+            for (Object command : commands) {
+                switch (command.toString()) {
+                    case "f.path=":
+                        row.add(torrent.getFileName(i));
+                        break;
+                    case "f.frozen_path=":
+                        row.add(torrent.getSavePath() + torrent.getFileName(i));
+                        break;
+                    case "f.size_bytes=":
+                        row.add(size);
+                        break;
+                    case "f.size_chunks=":
+                        row.add(chunks);
+                        break;
+                    case "f.completed_chunks=":
+                        row.add(size == 0 ? chunks : chunks * torrent.getFileDone(i) / size);
+                        break;
+                    case "f.priority=":
+                        row.add(1L);
+                        break;
+                    default:
+                        row.add(0L);
+                }
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    private List<List<Object>> trackerMulticall(FakeTorrent torrent, List<Object> commands) {
+        List<Object> row = new ArrayList<>(commands.size());
+        for (Object command : commands) {
+            switch (command.toString()) {
+                case "t.url=":
+                    row.add(torrent.tracker);
+                    break;
+                case "t.is_enabled=":
+                    row.add(1L);
+                    break;
+                case "t.scrape_complete=":
+                    row.add((long) torrent.seedsKnown);
+                    break;
+                case "t.scrape_incomplete=":
+                    row.add((long) torrent.peersKnown);
+                    break;
+                default:
+                    row.add(0L);
+            }
+        }
+        return Collections.singletonList(row);
+    }
+
+    private FakeTorrent getTorrent(String hash) {
+        FakeTorrent torrent = hash == null ? null : torrents.get(hash);
+        if (torrent == null) {
+            throw new IllegalArgumentException("Could not find info-hash.");
+        }
+        return torrent;
+    }
+
+    private static Element getChild(Element parent, String name) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && child.getNodeName().equals(name)) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
+    private static Object readValue(Element value) {
+        Element typed = null;
+        for (Node child = value.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                typed = (Element) child;
+                break;
+            }
+        }
+        if (typed == null) {
+            // Untyped values are strings
+            return value.getTextContent();
+        }
+        switch (typed.getNodeName()) {
+            case "i4":
+            case "i8":
+            case "int":
+                return Long.parseLong(typed.getTextContent().trim());
+            case "array":
+                List<Object> items = new ArrayList<>();
+                Element data = getChild(typed, "data");
+                for (Node item = data.getFirstChild(); item != null; item = item.getNextSibling()) {
+                    if (item instanceof Element) {
+                        items.add(readValue((Element) item));
+                    }
+                }
+                return items;
+            default:
+                // Strings, but also base64 (torrent file contents) which is not decoded as it is not used
+                return typed.getTextContent();
+        }
+    }
+
+    private static void writeValue(StringBuilder xml, Object value) {
+        xml.append("<value>");
+        if (value instanceof Number) {
+            xml.append("<i8>").append(((Number) value).longValue()).append("</i8>");
+        } else if (value instanceof List) {
+            xml.append("<array><data>");
+            for (Object item : (List<?>) value) {
+                writeValue(xml, item);
+            }
+            xml.append("</data></array>");
+        } else {
+            xml.append("<string>").append(escape(String.valueOf(value))).append("</string>");
+        }
+        xml.append("</value>");
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static String urlEncode(String text) {
+        try {
+            return URLEncoder.encode(text, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.fake;
+
+import org.transdroid.daemon.fake.FakeHttpServer.Request;
+import org.transdroid.daemon.fake.FakeHttpServer.Response;
+import org.transdroid.daemon.fake.FakeTorrents.FakeTorrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Fake Transmission daemon, speaking the JSON-RPC protocol (rpc-version 17) on /transmission/rpc. Like the real
+ * daemon it rejects requests without a valid X-Transmission-Session-Id header with HTTP 409 and a fresh session id.
+ * The session id is renewed periodically, such that clients also run into the 409 handshake in long sessions.
+ *
+ * @author Eric Kok
+ */
+final class TransmissionHandler implements FakeHttpServer.Handler {
+
+    private static final String SESSION_HEADER = "X-Transmission-Session-Id";
+    private static final long SESSION_LIFETIME = 5 * 60 * 1000;
+
+    private final FakeTorrents torrents;
+    private final Random random = new Random();
+    private String sessionId;
+    private long sessionStart;
+    private boolean altSpeedEnabled = false;
+
+    TransmissionHandler(FakeTorrents torrents) {
+        this.torrents = torrents;
+    }
+
+    @Override
+    public Response handle(Request request) {
+        if (!request.getPath().endsWith("/rpc")) {
+            return Response.text(404, "Not found");
+        }
+        synchronized (this) {
+            if (sessionId == null || System.currentTimeMillis() - sessionStart > SESSION_LIFETIME) {
+                sessionId = String.format(Locale.US, "%016x", random.nextLong());
+                sessionStart = System.currentTimeMillis();
+            }
+            if (!sessionId.equals(request.getHeader(SESSION_HEADER))) {
+                return Response.text(409, "<h1>409: Conflict</h1><p>Your request had an invalid session-id header.</p>")
+                        .withHeader(SESSION_HEADER, sessionId);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> call = (Map<String, Object>) Json.parse(request.getBodyText());
+        String method = (String) call.get("method");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> arguments = (Map<String, Object>) call.get("arguments");
+        if (arguments == null) {
+            arguments = Collections.emptyMap();
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        String status = "success";
+        switch (method) {
+            case "session-get":
+                result.put("rpc-version", 17);
+                result.put("rpc-version-minimum", 14);
+                result.put("version", "4.0.5 (fake)");
+                result.put("alt-speed-enabled", altSpeedEnabled);
+                result.put("download-dir", "/downloads");
+                result.put("download-dir-free-space", 512L * 1024 * 1024 * 1024);
+                break;
+            case "session-set":
+                if (arguments.containsKey("alt-speed-enabled")) {
+                    altSpeedEnabled = (Boolean) arguments.get("alt-speed-enabled");
+                }
+                break;
+            case "torrent-get":
+                result.put("torrents", getTorrents(getIds(arguments), (List<?>) arguments.get("fields")));
+                break;
+            case "torrent-add":
+                String name = (String) arguments.get("filename");
+                FakeTorrent added = torrents.add(name == null || name.startsWith("magnet:") ? null : name);
+                Map<String, Object> addedInfo = new LinkedHashMap<>();
+                addedInfo.put("id", added.id);
+                addedInfo.put("hashString", added.hash);
+                addedInfo.put("name", added.name);
+                result.put("torrent-added", addedInfo);
+                break;
+            case "torrent-remove":
+                for (String id : getIdsOrAll(arguments)) {
+                    torrents.remove(id);
+                }
+                break;
+            case "torrent-start":
+            case "torrent-start-now":
+                forEach(arguments, id -> torrents.start(id));
+                break;
+            case "torrent-stop":
+                forEach(arguments, id -> torrents.stop(id));
+                break;
+            case "torrent-verify":
+                forEach(arguments, id -> torrents.verify(id));
+                break;
+            case "torrent-set":
+            case "torrent-set-location":
+                // Accepted, but not simulated
+                break;
+            default:
+                status = "method name not recognized";
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("arguments", result);
+        response.put("result", status);
+        if (call.containsKey("tag")) {
+            response.put("tag", call.get("tag"));
+        }
+        return Response.json(response);
+    }
+
+    private List<Map<String, Object>> getTorrents(List<String> ids, List<?> fields) {
+        List<FakeTorrent> selected = new ArrayList<>();
+        if (ids == null) {
+            selected = torrents.refresh();
+        } else {
+            torrents.refresh();
+            for (String id : ids) {
+                FakeTorrent torrent = torrents.get(id);
+                if (torrent != null) {
+                    selected.add(torrent);
+                }
+            }
+        }
+        List<Map<String, Object>> result = new ArrayList<>(selected.size());
+        for (FakeTorrent torrent : selected) {
+            Map<String, Object> fieldValues = new LinkedHashMap<>();
+            for (Object field : fields) {
+                fieldValues.put(field.toString(), getField(torrent, field.toString()));
+            }
+            result.add(fieldValues);
+        }
+        return result;
+    }
+
+    private Object getField(FakeTorrent torrent, String field) {
+        switch (field) {
+            case "id":
+                return torrent.id;
+            case "hashString":
+                return torrent.hash;
+            case "name":
+                return torrent.name;
+            case "error":
+                return torrent.state == FakeTorrents.State.Error ? 3 : 0;
+            case "errorString":
+                return torrent.error == null ? "" : torrent.error;
+            case "status":
+                return getStatus(torrent.state);
+            case "downloadDir":
+                return torrent.getSavePath();
+            case "rateDownload":
+                return torrent.rateDown;
+            case "rateUpload":
+                return torrent.rateUp;
+            case "peersGettingFromUs":
+                return torrent.peers;
+            case "peersSendingToUs":
+                return torrent.seeds;
+            case "peersConnected":
+                return torrent.seeds + torrent.peers;
+            case "eta":
+                return torrent.getEta();
+            case "haveUnchecked":
+                return 0;
+            case "haveValid":
+                return torrent.done;
+            case "uploadedEver":
+                return torrent.uploaded;
+            case "sizeWhenDone":
+            case "totalSize":
+                return torrent.size;
+            case "percentDone":
+                return torrent.getProgress();
+            case "addedDate":
+                return torrent.addedAt;
+            case "doneDate":
+                return torrent.doneAt;
+            case "desiredAvailable":
+                return torrent.size - torrent.done;
+            case "comment":
+                return "";
+            case "labels":
+                return torrent.label == null ? Collections.emptyList() : Collections.singletonList(torrent.label);
+            case "trackers":
+                Map<String, Object> tracker = new LinkedHashMap<>();
+                tracker.put("announce", torrent.tracker);
+                tracker.put("id", 0);
+                tracker.put("tier", 0);
+                return Collections.singletonList(tracker);
+            case "trackerStats":
+                Map<String, Object> trackerStat = new LinkedHashMap<>();
+                trackerStat.put("announce", torrent.tracker);
+                trackerStat.put("lastAnnounceResult", torrent.error == null ? "Success" : torrent.error);
+                trackerStat.put("seederCount", torrent.seedsKnown);
+                trackerStat.put("leecherCount", torrent.peersKnown);
+                return Collections.singletonList(trackerStat);
+            case "files":
+                List<Map<String, Object>> files = new ArrayList<>(torrent.fileCount);
+                for (int i = 0; i < torrent.fileCount; i++) {
+                    Map<String, Object> file = new LinkedHashMap<>();
+                    file.put("name", torrent.getFileName(i));
+                    file.put("length", torrent.getFileSize(i));
+                    file.put("bytesCompleted", torrent.getFileDone(i));
+                    files.add(file);
+                }
+                return files;
+            case "fileStats":
+                List<Map<String, Object>> fileStats = new ArrayList<>(torrent.fileCount);
+                for (int i = 0; i < torrent.fileCount; i++) {
+                    Map<String, Object> fileStat = new LinkedHashMap<>();
+                    fileStat.put("bytesCompleted", torrent.getFileDone(i));
+                    fileStat.put("wanted", true);
+                    fileStat.put("priority", 0);
+                    fileStats.add(fileStat);
+                }
+                return fileStats;
+            default:
+                return null;
+        }
+    }
+
+    private int getStatus(FakeTorrents.State state) {
+        switch (state) {
+            case Downloading:
+                return 4;
+            case Seeding:
+                return 6;
+            case Queued:
+                return 3;
+            case Checking:
+                return 2;
+            default:
+                // Paused, or errored torrents that were stopped
+                return 0;
+        }
+    }
+
+    private void forEach(Map<String, Object> arguments, IdAction action) {
+        for (String id : getIdsOrAll(arguments)) {
+            action.apply(id);
+        }
+    }
+
+    /**
+     * Returns the torrent ids (as numbers or hashes) of the request, with a single null to indicate all torrents.
+     */
+    private List<String> getIdsOrAll(Map<String, Object> arguments) {
+        List<String> ids = getIds(arguments);
+        return ids == null ? Collections.singletonList((String) null) : ids;
+    }
+
+    private List<String> getIds(Map<String, Object> arguments) {
+        Object ids = arguments.get("ids");
+        if (ids == null) {
+            return null;
+        }
+        List<String> result = new ArrayList<>();
+        if (ids instanceof List) {
+            for (Object id : (List<?>) ids) {
+                result.add(id.toString());
+            }
+        } else {
+            result.add(ids.toString());
+        }
+        return result;
+    }
+
+    private interface IdAction {
+
+        void apply(String id);
+
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.app.queue;
+
+import org.transdroid.daemon.DaemonMethod;
+import org.transdroid.daemon.IDaemonAdapter;
+import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.task.AddByMagnetUrlTask;
+import org.transdroid.daemon.task.AddByUrlTask;
+import org.transdroid.daemon.task.DaemonTask;
+import org.transdroid.daemon.task.ForceRecheckTask;
+import org.transdroid.daemon.task.PauseAllTask;
+import org.transdroid.daemon.task.PauseTask;
+import org.transdroid.daemon.task.RemoveTask;
+import org.transdroid.daemon.task.ResumeAllTask;
+import org.transdroid.daemon.task.ResumeTask;
+import org.transdroid.daemon.task.SetLabelTask;
+import org.transdroid.daemon.task.SetTransferRatesTask;
+import org.transdroid.daemon.task.StartAllTask;
+import org.transdroid.daemon.task.StartTask;
+import org.transdroid.daemon.task.StopAllTask;
+import org.transdroid.daemon.task.StopTask;
+
+/**
+ * An action that could not be sent to the server and waits in the {@link PendingActionQueue}. Only actions that are
+ * fully described by a few values are queued: starting, stopping, pausing and resuming (single or all torrents),
+ * removing, labelling and rechecking torrents, adding torrents by URL or magnet link and setting transfer rates.
+ * Actions on a single torrent are only queued if the torrent is known by its hash, so that they can never be replayed
+ * on another torrent.
+ *
+ * @author Eric Kok
+ */
+public final class PendingAction {
+
+    private final DaemonMethod method;
+    private final Torrent torrent;
+    private final String value;
+    private final String title;
+    private final boolean flag;
+    private final Integer uploadRate;
+    private final Integer downloadRate;
+    private final long queuedAt;
+
+    PendingAction(DaemonMethod method, Torrent torrent, String value, String title, boolean flag, Integer uploadRate,
+                  Integer downloadRate, long queuedAt) {
+        this.method = method;
+        this.torrent = torrent;
+        this.value = value;
+        this.title = title;
+        this.flag = flag;
+        this.uploadRate = uploadRate;
+        this.downloadRate = downloadRate;
+        this.queuedAt = queuedAt;
+    }
+
+    /**
+     * Describes some task as pending action
+     *
+     * @param task The task that could not be sent to the server
+     * @return The pending action, or null if the task can not be queued
+     */
+    public static PendingAction from(DaemonTask task) {
+        if (task.getTargetTorrent() != null && task.getTargetTorrent().getHash() == null) {
+            // Only known by a numeric id, which the server may assign to another torrent after it restarted
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        DaemonMethod method = task.getMethod();
+        switch (method) {
+            case Pause:
+            case Resume:
+            case Stop:
+            case ForceRecheck:
+                return new PendingAction(method, task.getTargetTorrent(), null, null, false, null, null, now);
+            case Start:
+                return new PendingAction(method, task.getTargetTorrent(), null, null, ((StartTask) task).isForced(), null,
+                        null, now);
+            case Remove:
+                return new PendingAction(method, task.getTargetTorrent(), null, null, ((RemoveTask) task).includingData(),
+                        null, null, now);
+            case SetLabel:
+                return new PendingAction(method, task.getTargetTorrent(), ((SetLabelTask) task).getNewLabel(), null, false,
+                        null, null, now);
+            case PauseAll:
+            case ResumeAll:
+            case StopAll:
+                return new PendingAction(method, null, null, null, false, null, null, now);
+            case StartAll:
+                return new PendingAction(method, null, null, null, ((StartAllTask) task).includingData(), null, null, now);
+            case AddByUrl:
+                AddByUrlTask addByUrlTask = (AddByUrlTask) task;
+                return new PendingAction(method, null, addByUrlTask.getUrl(), addByUrlTask.getTitle(), false, null, null,
+                        now);
+            case AddByMagnetUrl:
+                return new PendingAction(method, null, ((AddByMagnetUrlTask) task).getUrl(), null, false, null, null, now);
+            case SetTransferRates:
+                SetTransferRatesTask ratesTask = (SetTransferRatesTask) task;
+                return new PendingAction(method, null, null, null, false, ratesTask.getUploadRate(),
+                        ratesTask.getDownloadRate(), now);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Creates the task that performs this action again
+     *
+     * @param adapter The adapter to the server to execute the task with
+     * @return A new daemon task for this action
+     */
+    public DaemonTask createTask(IDaemonAdapter adapter) {
+        switch (method) {
+            case Pause:
+                return PauseTask.create(adapter, torrent);
+            case Resume:
+                return ResumeTask.create(adapter, torrent);
+            case Stop:
+                return StopTask.create(adapter, torrent);
+            case ForceRecheck:
+                return ForceRecheckTask.create(adapter, torrent);
+            case Start:
+                return StartTask.create(adapter, torrent, flag);
+            case Remove:
+                return RemoveTask.create(adapter, torrent, flag);
+            case SetLabel:
+                return SetLabelTask.create(adapter, torrent, value);
+            case PauseAll:
+                return PauseAllTask.create(adapter);
+            case ResumeAll:
+                return ResumeAllTask.create(adapter);
+            case StopAll:
+                return StopAllTask.create(adapter);
+            case StartAll:
+                return StartAllTask.create(adapter, flag);
+            case AddByUrl:
+                return AddByUrlTask.create(adapter, value, title);
+            case AddByMagnetUrl:
+                return AddByMagnetUrlTask.create(adapter, value);
+            case SetTransferRates:
+                return SetTransferRatesTask.create(adapter, uploadRate, downloadRate);
+            default:
+                throw new IllegalStateException(method + " can not be queued");
+        }
+    }
+
+    public DaemonMethod getMethod() {
+        return method;
+    }
+
+    public Torrent getTorrent() {
+        return torrent;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public boolean getFlag() {
+        return flag;
+    }
+
+    public Integer getUploadRate() {
+        return uploadRate;
+    }
+
+    public Integer getDownloadRate() {
+        return downloadRate;
+    }
+
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
+    /**
+     * Returns the unique id of the torrent that this action targets, or null if it does not target a single torrent
+     */
+    public String getTargetId() {
+        return torrent == null ? null : torrent.getUniqueID();
+    }
+
+    /**
+     * Tells whether this action changes the running state of torrents, that is, starts, stops, pauses or resumes them
+     */
+    public boolean isStateChange() {
+        switch (method) {
+            case Pause:
+            case Resume:
+            case Start:
+            case Stop:
+            case PauseAll:
+            case ResumeAll:
+            case StartAll:
+            case StopAll:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Tells whether this action undoes another action on the same torrent, such as resuming a torrent that was paused
+     */
+    public boolean isInverseOf(PendingAction other) {
+        return (method == DaemonMethod.Pause && other.method == DaemonMethod.Resume) ||
+                (method == DaemonMethod.Resume && other.method == DaemonMethod.Pause) ||
+                (method == DaemonMethod.Start && other.method == DaemonMethod.Stop) ||
+                (method == DaemonMethod.Stop && other.method == DaemonMethod.Start);
+    }
+
+    /**
+     * Tells whether this action and some other action can be sent to the server in a single (batch) request, which is
+     * the case for the same action on different torrents
+     */
+    public boolean canBatchWith(PendingAction other) {
+        return torrent != null && other.torrent != null && method == other.method && flag == other.flag &&
+                (value == null ? other.value == null : value.equals(other.value));
+    }
+
+    @Override
+    public String toString() {
+        return method + (torrent == null ? "" : " " + torrent.getName()) + (value == null ? "" : " " + value);
+    }
+
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.app.queue;
+
+import android.content.Context;
+import android.util.AtomicFile;
+
+import org.androidannotations.annotations.Bean;
+import org.androidannotations.annotations.EBean;
+import org.androidannotations.annotations.EBean.Scope;
+import org.androidannotations.annotations.RootContext;
+import org.transdroid.core.app.settings.ApplicationSettings;
+import org.transdroid.core.app.settings.ServerSetting;
+import org.transdroid.core.gui.log.Log;
+import org.transdroid.core.service.ConnectivityHelper;
+import org.transdroid.core.service.DaemonTaskExecutor;
+import org.transdroid.daemon.BatchExecutable;
+import org.transdroid.daemon.Daemon;
+import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.DaemonMethod;
+import org.transdroid.daemon.IDaemonAdapter;
+import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.TorrentStatus;
+import org.transdroid.daemon.task.DaemonTask;
+import org.transdroid.daemon.task.DaemonTaskFailureResult;
+import org.transdroid.daemon.task.DaemonTaskResult;
+import org.transdroid.daemon.task.DaemonTaskSuccessResult;
+import org.transdroid.daemon.util.BinaryFiles;
+import org.transdroid.daemon.util.ServerHealth;
+import org.transdroid.daemon.util.TaskCancellation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Durable, ordered queue per server of actions that could not be sent because the server was unreachable. Redundant
+ * actions are collapsed when queued: pausing and then resuming the same torrent cancels out, a newer label or state
+ * replaces an older one and removing a torrent supersedes anything else queued for it. Likewise, actions that are
+ * executed successfully in the meantime drop the queued actions that they make redundant (see {@link #supersede}).
+ * Once the server responds again or a background probe could connect to it (as reported by {@link ServerHealth}), the
+ * queue is replayed in order as a mutation job on the {@link DaemonTaskExecutor}, sending consecutive actions of the
+ * same kind in one request if the adapter is {@link BatchExecutable}. All requests pass the server's circuit breaker, so
+ * after a probe the first request is the single trial that tells whether the server is really reachable again. Queues
+ * are stored in the app's files directory so they survive restarts; actions that waited longer than a day are dropped.
+ *
+ * @author Eric Kok
+ */
+@EBean(scope = Scope.Singleton)
+public class PendingActionQueue implements ServerHealth.Listener {
+
+    private static final int MAGIC = 0x54445051; // TDPQ
+    private static final int VERSION = 1;
+    private static final int MAX_ACTIONS = 250;
+    private static final long MAX_AGE = 24 * 60 * 60 * 1000; // 1 day
+
+    @RootContext
+    protected Context context;
+    @Bean
+    protected Log log;
+    @Bean
+    protected ApplicationSettings applicationSettings;
+    @Bean
+    protected ConnectivityHelper connectivityHelper;
+    @Bean
+    protected DaemonTaskExecutor daemonTasks;
+
+    private final Map<String, List<PendingAction>> queues = new HashMap<>();
+    private final Set<PendingAction> replaying = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<String> replayingServers = new HashSet<>();
+    private final ExecutorService scanner = Executors.newSingleThreadExecutor();
+
+    /**
+     * Queues the action of a task that failed because the server could not be reached, to be sent once it is
+     * reachable again. This performs disk I/O and should not be called on the UI thread.
+     *
+     * @param server  The server that the task was meant for
+     * @param failure The result of the failed task
+     * @return True if the action was queued; false if the task did not fail on the connection or can not be queued
+     */
+    public boolean offer(ServerSetting server, DaemonTaskFailureResult failure) {
+        String key = server == null ? null : server.getUniqueIdentifier();
+        if (key == null || failure.getException().getType() != ExceptionType.ConnectionError ||
+                TaskCancellation.isCancelled()) {
+            return false;
+        }
+        PendingAction action = PendingAction.from(failure.getTask());
+        if (action == null) {
+            return false;
+        }
+        synchronized (this) {
+            List<PendingAction> queue = getQueue(key);
+            collapse(queue, action);
+            while (queue.size() > MAX_ACTIONS) {
+                log.e(this, "Too many pending actions for " + key + "; dropping " + queue.get(0));
+                queue.remove(0);
+            }
+            save(key, queue);
+        }
+        log.i(this, "Queued " + action + " for " + key + " until the server is reachable");
+        return true;
+    }
+
+    /**
+     * Drops the queued actions that some task, which was just executed successfully, made redundant: for example a
+     * queued pause of a torrent that was resumed since should no longer be sent once the server is reachable again.
+     * This performs disk I/O and should not be called on the UI thread.
+     *
+     * @param server The server that the task was executed on
+     * @param task   The task that succeeded
+     */
+    public void supersede(ServerSetting server, DaemonTask task) {
+        String key = server == null ? null : server.getUniqueIdentifier();
+        PendingAction action = key == null ? null : PendingAction.from(task);
+        if (action == null) {
+            return;
+        }
+        synchronized (this) {
+            List<PendingAction> queue = getQueue(key);
+            int queued = queue.size();
+            removeSuperseded(queue, action);
+            if (queue.size() == queued) {
+                return;
+            }
+            save(key, queue);
+        }
+        log.i(this, "Dropped pending actions for " + key + " that were superseded by " + action);
+    }
+
+    /**
+     * Returns the number of actions that wait to be sent to some server. This may perform disk I/O and should not be
+     * called on the UI thread.
+     */
+    public synchronized int getPendingCount(ServerSetting server) {
+        String key = server == null ? null : server.getUniqueIdentifier();
+        return key == null ? 0 : getQueue(key).size();
+    }
+
+    @Override
+    public void onReachable(ServerHealth health) {
+        startReplay(health);
+    }
+
+    @Override
+    public void onProbeSucceeded(ServerHealth health) {
+        startReplay(health);
+    }
+
+    private void startReplay(ServerHealth health) {
+        scanner.execute(() -> {
+            for (ServerSetting server : applicationSettings.getAllServerSettings()) {
+                String key = server.getUniqueIdentifier();
+                if (key == null || getPendingCount(server) == 0) {
+                    continue;
+                }
+                IDaemonAdapter adapter = server.getServerAdapter(connectivityHelper.getConnectedNetworkName(), context);
+                if (ServerHealth.get(adapter.getSettings()) != health) {
+                    continue;
+                }
+                synchronized (this) {
+                    if (!replayingServers.add(key)) {
+                        // Already replaying, which continues now that the server is reachable
+                        continue;
+                    }
+                }
+                daemonTasks.execute(DaemonTaskExecutor.Lane.Mutation, adapter, this, connection -> {
+                    try {
+                        replay(key, connection, health);
+                    } finally {
+                        synchronized (this) {
+                            replayingServers.remove(key);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Adds an action to the end of a queue, first removing any queued actions that it makes redundant
+     */
+    private void collapse(List<PendingAction> queue, PendingAction action) {
+        if (removeSuperseded(queue, action)) {
+            queue.add(action);
+        }
+    }
+
+    /**
+     * Removes the queued actions that some newer action makes redundant
+     *
+     * @return False if the newer action is redundant itself or cancels out against a queued action; true otherwise
+     */
+    private boolean removeSuperseded(List<PendingAction> queue, PendingAction action) {
+        String target = action.getTargetId();
+        for (Iterator<PendingAction> iterator = queue.iterator(); iterator.hasNext(); ) {
+            PendingAction queued = iterator.next();
+            if (replaying.contains(queued)) {
+                // Already being sent; it can no longer be undone
+                continue;
+            }
+            if (target == null) {
+                if (action.isStateChange() && queued.isStateChange()) {
+                    // Starting, stopping, pausing or resuming all torrents overrides any earlier state change
+                    iterator.remove();
+                } else if (action.getMethod() == queued.getMethod() && action.getTorrent() == null &&
+                        (action.getMethod() == DaemonMethod.SetTransferRates || equal(action.getValue(), queued.getValue()))) {
+                    // Newer transfer rates replace older ones; the same torrent is only added once
+                    iterator.remove();
+                }
+                continue;
+            }
+            if (!target.equals(queued.getTargetId())) {
+                continue;
+            }
+            if (queued.getMethod() == DaemonMethod.Remove) {
+                // The torrent will be removed anyway
+                return false;
+            }
+            if (action.getMethod() == DaemonMethod.Remove) {
+                iterator.remove();
+            } else if (action.isStateChange() && queued.isStateChange()) {
+                iterator.remove();
+                if (action.isInverseOf(queued)) {
+                    // For example paused and resumed again, so nothing needs to happen
+                    return false;
+                }
+            } else if (action.getMethod() == queued.getMethod()) {
+                // A newer label replaces an older one; a recheck is only needed once
+                iterator.remove();
+            }
+        }
+        return true;
+    }
+
+    private void replay(String key, IDaemonAdapter adapter, ServerHealth health) {
+        BatchExecutable batchExecutable = adapter instanceof BatchExecutable ? (BatchExecutable) adapter : null;
+        // While recovering, the first request is let through as trial; it fails directly if another trial is running
+        while (health.getState() != ServerHealth.State.Unreachable) {
+
+            // Take the first action, together with the directly following actions that can be sent with it
+            List<PendingAction> batch = new ArrayList<>();
+            synchronized (this) {
+                List<PendingAction> queue = getQueue(key);
+                long now = System.currentTimeMillis();
+                for (Iterator<PendingAction> iterator = queue.iterator(); iterator.hasNext(); ) {
+                    PendingAction queued = iterator.next();
+                    if (now - queued.getQueuedAt() > MAX_AGE) {
+                        log.i(this, "Dropping " + queued + " for " + key + " as it was queued too long ago");
+                        iterator.remove();
+                        continue;
+                    }
+                    if (batch.isEmpty() || (batchExecutable != null && batchExecutable.canBatch(queued.getMethod()) &&
+                            batch.get(0).canBatchWith(queued))) {
+                        batch.add(queued);
+                    } else {
+                        break;
+                    }
+                }
+                if (batch.isEmpty()) {
+                    save(key, queue);
+                    return;
+                }
+                replaying.addAll(batch);
+            }
+
+            DaemonTaskResult result;
+            if (batch.size() == 1) {
+                result = batch.get(0).createTask(adapter).execute(log);
+            } else {
+                List<DaemonTask> tasks = new ArrayList<>(batch.size());
+                for (PendingAction action : batch) {
+                    tasks.add(action.createTask(adapter));
+                }
+                result = DaemonTask.executeBatch(log, batchExecutable, tasks);
+            }
+
+            synchronized (this) {
+                replaying.removeAll(batch);
+                if (result instanceof DaemonTaskFailureResult &&
+                        ((DaemonTaskFailureResult) result).getException().getType() == ExceptionType.ConnectionError) {
+                    // Unreachable once more; try again when it responds again
+                    log.i(this, "Could not replay " + batch.get(0) + " on " + key + ": " + ((DaemonTaskFailureResult) result).getException());
+                    return;
+                }
+                List<PendingAction> queue = getQueue(key);
+                for (PendingAction action : batch) {
+                    queue.remove(action);
+                }
+                save(key, queue);
+            }
+            if (result instanceof DaemonTaskSuccessResult) {
+                log.i(this, "Replayed " + batch.size() + " pending action(s), starting with " + batch.get(0) + ", on " + key);
+            } else {
+                log.e(this, "Dropping pending action(s) " + batch + " as they failed on " + key + ": " +
+                        ((DaemonTaskFailureResult) result).getException());
+            }
+
+        }
+    }
+
+    private List<PendingAction> getQueue(String key) {
+        List<PendingAction> queue = queues.get(key);
+        if (queue == null) {
+            queue = load(key);
+            queues.put(key, queue);
+        }
+        return queue;
+    }
+
+    private List<PendingAction> load(String key) {
+        List<PendingAction> queue = new ArrayList<>();
+        AtomicFile file = getFile(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.openRead()))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF())) {
+                // Different format or a (hash-colliding) other server; ignore and replace with the next save
+                return queue;
+            }
+            int count = BinaryFiles.readCount(in, MAX_ACTIONS);
+            for (int i = 0; i < count; i++) {
+                queue.add(readAction(in));
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing queued
+        } catch (IOException | RuntimeException e) {
+            log.e(this, "Stored pending actions for " + key + " are unreadable; removing them: " + e.toString());
+            file.delete();
+            queue.clear();
+        }
+        return queue;
+    }
+
+    private void save(String key, List<PendingAction> queue) {
+        AtomicFile file = getFile(key);
+        if (queue.isEmpty()) {
+            file.delete();
+            return;
+        }
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(key);
+            out.writeInt(queue.size());
+            for (PendingAction action : queue) {
+                writeAction(out, action);
+            }
+            out.flush();
+            file.finishWrite(fos);
+        } catch (IOException e) {
+            log.e(this, "Cannot write pending actions for " + key + ": " + e.toString());
+            if (fos != null) {
+                file.failWrite(fos);
+            }
+        }
+    }
+
+    private AtomicFile getFile(String key) {
+        return BinaryFiles.getFile(context.getFilesDir(), "pending_actions", "actions_", key);
+    }
+
+    private void writeAction(DataOutputStream out, PendingAction action) throws IOException {
+        out.writeInt(action.getMethod().getCode());
+        out.writeLong(action.getQueuedAt());
+        Torrent torrent = action.getTorrent();
+        out.writeBoolean(torrent != null);
+        if (torrent != null) {
+            // Only what adapters need to address the torrent
+            out.writeLong(torrent.getId());
+            BinaryFiles.writeString(out, torrent.getHash());
+            BinaryFiles.writeString(out, torrent.getName());
+            out.writeInt(torrent.getStatusCode() == null ? TorrentStatus.Unknown.getCode() : torrent.getStatusCode().getCode());
+            BinaryFiles.writeString(out, torrent.getLocationDir());
+            BinaryFiles.writeString(out, torrent.getLabelName());
+            BinaryFiles.writeString(out, torrent.getDaemon() == null ? null : torrent.getDaemon().name());
+        }
+        BinaryFiles.writeString(out, action.getValue());
+        BinaryFiles.writeString(out, action.getTitle());
+        out.writeBoolean(action.getFlag());
+        out.writeInt(action.getUploadRate() == null ? -1 : action.getUploadRate());
+        out.writeInt(action.getDownloadRate() == null ? -1 : action.getDownloadRate());
+    }
+
+    private PendingAction readAction(DataInputStream in) throws IOException {
+        DaemonMethod method = DaemonMethod.getStatus(in.readInt());
+        if (method == null) {
+            throw new IOException("Unknown daemon method");
+        }
+        long queuedAt = in.readLong();
+        Torrent torrent = null;
+        if (in.readBoolean()) {
+            Torrent.Builder builder = new Torrent.Builder()
+                    .setId(in.readLong())
+                    .setHash(BinaryFiles.readString(in))
+                    .setName(BinaryFiles.readString(in))
+                    .setStatusCode(TorrentStatus.getStatus(in.readInt()))
+                    .setLocationDir(BinaryFiles.readString(in))
+                    .setLabel(BinaryFiles.readString(in));
+            String daemon = BinaryFiles.readString(in);
+            torrent = builder.setDaemon(daemon == null ? null : Daemon.valueOf(daemon)).createTorrent();
+        }
+        String value = BinaryFiles.readString(in);
+        String title = BinaryFiles.readString(in);
+        boolean flag = in.readBoolean();
+        int uploadRate = in.readInt();
+        int downloadRate = in.readInt();
+        return new PendingAction(method, torrent, value, title, flag, uploadRate == -1 ? null : uploadRate,
+                downloadRate == -1 ? null : downloadRate, queuedAt);
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+}
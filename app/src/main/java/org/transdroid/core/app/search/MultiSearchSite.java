@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.app.search;
+
+import org.transdroid.core.gui.lists.SimpleListItem;
+import org.transdroid.core.gui.search.SearchSetting;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents a search on multiple in-app search sites at once, of which the results are merged.
+ *
+ * @author Eric Kok
+ */
+public class MultiSearchSite implements SimpleListItem, SearchSetting {
+
+    public static final String KEY = "multi";
+
+    private final String name;
+    private final List<SearchSite> sites;
+
+    public MultiSearchSite(String name, List<SearchSite> sites) {
+        this.name = name;
+        this.sites = Collections.unmodifiableList(sites);
+    }
+
+    @Override
+    public String getKey() {
+        return KEY;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns null, as there is no single site to show the favicon of.
+     */
+    @Override
+    public String getBaseUrl() {
+        return null;
+    }
+
+    public List<SearchSite> getSites() {
+        return sites;
+    }
+
+}
@@ -20,10 +20,14 @@ import android.content.ContentProviderClient;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.util.LruCache;
 
 import org.androidannotations.annotations.EBean;
 import org.androidannotations.annotations.EBean.Scope;
 import org.androidannotations.annotations.RootContext;
+import org.transdroid.core.gui.search.SearchSetting;
 
 import java.io.FileNotFoundException;
 import java.io.InputStream;
@@ -31,6 +35,13 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 @EBean(scope = Scope.Singleton)
 public class SearchHelper {
@@ -50,9 +61,20 @@ public class SearchHelper {
     static final int CURSOR_SITE_RSSURL = 3;
     static final int CURSOR_SITE_ISPRIVATE = 4;
 
+    private static final int MAX_CONCURRENT_SEARCHES = 6;
+    /**
+     * Sites that did not answer within this time are left out of a multi-site search
+     */
+    private static final long SITE_TIMEOUT = 20 * 1000; // 20 seconds
+    private static final int RECENT_RESULTS_SIZE = 16;
+    private static final long RECENT_RESULTS_AGE = 10 * 60 * 1000; // 10 minutes
+
     @RootContext
     protected Context context;
 
+    private final ExecutorService searchExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_SEARCHES);
+    private final LruCache<String, RecentResults> recentResults = new LruCache<>(RECENT_RESULTS_SIZE);
+
     /**
      * Return whether the Torrent Search package is installed and available to query against
      *
@@ -109,16 +131,20 @@ public class SearchHelper {
      * there is no internet connection
      */
     public ArrayList<SearchResult> search(String query, SearchSite site, SearchSortOrder sortBy) {
+        return search(query, site, sortBy, null);
+    }
+
+    private ArrayList<SearchResult> search(String query, SearchSite site, SearchSortOrder sortBy, CancellationSignal cancel) {
 
         // Try to query the TorrentSearchProvider to search for torrents on the web
         Uri uri = Uri.parse("content://org.transdroid.search.torrentsearchprovider/search/" + query);
         Cursor cursor;
         if (site == null) {
             // If no explicit site was supplied, rely on the Torrent Search package's default
-            cursor = context.getContentResolver().query(uri, null, null, null, sortBy.name());
+            cursor = context.getContentResolver().query(uri, null, null, null, sortBy.name(), cancel);
         } else {
             cursor = context.getContentResolver().query(uri, null, "SITE = ?", new String[]{site.getKey()},
-                    sortBy.name());
+                    sortBy.name(), cancel);
         }
         if (cursor == null) {
             // The content provider could not load any content (for example when there is no connection)
@@ -134,6 +160,9 @@ public class SearchHelper {
                         .getString(CURSOR_SEARCH_SEEDERS), cursor.getString(CURSOR_SEARCH_LEECHERS)));
             } while (cursor.moveToNext());
             cursor.close();
+            if (site != null) {
+                recentResults.put(getRecentKey(query, site, sortBy), new RecentResults(results));
+            }
             return results;
         }
 
@@ -143,6 +172,112 @@ public class SearchHelper {
 
     }
 
+    /**
+     * Queries multiple torrent sites at once, via the Torrent Search module. Results are merged as the sites answer,
+     * ignoring duplicate torrents, and are ordered by the number of seeders. Sites that do not answer in time are left
+     * out. This method is synchronous and should always be called in a background thread.
+     *
+     * @param query    The search query to pass to the torrent sites
+     * @param multi    The sites to search
+     * @param sortBy   The sort order to request from the torrent sites, if supported
+     * @param listener A listener that receives the merged results every time another site answered, or null; it is
+     *                 called on the thread that called this method
+     * @return The merged list of torrent search results, or null if no site returned any results
+     */
+    public ArrayList<SearchResult> search(final String query, MultiSearchSite multi, final SearchSortOrder sortBy,
+                                          OnSearchResultsListener listener) {
+
+        // Query all sites concurrently, such that they can be cancelled when they take too long
+        List<SearchSite> sites = multi.getSites();
+        CompletionService<ArrayList<SearchResult>> completion = new ExecutorCompletionService<>(searchExecutor);
+        List<Future<ArrayList<SearchResult>>> futures = new ArrayList<>(sites.size());
+        final CancellationSignal cancel = new CancellationSignal();
+        for (final SearchSite site : sites) {
+            futures.add(completion.submit(() -> {
+                try {
+                    return search(query, site, sortBy, cancel);
+                } catch (OperationCanceledException e) {
+                    return null;
+                }
+            }));
+        }
+
+        // Merge the results as the sites answer
+        SearchResultsMerger merger = new SearchResultsMerger();
+        long deadline = System.currentTimeMillis() + SITE_TIMEOUT;
+        boolean answered = false;
+        try {
+            for (int completed = 1; completed <= sites.size(); completed++) {
+                Future<ArrayList<SearchResult>> done = completion.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    // Time out; skip the sites that did not answer yet
+                    break;
+                }
+                try {
+                    ArrayList<SearchResult> results = done.get();
+                    if (results != null) {
+                        merger.add(results);
+                        answered = true;
+                    }
+                } catch (ExecutionException e) {
+                    // Ignore the site that could not be searched
+                }
+                if (listener != null) {
+                    listener.onSearchResults(merger.getResults(), completed, sites.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            cancel.cancel();
+            for (Future<ArrayList<SearchResult>> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        if (!answered) {
+            return null;
+        }
+        ArrayList<SearchResult> results = merger.getResults();
+        recentResults.put(getRecentKey(query, multi, sortBy), new RecentResults(results));
+        return results;
+
+    }
+
+    /**
+     * Returns the results of a recent search with the same query, site and sort order, such that they can be shown
+     * again without querying the site.
+     *
+     * @param query  The search query
+     * @param site   The site or sites that were searched
+     * @param sortBy The sort order that was requested
+     * @return The recent results, or null if this search was not performed recently
+     */
+    public ArrayList<SearchResult> getRecentResults(String query, SearchSetting site, SearchSortOrder sortBy) {
+        String key = getRecentKey(query, site, sortBy);
+        RecentResults recent = recentResults.get(key);
+        if (recent == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - recent.searchedAt > RECENT_RESULTS_AGE) {
+            recentResults.remove(key);
+            return null;
+        }
+        return new ArrayList<>(recent.results);
+    }
+
+    private String getRecentKey(String query, SearchSetting site, SearchSortOrder sortBy) {
+        String siteKey = site.getKey();
+        if (site instanceof MultiSearchSite) {
+            StringBuilder keys = new StringBuilder(siteKey);
+            for (SearchSite multiSite : ((MultiSearchSite) site).getSites()) {
+                keys.append(',').append(multiSite.getKey());
+            }
+            siteKey = keys.toString();
+        }
+        return sortBy.name() + "|" + siteKey + "|" + query;
+    }
+
     /**
      * Asks the Torrent Search module to download a torrent file given the provided url, while using the specifics of
      * the supplied torrent search site to do so. This way the Search Module can take care of user credentials, for
@@ -169,4 +304,32 @@ public class SearchHelper {
         Combined, BySeeders
     }
 
+    /**
+     * Receives the intermediate results of a multi-site search.
+     */
+    public interface OnSearchResultsListener {
+
+        /**
+         * Called every time another site answered (or failed to answer) the search.
+         *
+         * @param results        The merged results of all sites that answered so far
+         * @param sitesCompleted The number of sites that answered so far
+         * @param sitesTotal     The number of sites that are searched
+         */
+        void onSearchResults(ArrayList<SearchResult> results, int sitesCompleted, int sitesTotal);
+
+    }
+
+    private static final class RecentResults {
+
+        private final ArrayList<SearchResult> results;
+        private final long searchedAt;
+
+        RecentResults(ArrayList<SearchResult> results) {
+            this.results = results;
+            this.searchedAt = System.currentTimeMillis();
+        }
+
+    }
+
 }
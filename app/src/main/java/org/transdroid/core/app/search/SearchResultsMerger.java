@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.app.search;
+
+import org.transdroid.daemon.util.MagnetLinks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the search results of multiple sites into one list, ordered by the number of seeders. A torrent that is found
+ * on multiple sites, as recognised by its info hash or otherwise its torrent url, is only listed once, with the
+ * result that has the most seeders.
+ *
+ * @author Eric Kok
+ */
+class SearchResultsMerger {
+
+    private static final Comparator<SearchResult> BY_SEEDERS = (a, b) -> Integer.compare(parseCount(b.getSeeders()), parseCount(a.getSeeders()));
+
+    private final Map<String, SearchResult> merged = new LinkedHashMap<>();
+    private ArrayList<SearchResult> sorted = new ArrayList<>();
+
+    /**
+     * Adds the results of one site to the merged results.
+     */
+    void add(List<SearchResult> results) {
+        for (SearchResult result : results) {
+            String key = getKey(result);
+            SearchResult existing = merged.get(key);
+            if (existing == null || parseCount(result.getSeeders()) > parseCount(existing.getSeeders())) {
+                merged.put(key, result);
+            }
+        }
+        // The sort is stable, so equally seeded results stay in the order in which the sites returned them
+        sorted = new ArrayList<>(merged.values());
+        Collections.sort(sorted, BY_SEEDERS);
+    }
+
+    /**
+     * Returns the merged results so far, ordered by descending number of seeders.
+     */
+    ArrayList<SearchResult> getResults() {
+        return new ArrayList<>(sorted);
+    }
+
+    private static String getKey(SearchResult result) {
+        String infoHash = MagnetLinks.getInfoHash(result.getTorrentUrl());
+        if (infoHash != null) {
+            return infoHash;
+        }
+        if (result.getTorrentUrl() != null) {
+            return result.getTorrentUrl();
+        }
+        return result.getDetailsUrl() != null ? result.getDetailsUrl() : String.valueOf(result.getName());
+    }
+
+    private static int parseCount(String count) {
+        if (count == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(count.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+}
@@ -29,6 +29,8 @@ import org.androidannotations.annotations.EBean.Scope;
 import org.androidannotations.annotations.RootContext;
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.transdroid.R;
+import org.transdroid.core.app.search.MultiSearchSite;
 import org.transdroid.core.app.search.SearchHelper;
 import org.transdroid.core.app.search.SearchHelper.SearchSortOrder;
 import org.transdroid.core.app.search.SearchSite;
@@ -179,6 +181,7 @@ public class ApplicationSettings {
                 trim(prefs.getString("server_localaddress_" + order, null)),
                 parseInt(localPort, parseInt(port, Daemon.getDefaultPortNumber(type, ssl))),
                 prefs.getString("server_localnetwork_" + order, null),
+                prefs.getBoolean("server_localrace_" + order, false),
                 parseInt(port, Daemon.getDefaultPortNumber(type, ssl)),
                 ssl, localSsl,
                 prefs.getBoolean("server_ssltrustall_" + order, false),
@@ -221,6 +224,7 @@ public class ApplicationSettings {
             edit.putString("server_address_" + i, prefs.getString("server_address_" + (i + 1), null));
             edit.putString("server_localaddress_" + i, prefs.getString("server_localaddress_" + (i + 1), null));
             edit.putString("server_localnetwork_" + i, prefs.getString("server_localnetwork_" + (i + 1), null));
+            edit.putBoolean("server_localrace_" + i, prefs.getBoolean("server_localrace_" + (i + 1), false));
             edit.putString("server_port_" + i, prefs.getString("server_port_" + (i + 1), null));
             edit.putBoolean("server_sslenabled_" + i, prefs.getBoolean("server_sslenabled_" + (i + 1), false));
             edit.putBoolean("server_localsslenabled_" + i, prefs.getBoolean("server_localsslenabled_" + (i + 1), false));
@@ -246,6 +250,7 @@ public class ApplicationSettings {
         edit.remove("server_address_" + max);
         edit.remove("server_localaddress_" + max);
         edit.remove("server_localnetwork_" + max);
+        edit.remove("server_localrace_" + max);
         edit.remove("server_port_" + max);
         edit.remove("server_sslenabled_" + max);
         edit.remove("server_localsslenabled_" + max);
@@ -271,7 +276,19 @@ public class ApplicationSettings {
             edit.remove("header_defaultserver");
         } else if (defaultServer > order) {
             // Move 'up' one place to account for the removed server setting
-            edit.putString("header_defaultserver", String.valueOf(--order));
+            edit.putString("header_defaultserver", String.valueOf(order - 1));
+        }
+
+        // The same goes for RSS feeds that automatically add items to some server; those that added to this server are
+        // switched off, rather than silently adding to the default server instead
+        for (int i = 0; i <= getMaxRssfeed(); i++) {
+            int autoServer = parseInt(prefs.getString("rssfeed_autoserver_" + i, null), DEFAULTSERVER_LASTUSED);
+            if (autoServer == order) {
+                edit.putBoolean("rssfeed_autodownload_" + i, false);
+                edit.remove("rssfeed_autoserver_" + i);
+            } else if (autoServer > order) {
+                edit.putString("rssfeed_autoserver_" + i, String.valueOf(autoServer - 1));
+            }
         }
 
         edit.apply();
@@ -506,7 +523,13 @@ public class ApplicationSettings {
                 prefs.getString("rssfeed_exclude_" + order, null),
                 prefs.getString("rssfeed_include_" + order, null),
                 lastViewed == -1L ? null : new Date(lastViewed),
-                prefs.getString("rssfeed_lastvieweditemurl_" + order, null));
+                prefs.getString("rssfeed_lastvieweditemurl_" + order, null),
+                prefs.getBoolean("rssfeed_autodownload_" + order, false),
+                prefs.getString("rssfeed_autopattern_" + order, null),
+                parseMegabytes(prefs.getString("rssfeed_autominsize_" + order, null)),
+                parseMegabytes(prefs.getString("rssfeed_automaxsize_" + order, null)),
+                parseInt(prefs.getString("rssfeed_autoserver_" + order, null), DEFAULTSERVER_LASTUSED),
+                trim(prefs.getString("rssfeed_autolabel_" + order, null)));
         // @formatter:on
     }
 
@@ -532,6 +555,12 @@ public class ApplicationSettings {
             edit.putString("rssfeed_include_" + i, prefs.getString("rssfeed_include_" + (i + 1), null));
             edit.putLong("rssfeed_lastviewed_" + i, prefs.getLong("rssfeed_lastviewed_" + (i + 1), -1));
             edit.putString("rssfeed_lastvieweditemurl_" + i, prefs.getString("rssfeed_lastvieweditemurl_" + (i + 1), null));
+            edit.putBoolean("rssfeed_autodownload_" + i, prefs.getBoolean("rssfeed_autodownload_" + (i + 1), false));
+            edit.putString("rssfeed_autopattern_" + i, prefs.getString("rssfeed_autopattern_" + (i + 1), null));
+            edit.putString("rssfeed_autominsize_" + i, prefs.getString("rssfeed_autominsize_" + (i + 1), null));
+            edit.putString("rssfeed_automaxsize_" + i, prefs.getString("rssfeed_automaxsize_" + (i + 1), null));
+            edit.putString("rssfeed_autoserver_" + i, prefs.getString("rssfeed_autoserver_" + (i + 1), null));
+            edit.putString("rssfeed_autolabel_" + i, prefs.getString("rssfeed_autolabel_" + (i + 1), null));
         }
 
         // Remove the last settings, of which we are now sure are no longer required
@@ -543,6 +572,12 @@ public class ApplicationSettings {
         edit.remove("rssfeed_include_" + max);
         edit.remove("rssfeed_lastviewed_" + max);
         edit.remove("rssfeed_lastvieweditemurl_" + max);
+        edit.remove("rssfeed_autodownload_" + max);
+        edit.remove("rssfeed_autopattern_" + max);
+        edit.remove("rssfeed_autominsize_" + max);
+        edit.remove("rssfeed_automaxsize_" + max);
+        edit.remove("rssfeed_autoserver_" + max);
+        edit.remove("rssfeed_autolabel_" + max);
         edit.apply();
 
     }
@@ -624,15 +659,44 @@ public class ApplicationSettings {
     /**
      * Returns the list of all available in-app search sites as well as all web searches that the user configured.
      *
-     * @return A list of search settings, all of which are either a {@link SearchSite} or {@link WebsearchSetting}
+     * @return A list of search settings, all of which are either a {@link SearchSite}, {@link MultiSearchSite} or
+     * {@link WebsearchSetting}
      */
     public List<SearchSetting> getSearchSettings() {
         List<SearchSetting> all = new ArrayList<>();
-        all.addAll(searchHelper.getAvailableSites());
+        List<SearchSite> sites = searchHelper.getAvailableSites();
+        MultiSearchSite multiSite = getMultiSearchSite(sites);
+        if (multiSite != null) {
+            all.add(multiSite);
+        }
+        all.addAll(sites);
         all.addAll(getWebsearchSettings());
         return Collections.unmodifiableList(all);
     }
 
+    /**
+     * Returns the search setting that searches all public in-app search sites at once.
+     *
+     * @param sites The available in-app search sites, or null if the Torrent Search package is not installed
+     * @return The multi-site search, or null if there are not multiple public sites to search
+     */
+    public MultiSearchSite getMultiSearchSite(List<SearchSite> sites) {
+        if (sites == null) {
+            return null;
+        }
+        // Private sites are excluded, as adding their results requires the site's own credentials
+        List<SearchSite> publicSites = new ArrayList<>();
+        for (SearchSite site : sites) {
+            if (!site.isPrivate()) {
+                publicSites.add(site);
+            }
+        }
+        if (publicSites.size() < 2) {
+            return null;
+        }
+        return new MultiSearchSite(context.getString(R.string.search_allsites), publicSites);
+    }
+
     /**
      * Returns the settings of the search site that was last used by the user or was selected by the user as default
      * site in the main settings. As opposed to getLastUsedSearchSiteKey(int), this method checks whether a site was
@@ -673,6 +737,9 @@ public class ApplicationSettings {
         }
 
         // Should be an in-app search key
+        if (MultiSearchSite.KEY.equals(lastKey) && getMultiSearchSite(allsites) != null) {
+            return getMultiSearchSite(allsites);
+        }
         if (allsites != null && !allsites.isEmpty()) {
             for (SearchSite searchSite : allsites) {
                 if (searchSite.getKey().equals(lastKey)) {
@@ -801,6 +868,22 @@ public class ApplicationSettings {
         return str.trim();
     }
 
+    /**
+     * Parses a user-entered size in megabytes.
+     *
+     * @param string The size as entered by the user, or null
+     * @return The size in bytes, or -1 if no (valid) size was entered
+     */
+    private long parseMegabytes(String string) {
+        if (string == null || string.trim().isEmpty())
+            return -1;
+        try {
+            return (long) (Double.parseDouble(string.trim()) * 1024 * 1024);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     private int parseInt(String string, int defaultValue) {
         try {
             return Integer.parseInt(string);
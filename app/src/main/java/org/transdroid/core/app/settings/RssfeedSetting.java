@@ -41,9 +41,22 @@ public class RssfeedSetting implements SimpleListItem {
     private final String includeFilter;
     private final String lastViewedItemUrl;
     private Date lastViewed;
+    private final boolean autoDownload;
+    private final String autoDownloadPattern;
+    private final long autoDownloadMinSize;
+    private final long autoDownloadMaxSize;
+    private final int autoDownloadServer;
+    private final String autoDownloadLabel;
 
     public RssfeedSetting(int order, String name, String baseUrl, boolean needsAuth, boolean alarm, String excludeFilter, String includeFilter, Date lastViewed,
                           String lastViewedItemUrl) {
+        this(order, name, baseUrl, needsAuth, alarm, excludeFilter, includeFilter, lastViewed, lastViewedItemUrl, false, null, -1, -1,
+                ApplicationSettings.DEFAULTSERVER_LASTUSED, null);
+    }
+
+    public RssfeedSetting(int order, String name, String baseUrl, boolean needsAuth, boolean alarm, String excludeFilter, String includeFilter, Date lastViewed,
+                          String lastViewedItemUrl, boolean autoDownload, String autoDownloadPattern, long autoDownloadMinSize,
+                          long autoDownloadMaxSize, int autoDownloadServer, String autoDownloadLabel) {
         this.order = order;
         this.name = name;
         this.url = baseUrl;
@@ -53,6 +66,12 @@ public class RssfeedSetting implements SimpleListItem {
         this.includeFilter = includeFilter;
         this.lastViewed = lastViewed;
         this.lastViewedItemUrl = lastViewedItemUrl;
+        this.autoDownload = autoDownload;
+        this.autoDownloadPattern = autoDownloadPattern;
+        this.autoDownloadMinSize = autoDownloadMinSize;
+        this.autoDownloadMaxSize = autoDownloadMaxSize;
+        this.autoDownloadServer = autoDownloadServer;
+        this.autoDownloadLabel = autoDownloadLabel;
     }
 
     public int getOrder() {
@@ -90,6 +109,51 @@ public class RssfeedSetting implements SimpleListItem {
         return includeFilter;
     }
 
+    /**
+     * Returns whether new items of this feed that match the auto-download rule should be added to a server
+     * automatically, in the background.
+     */
+    public boolean shouldAutoDownload() {
+        return autoDownload;
+    }
+
+    /**
+     * Returns the |-separated words of which an item title needs to contain one to be downloaded automatically, or
+     * null to download all (not excluded) items.
+     */
+    public String getAutoDownloadPattern() {
+        return autoDownloadPattern;
+    }
+
+    /**
+     * Returns the minimum size in bytes an item needs to have to be downloaded automatically, or -1 if not bounded.
+     */
+    public long getAutoDownloadMinSize() {
+        return autoDownloadMinSize;
+    }
+
+    /**
+     * Returns the maximum size in bytes an item may have to be downloaded automatically, or -1 if not bounded.
+     */
+    public long getAutoDownloadMaxSize() {
+        return autoDownloadMaxSize;
+    }
+
+    /**
+     * Returns the order number of the server to add automatically downloaded items to, or
+     * {@link ApplicationSettings#DEFAULTSERVER_LASTUSED} to use the default server.
+     */
+    public int getAutoDownloadServer() {
+        return autoDownloadServer;
+    }
+
+    /**
+     * Returns the label to apply to automatically downloaded items, or null to not set a label.
+     */
+    public String getAutoDownloadLabel() {
+        return autoDownloadLabel;
+    }
+
     /**
      * Returns the date on which we last checked this feed. Note that this is NOT updated automatically after the
      * settings were loaded from {@link ApplicationSettings}; instead the settings have to be manually loaded again
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.app.settings;
+
+import android.os.Looper;
+
+import org.transdroid.core.gui.log.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether to connect to the local or the normal address of a server by racing them: both endpoints are probed
+ * concurrently with a plain TCP connection and the first to answer wins. This is used for servers with address racing
+ * enabled when the connected network name did not match the local network, which includes the cases where the network
+ * name cannot be read at all, or the device is on VPN or ethernet. The winner is remembered per server and network for
+ * a few minutes. Since the network may not be accessed on the UI thread, a race that is needed there runs in the
+ * background and only its outcome is used on a later connection.
+ *
+ * @author Eric Kok
+ */
+final class ServerAddressRacer {
+
+    private static final long WINNER_TTL = 3 * 60 * 1000; // 3 minutes
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool();
+    private static final Map<String, Winner> winners = new HashMap<>();
+    private static final Set<String> racing = new HashSet<>();
+
+    private ServerAddressRacer() {
+    }
+
+    /**
+     * Returns whether the local address of a server should be used, racing the local and normal address if no recent
+     * winner is known. On the UI thread this never blocks; the normal address is then used until the race finishes.
+     *
+     * @param server  The server settings, which should have a local address
+     * @param network The name of the network that we are currently connected to, or null if unknown
+     * @param log     The logger to report the race outcome to
+     * @return True if the local address answered first, false if the normal address should be used
+     */
+    static boolean preferLocal(final ServerSetting server, String network, final Log log) {
+        // The endpoints are part of the key, such that changed server settings are raced again
+        final String key = server.getOrder() + "|" + server.getLocalAddress() + ":" + server.getLocalPort() + "|" +
+                server.getAddress() + ":" + server.getPort() + "@" + (network == null ? "" : network);
+        Winner winner;
+        synchronized (winners) {
+            winner = winners.get(key);
+            if (winner != null && winner.until > System.currentTimeMillis()) {
+                return winner.local;
+            }
+            if (!racing.add(key)) {
+                // Another race for this server and network is running already
+                return winner != null && winner.local;
+            }
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            // Use the last known (or normal) address now and race in the background for the next connection
+            executor.execute(() -> race(key, server, log));
+            return winner != null && winner.local;
+        }
+        Boolean local = race(key, server, log);
+        return local != null ? local : winner != null && winner.local;
+    }
+
+    private static Boolean race(String key, ServerSetting server, Log log) {
+        try {
+            Boolean local = probe(server);
+            if (local != null) {
+                synchronized (winners) {
+                    winners.put(key, new Winner(local, System.currentTimeMillis() + WINNER_TTL));
+                }
+            }
+            log.d(ServerAddressRacer.class.getSimpleName(), "Raced addresses of " + server.getName() + ": " +
+                    (local == null ? "neither answered" : local ? "local address won" : "normal address won"));
+            return local;
+        } finally {
+            synchronized (winners) {
+                racing.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Connects to both endpoints concurrently and returns whether the local one answered first, or null if neither
+     * answered within the server's timeout.
+     */
+    private static Boolean probe(ServerSetting server) {
+        final int timeout = server.getTimeoutInMilliseconds();
+        CompletionService<Boolean> completion = new ExecutorCompletionService<>(executor);
+        Future<Boolean> localProbe = completion.submit(() -> connect(server.getLocalAddress(), server.getLocalPort(),
+                timeout, true));
+        Future<Boolean> normalProbe = completion.submit(() -> connect(server.getAddress(), server.getPort(), timeout,
+                false));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            for (int i = 0; i < 2; i++) {
+                Future<Boolean> first = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    return null;
+                }
+                Boolean local = first.get();
+                if (local != null) {
+                    return local;
+                }
+            }
+            return null;
+        } catch (Exception e) {
+            return null;
+        } finally {
+            localProbe.cancel(true);
+            normalProbe.cancel(true);
+        }
+    }
+
+    private static Boolean connect(String host, int port, int timeout, boolean local) {
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), timeout);
+            return local;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static final class Winner {
+
+        private final boolean local;
+        private final long until;
+
+        Winner(boolean local, long until) {
+            this.local = local;
+            this.until = until;
+        }
+
+    }
+
+}
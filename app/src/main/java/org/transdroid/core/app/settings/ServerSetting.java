@@ -42,6 +42,7 @@ public class ServerSetting implements SimpleListItem {
     private final String localAddress;
     private final int localPort;
     private final String localNetwork;
+    private final boolean raceLocalAddress;
     private final int port;
     private final String folder;
     private final boolean useAuthentication;
@@ -73,6 +74,7 @@ public class ServerSetting implements SimpleListItem {
      * @param localAddress      The server domain or IP address when connected to the server's local network
      * @param localPort         The port on which the server is running in the server's local network
      * @param localNetwork      The server's local network SSID
+     * @param raceLocalAddress  Whether to race the local and normal address when not connected to the local network
      * @param port              The port on which the server daemon is running
      * @param sslTrustKey       The specific key that will be accepted.
      * @param folder            The server folder (like a virtual sub-folder or an SCGI mount point)
@@ -86,7 +88,8 @@ public class ServerSetting implements SimpleListItem {
      * @param timeout           The number of seconds to wait before timing out a connection attempt
      * @param isAutoGenerated   Whether this setting was generated rather than manually inputed by the user
      */
-    public ServerSetting(int key, String name, Daemon type, String address, String localAddress, int localPort, String localNetwork, int port,
+    public ServerSetting(int key, String name, Daemon type, String address, String localAddress, int localPort, String localNetwork,
+                         boolean raceLocalAddress, int port,
                          boolean ssl, boolean localSsl, boolean sslTrustAll, String sslTrustKey, String folder, boolean useAuthentication, String username,
                          String password, String extraPass, String authToken, OS os, String downloadDir, String ftpUrl, String ftpPassword, int timeout,
                          boolean alarmOnFinishedDownload, boolean alarmOnNewTorrent, String excludeFilter, String includeFilter,
@@ -98,6 +101,7 @@ public class ServerSetting implements SimpleListItem {
         this.localAddress = localAddress;
         this.localPort = localPort;
         this.localNetwork = localNetwork;
+        this.raceLocalAddress = raceLocalAddress;
         this.port = port;
         this.ssl = ssl;
         this.localSsl = localSsl;
@@ -165,6 +169,10 @@ public class ServerSetting implements SimpleListItem {
         return localNetwork;
     }
 
+    public boolean shouldRaceLocalAddress() {
+        return raceLocalAddress;
+    }
+
     public int getPort() {
         return port;
     }
@@ -329,21 +337,24 @@ public class ServerSetting implements SimpleListItem {
                     .d("ServerSetting", "Creating adapter for " + name + " of type " + type.name() + ": connected to " +
                             connectedToNetwork + " and configured local network is " + localNetwork);
         }
-        String addressToUse = address;
-        int portToUse = port;
-        boolean sslEnable = ssl;
+        boolean useLocal = false;
         if (!TextUtils.isEmpty(localNetwork) && !TextUtils.isEmpty(localAddress) &&
                 !TextUtils.isEmpty(connectedToNetwork)) {
             String[] localNetworks = localNetwork.split("\\|");
             for (String network : localNetworks) {
                 if (connectedToNetwork.equals(network)) {
-                    addressToUse = localAddress;
-                    portToUse = localPort;
-                    sslEnable = localSsl;
+                    useLocal = true;
                     break;
                 }
             }
         }
+        // If the network name did not tell (or could not be read), the local address may still be the fastest one
+        if (!useLocal && raceLocalAddress && !TextUtils.isEmpty(localAddress)) {
+            useLocal = ServerAddressRacer.preferLocal(this, connectedToNetwork, Log_.getInstance_(caller));
+        }
+        String addressToUse = useLocal ? localAddress : address;
+        int portToUse = useLocal ? localPort : port;
+        boolean sslEnable = useLocal ? localSsl : ssl;
         return new DaemonSettings(name, type, addressToUse, portToUse, sslEnable, sslTrustAll, sslTrustKey, folder,
                 useAuthentication, username, password, extraPass, authToken, os, downloadDir, ftpUrl, ftpPassword, timeout,
                 alarmOnFinishedDownload, alarmOnNewTorrent, Integer.toString(key), isAutoGenerated);
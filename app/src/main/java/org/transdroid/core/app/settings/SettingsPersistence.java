@@ -91,12 +91,17 @@ public class SettingsPersistence {
 
         Editor editor = prefs.edit();
 
+        // Imported servers are appended to the existing ones, which RSS feeds that automatically add items need to know
+        int serverOffset = applicationSettings.getMaxOfAllServers() + 1;
+        int serverCount = 0;
+
         // Import servers
         if (json.has("servers")) {
             JSONArray servers = json.getJSONArray("servers");
+            serverCount = servers.length();
             for (int i = 0; i < servers.length(); i++) {
                 JSONObject server = servers.getJSONObject(i);
-                String postfix = Integer.toString(applicationSettings.getMaxOfAllServers() + 1 + i);
+                String postfix = Integer.toString(serverOffset + i);
 
                 if (server.has("name"))
                     editor.putString("server_name_" + postfix, server.getString("name"));
@@ -110,6 +115,8 @@ public class SettingsPersistence {
                     editor.putString("server_localaddress_" + postfix, server.getString("local_host"));
                 if (server.has("local_port"))
                     editor.putString("server_localport_" + postfix, server.getString("local_port"));
+                if (server.has("local_race"))
+                    editor.putBoolean("server_localrace_" + postfix, server.getBoolean("local_race"));
                 if (server.has("port"))
                     editor.putString("server_port_" + postfix, server.getString("port"));
                 if (server.has("ssl"))
@@ -192,6 +199,27 @@ public class SettingsPersistence {
                     editor.putLong("rssfeed_lastviewed_" + postfix, feed.getLong("last_seen_time"));
                 if (feed.has("last_seen_item"))
                     editor.putString("rssfeed_lastvieweditemurl_" + postfix, feed.getString("last_seen_item"));
+                if (feed.has("auto_download"))
+                    editor.putBoolean("rssfeed_autodownload_" + postfix, feed.getBoolean("auto_download"));
+                if (feed.has("auto_pattern"))
+                    editor.putString("rssfeed_autopattern_" + postfix, feed.getString("auto_pattern"));
+                if (feed.has("auto_min_size"))
+                    editor.putString("rssfeed_autominsize_" + postfix, feed.getString("auto_min_size"));
+                if (feed.has("auto_max_size"))
+                    editor.putString("rssfeed_automaxsize_" + postfix, feed.getString("auto_max_size"));
+                if (feed.has("auto_server")) {
+                    // Point to the server as imported; if that server was not part of the backup (such as a seedbox)
+                    // switch off auto-download rather than silently adding to the wrong server
+                    int autoServer = feed.getInt("auto_server");
+                    if (autoServer >= serverCount) {
+                        editor.putBoolean("rssfeed_autodownload_" + postfix, false);
+                    } else {
+                        editor.putString("rssfeed_autoserver_" + postfix,
+                                Integer.toString(autoServer < 0 ? autoServer : serverOffset + autoServer));
+                    }
+                }
+                if (feed.has("auto_label"))
+                    editor.putString("rssfeed_autolabel_" + postfix, feed.getString("auto_label"));
 
             }
         }
@@ -290,6 +318,7 @@ public class SettingsPersistence {
             server.put("local_network", prefs.getString("server_localnetwork_" + postfixi, null));
             server.put("local_host", prefs.getString("server_localaddress_" + postfixi, null));
             server.put("local_port", prefs.getString("server_localport_" + postfixi, null));
+            server.put("local_race", prefs.getBoolean("server_localrace_" + postfixi, false));
             server.put("port", prefs.getString("server_port_" + postfixi, null));
             server.put("ssl", prefs.getBoolean("server_sslenabled_" + postfixi, false));
             server.put("local_ssl", prefs.getBoolean("server_localsslenabled_" + postfixi, false));
@@ -348,6 +377,12 @@ public class SettingsPersistence {
             feed.put("alarm_filter_include", prefs.getString("rssfeed_include_" + postfixk, null));
             feed.put("last_seen_time", prefs.getLong("rssfeed_lastviewed_" + postfixk, -1));
             feed.put("last_seen_item", prefs.getString("rssfeed_lastvieweditemurl_" + postfixk, null));
+            feed.put("auto_download", prefs.getBoolean("rssfeed_autodownload_" + postfixk, false));
+            feed.put("auto_pattern", prefs.getString("rssfeed_autopattern_" + postfixk, null));
+            feed.put("auto_min_size", prefs.getString("rssfeed_autominsize_" + postfixk, null));
+            feed.put("auto_max_size", prefs.getString("rssfeed_automaxsize_" + postfixk, null));
+            feed.put("auto_server", prefs.getString("rssfeed_autoserver_" + postfixk, null));
+            feed.put("auto_label", prefs.getString("rssfeed_autolabel_" + postfixk, null));
 
             feeds.put(feed);
             k++;
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.app.snapshot;
+
+import android.util.LruCache;
+
+import org.androidannotations.annotations.EBean;
+import org.androidannotations.annotations.EBean.Scope;
+import org.transdroid.daemon.DaemonSettings;
+import org.transdroid.daemon.IDaemonAdapter;
+import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.TorrentDetails;
+import org.transdroid.daemon.TorrentFile;
+import org.transdroid.daemon.task.DaemonTaskResult;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In-memory cache of the fine details (trackers, errors and pieces) and file lists of individual torrents, such that
+ * flipping between torrents can show their data directly. Entries are kept per server and torrent for a short time and
+ * the cache is bounded by the (estimated) memory that the entries use, evicting the least recently used first. Callers
+ * should revalidate an entry that is not {@link Entry#isFresh() fresh} anymore and pass the result of every successful
+ * action to {@link #invalidateAfter(DaemonTaskResult)}, which drops the entries the action made outdated.
+ *
+ * @author Eric Kok
+ */
+@EBean(scope = Scope.Singleton)
+public class TorrentDetailsCache {
+
+    /**
+     * Entries younger than this are used as is, without contacting the server
+     */
+    private static final long FRESH_AGE = 15 * 1000; // 15 seconds
+    /**
+     * Entries older than this are never used anymore
+     */
+    private static final long MAX_AGE = 2 * 60 * 1000; // 2 minutes
+    private static final int MAX_SIZE = (int) Math.min(4 * 1024 * 1024, Runtime.getRuntime().maxMemory() / 32);
+
+    private final LruCache<String, Entry<?>> cache = new LruCache<String, Entry<?>>(MAX_SIZE) {
+        @Override
+        protected int sizeOf(String key, Entry<?> entry) {
+            return entry.size;
+        }
+    };
+
+    /**
+     * Returns the cached fine details of some torrent.
+     *
+     * @param adapter The connection to the server the torrent is on
+     * @param torrent The torrent to get the details of
+     * @return The cached details, or null if they are not known or too old to show
+     */
+    @SuppressWarnings("unchecked")
+    public Entry<TorrentDetails> getDetails(IDaemonAdapter adapter, Torrent torrent) {
+        return (Entry<TorrentDetails>) get("details|" + getKey(adapter, torrent));
+    }
+
+    /**
+     * Returns the cached list of files of some torrent.
+     *
+     * @param adapter The connection to the server the torrent is on
+     * @param torrent The torrent to get the files of
+     * @return The cached files, or null if they are not known or too old to show
+     */
+    @SuppressWarnings("unchecked")
+    public Entry<List<TorrentFile>> getFiles(IDaemonAdapter adapter, Torrent torrent) {
+        return (Entry<List<TorrentFile>>) get("files|" + getKey(adapter, torrent));
+    }
+
+    public void putDetails(IDaemonAdapter adapter, Torrent torrent, TorrentDetails details) {
+        cache.put("details|" + getKey(adapter, torrent), new Entry<>(details, estimateSize(details)));
+    }
+
+    public void putFiles(IDaemonAdapter adapter, Torrent torrent, List<TorrentFile> files) {
+        cache.put("files|" + getKey(adapter, torrent), new Entry<>(Collections.unmodifiableList(files), estimateSize(files)));
+    }
+
+    /**
+     * Removes the cached details and files of the torrent that some action changed, if the action changes them at all:
+     * forcing a recheck, or setting the trackers, download location or file priorities. As the result does not tell on
+     * which server the action was executed, the entries of that torrent on any server are removed.
+     *
+     * @param result The result of the action that was executed
+     */
+    public void invalidateAfter(DaemonTaskResult result) {
+        if (!result.wasSuccessful() || result.getTargetTorrent() == null) {
+            return;
+        }
+        switch (result.getMethod()) {
+            case ForceRecheck:
+            case SetTrackers:
+            case SetDownloadLocation:
+            case SetFilePriorities:
+                String suffix = "|" + result.getTargetTorrent().getUniqueID();
+                for (String key : cache.snapshot().keySet()) {
+                    if (key.endsWith(suffix)) {
+                        cache.remove(key);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private Entry<?> get(String key) {
+        Entry<?> entry = cache.get(key);
+        if (entry != null && entry.getAge() > MAX_AGE) {
+            cache.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private String getKey(IDaemonAdapter adapter, Torrent torrent) {
+        DaemonSettings settings = adapter.getSettings();
+        return settings.getType().name() + "|" + settings.getHumanReadableIdentifier() + "|" + torrent.getUniqueID();
+    }
+
+    private int estimateSize(TorrentDetails details) {
+        // Roughly the bytes used: boxed pieces are mostly shared Integer instances, strings take two bytes per char
+        int size = 64;
+        if (details.getPieces() != null) {
+            size += details.getPieces().size() * 4;
+        }
+        size += estimateSize(details.getTrackers());
+        size += estimateSize(details.getErrors());
+        return size;
+    }
+
+    private int estimateSize(Iterable<?> items) {
+        int size = 0;
+        if (items != null) {
+            for (Object item : items) {
+                if (item instanceof TorrentFile) {
+                    TorrentFile file = (TorrentFile) item;
+                    size += 96 + 2 * (length(file.getName()) + length(file.getRelativePath()) + length(file.getFullPath()));
+                } else {
+                    size += 48 + 2 * length(item == null ? null : item.toString());
+                }
+            }
+        }
+        return size;
+    }
+
+    private int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * A cached value, together with the moment it was retrieved from the server.
+     */
+    public static final class Entry<T> {
+
+        private final T value;
+        private final long storedAt;
+        private final int size;
+
+        private Entry(T value, int size) {
+            this.value = value;
+            this.storedAt = System.currentTimeMillis();
+            this.size = Math.max(1, size);
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getAge() {
+            return Math.max(0, System.currentTimeMillis() - storedAt);
+        }
+
+        /**
+         * Returns whether this entry is recent enough to be shown without revalidating it against the server.
+         */
+        public boolean isFresh() {
+            return getAge() <= FRESH_AGE;
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.app.snapshot;
+
+import org.transdroid.daemon.Label;
+import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.task.RetrieveTask.Projection;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable copy of the torrents and labels as they were last retrieved from some server, together with the moment
+ * they were retrieved and the projection with which they were retrieved.
+ *
+ * @author Eric Kok
+ */
+public class TorrentsSnapshot {
+
+    private final String serverKey;
+    private final long retrievedAt;
+    private final List<Torrent> torrents;
+    private final List<Label> labels;
+    private final Projection projection;
+
+    public TorrentsSnapshot(String serverKey, long retrievedAt, List<Torrent> torrents, List<Label> labels) {
+        this(serverKey, retrievedAt, torrents, labels, Projection.Full);
+    }
+
+    public TorrentsSnapshot(String serverKey, long retrievedAt, List<Torrent> torrents, List<Label> labels,
+                            Projection projection) {
+        this.serverKey = serverKey;
+        this.retrievedAt = retrievedAt;
+        this.torrents = Collections.unmodifiableList(torrents);
+        this.labels = labels == null ? null : Collections.unmodifiableList(labels);
+        this.projection = projection;
+    }
+
+    /**
+     * Returns the unique identifier of the server this snapshot was taken from, as given by
+     * {@link org.transdroid.core.app.settings.ServerSetting#getUniqueIdentifier()}.
+     */
+    public String getServerKey() {
+        return serverKey;
+    }
+
+    /**
+     * Returns the moment (in epoch milliseconds) the contained torrents were retrieved from the server.
+     */
+    public long getRetrievedAt() {
+        return retrievedAt;
+    }
+
+    public List<Torrent> getTorrents() {
+        return torrents;
+    }
+
+    /**
+     * Returns the labels as they were retrieved, or null if the server does not support labels.
+     */
+    public List<Label> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Returns the projection with which the torrents were retrieved; properties outside of it are not filled.
+     */
+    public Projection getProjection() {
+        return projection;
+    }
+
+    /**
+     * Returns the age of this snapshot in milliseconds.
+     */
+    public long getAge() {
+        return Math.max(0, System.currentTimeMillis() - retrievedAt);
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.app.snapshot;
+
+import android.content.Context;
+
+import org.androidannotations.annotations.Bean;
+import org.androidannotations.annotations.EBean;
+import org.androidannotations.annotations.EBean.Scope;
+import org.androidannotations.annotations.RootContext;
+import org.transdroid.core.app.settings.ServerSetting;
+import org.transdroid.core.gui.log.Log;
+import org.transdroid.core.service.ConnectivityHelper;
+import org.transdroid.daemon.IDaemonAdapter;
+import org.transdroid.daemon.task.DaemonTaskResult;
+import org.transdroid.daemon.task.RetrieveTask;
+import org.transdroid.daemon.task.RetrieveTask.Projection;
+import org.transdroid.daemon.task.RetrieveTaskSuccessResult;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Process-wide source of torrent listings that is shared by the torrents screen, the list widgets and the background
+ * services. A retrieved listing is kept in memory per server and served to any consumer that accepts a listing of that
+ * age and holds at least the properties (the {@link Projection}) it asks for; concurrent requests for the same server
+ * wait for the one retrieval that is in flight instead of polling the server themselves. Every live listing that is
+ * complete enough to show in the torrents list is also persisted via the {@link TorrentsSnapshotStore}.
+ *
+ * @author Eric Kok
+ */
+@EBean(scope = Scope.Singleton)
+public class TorrentsSnapshotProvider {
+
+    /**
+     * The age up to which a listing is considered fresh enough for widgets and background services
+     */
+    public static final long DEFAULT_MAX_AGE = 30 * 1000; // 30 seconds
+
+    @RootContext
+    protected Context context;
+    @Bean
+    protected Log log;
+    @Bean
+    protected ConnectivityHelper connectivityHelper;
+    @Bean
+    protected TorrentsSnapshotStore snapshotStore;
+
+    private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+    private final Map<String, TorrentsSnapshot> latest = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Retrieval> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the full torrents listing of some server, connecting to it using the currently connected network. See
+     * {@link #retrieve(ServerSetting, IDaemonAdapter, long, Projection)}.
+     */
+    public DaemonTaskResult retrieve(ServerSetting server, long maxAge) {
+        return retrieve(server, maxAge, Projection.Full);
+    }
+
+    /**
+     * Returns the torrents listing of some server, connecting to it using the currently connected network. See
+     * {@link #retrieve(ServerSetting, IDaemonAdapter, long, Projection)}. The adapter is only created if the server
+     * has to be contacted, as that may first probe which of its addresses is reachable.
+     */
+    public DaemonTaskResult retrieve(final ServerSetting server, long maxAge, Projection projection) {
+        return retrieve(server, () -> server.getServerAdapter(connectivityHelper.getConnectedNetworkName(), context),
+                maxAge, projection);
+    }
+
+    /**
+     * Returns the full torrents listing of some server. See {@link #retrieve(ServerSetting, IDaemonAdapter, long,
+     * Projection)}.
+     */
+    public DaemonTaskResult retrieve(ServerSetting server, IDaemonAdapter adapter, long maxAge) {
+        return retrieve(server, adapter, maxAge, Projection.Full);
+    }
+
+    /**
+     * Returns the torrents listing of some server, either from memory if a listing is available that is at most maxAge
+     * old (or was retrieved while this call waited for another retrieval) and covers the requested projection, or
+     * otherwise synchronously from the server. This blocks and should never be called on the UI thread.
+     *
+     * @param server     The server settings, used to identify the server
+     * @param adapter    The adapter to retrieve the torrents with if no fresh enough listing is available
+     * @param maxAge     The maximum age in milliseconds of a listing that is still acceptable; use 0 to always retrieve
+     *                   a new listing (unless one is being retrieved concurrently)
+     * @param projection The torrent properties that the caller needs; a listing with more properties may be returned
+     * @return A {@link RetrieveTaskSuccessResult} or the failure result of the retrieve task
+     */
+    public DaemonTaskResult retrieve(ServerSetting server, final IDaemonAdapter adapter, long maxAge,
+                                     Projection projection) {
+        return retrieve(server, () -> adapter, maxAge, projection);
+    }
+
+    private DaemonTaskResult retrieve(ServerSetting server, AdapterFactory adapters, long maxAge,
+                                      Projection projection) {
+        String key = server.getUniqueIdentifier();
+        if (key == null) {
+            return RetrieveTask.create(adapters.create(), projection).execute(log);
+        }
+
+        // The lock only guards the in-memory state; it is never held while talking to the server, such that a widget
+        // or the server checker is not held up by a retrieval that it does not need
+        Retrieval retrieval;
+        boolean retrieving = false;
+        synchronized (getLock(key)) {
+            TorrentsSnapshot cached = latest.get(key);
+            if (cached != null && cached.getProjection().covers(projection) && cached.getAge() <= maxAge) {
+                // The task of a listing served from memory has no adapter, as none was created
+                return new RetrieveTaskSuccessResult(RetrieveTask.create(null, cached.getProjection()),
+                        cached.getTorrents(), cached.getLabels());
+            }
+            retrieval = inFlight.get(key);
+            if (retrieval == null || !retrieval.projection.covers(projection)) {
+                retrieval = new Retrieval(projection);
+                inFlight.put(key, retrieval);
+                retrieving = true;
+            }
+        }
+        if (!retrieving) {
+            // Share the retrieval that is already in flight; only if that failed unexpectedly, retrieve ourselves
+            DaemonTaskResult shared = retrieval.await();
+            return shared != null ? shared : retrieve(server, adapters, 0, projection);
+        }
+
+        DaemonTaskResult result = null;
+        try {
+            result = RetrieveTask.create(adapters.create(), projection).execute(log);
+            if (result instanceof RetrieveTaskSuccessResult) {
+                RetrieveTaskSuccessResult success = (RetrieveTaskSuccessResult) result;
+                synchronized (getLock(key)) {
+                    // Do not replace a recent, more complete listing with a narrower one, such that the app and
+                    // widgets can still use it
+                    TorrentsSnapshot cached = latest.get(key);
+                    if (cached == null || projection.covers(cached.getProjection())
+                            || cached.getAge() > DEFAULT_MAX_AGE) {
+                        latest.put(key, new TorrentsSnapshot(key, System.currentTimeMillis(), success.getTorrents(),
+                                success.getLabels(), projection));
+                    }
+                }
+                if (projection.covers(Projection.List)) {
+                    snapshotStore.save(server, success.getTorrents(), success.getLabels());
+                }
+            }
+            return result;
+        } finally {
+            inFlight.remove(key, retrieval);
+            retrieval.complete(result);
+        }
+    }
+
+    /**
+     * Returns the last known listing of some server that is complete enough to show in the torrents list, regardless
+     * of its age, from memory or otherwise from disk. This may perform disk I/O and should not be called on the UI
+     * thread.
+     *
+     * @param server The server settings to get the last listing for
+     * @return The last known listing, or null if the server was never successfully contacted
+     */
+    public TorrentsSnapshot getLastKnown(ServerSetting server) {
+        String key = server.getUniqueIdentifier();
+        if (key == null) {
+            return null;
+        }
+        TorrentsSnapshot cached = latest.get(key);
+        if (cached != null && cached.getProjection().covers(Projection.List)) {
+            return cached;
+        }
+        return snapshotStore.load(server);
+    }
+
+    private Object getLock(String key) {
+        Object lock = locks.get(key);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = locks.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    private interface AdapterFactory {
+        IDaemonAdapter create();
+    }
+
+    /**
+     * A retrieval of the listing of some server that is in flight, on which other callers can wait.
+     */
+    private static final class Retrieval {
+
+        private final Projection projection;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile DaemonTaskResult result;
+
+        Retrieval(Projection projection) {
+            this.projection = projection;
+        }
+
+        void complete(DaemonTaskResult result) {
+            this.result = result;
+            done.countDown();
+        }
+
+        /**
+         * Waits for the retrieval to complete and returns its result, or null if it failed unexpectedly or the waiting
+         * thread was interrupted.
+         */
+        DaemonTaskResult await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            return result;
+        }
+
+    }
+
+}
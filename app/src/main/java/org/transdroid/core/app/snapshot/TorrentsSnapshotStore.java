@@ -0,0 +1,271 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.app.snapshot;
+
+import android.content.Context;
+import android.util.AtomicFile;
+
+import org.androidannotations.annotations.Bean;
+import org.androidannotations.annotations.EBean;
+import org.androidannotations.annotations.EBean.Scope;
+import org.androidannotations.annotations.RootContext;
+import org.transdroid.core.app.settings.ServerSetting;
+import org.transdroid.core.gui.log.Log;
+import org.transdroid.daemon.Daemon;
+import org.transdroid.daemon.Label;
+import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.TorrentStatus;
+import org.transdroid.daemon.util.BinaryFiles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists the last retrieved list of torrents and labels per server in a compact, versioned binary file, such that
+ * the torrents list (and widgets or background services) can show something directly on a cold start, before the
+ * first live refresh has completed. Snapshots are stored in the cache directory; they can be thrown away at any time.
+ *
+ * @author Eric Kok
+ */
+@EBean(scope = Scope.Singleton)
+public class TorrentsSnapshotStore {
+
+    private static final int MAGIC = 0x5444534E; // TDSN
+    private static final int VERSION = 1;
+    private static final int MAX_ITEMS = 1000000;
+    private static final long MIN_WRITE_INTERVAL = 30 * 1000; // 30 seconds
+
+    @RootContext
+    protected Context context;
+    @Bean
+    protected Log log;
+
+    private final Map<String, Long> lastWritten = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the last stored snapshot for some server. This performs disk I/O and should not be called on the UI thread.
+     *
+     * @param server The server to load the snapshot for
+     * @return The stored snapshot, or null if there is none (or it could not be read, for example because it was
+     * written by an older version of the app)
+     */
+    public TorrentsSnapshot load(ServerSetting server) {
+        String key = server == null ? null : server.getUniqueIdentifier();
+        if (key == null) {
+            return null;
+        }
+        AtomicFile file = getFile(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.openRead()))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF())) {
+                // Different format or a (hash-colliding) other server; ignore and replace with the next save
+                return null;
+            }
+            long retrievedAt = in.readLong();
+            String[] pool = new String[BinaryFiles.readCount(in, MAX_ITEMS)];
+            for (int i = 0; i < pool.length; i++) {
+                pool[i] = BinaryFiles.readString(in);
+            }
+            int torrentCount = BinaryFiles.readCount(in, MAX_ITEMS);
+            List<Torrent> torrents = new ArrayList<>(torrentCount);
+            for (int i = 0; i < torrentCount; i++) {
+                torrents.add(readTorrent(in, pool));
+            }
+            // Labels are absent (rather than empty) if the server does not support them at all
+            List<Label> labels = null;
+            if (in.readBoolean()) {
+                int labelCount = BinaryFiles.readCount(in, MAX_ITEMS);
+                labels = new ArrayList<>(labelCount);
+                for (int i = 0; i < labelCount; i++) {
+                    labels.add(new Label(readPooled(in, pool), in.readInt()));
+                }
+            }
+            return new TorrentsSnapshot(key, retrievedAt, torrents, labels);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            log.e(this, "Stored torrents snapshot for " + key + " is unreadable; removing it: " + e.toString());
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the retrieved torrents and labels of some server as its new snapshot, replacing the old one. Writes are
+     * throttled, so frequent auto-refreshes do not rewrite the file on every call, and serialized, as listings of the
+     * same server may be retrieved concurrently. This performs disk I/O and should not be called on the UI thread.
+     *
+     * @param server   The server from which the torrents were retrieved
+     * @param torrents The full, unfiltered list of torrents as retrieved
+     * @param labels   The list of labels as retrieved, or null if not supported
+     */
+    public synchronized void save(ServerSetting server, List<Torrent> torrents, List<Label> labels) {
+        String key = server == null ? null : server.getUniqueIdentifier();
+        if (key == null || torrents == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Long last = lastWritten.get(key);
+        if (last != null && now - last < MIN_WRITE_INTERVAL) {
+            return;
+        }
+        lastWritten.put(key, now);
+
+        // Labels, download locations and daemon names repeat a lot, so they are written once in a string pool
+        Map<String, Integer> pool = new LinkedHashMap<>();
+        for (Torrent torrent : torrents) {
+            addToPool(pool, torrent.getLabelName());
+            addToPool(pool, torrent.getLocationDir());
+            addToPool(pool, torrent.getDaemon() == null ? null : torrent.getDaemon().name());
+        }
+        if (labels != null) {
+            for (Label label : labels) {
+                addToPool(pool, label.getName());
+            }
+        }
+
+        AtomicFile file = getFile(key);
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(key);
+            out.writeLong(now);
+            out.writeInt(pool.size());
+            for (String value : pool.keySet()) {
+                BinaryFiles.writeString(out, value);
+            }
+            out.writeInt(torrents.size());
+            for (Torrent torrent : torrents) {
+                writeTorrent(out, torrent, pool);
+            }
+            out.writeBoolean(labels != null);
+            if (labels != null) {
+                out.writeInt(labels.size());
+                for (Label label : labels) {
+                    writePooled(out, label.getName(), pool);
+                    out.writeInt(label.getCount());
+                }
+            }
+            out.flush();
+            file.finishWrite(fos);
+        } catch (IOException e) {
+            log.e(this, "Cannot write torrents snapshot for " + key + ": " + e.toString());
+            if (fos != null) {
+                file.failWrite(fos);
+            }
+            lastWritten.remove(key);
+        }
+    }
+
+    private AtomicFile getFile(String key) {
+        return BinaryFiles.getFile(context.getCacheDir(), "snapshots", "torrents_", key);
+    }
+
+    private void writeTorrent(DataOutputStream out, Torrent torrent, Map<String, Integer> pool) throws IOException {
+        out.writeLong(torrent.getId());
+        BinaryFiles.writeString(out, torrent.getHash());
+        BinaryFiles.writeString(out, torrent.getName());
+        out.writeInt(torrent.getStatusCode() == null ? TorrentStatus.Unknown.getCode() : torrent.getStatusCode().getCode());
+        writePooled(out, torrent.getLocationDir(), pool);
+        out.writeInt(torrent.getRateDownload());
+        out.writeInt(torrent.getRateUpload());
+        out.writeInt(torrent.getSeedersConnected());
+        out.writeInt(torrent.getSeedersKnown());
+        out.writeInt(torrent.getLeechersConnected());
+        out.writeInt(torrent.getLeechersKnown());
+        out.writeInt(torrent.getEta());
+        out.writeLong(torrent.getDownloadedEver());
+        out.writeLong(torrent.getUploadedEver());
+        out.writeLong(torrent.getTotalSize());
+        out.writeFloat(torrent.getPartDone());
+        out.writeFloat(torrent.getAvailability());
+        writePooled(out, torrent.getLabelName(), pool);
+        out.writeLong(torrent.getDateAdded() == null ? -1 : torrent.getDateAdded().getTime());
+        out.writeLong(torrent.getDateDone() == null ? -1 : torrent.getDateDone().getTime());
+        BinaryFiles.writeString(out, torrent.getError());
+        writePooled(out, torrent.getDaemon() == null ? null : torrent.getDaemon().name(), pool);
+        out.writeBoolean(torrent.isSequentiallyDownloading());
+        out.writeBoolean(torrent.isDownloadingFirstLastPieceFirst());
+        out.writeInt(torrent.getNumberOfTrackers());
+    }
+
+    private Torrent readTorrent(DataInputStream in, String[] pool) throws IOException {
+        Torrent.Builder builder = new Torrent.Builder()
+                .setId(in.readLong())
+                .setHash(BinaryFiles.readString(in))
+                .setName(BinaryFiles.readString(in))
+                .setStatusCode(TorrentStatus.getStatus(in.readInt()))
+                .setLocationDir(readPooled(in, pool))
+                .setRateDownload(in.readInt())
+                .setRateUpload(in.readInt())
+                .setSeedersConnected(in.readInt())
+                .setSeedersKnown(in.readInt())
+                .setLeechersConnected(in.readInt())
+                .setLeechersKnown(in.readInt())
+                .setEta(in.readInt())
+                .setDownloadedEver(in.readLong())
+                .setUploadedEver(in.readLong())
+                .setTotalSize(in.readLong())
+                .setPartDone(in.readFloat())
+                .setAvailable(in.readFloat())
+                .setLabel(readPooled(in, pool));
+        long dateAdded = in.readLong();
+        long dateDone = in.readLong();
+        builder.setDateAdded(dateAdded == -1 ? null : new Date(dateAdded))
+                .setRealDateDone(dateDone == -1 ? null : new Date(dateDone))
+                .setError(BinaryFiles.readString(in));
+        String daemon = readPooled(in, pool);
+        builder.setDaemon(daemon == null ? null : Daemon.valueOf(daemon))
+                .setSequentialDownload(in.readBoolean())
+                .setFirstLastPieceDownload(in.readBoolean());
+        Torrent torrent = builder.createTorrent();
+        torrent.setNumberOfTrackers(in.readInt());
+        return torrent;
+    }
+
+    private void addToPool(Map<String, Integer> pool, String value) {
+        if (value != null && !pool.containsKey(value)) {
+            pool.put(value, pool.size());
+        }
+    }
+
+    private void writePooled(DataOutputStream out, String value, Map<String, Integer> pool) throws IOException {
+        out.writeInt(value == null ? -1 : pool.get(value));
+    }
+
+    private String readPooled(DataInputStream in, String[] pool) throws IOException {
+        int index = in.readInt();
+        if (index < -1 || index >= pool.length) {
+            throw new IOException("Invalid string pool index " + index);
+        }
+        return index == -1 ? null : pool[index];
+    }
+
+}
@@ -36,9 +36,11 @@ import org.androidannotations.annotations.OptionsMenu;
 import org.androidannotations.annotations.UiThread;
 import org.androidannotations.annotations.ViewById;
 import org.transdroid.R;
+import org.transdroid.core.app.queue.PendingActionQueue;
 import org.transdroid.core.app.settings.ApplicationSettings;
 import org.transdroid.core.app.settings.ServerSetting;
 import org.transdroid.core.app.settings.SettingsUtils;
+import org.transdroid.core.app.snapshot.TorrentDetailsCache;
 import org.transdroid.core.gui.lists.LocalTorrent;
 import org.transdroid.core.gui.log.Log;
 import org.transdroid.core.gui.navigation.Label;
@@ -103,6 +105,10 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
     protected ConnectivityHelper connectivityHelper;
     @Bean
     protected ApplicationSettings applicationSettings;
+    @Bean
+    protected TorrentDetailsCache detailsCache;
+    @Bean
+    protected PendingActionQueue pendingActions;
     // Details view components
     @ViewById
     protected Toolbar selectionToolbar;
@@ -170,8 +176,17 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
         if (!Daemon.supportsFineDetails(torrent.getDaemon())) {
             return;
         }
+        // Show recently retrieved data directly and only revalidate it when it is not that fresh anymore
+        TorrentDetailsCache.Entry<TorrentDetails> cached = detailsCache.getDetails(currentConnection, torrent);
+        if (cached != null) {
+            onTorrentDetailsRetrieved(torrent, cached.getValue());
+            if (cached.isFresh()) {
+                return;
+            }
+        }
         DaemonTaskResult result = GetTorrentDetailsTask.create(currentConnection, torrent).execute(log);
         if (result instanceof GetTorrentDetailsTaskSuccessResult) {
+            detailsCache.putDetails(currentConnection, torrent, ((GetTorrentDetailsTaskSuccessResult) result).getTorrentDetails());
             onTorrentDetailsRetrieved(torrent, ((GetTorrentDetailsTaskSuccessResult) result).getTorrentDetails());
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
@@ -184,8 +199,17 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
         if (!Daemon.supportsFileListing(torrent.getDaemon())) {
             return;
         }
+        // Show recently retrieved data directly and only revalidate it when it is not that fresh anymore
+        TorrentDetailsCache.Entry<List<TorrentFile>> cached = detailsCache.getFiles(currentConnection, torrent);
+        if (cached != null) {
+            onTorrentFilesRetrieved(torrent, cached.getValue());
+            if (cached.isFresh()) {
+                return;
+            }
+        }
         DaemonTaskResult result = GetFileListTask.create(currentConnection, torrent).execute(log);
         if (result instanceof GetFileListTaskSuccessResult) {
+            detailsCache.putFiles(currentConnection, torrent, ((GetFileListTaskSuccessResult) result).getFiles());
             onTorrentFilesRetrieved(torrent, ((GetFileListTaskSuccessResult) result).getFiles());
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
@@ -199,7 +223,7 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
         torrent.mimicResume();
         DaemonTaskResult result = ResumeTask.create(currentConnection, torrent).execute(log);
         if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_resumed, torrent.getName()));
+            onActionSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_resumed, torrent.getName()));
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
         }
@@ -211,7 +235,7 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
         torrent.mimicPause();
         DaemonTaskResult result = PauseTask.create(currentConnection, torrent).execute(log);
         if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_paused, torrent.getName()));
+            onActionSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_paused, torrent.getName()));
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
         }
@@ -223,7 +247,7 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
         torrent.mimicStart();
         DaemonTaskResult result = StartTask.create(currentConnection, torrent, forced).execute(log);
         if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_started, torrent.getName()));
+            onActionSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_started, torrent.getName()));
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
         }
@@ -235,7 +259,7 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
         torrent.mimicStop();
         DaemonTaskResult result = StopTask.create(currentConnection, torrent).execute(log);
         if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_stopped, torrent.getName()));
+            onActionSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_stopped, torrent.getName()));
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
         }
@@ -268,7 +292,7 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
         torrent.mimicNewLabel(newLabel);
         DaemonTaskResult result = SetLabelTask.create(currentConnection, torrent, newLabel == null ? "" : newLabel).execute(log);
         if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_labelset, newLabel));
+            onActionSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_labelset, newLabel));
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
         }
@@ -283,7 +307,7 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
         String stateString = sequentialState ? onState : offState;
         DaemonTaskResult result = ToggleSequentialDownloadTask.create(currentConnection, torrent).execute(log);
         if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_togglesequential, torrent.getName(), stateString));
+            onActionSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_togglesequential, torrent.getName(), stateString));
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
         }
@@ -298,7 +322,7 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
         String stateString = firstLastPieceState ? onState : offState;
         DaemonTaskResult result = ToggleFirstLastPieceDownloadTask.create(currentConnection, torrent).execute(log);
         if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_togglefirstlastpiece, torrent.getName(), stateString));
+            onActionSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_togglefirstlastpiece, torrent.getName(), stateString));
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
         }
@@ -310,7 +334,7 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
         torrent.mimicCheckingStatus();
         DaemonTaskResult result = ForceRecheckTask.create(currentConnection, torrent).execute(log);
         if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_recheckedstarted, torrent.getName()));
+            onActionSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_recheckedstarted, torrent.getName()));
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
         }
@@ -321,7 +345,7 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
     public void updateTrackers(Torrent torrent, List<String> newTrackers) {
         DaemonTaskResult result = SetTrackersTask.create(currentConnection, torrent, newTrackers).execute(log);
         if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_trackersupdated));
+            onActionSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_trackersupdated));
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
         }
@@ -332,7 +356,7 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
     public void updateLocation(Torrent torrent, String newLocation) {
         DaemonTaskResult result = SetDownloadLocationTask.create(currentConnection, torrent, newLocation).execute(log);
         if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_locationset, newLocation));
+            onActionSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_locationset, newLocation));
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
         }
@@ -343,14 +367,25 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
     public void updatePriority(Torrent torrent, List<TorrentFile> files, Priority priority) {
         DaemonTaskResult result = SetFilePriorityTask.create(currentConnection, torrent, priority, new ArrayList<>(files)).execute(log);
         if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_priotitiesset));
+            onActionSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_priotitiesset));
         } else {
             onCommunicationError((DaemonTaskFailureResult) result, false);
         }
     }
 
+    /**
+     * Reports an action that succeeded, after dropping any queued actions that it made redundant (see
+     * {@link PendingActionQueue})
+     */
+    private void onActionSucceeded(DaemonTaskSuccessResult result, String successMessage) {
+        pendingActions.supersede(applicationSettings.getLastUsedServer(), result.getTask());
+        onTaskSucceeded(result, successMessage);
+    }
+
     @UiThread
     protected void onTaskSucceeded(DaemonTaskSuccessResult result, String successMessage) {
+        // Cached details and files of the affected torrent may be outdated now
+        detailsCache.invalidateAfter(result);
         // Set the activity result so the calling activity knows it needs to update its view
         setResult(RESULT_OK, new Intent().putExtra("torrent_updated", true).putExtra("affected_torrent", torrent));
         // Refresh the screen as well
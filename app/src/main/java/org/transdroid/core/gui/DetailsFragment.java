@@ -41,16 +41,19 @@ import com.nispok.snackbar.SnackbarManager;
 import com.nispok.snackbar.enums.SnackbarType;
 
 import org.androidannotations.annotations.AfterViews;
+import org.androidannotations.annotations.Background;
 import org.androidannotations.annotations.Click;
 import org.androidannotations.annotations.EFragment;
 import org.androidannotations.annotations.InstanceState;
 import org.androidannotations.annotations.ItemClick;
 import org.androidannotations.annotations.OptionsItem;
+import org.androidannotations.annotations.UiThread;
 import org.androidannotations.annotations.ViewById;
 import org.transdroid.R;
 import org.transdroid.core.app.settings.ServerSetting;
 import org.transdroid.core.gui.lists.DetailsAdapter;
 import org.transdroid.core.gui.lists.SimpleListItemAdapter;
+import org.transdroid.core.gui.lists.TorrentFilesTree;
 import org.transdroid.core.gui.navigation.Label;
 import org.transdroid.core.gui.navigation.NavigationHelper_;
 import org.transdroid.core.gui.navigation.RefreshableActivity;
@@ -66,10 +69,12 @@ import org.transdroid.daemon.Priority;
 import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentDetails;
 import org.transdroid.daemon.TorrentFile;
+import org.transdroid.daemon.TorrentTable;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Fragment that shows detailed statistics about some torrent. These come from some already fetched {@link Torrent} object, but it also retrieves
@@ -112,6 +117,7 @@ public class DetailsFragment extends Fragment implements OnTrackersUpdatedListen
     @ViewById
     protected ProgressBar loadingProgress;
     private ServerSetting currentServerSettings = null;
+    private String filesTreeTorrentId = null;
     private MultiChoiceModeListener onDetailsSelected = new MultiChoiceModeListener() {
 
         SelectionManagerMode selectionManagerMode;
@@ -154,14 +160,21 @@ public class DetailsFragment extends Fragment implements OnTrackersUpdatedListen
         @Override
         public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
 
-            // Get checked torrents
-            List<TorrentFile> checked = new ArrayList<>();
+            // Get checked torrents; a file may be selected itself as well as through its folder, but counts only once
+            Set<TorrentFile> selected = new LinkedHashSet<>();
             for (int i = 0; i < detailsList.getCheckedItemPositions().size(); i++) {
-                if (detailsList.getCheckedItemPositions().valueAt(i) && i < detailsList.getAdapter().getCount() &&
-                        detailsList.getAdapter().getItem(detailsList.getCheckedItemPositions().keyAt(i)) instanceof TorrentFile) {
-                    checked.add((TorrentFile) detailsList.getAdapter().getItem(detailsList.getCheckedItemPositions().keyAt(i)));
+                if (!detailsList.getCheckedItemPositions().valueAt(i) || i >= detailsList.getAdapter().getCount()) {
+                    continue;
+                }
+                Object item = detailsList.getAdapter().getItem(detailsList.getCheckedItemPositions().keyAt(i));
+                if (item instanceof TorrentFile) {
+                    selected.add((TorrentFile) item);
+                } else if (item instanceof TorrentFilesTree.Folder) {
+                    // A selected folder stands for all the files it contains
+                    ((TorrentFilesTree.Folder) item).collectFiles(selected);
                 }
             }
+            List<TorrentFile> checked = new ArrayList<>(selected);
 
             int itemId = item.getItemId();
             if (itemId == R.id.action_download) {
@@ -376,9 +389,29 @@ public class DetailsFragment extends Fragment implements OnTrackersUpdatedListen
         if (torrentId == null || !torrentId.equals(checkTorrent.getUniqueID())) {
             return;
         }
-        Collections.sort(newTorrentFiles);
         this.torrentFiles = newTorrentFiles;
-        ((DetailsAdapter) detailsList.getAdapter()).updateTorrentFiles(newTorrentFiles);
+        // The folder structure is built in the background, as torrents may contain many thousands of files
+        // and the folders that were opened are kept open when the same torrent's files are refreshed
+        Set<String> expandedFolders = null;
+        if (torrentId.equals(filesTreeTorrentId)) {
+            expandedFolders = ((DetailsAdapter) detailsList.getAdapter()).getExpandedFolders();
+        }
+        buildTorrentFilesTree(torrentId, newTorrentFiles, expandedFolders);
+    }
+
+    @Background(serial = "files_tree")
+    protected void buildTorrentFilesTree(String forTorrentId, ArrayList<TorrentFile> files, Set<String> expandedFolders) {
+        onTorrentFilesTreeBuilt(forTorrentId, files, TorrentFilesTree.build(files, expandedFolders));
+    }
+
+    @UiThread
+    protected void onTorrentFilesTreeBuilt(String forTorrentId, ArrayList<TorrentFile> files, TorrentFilesTree tree) {
+        // Ignore the tree if in the meantime another torrent is shown or newer files were retrieved
+        if (detailsList == null || !forTorrentId.equals(torrentId) || files != torrentFiles) {
+            return;
+        }
+        filesTreeTorrentId = forTorrentId;
+        ((DetailsAdapter) detailsList.getAdapter()).updateTorrentFiles(tree);
     }
 
     /**
@@ -400,6 +433,21 @@ public class DetailsFragment extends Fragment implements OnTrackersUpdatedListen
         }
     }
 
+    /**
+     * As {@link #perhapsUpdateTorrent(List)}, but for a table of torrents, in which only the shown torrent is looked up.
+     *
+     * @param torrents The table of retrieved torrents
+     */
+    public void perhapsUpdateTorrent(TorrentTable torrents) {
+        if (this.torrentId == null || torrents == null) {
+            return;
+        }
+        int row = torrents.indexOf(torrentId);
+        if (row >= 0) {
+            updateTorrent(torrents.get(row));
+        }
+    }
+
     /**
      * Updates the locally maintained list of labels that are active on the server. Used in the label picking dialog and should be updated every time
      * after the list of torrents was retrieved to keep it updated.
@@ -442,6 +490,11 @@ public class DetailsFragment extends Fragment implements OnTrackersUpdatedListen
     @ItemClick(resName = "details_list")
     protected void detailsListClicked(int position) {
         detailsList.setItemChecked(position, false);
+        // Folders are expanded or collapsed on click, unless items are being selected (as positions would shift)
+        Object item = detailsList.getAdapter().getItem(position);
+        if (item instanceof TorrentFilesTree.Folder && detailsList.getCheckedItemCount() == 0) {
+            ((DetailsAdapter) detailsList.getAdapter()).toggleFolder((TorrentFilesTree.Folder) item);
+        }
     }
 
     public void createMenuOptions() {
@@ -29,16 +29,15 @@ import org.androidannotations.annotations.ViewById;
 import org.transdroid.R;
 import org.transdroid.core.gui.navigation.SetTransferRatesDialog;
 import org.transdroid.core.gui.navigation.SetTransferRatesDialog.OnRatesPickedListener;
-import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.TorrentTable;
 import org.transdroid.daemon.util.FileSizeConverter;
-
-import java.util.List;
+import org.transdroid.daemon.util.ServerHealth;
 
 @EViewGroup(R.layout.actionbar_serverstatus)
 public class ServerStatusView extends RelativeLayout implements OnRatesPickedListener {
 
     @ViewById
-    protected TextView downcountText, upcountText, downcountSign, upcountSign, downspeedText, upspeedText;
+    protected TextView downcountText, upcountText, downcountSign, upcountSign, downspeedText, upspeedText, healthText;
     @ViewById
     protected View speedswrapperLayout;
     private TorrentsActivity activity;
@@ -57,11 +56,11 @@ public class ServerStatusView extends RelativeLayout implements OnRatesPickedLis
     /**
      * Updates the statistics as shown in the action bar through this server status view.
      *
-     * @param torrents                 The most recently received list of torrents
+     * @param torrents                 The most recently received table of torrents
      * @param dormantAsInactive        Whether to treat dormant (0KB/s) torrent as inactive state torrents
      * @param supportsSetTransferRates Whether the connected torrent client supports setting of max transfer speeds
      */
-    public void updateStatus(List<Torrent> torrents, boolean dormantAsInactive, boolean supportsSetTransferRates) {
+    public void updateStatus(TorrentTable torrents, boolean dormantAsInactive, boolean supportsSetTransferRates) {
 
         if (torrents == null) {
             downcountText.setText(null);
@@ -75,7 +74,9 @@ public class ServerStatusView extends RelativeLayout implements OnRatesPickedLis
         }
 
         int downcount = 0, upcount = 0, downspeed = 0, upspeed = 0;
-        for (Torrent torrent : torrents) {
+        TorrentTable.Row torrent = torrents.row();
+        for (int i = 0; i < torrents.size(); i++) {
+            torrent.moveTo(i);
 
             // Downloading torrents count towards downloads and uploads, seeding torrents towards uploads
             if (torrent.isDownloading(dormantAsInactive)) {
@@ -102,6 +103,36 @@ public class ServerStatusView extends RelativeLayout implements OnRatesPickedLis
 
     }
 
+    /**
+     * Updates the reachability of the server as shown in the action bar: the typical response time if it is reachable,
+     * or when it will be tried again if not.
+     *
+     * @param health The health of the connected server, or null if unknown
+     */
+    public void updateHealth(ServerHealth health) {
+        if (health == null) {
+            healthText.setVisibility(View.GONE);
+            return;
+        }
+        switch (health.getState()) {
+            case Unreachable:
+                long seconds = Math.max(1, (health.getRetryAt() - System.currentTimeMillis() + 999) / 1000);
+                healthText.setText(getContext().getString(R.string.status_health_unreachable, seconds));
+                break;
+            case Recovering:
+                healthText.setText(R.string.status_health_recovering);
+                break;
+            default:
+                if (health.getAverageLatency() < 0) {
+                    healthText.setVisibility(View.GONE);
+                    return;
+                }
+                healthText.setText(getContext().getString(R.string.status_health_latency, health.getAverageLatency()));
+                break;
+        }
+        healthText.setVisibility(View.VISIBLE);
+    }
+
     @Override
     public void onRatesPicked(int maxDownloadSpeed, int maxUploadSpeed) {
         activity.updateMaxSpeeds(maxDownloadSpeed, maxUploadSpeed);
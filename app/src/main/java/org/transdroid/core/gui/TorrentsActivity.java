@@ -61,12 +61,16 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.cookie.BasicClientCookie;
 import org.transdroid.R;
+import org.transdroid.core.app.queue.PendingActionQueue;
 import org.transdroid.core.app.search.SearchHelper_;
 import org.transdroid.core.app.settings.ApplicationSettings;
 import org.transdroid.core.app.settings.ServerSetting;
 import org.transdroid.core.app.settings.SettingsUtils;
 import org.transdroid.core.app.settings.SystemSettings;
 import org.transdroid.core.app.settings.WebsearchSetting;
+import org.transdroid.core.app.snapshot.TorrentDetailsCache;
+import org.transdroid.core.app.snapshot.TorrentsSnapshot;
+import org.transdroid.core.app.snapshot.TorrentsSnapshotProvider;
 import org.transdroid.core.gui.lists.LocalTorrent;
 import org.transdroid.core.gui.lists.SimpleListItem;
 import org.transdroid.core.gui.log.Log;
@@ -84,6 +88,8 @@ import org.transdroid.core.gui.search.UrlEntryDialog;
 import org.transdroid.core.gui.settings.MainSettingsActivity_;
 import org.transdroid.core.service.AppUpdateJob;
 import org.transdroid.core.service.ConnectivityHelper;
+import org.transdroid.core.service.DaemonTaskExecutor;
+import org.transdroid.core.service.DaemonTaskExecutor.Lane;
 import org.transdroid.core.service.RssCheckerJob;
 import org.transdroid.core.service.ServerCheckerJob;
 import org.transdroid.core.widget.ListWidgetProvider;
@@ -94,7 +100,9 @@ import org.transdroid.daemon.Priority;
 import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentDetails;
 import org.transdroid.daemon.TorrentFile;
+import org.transdroid.daemon.TorrentTable;
 import org.transdroid.daemon.TorrentsSortBy;
+import org.transdroid.daemon.Warmable;
 import org.transdroid.daemon.task.AddByFileTask;
 import org.transdroid.daemon.task.AddByMagnetUrlTask;
 import org.transdroid.daemon.task.AddByUrlTask;
@@ -111,7 +119,6 @@ import org.transdroid.daemon.task.GetTorrentDetailsTaskSuccessResult;
 import org.transdroid.daemon.task.PauseTask;
 import org.transdroid.daemon.task.RemoveTask;
 import org.transdroid.daemon.task.ResumeTask;
-import org.transdroid.daemon.task.RetrieveTask;
 import org.transdroid.daemon.task.RetrieveTaskSuccessResult;
 import org.transdroid.daemon.task.SetAlternativeModeTask;
 import org.transdroid.daemon.task.SetDownloadLocationTask;
@@ -124,6 +131,8 @@ import org.transdroid.daemon.task.StopTask;
 import org.transdroid.daemon.task.ToggleFirstLastPieceDownloadTask;
 import org.transdroid.daemon.task.ToggleSequentialDownloadTask;
 import org.transdroid.daemon.util.HttpHelper;
+import org.transdroid.daemon.util.ServerHealth;
+import org.transdroid.daemon.util.TaskCancellation;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -188,6 +197,14 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
     protected ApplicationSettings applicationSettings;
     @Bean
     protected SystemSettings systemSettings;
+    @Bean
+    protected TorrentsSnapshotProvider snapshotProvider;
+    @Bean
+    protected TorrentDetailsCache detailsCache;
+    @Bean
+    protected DaemonTaskExecutor daemonTasks;
+    @Bean
+    protected PendingActionQueue pendingActions;
     @InstanceState
     protected NavigationFilter currentFilter = null;
     @InstanceState
@@ -210,6 +227,7 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
     private ActionBarDrawerToggle drawerToggle;
     private MenuItem searchMenu = null;
     private IDaemonAdapter currentConnection = null;
+    private IDaemonAdapter warmedConnection = null;
 
     // Auto refresh task
     private AsyncTask<Void, Void, Void> autoRefreshTask;
@@ -250,6 +268,13 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
         // Catch any uncaught exception to log it
         Thread.setDefaultUncaughtExceptionHandler(new LogUncaughtExceptionHandler(this, Thread.getDefaultUncaughtExceptionHandler()));
         super.onCreate(savedInstanceState);
+
+        // On a fresh start, already set up the connection to the server while the screen is being inflated
+        ServerSetting defaultServer = applicationSettings.getDefaultServer();
+        if (firstStart && defaultServer != null) {
+            warmedConnection = defaultServer.getServerAdapter(connectivityHelper.getConnectedNetworkName(), this);
+            warmUp(warmedConnection);
+        }
     }
 
     @AfterViews
@@ -557,10 +582,14 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
                 return;
             }
 
-            // Update connection to the newly selected server and refresh
-            currentConnection = server.getServerAdapter(connectivityHelper.getConnectedNetworkName(), this);
+            // Update connection to the newly selected server and refresh, no longer waiting for the old server
+            if (currentConnection != null) {
+                daemonTasks.cancel(this, currentConnection);
+            }
+            currentConnection = connectTo(server);
             applicationSettings.setLastUsedServer(server);
             serverSelectionView.updateCurrentServer(currentConnection);
+            serverStatusView.updateHealth(ServerHealth.get(currentConnection.getSettings()));
             if (forceNewConnection) {
                 serverSelectionView.updateCurrentFilter(currentFilter);
             }
@@ -574,6 +603,8 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
             }
             updateFragmentVisibility(true);
             refreshScreen();
+            // While the live list loads, show what we retrieved from this server last time
+            loadSnapshot(server);
             return;
 
         }
@@ -740,6 +771,13 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
         super.onPause();
     }
 
+    @Override
+    protected void onStop() {
+        // Results of reads are no longer shown, so abort those; actions that change a torrent are left to complete
+        daemonTasks.cancel(this);
+        super.onStop();
+    }
+
     @Override
     public boolean onSearchRequested() {
         if (searchMenu != null) {
@@ -892,100 +930,169 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
         }
     }
 
-    @Background
-    protected void refreshTorrents() {
-        String startConnectionId = currentConnection.getSettings().getIdString();
-        DaemonTaskResult result = RetrieveTask.create(currentConnection).execute(log);
-        if (!startConnectionId.equals(currentConnection.getSettings().getIdString())) {
-            // During the command execution the user changed the server, so we are no longer interested in the result
-            return;
-        }
-        if (result instanceof RetrieveTaskSuccessResult) {
-            onTorrentsRetrieved(((RetrieveTaskSuccessResult) result).getTorrents(), ((RetrieveTaskSuccessResult) result).getLabels());
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, true);
+    /**
+     * Returns the connection to use for some server, which is the connection that was already warmed up on start if that
+     * was for the same server, or otherwise a new connection that is warmed up in parallel to the first refresh.
+     */
+    private IDaemonAdapter connectTo(ServerSetting server) {
+        IDaemonAdapter connection = warmedConnection;
+        warmedConnection = null;
+        if (connection == null || !server.equals(connection.getSettings())) {
+            connection = server.getServerAdapter(connectivityHelper.getConnectedNetworkName(), this);
+            warmUp(connection);
         }
+        return connection;
     }
 
-    @Background
-    public void refreshTorrentDetails(Torrent torrent) {
-        if (!Daemon.supportsFineDetails(currentConnection.getType())) {
-            return;
-        }
-        String startConnectionId = currentConnection.getSettings().getIdString();
-        DaemonTaskResult result = GetTorrentDetailsTask.create(currentConnection, torrent).execute(log);
-        if (!startConnectionId.equals(currentConnection.getSettings().getIdString())) {
-            // During the command execution the user changed the server, so we are no longer interested in the result
+    protected void warmUp(IDaemonAdapter connection) {
+        ServerHealth health = ServerHealth.get(connection.getSettings());
+        if (!(connection instanceof Warmable) || (health != null && health.getState() != ServerHealth.State.Reachable)) {
+            // Nothing to warm up, or the server is known to be unreachable for now
             return;
         }
-        if (result instanceof GetTorrentDetailsTaskSuccessResult) {
-            onTorrentDetailsRetrieved(torrent, ((GetTorrentDetailsTaskSuccessResult) result).getTorrentDetails());
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Prefetch, connection, this, warming -> {
+            try {
+                ((Warmable) warming).warmUp(log);
+            } catch (DaemonException e) {
+                // No need to report this: the refresh with this connection will fail (and be reported) as well
+                log.d(this, "Could not warm up connection to " + warming.getSettings().getName() + ": " + e.toString());
+            }
+        });
+    }
+
+    protected void refreshTorrents() {
+        daemonTasks.execute(Lane.Interactive, currentConnection, this, connection -> {
+            String startConnectionId = connection.getSettings().getIdString();
+            // Always ask for a new listing, but share it with the widgets and any retrieval that is already in flight
+            DaemonTaskResult result = snapshotProvider.retrieve(applicationSettings.getLastUsedServer(), connection, 0);
+            if (TaskCancellation.isCancelled() || !startConnectionId.equals(currentConnection.getSettings().getIdString())) {
+                // During the command execution the user changed the server or left the screen, so we are no longer
+                // interested in the result
+                return;
+            }
+            if (result instanceof RetrieveTaskSuccessResult) {
+                // The result is shared; the list screen only copies the table when it needs to change it
+                onTorrentsRetrieved(((RetrieveTaskSuccessResult) result).getTorrentTable(), ((RetrieveTaskSuccessResult) result).getLabels());
+            } else {
+                onCommunicationError((DaemonTaskFailureResult) result, true);
+            }
+        });
     }
 
     @Background
-    public void refreshTorrentFiles(Torrent torrent) {
-        if (!Daemon.supportsFileListing(currentConnection.getType())) {
-            return;
-        }
-        String startConnectionId = currentConnection.getSettings().getIdString();
-        DaemonTaskResult result = GetFileListTask.create(currentConnection, torrent).execute(log);
-        if (!startConnectionId.equals(currentConnection.getSettings().getIdString())) {
-            // During the command execution the user changed the server, so we are no longer interested in the result
-            return;
-        }
-        if (result instanceof GetFileListTaskSuccessResult) {
-            onTorrentFilesRetrieved(torrent, ((GetFileListTaskSuccessResult) result).getFiles());
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
+    protected void loadSnapshot(ServerSetting server) {
+        TorrentsSnapshot snapshot = snapshotProvider.getLastKnown(server);
+        if (snapshot != null) {
+            onSnapshotLoaded(server, snapshot);
         }
     }
 
-    @Background
+    public void refreshTorrentDetails(Torrent torrent) {
+        daemonTasks.execute(Lane.Interactive, currentConnection, this, connection -> {
+            if (!Daemon.supportsFineDetails(connection.getType())) {
+                return;
+            }
+            // Show recently retrieved data directly and only revalidate it when it is not that fresh anymore
+            TorrentDetailsCache.Entry<TorrentDetails> cached = detailsCache.getDetails(connection, torrent);
+            if (cached != null) {
+                onTorrentDetailsRetrieved(torrent, cached.getValue());
+                if (cached.isFresh()) {
+                    return;
+                }
+            }
+            String startConnectionId = connection.getSettings().getIdString();
+            DaemonTaskResult result = GetTorrentDetailsTask.create(connection, torrent).execute(log);
+            if (TaskCancellation.isCancelled() || !startConnectionId.equals(currentConnection.getSettings().getIdString())) {
+                // During the command execution the user changed the server or left the screen, so we are no longer
+                // interested in the result
+                return;
+            }
+            if (result instanceof GetTorrentDetailsTaskSuccessResult) {
+                detailsCache.putDetails(connection, torrent, ((GetTorrentDetailsTaskSuccessResult) result).getTorrentDetails());
+                onTorrentDetailsRetrieved(torrent, ((GetTorrentDetailsTaskSuccessResult) result).getTorrentDetails());
+            } else {
+                onCommunicationError((DaemonTaskFailureResult) result, false);
+            }
+        });
+    }
+
+    public void refreshTorrentFiles(Torrent torrent) {
+        daemonTasks.execute(Lane.Interactive, currentConnection, this, connection -> {
+            if (!Daemon.supportsFileListing(connection.getType())) {
+                return;
+            }
+            // Show recently retrieved data directly and only revalidate it when it is not that fresh anymore
+            TorrentDetailsCache.Entry<List<TorrentFile>> cached = detailsCache.getFiles(connection, torrent);
+            if (cached != null) {
+                onTorrentFilesRetrieved(torrent, cached.getValue());
+                if (cached.isFresh()) {
+                    return;
+                }
+            }
+            String startConnectionId = connection.getSettings().getIdString();
+            DaemonTaskResult result = GetFileListTask.create(connection, torrent).execute(log);
+            if (TaskCancellation.isCancelled() || !startConnectionId.equals(currentConnection.getSettings().getIdString())) {
+                // During the command execution the user changed the server or left the screen, so we are no longer
+                // interested in the result
+                return;
+            }
+            if (result instanceof GetFileListTaskSuccessResult) {
+                detailsCache.putFiles(connection, torrent, ((GetFileListTaskSuccessResult) result).getFiles());
+                onTorrentFilesRetrieved(torrent, ((GetFileListTaskSuccessResult) result).getFiles());
+            } else {
+                onCommunicationError((DaemonTaskFailureResult) result, false);
+            }
+        });
+    }
+
     protected void getAdditionalStats() {
-        String startConnectionId = currentConnection.getSettings().getIdString();
-        DaemonTaskResult result = GetStatsTask.create(currentConnection).execute(log);
-        if (!startConnectionId.equals(currentConnection.getSettings().getIdString())) {
-            // During the command execution the user changed the server, so we are no longer interested in the result
-            return;
-        }
-        if (result instanceof GetStatsTaskSuccessResult) {
-            onTurtleModeRetrieved(((GetStatsTaskSuccessResult) result).isAlternativeModeEnabled());
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Interactive, currentConnection, this, connection -> {
+            String startConnectionId = connection.getSettings().getIdString();
+            DaemonTaskResult result = GetStatsTask.create(connection).execute(log);
+            if (TaskCancellation.isCancelled() || !startConnectionId.equals(currentConnection.getSettings().getIdString())) {
+                // During the command execution the user changed the server or left the screen, so we are no longer
+                // interested in the result
+                return;
+            }
+            if (result instanceof GetStatsTaskSuccessResult) {
+                onTurtleModeRetrieved(((GetStatsTaskSuccessResult) result).isAlternativeModeEnabled());
+            } else {
+                onCommunicationError((DaemonTaskFailureResult) result, false);
+            }
+        });
     }
 
-    @Background
     protected void updateTurtleMode(boolean enable) {
-        String startConnectionId = currentConnection.getSettings().getIdString();
-        DaemonTaskResult result = SetAlternativeModeTask.create(currentConnection, enable).execute(log);
-        if (!startConnectionId.equals(currentConnection.getSettings().getIdString())) {
-            // During the command execution the user changed the server, so we are no longer interested in the result
-            return;
-        }
-        if (result instanceof DaemonTaskSuccessResult) {
-            // Success; no need to retrieve it again - just update the visual indicator
-            onTurtleModeRetrieved(enable);
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            String startConnectionId = connection.getSettings().getIdString();
+            DaemonTaskResult result = SetAlternativeModeTask.create(connection, enable).execute(log);
+            if (TaskCancellation.isCancelled() || !startConnectionId.equals(currentConnection.getSettings().getIdString())) {
+                // During the command execution the user changed the server or left the screen, so we are no longer
+                // interested in the result
+                return;
+            }
+            if (result instanceof DaemonTaskSuccessResult) {
+                // Success; no need to retrieve it again - just update the visual indicator
+                onTurtleModeRetrieved(enable);
+            } else {
+                onCommunicationError((DaemonTaskFailureResult) result, false);
+            }
+        });
     }
 
-    @Background
     public void addTorrentByUrl(String url, String title) {
-        DaemonTaskResult result = AddByUrlTask.create(currentConnection, url, title).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_added, title));
-            refreshTorrents();
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            DaemonTaskResult result = AddByUrlTask.create(connection, url, title).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onActionSucceeded(connection, (DaemonTaskSuccessResult) result,
+                        getString(R.string.result_added, title));
+                refreshTorrents();
+            } else {
+                onActionFailed(connection, (DaemonTaskFailureResult) result);
+            }
+        });
     }
 
-    @Background
     public void addTorrentByMagnetUrl(String url, String title) {
 
         // Since v39 Chrome sends application/x-www-form-urlencoded magnet links and most torrent clients do not understand those, so decode first
@@ -1001,33 +1108,39 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
             return;
         }
 
-        AddByMagnetUrlTask addByMagnetUrlTask = AddByMagnetUrlTask.create(currentConnection, url);
-        if (!Daemon.supportsAddByMagnetUrl(currentConnection.getType())) {
-            // No support for magnet links: forcefully let the task fail to report the error
-            onCommunicationError(new DaemonTaskFailureResult(addByMagnetUrlTask, new DaemonException(DaemonException.ExceptionType.MethodUnsupported,
-                    currentConnection.getType().name() + " does not support magnet links")), false);
-            return;
-        }
+        final String magnetUrl = url;
+        final String magnetTitle = title;
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            AddByMagnetUrlTask addByMagnetUrlTask = AddByMagnetUrlTask.create(connection, magnetUrl);
+            if (!Daemon.supportsAddByMagnetUrl(connection.getType())) {
+                // No support for magnet links: forcefully let the task fail to report the error
+                onCommunicationError(new DaemonTaskFailureResult(addByMagnetUrlTask, new DaemonException(DaemonException.ExceptionType.MethodUnsupported,
+                        connection.getType().name() + " does not support magnet links")), false);
+                return;
+            }
 
-        DaemonTaskResult result = addByMagnetUrlTask.execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_added, title));
-            refreshTorrents();
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+            DaemonTaskResult result = addByMagnetUrlTask.execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onActionSucceeded(connection, (DaemonTaskSuccessResult) result,
+                        getString(R.string.result_added, magnetTitle));
+                refreshTorrents();
+            } else {
+                onActionFailed(connection, (DaemonTaskFailureResult) result);
+            }
+        });
 
     }
 
-    @Background
     protected void addTorrentByFile(String localFile, String title) {
-        DaemonTaskResult result = AddByFileTask.create(currentConnection, localFile).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_added, title));
-            refreshTorrents();
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            DaemonTaskResult result = AddByFileTask.create(connection, localFile).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_added, title));
+                refreshTorrents();
+            } else {
+                onCommunicationError((DaemonTaskFailureResult) result, false);
+            }
+        });
     }
 
     private void addTorrentFromDownloads(Uri contentUri, String title) {
@@ -1124,171 +1237,227 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
         }
     }
 
-    @Background
     @Override
     public void resumeTorrent(Torrent torrent) {
-        torrent.mimicResume();
-        DaemonTaskResult result = ResumeTask.create(currentConnection, torrent).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_resumed, torrent.getName()));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            torrent.mimicResume();
+            DaemonTaskResult result = ResumeTask.create(connection, torrent).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onActionSucceeded(connection, (DaemonTaskSuccessResult) result,
+                        getString(R.string.result_resumed, torrent.getName()));
+            } else {
+                onActionFailed(connection, (DaemonTaskFailureResult) result);
+            }
+        });
     }
 
-    @Background
     @Override
     public void pauseTorrent(Torrent torrent) {
-        torrent.mimicPause();
-        DaemonTaskResult result = PauseTask.create(currentConnection, torrent).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_paused, torrent.getName()));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            torrent.mimicPause();
+            DaemonTaskResult result = PauseTask.create(connection, torrent).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onActionSucceeded(connection, (DaemonTaskSuccessResult) result,
+                        getString(R.string.result_paused, torrent.getName()));
+            } else {
+                onActionFailed(connection, (DaemonTaskFailureResult) result);
+            }
+        });
     }
 
-    @Background
     @Override
     public void startTorrent(Torrent torrent, boolean forced) {
-        torrent.mimicStart();
-        DaemonTaskResult result = StartTask.create(currentConnection, torrent, forced).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_started, torrent.getName()));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            torrent.mimicStart();
+            DaemonTaskResult result = StartTask.create(connection, torrent, forced).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onActionSucceeded(connection, (DaemonTaskSuccessResult) result,
+                        getString(R.string.result_started, torrent.getName()));
+            } else {
+                onActionFailed(connection, (DaemonTaskFailureResult) result);
+            }
+        });
     }
 
-    @Background
     @Override
     public void stopTorrent(Torrent torrent) {
-        torrent.mimicStop();
-        DaemonTaskResult result = StopTask.create(currentConnection, torrent).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_stopped, torrent.getName()));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            torrent.mimicStop();
+            DaemonTaskResult result = StopTask.create(connection, torrent).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onActionSucceeded(connection, (DaemonTaskSuccessResult) result,
+                        getString(R.string.result_stopped, torrent.getName()));
+            } else {
+                onActionFailed(connection, (DaemonTaskFailureResult) result);
+            }
+        });
     }
 
-    @Background
     @Override
     public void removeTorrent(Torrent torrent, boolean withData) {
-        DaemonTaskResult result = RemoveTask.create(currentConnection, torrent, withData).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result,
-                    getString(withData ? R.string.result_removed_with_data : R.string.result_removed, torrent.getName()));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            DaemonTaskResult result = RemoveTask.create(connection, torrent, withData).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onActionSucceeded(connection, (DaemonTaskSuccessResult) result,
+                        getString(withData ? R.string.result_removed_with_data : R.string.result_removed, torrent.getName()));
+            } else {
+                onActionFailed(connection, (DaemonTaskFailureResult) result);
+            }
+        });
     }
 
-    @Background
     @Override
     public void updateLabel(Torrent torrent, String newLabel) {
-        torrent.mimicNewLabel(newLabel);
-        DaemonTaskResult result = SetLabelTask.create(currentConnection, torrent, newLabel == null ? "" : newLabel).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result,
-                    newLabel == null ? getString(R.string.result_labelremoved) : getString(R.string.result_labelset, newLabel));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            torrent.mimicNewLabel(newLabel);
+            DaemonTaskResult result = SetLabelTask.create(connection, torrent, newLabel == null ? "" : newLabel).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onActionSucceeded(connection, (DaemonTaskSuccessResult) result,
+                        newLabel == null ? getString(R.string.result_labelremoved) : getString(R.string.result_labelset, newLabel));
+            } else {
+                onActionFailed(connection, (DaemonTaskFailureResult) result);
+            }
+        });
     }
 
-    @Background
     @Override
     public void toggleSequentialDownload(Torrent torrent, boolean sequentialState) {
-        torrent.mimicSequentialDownload(sequentialState);
-        DaemonTaskResult result = ToggleSequentialDownloadTask.create(currentConnection, torrent).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_togglesequential));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            torrent.mimicSequentialDownload(sequentialState);
+            DaemonTaskResult result = ToggleSequentialDownloadTask.create(connection, torrent).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_togglesequential));
+            } else {
+                onCommunicationError((DaemonTaskFailureResult) result, false);
+            }
+        });
     }
 
-    @Background
     @Override
     public void toggleFirstLastPieceDownload(Torrent torrent, boolean firstLastPieceState) {
-        torrent.mimicFirstLastPieceDownload(firstLastPieceState);
-        DaemonTaskResult result = ToggleFirstLastPieceDownloadTask.create(currentConnection, torrent).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.action_toggle_firstlastpiece));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            torrent.mimicFirstLastPieceDownload(firstLastPieceState);
+            DaemonTaskResult result = ToggleFirstLastPieceDownloadTask.create(connection, torrent).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.action_toggle_firstlastpiece));
+            } else {
+                onCommunicationError((DaemonTaskFailureResult) result, false);
+            }
+        });
     }
 
-    @Background
     @Override
     public void forceRecheckTorrent(Torrent torrent) {
-        torrent.mimicCheckingStatus();
-        DaemonTaskResult result = ForceRecheckTask.create(currentConnection, torrent).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_recheckedstarted, torrent.getName()));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            torrent.mimicCheckingStatus();
+            DaemonTaskResult result = ForceRecheckTask.create(connection, torrent).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onActionSucceeded(connection, (DaemonTaskSuccessResult) result,
+                        getString(R.string.result_recheckedstarted, torrent.getName()));
+            } else {
+                onActionFailed(connection, (DaemonTaskFailureResult) result);
+            }
+        });
     }
 
-    @Background
     @Override
     public void updateTrackers(Torrent torrent, List<String> newTrackers) {
-        DaemonTaskResult result = SetTrackersTask.create(currentConnection, torrent, newTrackers).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_trackersupdated));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            DaemonTaskResult result = SetTrackersTask.create(connection, torrent, newTrackers).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_trackersupdated));
+            } else {
+                onCommunicationError((DaemonTaskFailureResult) result, false);
+            }
+        });
     }
 
-    @Background
     @Override
     public void updateLocation(Torrent torrent, String newLocation) {
-        DaemonTaskResult result = SetDownloadLocationTask.create(currentConnection, torrent, newLocation).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_locationset, newLocation));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            DaemonTaskResult result = SetDownloadLocationTask.create(connection, torrent, newLocation).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_locationset, newLocation));
+            } else {
+                onCommunicationError((DaemonTaskFailureResult) result, false);
+            }
+        });
     }
 
-    @Background
     @Override
     public void updatePriority(Torrent torrent, List<TorrentFile> files, Priority priority) {
-        DaemonTaskResult result = SetFilePriorityTask.create(currentConnection, torrent, priority, new ArrayList<>(files)).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_priotitiesset));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            DaemonTaskResult result = SetFilePriorityTask.create(connection, torrent, priority, new ArrayList<>(files)).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_priotitiesset));
+            } else {
+                onCommunicationError((DaemonTaskFailureResult) result, false);
+            }
+        });
     }
 
-    @Background
     public void updateMaxSpeeds(Integer maxDownloadSpeed, Integer maxUploadSpeed) {
-        DaemonTaskResult result = SetTransferRatesTask.create(currentConnection, maxUploadSpeed, maxDownloadSpeed).execute(log);
-        if (result instanceof DaemonTaskSuccessResult) {
-            onTaskSucceeded((DaemonTaskSuccessResult) result, getString(R.string.result_maxspeedsset));
-        } else {
-            onCommunicationError((DaemonTaskFailureResult) result, false);
-        }
+        daemonTasks.execute(Lane.Mutation, currentConnection, this, connection -> {
+            DaemonTaskResult result = SetTransferRatesTask.create(connection, maxUploadSpeed, maxDownloadSpeed).execute(log);
+            if (result instanceof DaemonTaskSuccessResult) {
+                onActionSucceeded(connection, (DaemonTaskSuccessResult) result,
+                        getString(R.string.result_maxspeedsset));
+            } else {
+                onActionFailed(connection, (DaemonTaskFailureResult) result);
+            }
+        });
     }
 
     @UiThread
     protected void onTaskSucceeded(DaemonTaskSuccessResult result, String successMessage) {
+        // Cached details and files of the affected torrent may be outdated now
+        detailsCache.invalidateAfter(result);
         // Refresh the screen as well
         refreshScreen();
         SnackbarManager.show(Snackbar.with(this).text(successMessage));
     }
 
+    /**
+     * Reports an action that succeeded, after dropping any queued actions that it made redundant; for example a queued
+     * pause should no longer be sent after the torrent was resumed
+     */
+    private void onActionSucceeded(IDaemonAdapter connection, DaemonTaskSuccessResult result,
+                                   String successMessage) {
+        ServerSetting server = applicationSettings.getLastUsedServer();
+        if (server != null && server.equals(connection.getSettings())) {
+            pendingActions.supersede(server, result.getTask());
+        }
+        onTaskSucceeded(result, successMessage);
+    }
+
+    /**
+     * Reports an action that failed, unless it failed because the server could not be reached: such actions are queued
+     * instead, to be sent once the server responds again
+     */
+    private void onActionFailed(IDaemonAdapter connection, DaemonTaskFailureResult result) {
+        ServerSetting server = applicationSettings.getLastUsedServer();
+        if (server != null && server.equals(connection.getSettings()) && pendingActions.offer(server, result)) {
+            onActionQueued();
+        } else {
+            onCommunicationError(result, false);
+        }
+    }
+
+    @UiThread
+    protected void onActionQueued() {
+        fragmentTorrents.updateIsLoading(false);
+        SnackbarManager.show(Snackbar.with(this).text(R.string.result_queued));
+    }
+
     @UiThread
     protected void onCommunicationError(DaemonTaskFailureResult result, boolean isCritical) {
         log.i(this, result.getException().toString());
         String error = getString(LocalTorrent.getResourceForDaemonException(result.getException()));
         SnackbarManager.show(Snackbar.with(this).text(error).colorResource(R.color.red).type(SnackbarType.MULTI_LINE));
         fragmentTorrents.updateIsLoading(false);
+        if (currentConnection != null) {
+            serverStatusView.updateHealth(ServerHealth.get(currentConnection.getSettings()));
+        }
         if (isCritical) {
             fragmentTorrents.updateError(error);
             if (fragmentDetails != null && fragmentDetails.isResumed()) {
@@ -1298,13 +1467,13 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
     }
 
     @UiThread
-    protected void onTorrentsRetrieved(List<Torrent> torrents, List<org.transdroid.daemon.Label> labels) {
+    protected void onTorrentsRetrieved(TorrentTable torrents, List<org.transdroid.daemon.Label> labels) {
 
         lastNavigationLabels = Label.convertToNavigationLabels(labels, getResources().getString(R.string.labels_unlabeled));
 
         // Report the newly retrieved list of torrents to the torrents fragment
         fragmentTorrents.updateIsLoading(false);
-        fragmentTorrents.updateTorrents(new ArrayList<>(torrents), lastNavigationLabels);
+        fragmentTorrents.updateTorrents(torrents, lastNavigationLabels);
 
         // Update the details fragment if the currently shown torrent is in the newly retrieved list
         if (fragmentDetails != null && fragmentDetails.isResumed()) {
@@ -1333,12 +1502,28 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
             preselectNavigationFilter = null;
         }
 
-        // Update the server status (counts and speeds) in the action bar
+        // Update the server status (counts, speeds and response time) in the action bar
         serverStatusView
                 .updateStatus(torrents, systemSettings.treatDormantAsInactive(), Daemon.supportsSetTransferRates(currentConnection.getType()));
+        serverStatusView.updateHealth(ServerHealth.get(currentConnection.getSettings()));
 
     }
 
+    @UiThread
+    protected void onSnapshotLoaded(ServerSetting server, TorrentsSnapshot snapshot) {
+        if (currentConnection == null || !server.equals(currentConnection.getSettings())) {
+            // The user switched to another server in the meantime
+            return;
+        }
+        // Show the stale list of torrents; the fragment ignores it if the live list was already received
+        ArrayList<Label> snapshotLabels =
+                Label.convertToNavigationLabels(snapshot.getLabels(), getResources().getString(R.string.labels_unlabeled));
+        fragmentTorrents.showSnapshot(TorrentTable.fromTorrents(snapshot.getTorrents()), snapshotLabels);
+        if (lastNavigationLabels == null) {
+            navigationListAdapter.updateLabels(snapshotLabels);
+        }
+    }
+
     @UiThread
     protected void onTorrentDetailsRetrieved(Torrent torrent, TorrentDetails torrentDetails) {
         // Update the details fragment with the new fine details for the shown torrent
@@ -58,6 +58,7 @@ import org.transdroid.daemon.Daemon;
 import org.transdroid.daemon.IDaemonAdapter;
 import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentDetails;
+import org.transdroid.daemon.TorrentTable;
 import org.transdroid.daemon.TorrentsComparator;
 import org.transdroid.daemon.TorrentsSortBy;
 import org.transdroid.daemon.task.DaemonTaskResult;
@@ -65,12 +66,8 @@ import org.transdroid.daemon.task.GetTorrentDetailsTask;
 import org.transdroid.daemon.task.GetTorrentDetailsTaskSuccessResult;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -88,7 +85,9 @@ import java.util.concurrent.TimeUnit;
 public class TorrentsFragment extends Fragment implements OnLabelPickedListener {
 
     // HACK Working around #391 while hopefully we rework the UI in the future to persist the list in db or something
-    protected static ArrayList<Torrent> torrents = null;
+    protected static TorrentTable torrents = null;
+    // Whether the table is shared with others (such as the widgets) and needs to be copied before changing it
+    protected static boolean torrentsShared = false;
     // Local data
     @Bean
     protected ApplicationSettings applicationSettings;
@@ -116,6 +115,8 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
     protected String connectionErrorMessage = null;
     @InstanceState
     protected Daemon daemonType;
+    @InstanceState
+    protected boolean isShowingSnapshot = false;
 
     // Views
     @ViewById
@@ -282,15 +283,37 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
     /**
      * Updates the list adapter to show a new list of torrent objects, replacing the old torrents completely
      *
-     * @param newTorrents The new, updated list of torrents
+     * @param newTorrents The new, updated table of torrents, which may be shared and is therefore never changed
      */
-    public void updateTorrents(ArrayList<Torrent> newTorrents, ArrayList<Label> currentLabels) {
+    public void updateTorrents(TorrentTable newTorrents, ArrayList<Label> currentLabels) {
         if (this.isDetached()) {
             return;
         }
 
         torrents = updateTorrentsWithTrackers(newTorrents);
+        torrentsShared = torrents == newTorrents;
+        this.currentLabels = currentLabels;
+        this.isShowingSnapshot = false;
+        applyAllFilters();
+    }
+
+    /**
+     * Shows a stored snapshot of the torrents list while the live list is still being loaded. The list is dimmed to mark
+     * it as stale and it is replaced as soon as live torrents are supplied via {@link #updateTorrents(TorrentTable, ArrayList)}.
+     *
+     * @param snapshotTorrents The torrents as they were last retrieved from the server
+     * @param currentLabels    The labels as they were last retrieved from the server
+     */
+    public void showSnapshot(TorrentTable snapshotTorrents, ArrayList<Label> currentLabels) {
+        if (this.isDetached() || torrents != null) {
+            // Live data arrived before the snapshot was loaded from disk
+            return;
+        }
+
+        torrents = snapshotTorrents;
+        torrentsShared = false;
         this.currentLabels = currentLabels;
+        this.isShowingSnapshot = true;
         applyAllFilters();
     }
 
@@ -305,18 +328,21 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
             return;
         }
 
-        // Remove the old torrent object first
-        Iterator<Torrent> iter = torrents.iterator();
-        while (iter.hasNext()) {
-            Torrent torrent = iter.next();
-            if (torrent.getUniqueID().equals(affected.getUniqueID())) {
-                iter.remove();
-                break;
-            }
+        if (torrents == null) {
+            return;
+        }
+        // Replace or remove the row of the old torrent, in our own copy of the table if it is shared
+        if (torrentsShared) {
+            torrents = torrents.copy();
+            torrentsShared = false;
         }
-        // In case it was an update, add the updated torrent object
-        if (!wasRemoved) {
-            torrents.add(affected);
+        if (wasRemoved) {
+            int row = torrents.indexOf(affected.getUniqueID());
+            if (row >= 0) {
+                torrents.remove(row);
+            }
+        } else {
+            torrents.update(affected);
         }
         // Now refresh the screen
         applyAllFilters();
@@ -330,6 +356,7 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
      */
     public void clear(boolean clearError, boolean clearFilter) {
         torrents = null;
+        isShowingSnapshot = false;
         if (clearError) {
             this.connectionErrorMessage = null;
         }
@@ -382,27 +409,27 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
             return;
         }
 
-        // Filter the list of torrents to show according to navigation and text filters
-        ArrayList<Torrent> filteredTorrents = new ArrayList<>(torrents);
-        if (currentNavigationFilter != null) {
-            // Remove torrents that do not match the selected navigation filter
-            for (Iterator<Torrent> torrentIter = filteredTorrents.iterator(); torrentIter.hasNext(); ) {
-                if (!currentNavigationFilter.matches(torrentIter.next(), systemSettings.treatDormantAsInactive())) {
-                    torrentIter.remove();
-                }
+        // Filter the rows of torrents to show according to navigation and text filters
+        int[] filteredRows = new int[torrents.size()];
+        int filteredCount = 0;
+        boolean dormantAsInactive = systemSettings.treatDormantAsInactive();
+        String textFilter = currentTextFilter == null ? null : currentTextFilter.toLowerCase(Locale.getDefault());
+        TorrentTable.Row row = torrents.row();
+        for (int i = 0; i < torrents.size(); i++) {
+            row.moveTo(i);
+            if (currentNavigationFilter != null && !currentNavigationFilter.matches(row, dormantAsInactive)) {
+                continue;
             }
-        }
-        if (currentTextFilter != null) {
-            // Remove torrents that do not contain the text filter string
-            for (Iterator<Torrent> torrentIter = filteredTorrents.iterator(); torrentIter.hasNext(); ) {
-                if (!torrentIter.next().getName().toLowerCase(Locale.getDefault()).contains(currentTextFilter.toLowerCase(Locale.getDefault()))) {
-                    torrentIter.remove();
-                }
+            if (textFilter != null && !row.getName().toLowerCase(Locale.getDefault()).contains(textFilter)) {
+                continue;
             }
+            filteredRows[filteredCount++] = i;
         }
 
-        // Sort the list of filtered torrents
-        Collections.sort(filteredTorrents, new TorrentsComparator(daemonType, this.currentSortOrder, this.currentSortDescending));
+        // Sort the filtered rows; torrent objects are only created for the list items that are shown
+        torrents.sort(filteredRows, filteredCount,
+                new TorrentsComparator(daemonType, this.currentSortOrder, this.currentSortDescending).forRows());
+        List<Torrent> filteredTorrents = torrents.asList(filteredRows, filteredCount);
 
         if (torrentsList != null && torrentsList.getAdapter() != null) {
             ((TorrentsAdapter) torrentsList.getAdapter()).update(filteredTorrents);
@@ -501,8 +528,9 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
         boolean hasError = connectionErrorMessage != null;
         nosettingsText.setVisibility(View.GONE);
         errorText.setVisibility(hasError ? View.VISIBLE : View.GONE);
-        torrentsList.setVisibility(!hasError && !isLoading && !isEmpty ? View.VISIBLE : View.GONE);
-        loadingProgress.setVisibility(!hasError && isLoading ? View.VISIBLE : View.GONE);
+        torrentsList.setVisibility(!hasError && (!isLoading || isShowingSnapshot) && !isEmpty ? View.VISIBLE : View.GONE);
+        torrentsList.setAlpha(isShowingSnapshot ? 0.5F : 1F);
+        loadingProgress.setVisibility(!hasError && isLoading && !isShowingSnapshot ? View.VISIBLE : View.GONE);
         emptyText.setVisibility(!hasError && !isLoading && isEmpty ? View.VISIBLE : View.GONE);
         swipeRefreshLayout.setEnabled(true);
     }
@@ -517,38 +545,44 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
         return (TorrentTasksExecutor) getActivity();
     }
 
-    private ArrayList<Torrent> updateTorrentsWithTrackers(ArrayList<Torrent> torrents) {
+    private TorrentTable updateTorrentsWithTrackers(TorrentTable torrents) {
         ServerSetting lastUsed = applicationSettings.getLastUsedServer();
         IDaemonAdapter currentConnection = lastUsed.getServerAdapter("", getActivity());
         ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        Map<Torrent, Future<?>> futureMap = new HashMap<>(); //using a map here in-case we want a list of failed torrents in the future
+        List<Future<Integer>> futures = new ArrayList<>(torrents.size()); // the future of each row, in order
 
-        for(Torrent torrent: torrents) {
-            Future<?> future = executor.submit(() -> {
+        for (int i = 0; i < torrents.size(); i++) {
+            Torrent torrent = torrents.get(i);
+            futures.add(executor.submit(() -> {
                 DaemonTaskResult result = GetTorrentDetailsTask.create(currentConnection, torrent).execute(new Log());
 
                 if (result instanceof GetTorrentDetailsTaskSuccessResult) {
-                    int numOfTrackers = ((GetTorrentDetailsTaskSuccessResult) result).getTorrentDetails().getTrackers().size();
-                    torrent.setNumberOfTrackers(numOfTrackers);
+                    return ((GetTorrentDetailsTaskSuccessResult) result).getTorrentDetails().getTrackers().size();
                 }
-            });
-            futureMap.put(torrent, future);
+                return null;
+            }));
         }
 
-        for (Map.Entry<Torrent, Future<?>> entry : futureMap.entrySet()) {
-            Torrent torrent = entry.getKey();
-            Future<?> future = entry.getValue();
-
+        // The given table may be shared, so the counts are written to a copy, which is only made once one is known
+        TorrentTable updated = torrents;
+        for (int i = 0; i < futures.size(); i++) {
+            Future<Integer> future = futures.get(i);
             try {
                 //wait 1 sec max to get result
-                future.get(1, TimeUnit.SECONDS);
+                Integer numOfTrackers = future.get(1, TimeUnit.SECONDS);
+                if (numOfTrackers != null) {
+                    if (updated == torrents) {
+                        updated = torrents.copy();
+                    }
+                    updated.setNumberOfTrackers(i, numOfTrackers);
+                }
             } catch (Exception e) {
                 future.cancel(true);
-                log.d(LOG_NAME, "Unable to fetch number of trackers for: " + torrent.getName() + " -> " + e.getMessage());
+                log.d(LOG_NAME, "Unable to fetch number of trackers for: " + torrents.get(i).getName() + " -> " + e.getMessage());
             }
         }
         executor.shutdown();
-        return torrents;
+        return updated;
     }
 
 }
@@ -21,12 +21,33 @@ import android.app.Application;
 import androidx.annotation.NonNull;
 import androidx.work.Configuration;
 
+import org.androidannotations.annotations.Bean;
 import org.androidannotations.annotations.EApplication;
+import org.transdroid.core.app.queue.PendingActionQueue;
 import org.transdroid.core.gui.log.Log;
+import org.transdroid.daemon.util.ServerCapabilities;
+import org.transdroid.daemon.util.ServerHealth;
+import org.transdroid.daemon.util.TlsSniSocketFactory;
+
+import java.io.File;
 
 @EApplication
 public class TransdroidApp extends Application implements Configuration.Provider {
 
+    @Bean
+    protected PendingActionQueue pendingActions;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Persist TLS sessions so that the first connection after a restart can still be resumed
+        TlsSniSocketFactory.setSessionCacheDir(new File(getCacheDir(), "tls_sessions"));
+        // Let adapters start with what they learned about their server last time
+        ServerCapabilities.setStorage(getSharedPreferences("server_capabilities", MODE_PRIVATE));
+        // Send the actions that were queued while a server was unreachable as soon as it responds again
+        ServerHealth.setListener(pendingActions);
+    }
+
     @NonNull
     @Override
     public Configuration getWorkManagerConfiguration() {
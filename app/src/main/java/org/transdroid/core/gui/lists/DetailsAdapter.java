@@ -29,6 +29,7 @@ import org.transdroid.daemon.TorrentFile;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * List adapter that holds a header view showing torrent details and show the list list contained by the torrent.
@@ -97,7 +98,7 @@ public class DetailsAdapter extends MergeAdapter {
         torrentFilesSeparatorAdapter.setViewEnabled(false);
         torrentFilesSeparatorAdapter.setViewVisibility(View.GONE);
         addAdapter(torrentFilesSeparatorAdapter);
-        this.torrentFilesAdapter = new TorrentFilesAdapter(context, new ArrayList<>());
+        this.torrentFilesAdapter = new TorrentFilesAdapter(context);
         addAdapter(torrentFilesAdapter);
 
     }
@@ -113,18 +114,29 @@ public class DetailsAdapter extends MergeAdapter {
     }
 
     /**
-     * Update the list of files contained in this torrent
+     * Update the tree of files contained in this torrent
      *
-     * @param torrentFiles The new list of files, or null if the list and header should be hidden
+     * @param torrentFiles The new tree of files, or null if the list and header should be hidden
      */
-    public void updateTorrentFiles(List<TorrentFile> torrentFiles) {
-        if (torrentFiles == null) {
-            torrentFilesAdapter.update(new ArrayList<>());
-            torrentFilesSeparatorAdapter.setViewVisibility(View.GONE);
-        } else {
-            torrentFilesAdapter.update(torrentFiles);
-            torrentFilesSeparatorAdapter.setViewVisibility(View.VISIBLE);
-        }
+    public void updateTorrentFiles(TorrentFilesTree torrentFiles) {
+        torrentFilesAdapter.update(torrentFiles);
+        torrentFilesSeparatorAdapter.setViewVisibility(torrentFiles == null ? View.GONE : View.VISIBLE);
+    }
+
+    /**
+     * Expands or collapses a folder in the shown files tree.
+     *
+     * @param folder The folder to toggle, as returned by {@link #getItem(int)}
+     */
+    public void toggleFolder(TorrentFilesTree.Folder folder) {
+        torrentFilesAdapter.toggle(folder);
+    }
+
+    /**
+     * Returns the paths of the currently expanded folders in the files tree, or null if no files are shown
+     */
+    public Set<String> getExpandedFolders() {
+        return torrentFilesAdapter.getExpandedPaths();
     }
 
     /**
@@ -186,31 +198,42 @@ public class DetailsAdapter extends MergeAdapter {
     protected static class TorrentFilesAdapter extends BaseAdapter {
 
         private final Context context;
-        private List<TorrentFile> items;
+        private TorrentFilesTree tree = null;
 
-        public TorrentFilesAdapter(Context context, List<TorrentFile> items) {
+        public TorrentFilesAdapter(Context context) {
             this.context = context;
-            this.items = items;
         }
 
         /**
-         * Allows updating of the full data list underlying this adapter, replacing all items
+         * Allows updating of the full files tree underlying this adapter, replacing all items
          *
-         * @param newItems The new list of files to display
+         * @param newTree The new tree of files to display, or null to show none
          */
-        public void update(List<TorrentFile> newItems) {
-            this.items = newItems;
+        public void update(TorrentFilesTree newTree) {
+            this.tree = newTree;
             notifyDataSetChanged();
         }
 
+        public void toggle(TorrentFilesTree.Folder folder) {
+            if (tree != null) {
+                tree.toggle(folder);
+                notifyDataSetChanged();
+            }
+        }
+
+        public Set<String> getExpandedPaths() {
+            return tree == null ? null : tree.getExpandedPaths();
+        }
+
         @Override
         public int getCount() {
-            return items.size();
+            // Only the rows of expanded folders are counted, so the list never holds views for collapsed files
+            return tree == null ? 0 : tree.getVisibleCount();
         }
 
         @Override
-        public TorrentFile getItem(int position) {
-            return items.get(position);
+        public Object getItem(int position) {
+            return tree.getVisibleItem(position);
         }
 
         @Override
@@ -226,7 +249,12 @@ public class DetailsAdapter extends MergeAdapter {
             } else {
                 torrentFileView = (TorrentFileView) convertView;
             }
-            torrentFileView.bind(getItem(position));
+            Object item = getItem(position);
+            if (item instanceof TorrentFilesTree.Folder) {
+                torrentFileView.bind((TorrentFilesTree.Folder) item, tree.getVisibleDepth(position));
+            } else {
+                torrentFileView.bind((TorrentFile) item, tree.getVisibleDepth(position));
+            }
             return torrentFileView;
         }
 
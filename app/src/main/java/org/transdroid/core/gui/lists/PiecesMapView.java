@@ -1,24 +1,46 @@
 package org.transdroid.core.gui.lists;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
 import android.view.View;
 
 import org.transdroid.R;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 class PiecesMapView extends View {
 
+    private static final byte STATE_NONE = 0;
+    private static final byte STATE_DOWNLOADING = 1;
+    private static final byte STATE_DONE = 2;
+    private static final byte STATE_PARTIAL = 3;
+
+    // Downsampling and drawing of the pieces happens off the UI thread, one map at a time
+    private static final Executor RENDER_EXECUTOR = Executors.newSingleThreadExecutor();
+
     private final float scale = getContext().getResources().getDisplayMetrics().density;
     private final int MINIMUM_HEIGHT = (int) (25 * scale);
     private final int MINIMUM_PIECE_WIDTH = (int) (2 * scale);
     private final Paint downloadingPaint = new Paint();
     private final Paint donePaint = new Paint();
     private final Paint partialDonePaint = new Paint();
-    private ArrayList<Integer> pieces = null;
+    private byte[] pieceStates = null;
+    private Bitmap piecesBitmap = null;
+
+    // A bitmap that is no longer shown and may be drawn into again by the next render
+    private final Object recycleLock = new Object();
+    private Bitmap recycledBitmap = null;
+
+    // Only accessed from the render executor thread
+    private byte[] renderedStates = null;
+    private int renderedWidth = 0;
+    private int renderedHeight = 0;
 
     public PiecesMapView(Context context) {
         super(context);
@@ -32,8 +54,20 @@ class PiecesMapView extends View {
     }
 
     public void setPieces(List<Integer> pieces) {
-        this.pieces = new ArrayList<>(pieces);
-        invalidate();
+        // Unbox the pieces into one byte per piece on the calling thread, so the renderer never touches the list
+        byte[] states = null;
+        if (pieces != null) {
+            states = new byte[pieces.size()];
+            int i = 0;
+            for (Integer piece : pieces) {
+                states[i++] = piece == null ? STATE_NONE : (byte) (int) piece;
+            }
+        }
+        if (Arrays.equals(states, this.pieceStates)) {
+            return;
+        }
+        this.pieceStates = states;
+        startRender();
     }
 
     @Override
@@ -43,104 +77,133 @@ class PiecesMapView extends View {
         setMeasuredDimension(ws, hs);
     }
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        startRender();
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        if (this.pieces == null) {
-            return;
+        // Only the cached bitmap is drawn; it is recomputed when the pieces or view size change
+        if (piecesBitmap != null) {
+            canvas.drawBitmap(piecesBitmap, 0, 0, null);
         }
+    }
 
-        int height = getHeight();
-        int width = getWidth();
-
-        // downscale
-        ArrayList<Integer> piecesScaled;
-        int pieceWidth;
-
-        pieceWidth = MINIMUM_PIECE_WIDTH;
-        piecesScaled = new ArrayList<>();
-
-        int bucketCount = (int) Math.ceil((double) width / (double) pieceWidth);
-        int bucketSize = (int) Math.floor((double) this.pieces.size() / (double) bucketCount);
-
-        // loop buckets
-        for (int i = 0; i < bucketCount; i++) {
-
-            // Get segment of pieces that fall into bucket
-            int start = i * bucketSize;
-
-            // If this is the last bucket, throw the remainder of the pieces array into it
-            int end = (i == bucketCount - 1) ? this.pieces.size() : (i + 1) * bucketSize;
+    private void startRender() {
+        final byte[] toRender = this.pieceStates;
+        final int width = getWidth();
+        final int height = getHeight();
+        if (toRender == null || width <= 0 || height <= 0) {
+            return;
+        }
+        RENDER_EXECUTOR.execute(() -> {
+            Bitmap rendered = render(toRender, width, height);
+            if (rendered == null) {
+                // Pieces states and size are the same as what is already shown
+                return;
+            }
+            // Renders are executed and posted in order, so the last posted bitmap is always the most recent
+            post(() -> {
+                if (piecesBitmap != null) {
+                    synchronized (recycleLock) {
+                        recycledBitmap = piecesBitmap;
+                    }
+                }
+                piecesBitmap = rendered;
+                invalidate();
+            });
+        });
+    }
 
-            ArrayList<Integer> bucket = new ArrayList<>(this.pieces.subList(start, end));
+    private Bitmap render(byte[] states, int width, int height) {
 
+        // Skip all work if nothing changed since the last render
+        int count = states.length;
+        if (width == renderedWidth && height == renderedHeight && Arrays.equals(states, renderedStates)) {
+            return null;
+        }
+        renderedStates = states;
+        renderedWidth = width;
+        renderedHeight = height;
+
+        // Downscale into buckets of at least the minimum piece width
+        int bucketCount = Math.min(count, (int) Math.ceil((double) width / (double) Math.max(1, MINIMUM_PIECE_WIDTH)));
+        byte[] buckets = new byte[bucketCount];
+        for (int b = 0; b < bucketCount; b++) {
+            int start = (int) ((long) b * count / bucketCount);
+            int end = (int) ((long) (b + 1) * count / bucketCount);
             int doneCount = 0;
-            int downloadingCount = 0;
-
-            // loop pieces in bucket
-            for (int j = 0; j < bucket.size(); j++) {
-                // Count downloading pieces
-                if (bucket.get(j) == 1) {
-                    downloadingCount++;
-                }
-                // Count finished pieces
-                else if (bucket.get(j) == 2) {
+            boolean downloading = false;
+            for (int p = start; p < end; p++) {
+                if (states[p] == STATE_DOWNLOADING) {
+                    // If a piece is downloading show bucket as downloading
+                    downloading = true;
+                    break;
+                } else if (states[p] == STATE_DONE) {
                     doneCount++;
                 }
             }
-
-            int state;
-            // If a piece is downloading show bucket as downloading
-            if (downloadingCount > 0) {
-                state = 1;
+            if (downloading) {
+                buckets[b] = STATE_DOWNLOADING;
+            } else if (doneCount == end - start) {
+                buckets[b] = STATE_DONE;
+            } else if (doneCount > 0) {
+                buckets[b] = STATE_PARTIAL;
+            } else {
+                buckets[b] = STATE_NONE;
             }
-            // If all pieces are done, show bucket as done
-            else if (doneCount == bucket.size()) {
-                state = 2;
-            }
-            // Some done pieces, show bucket as partially done
-            else if (doneCount > 0) {
-                state = 3;
+        }
+
+        // Draw the downscaled pieces, merging neighbouring buckets of the same state into one rectangle
+        Bitmap bitmap = obtainBitmap(width, height);
+        Canvas canvas = new Canvas(bitmap);
+        int b = 0;
+        while (b < bucketCount) {
+            byte state = buckets[b];
+            int run = b + 1;
+            while (run < bucketCount && buckets[run] == state) {
+                run++;
             }
-            // bucket is not downloaded
-            else {
-                state = 0;
+            Paint paint = getPaint(state);
+            if (paint != null) {
+                float left = (float) b * width / bucketCount;
+                float right = (float) run * width / bucketCount;
+                canvas.drawRect(left, 0, right, height, paint);
             }
-
-            piecesScaled.add(state);
+            b = run;
         }
+        return bitmap;
+    }
 
-        StringBuilder scaledPiecesString = new StringBuilder();
-        for (int s : piecesScaled) {
-            scaledPiecesString.append(s);
+    private Bitmap obtainBitmap(int width, int height) {
+        // Reuse the bitmap that was shown before the current one, if it has the right size
+        Bitmap bitmap;
+        synchronized (recycleLock) {
+            bitmap = recycledBitmap;
+            recycledBitmap = null;
         }
+        if (bitmap != null && bitmap.getWidth() == width && bitmap.getHeight() == height) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
 
-        // Draw downscaled peices
-        for (int i = 0; i < piecesScaled.size(); i++) {
-            int piece = piecesScaled.get(i);
-
-            if (piece == 0) {
-                continue;
-            }
-
-            Paint paint = new Paint();
-            switch (piece) {
-                case 1:
-                    paint = downloadingPaint;
-                    break;
-                case 2:
-                    paint = donePaint;
-                    break;
-                case 3:
-                    paint = partialDonePaint;
-                    break;
-            }
-            int x = i * pieceWidth;
-
-            canvas.drawRect(x, 0, x + pieceWidth, height, paint);
+    private Paint getPaint(byte state) {
+        switch (state) {
+            case STATE_DOWNLOADING:
+                return downloadingPaint;
+            case STATE_DONE:
+                return donePaint;
+            case STATE_PARTIAL:
+                return partialDonePaint;
+            default:
+                return null;
         }
     }
 
 }
-
@@ -23,15 +23,22 @@ import org.androidannotations.annotations.EViewGroup;
 import org.androidannotations.annotations.ViewById;
 import org.transdroid.R;
 import org.transdroid.daemon.TorrentFile;
+import org.transdroid.daemon.util.FileSizeConverter;
+
+import java.util.Locale;
 
 /**
- * View that represents some {@link TorrentFile} object and show the file's name, status and priority
+ * View that represents some {@link TorrentFile} object, or a folder of files, and show the file's name, status and
+ * priority, indented by its depth in the files tree
  *
  * @author Eric Kok
  */
 @EViewGroup(R.layout.list_item_torrentfile)
 public class TorrentFileView extends TorrentFilePriorityLayout {
 
+    private final int indentWidth = (int) (16 * getContext().getResources().getDisplayMetrics().density + 0.5f);
+    private int basePaddingLeft = -1;
+
     @ViewById
     protected TextView nameText, progressText, sizesText;
 
@@ -40,10 +47,36 @@ public class TorrentFileView extends TorrentFilePriorityLayout {
     }
 
     public void bind(TorrentFile torrentFile) {
-        nameText.setText(torrentFile.getName());
+        bind(torrentFile, 0);
+    }
+
+    public void bind(TorrentFile torrentFile, int depth) {
+        // Inside a folder the folder rows already show the path, so only the file's own name is needed
+        String name = torrentFile.getName();
+        String path = torrentFile.getRelativePath();
+        if (depth > 0 && path != null) {
+            name = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+        }
+        nameText.setText(name);
         sizesText.setText(torrentFile.getDownloadedAndTotalSizeText());
         progressText.setText(torrentFile.getProgressText());
         setPriority(torrentFile.getPriority());
+        setDepth(depth);
+    }
+
+    public void bind(TorrentFilesTree.Folder folder, int depth) {
+        nameText.setText((folder.isExpanded() ? "\u25BE " : "\u25B8 ") + folder.getName());
+        sizesText.setText(FileSizeConverter.getSize(folder.getDownloaded()) + " / " + FileSizeConverter.getSize(folder.getTotalSize()));
+        progressText.setText(String.format(Locale.getDefault(), "%.1f", folder.getPartDone() * 100) + "%");
+        setPriority(folder.getPriority());
+        setDepth(depth);
+    }
+
+    private void setDepth(int depth) {
+        if (basePaddingLeft < 0) {
+            basePaddingLeft = getPaddingLeft();
+        }
+        setPadding(basePaddingLeft + depth * indentWidth, getPaddingTop(), getPaddingRight(), getPaddingBottom());
     }
 
 }
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.gui.lists;
+
+import org.transdroid.daemon.Priority;
+import org.transdroid.daemon.TorrentFile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchical view on the files of a torrent, based on their relative paths. Folder sizes, progress and priority are
+ * aggregated while the tree is built, in a single pass over the files. Only the rows of expanded folders are
+ * materialized, so torrents with many thousands of files stay cheap to display. Building should happen off the UI
+ * thread; expanding and collapsing is done on the UI thread.
+ *
+ * @author Eric Kok
+ */
+public class TorrentFilesTree {
+
+    /**
+     * Torrents with at most this many files are shown fully expanded, like a plain files list
+     */
+    private static final int EXPAND_ALL_LIMIT = 100;
+
+    private static final Comparator<Folder> FOLDER_COMPARATOR = (a, b) -> a.name.compareTo(b.name);
+    private static final Comparator<TorrentFile> FILE_COMPARATOR = TorrentFile::compareTo;
+
+    private final Folder root;
+    private final int fileCount;
+    private Object[] visibleItems = new Object[0];
+    private int[] visibleDepths = new int[0];
+    private int visibleCount = 0;
+
+    private TorrentFilesTree(Folder root, int fileCount) {
+        this.root = root;
+        this.fileCount = fileCount;
+    }
+
+    /**
+     * Builds a tree from the given flat list of torrent files. This may take a while for very large torrents and should
+     * not be called on the UI thread.
+     *
+     * @param files         The files as retrieved from the server
+     * @param expandedPaths The paths of the folders to show expanded (for example, as kept from an earlier tree of the
+     *                      same torrent), or null to use a sensible default expansion
+     * @return The tree with its visible rows already flattened
+     */
+    public static TorrentFilesTree build(List<TorrentFile> files, Set<String> expandedPaths) {
+        Folder root = new Folder(null, "", "");
+        Folder[] ancestors = new Folder[16];
+        for (TorrentFile file : files) {
+
+            // Find or create the folders this file is in, remembering the chain of ancestors to update the aggregates
+            String[] parts = splitPath(file);
+            if (ancestors.length < parts.length) {
+                ancestors = Arrays.copyOf(ancestors, parts.length * 2);
+            }
+            Folder folder = root;
+            ancestors[0] = root;
+            for (int i = 0; i < parts.length - 1; i++) {
+                if (parts[i].isEmpty()) {
+                    continue;
+                }
+                folder = folder.getOrCreateFolder(parts[i]);
+                ancestors[folder.depth] = folder;
+            }
+            folder.addFile(file);
+            for (int i = 0; i <= folder.depth; i++) {
+                ancestors[i].aggregate(file);
+            }
+
+        }
+        root.seal();
+
+        TorrentFilesTree tree = new TorrentFilesTree(root, files.size());
+        if (expandedPaths != null) {
+            tree.applyExpanded(root, expandedPaths);
+        } else if (files.size() <= EXPAND_ALL_LIMIT) {
+            tree.expandAll(root);
+        } else {
+            // Open up the (common) chain of single folders at the top, such as the torrent's own root folder
+            Folder folder = root;
+            while (folder.folders.length == 1 && folder.files.length == 0) {
+                folder = folder.folders[0];
+                folder.expanded = true;
+            }
+        }
+        root.expanded = true;
+        tree.flatten();
+        return tree;
+    }
+
+    private static String[] splitPath(TorrentFile file) {
+        String path = file.getRelativePath();
+        if (path == null || path.isEmpty()) {
+            path = file.getName();
+        }
+        if (path == null) {
+            return new String[]{""};
+        }
+        return path.replace('\\', '/').split("/");
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Returns the number of rows that are currently visible, that is, all folders and files in expanded folders.
+     */
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    /**
+     * Returns the visible row item at some position, which is either a {@link Folder} or a {@link TorrentFile}.
+     */
+    public Object getVisibleItem(int position) {
+        return visibleItems[position];
+    }
+
+    /**
+     * Returns the nesting depth of the visible row at some position, where rows directly in the torrent root have depth
+     * 0.
+     */
+    public int getVisibleDepth(int position) {
+        return visibleDepths[position];
+    }
+
+    /**
+     * Expands a collapsed folder or collapses an expanded one, updating the visible rows accordingly.
+     *
+     * @param folder The folder (in this tree) to toggle
+     */
+    public void toggle(Folder folder) {
+        folder.expanded = !folder.expanded;
+        flatten();
+    }
+
+    /**
+     * Returns the paths of all folders that are currently expanded, such that they can be restored when the torrent's
+     * files are retrieved again.
+     */
+    public Set<String> getExpandedPaths() {
+        Set<String> paths = new HashSet<>();
+        collectExpanded(root, paths);
+        return paths;
+    }
+
+    private void collectExpanded(Folder folder, Set<String> paths) {
+        for (Folder child : folder.folders) {
+            if (child.expanded) {
+                paths.add(child.path);
+                collectExpanded(child, paths);
+            }
+        }
+    }
+
+    private void applyExpanded(Folder folder, Set<String> paths) {
+        for (Folder child : folder.folders) {
+            if (paths.contains(child.path)) {
+                child.expanded = true;
+                applyExpanded(child, paths);
+            }
+        }
+    }
+
+    private void expandAll(Folder folder) {
+        folder.expanded = true;
+        for (Folder child : folder.folders) {
+            expandAll(child);
+        }
+    }
+
+    private void flatten() {
+        visibleCount = 0;
+        flatten(root, -1);
+    }
+
+    private void flatten(Folder folder, int depth) {
+        // Folders are listed first, then the files; collapsed folders contribute only their own row
+        for (Folder child : folder.folders) {
+            addVisible(child, depth + 1);
+            if (child.expanded) {
+                flatten(child, depth + 1);
+            }
+        }
+        for (TorrentFile file : folder.files) {
+            addVisible(file, depth + 1);
+        }
+    }
+
+    private void addVisible(Object item, int depth) {
+        if (visibleCount == visibleItems.length) {
+            int newSize = Math.max(16, visibleItems.length * 2);
+            visibleItems = Arrays.copyOf(visibleItems, newSize);
+            visibleDepths = Arrays.copyOf(visibleDepths, newSize);
+        }
+        visibleItems[visibleCount] = item;
+        visibleDepths[visibleCount] = depth;
+        visibleCount++;
+    }
+
+    /**
+     * A folder in the torrent, with the aggregated size, progress and priority of all files it contains.
+     */
+    public static final class Folder {
+
+        private final String name;
+        private final String path;
+        private final int depth;
+        private Map<String, Folder> folderLookup = new HashMap<>();
+        private List<TorrentFile> fileList = new ArrayList<>();
+        private Folder[] folders;
+        private TorrentFile[] files;
+        private boolean expanded = false;
+        private long totalSize = 0;
+        private long downloaded = 0;
+        private int containedFiles = 0;
+        private Priority priority = null;
+        private boolean mixedPriority = false;
+
+        private Folder(Folder parent, String name, String path) {
+            this.name = name;
+            this.path = path;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        private Folder getOrCreateFolder(String childName) {
+            Folder child = folderLookup.get(childName);
+            if (child == null) {
+                child = new Folder(this, childName, path + "/" + childName);
+                folderLookup.put(childName, child);
+            }
+            return child;
+        }
+
+        private void addFile(TorrentFile file) {
+            fileList.add(file);
+        }
+
+        private void aggregate(TorrentFile file) {
+            totalSize += file.getTotalSize();
+            downloaded += file.getDownloaded();
+            containedFiles++;
+            if (containedFiles == 1) {
+                priority = file.getPriority();
+            } else if (priority != file.getPriority()) {
+                mixedPriority = true;
+            }
+        }
+
+        private void seal() {
+            // Sort the children once and drop the lookup structures that are only needed while building
+            folders = folderLookup.values().toArray(new Folder[0]);
+            Arrays.sort(folders, FOLDER_COMPARATOR);
+            files = fileList.toArray(new TorrentFile[0]);
+            Arrays.sort(files, FILE_COMPARATOR);
+            folderLookup = null;
+            fileList = null;
+            for (Folder folder : folders) {
+                folder.seal();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public boolean isExpanded() {
+            return expanded;
+        }
+
+        public long getTotalSize() {
+            return totalSize;
+        }
+
+        public long getDownloaded() {
+            return downloaded;
+        }
+
+        public float getPartDone() {
+            return totalSize == 0 ? 1F : (float) downloaded / (float) totalSize;
+        }
+
+        /**
+         * Returns the priority that all contained files share, or null if the files have different priorities.
+         */
+        public Priority getPriority() {
+            return mixedPriority ? null : priority;
+        }
+
+        /**
+         * Adds all files contained in this folder and its sub-folders to the given collection.
+         *
+         * @param target The collection to add the files to
+         */
+        public void collectFiles(Collection<TorrentFile> target) {
+            for (Folder folder : folders) {
+                folder.collectFiles(target);
+            }
+            target.addAll(Arrays.asList(files));
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+    }
+
+}
@@ -25,7 +25,7 @@ import org.androidannotations.annotations.EBean;
 import org.androidannotations.annotations.RootContext;
 import org.transdroid.daemon.Torrent;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Adapter that contains a list of torrent objects to show.
@@ -37,14 +37,14 @@ public class TorrentsAdapter extends BaseAdapter {
 
     @RootContext
     protected Context context;
-    private ArrayList<Torrent> torrents = null;
+    private List<Torrent> torrents = null;
 
     /**
      * Allows updating the full internal list of torrents at once, replacing the old list
      *
-     * @param newTorrents The new list of torrent objects
+     * @param newTorrents The new list of torrent objects, which may be a view that creates its items on request
      */
-    public void update(ArrayList<Torrent> newTorrents) {
+    public void update(List<Torrent> newTorrents) {
         this.torrents = newTorrents;
         notifyDataSetChanged();
     }
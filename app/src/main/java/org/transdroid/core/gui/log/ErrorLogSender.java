@@ -28,6 +28,7 @@ import org.androidannotations.ormlite.annotations.OrmLiteDao;
 import org.transdroid.R;
 import org.transdroid.core.app.settings.ServerSetting;
 import org.transdroid.core.gui.navigation.NavigationHelper;
+import org.transdroid.daemon.util.RequestMetrics;
 
 import java.sql.SQLException;
 import java.util.List;
@@ -59,6 +60,8 @@ public class ErrorLogSender {
                 body.append(" settings: ");
                 body.append(serverSetting.getHumanReadableIdentifier());
             }
+            body.append("\n\nRequest metrics:\n");
+            body.append(RequestMetrics.getReport());
             body.append("\n\nConnection and error log:");
 
             // Print the individual error log messages as stored in the database
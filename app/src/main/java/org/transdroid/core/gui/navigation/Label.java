@@ -22,6 +22,7 @@ import android.text.TextUtils;
 
 import org.transdroid.core.gui.lists.SimpleListItem;
 import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.TorrentTable;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -127,6 +128,14 @@ public class Label implements SimpleListItem, NavigationFilter, Comparable<Label
         return torrent.getLabelName() != null && torrent.getLabelName().equals(name);
     }
 
+    @Override
+    public boolean matches(TorrentTable.Row torrent, boolean dormantAsInactive) {
+        if (isEmptyLabel) {
+            return TextUtils.isEmpty(torrent.getLabelName());
+        }
+        return torrent.getLabelName() != null && torrent.getLabelName().equals(name);
+    }
+
     @Override
     public int compareTo(Label another) {
         return this.name.compareTo(another.getName());
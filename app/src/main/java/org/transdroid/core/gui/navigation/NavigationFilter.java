@@ -19,6 +19,7 @@ package org.transdroid.core.gui.navigation;
 import android.os.Parcelable;
 
 import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.TorrentTable;
 
 /**
  * Represents a filter, used in the app navigation, that can check if some torrent matches the user-set filter
@@ -37,6 +38,16 @@ public interface NavigationFilter extends Parcelable {
      */
     boolean matches(Torrent torrent, boolean dormantAsInactive);
 
+    /**
+     * Implementations should check if the supplied row of a torrent table matches the filter, exactly as
+     * {@link #matches(Torrent, boolean)} does for torrent objects.
+     *
+     * @param torrent           The torrent row to check for matches
+     * @param dormantAsInactive If true, dormant (0KB/s, so no data transfer) torrents are never actively downloading or seeding
+     * @return True if the torrent matches the filter and should be shown in the current screen, false otherwise
+     */
+    boolean matches(TorrentTable.Row torrent, boolean dormantAsInactive);
+
     /**
      * Implementations should return a name that can be shown to indicate the active filter
      *
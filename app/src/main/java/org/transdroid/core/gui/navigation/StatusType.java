@@ -23,6 +23,7 @@ import android.os.Parcelable;
 import org.transdroid.R;
 import org.transdroid.core.gui.lists.SimpleListItem;
 import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.TorrentTable;
 
 import java.util.Arrays;
 import java.util.List;
@@ -153,6 +154,23 @@ public enum StatusType {
             }
         }
 
+        @Override
+        public boolean matches(TorrentTable.Row torrent, boolean dormantAsInactive) {
+            switch (statusType) {
+                case OnlyDownloading:
+                    return torrent.isDownloading(dormantAsInactive);
+                case OnlyUploading:
+                    return torrent.isSeeding(dormantAsInactive);
+                case OnlyActive:
+                    return torrent.isDownloading(dormantAsInactive)
+                            || torrent.isSeeding(dormantAsInactive);
+                case OnlyInactive:
+                    return !torrent.isDownloading(dormantAsInactive) && !torrent.isSeeding(dormantAsInactive);
+                default:
+                    return true;
+            }
+        }
+
         @Override
         public int describeContents() {
             return 0;
@@ -59,8 +59,10 @@ import org.transdroid.core.gui.remoterss.data.RemoteRssChannel;
 import org.transdroid.core.gui.remoterss.data.RemoteRssItem;
 import org.transdroid.core.gui.remoterss.data.RemoteRssSupplier;
 import org.transdroid.core.rssparser.Channel;
-import org.transdroid.core.rssparser.RssParser;
+import org.transdroid.core.rssparser.Item;
 import org.transdroid.core.service.ConnectivityHelper;
+import org.transdroid.core.service.RssFeedFetcher;
+import org.transdroid.core.service.RssSeenIndex;
 import org.transdroid.daemon.Daemon;
 import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.IDaemonAdapter;
@@ -82,6 +84,10 @@ public class RssFeedsActivity extends AppCompatActivity {
     protected Log log;
     @Bean
     protected ApplicationSettings applicationSettings;
+    @Bean
+    protected RssFeedFetcher rssFeedFetcher;
+    @Bean
+    protected RssSeenIndex rssSeenIndex;
     @FragmentById(R.id.rssfeeds_fragment)
     protected RssFeedsFragment fragmentLocalFeeds;
     @FragmentById(R.id.rssitems_fragment)
@@ -180,27 +186,37 @@ public class RssFeedsActivity extends AppCompatActivity {
     protected void loadRssfeed(RssfeedLoader loader) {
         try {
             // Load and parse the feed
-            RssParser parser =
-                    new RssParser(loader.getSetting().getUrl(), loader.getSetting().getExcludeFilter(), loader.getSetting().getIncludeFilter());
-            parser.parse();
-            handleRssfeedResult(loader, parser.getChannel(), false);
+            Channel channel = rssFeedFetcher.fetch(loader.getSetting());
+            handleRssfeedResult(loader, channel, rssSeenIndex.get(loader.getSetting().getUrl()), false);
         } catch (Exception e) {
             // Catch any error that may occurred and register this failure
-            handleRssfeedResult(loader, null, true);
+            handleRssfeedResult(loader, null, null, true);
             log.i(this, "RSS feed " + loader.getSetting().getUrl() + " error: " + e.toString());
         }
     }
 
+    /**
+     * Registers all given items of an RSS feed as seen by the user, such that they are no longer marked as new.
+     *
+     * @param feedUrl The url of the RSS feed that was viewed
+     * @param items   The items that are now seen
+     */
+    @Background
+    protected void markRssfeedSeen(String feedUrl, List<Item> items) {
+        rssSeenIndex.markSeen(feedUrl, items);
+    }
+
     /**
      * Stores the retrieved RSS feed content channel into the loader and updates the RSS feed in the feeds list fragment.
      *
      * @param loader   The RSS feed loader that was executed
-     * @param channel  The data that was retrieved, or null if it could not be parsed
-     * @param hasError True if a connection error occurred in the loading of the feed; false otherwise
+     * @param channel   The data that was retrieved, or null if it could not be parsed
+     * @param seenItems The items of this feed that the user saw before, or null if not known
+     * @param hasError  True if a connection error occurred in the loading of the feed; false otherwise
      */
     @UiThread
-    protected void handleRssfeedResult(RssfeedLoader loader, Channel channel, boolean hasError) {
-        loader.update(channel, hasError);
+    protected void handleRssfeedResult(RssfeedLoader loader, Channel channel, RssSeenIndex.SeenItems seenItems, boolean hasError) {
+        loader.update(channel, hasError, seenItems);
 
         fragmentLocalFeeds.notifyDataSetChanged();
     }
@@ -225,6 +241,7 @@ public class RssFeedsActivity extends AppCompatActivity {
                     lastViewedItemUrl = loader.getChannel().getItems().get(0).getTheLink();
                 }
                 applicationSettings.setRssfeedLastViewer(loader.getSetting().getOrder(), new Date(), lastViewedItemUrl);
+                markRssfeedSeen(loader.getSetting().getUrl(), new ArrayList<>(loader.getChannel().getItems()));
             }
             fragmentItems.update(loader.getChannel(), loader.hasError(), loader.getSetting().requiresExternalAuthentication());
 
@@ -248,6 +265,7 @@ public class RssFeedsActivity extends AppCompatActivity {
                     lastViewedItemUrl = loader.getChannel().getItems().get(0).getTheLink();
                 }
                 applicationSettings.setRssfeedLastViewer(loader.getSetting().getOrder(), new Date(), lastViewedItemUrl);
+                markRssfeedSeen(loader.getSetting().getUrl(), new ArrayList<>(loader.getChannel().getItems()));
             }
 
             String name = loader.getChannel().getTitle();
@@ -19,6 +19,7 @@ package org.transdroid.core.gui.rss;
 import org.transdroid.core.app.settings.RssfeedSetting;
 import org.transdroid.core.rssparser.Channel;
 import org.transdroid.core.rssparser.Item;
+import org.transdroid.core.service.RssSeenIndex;
 
 import java.util.Collections;
 import java.util.Date;
@@ -41,7 +42,15 @@ public class RssfeedLoader {
         this.setting = setting;
     }
 
-    public void update(Channel channel, boolean hasError) {
+    /**
+     * Stores the retrieved feed contents and determines which of its items are new.
+     *
+     * @param channel   The retrieved feed contents, or null if it could not be retrieved
+     * @param hasError  True if the feed could not be retrieved or parsed
+     * @param seenItems The items that the user has seen in this feed before, or null if this is not yet known, in which
+     *                  case the feed's last viewed date or item is used instead
+     */
+    public void update(Channel channel, boolean hasError, RssSeenIndex.SeenItems seenItems) {
         this.channel = channel;
         this.hasError = hasError;
         if (channel == null || channel.getItems() == null || hasError) {
@@ -57,11 +66,22 @@ public class RssfeedLoader {
         }
         newCount = 0;
         if (usePublishDate) {
-            // Count the number of new items, based on the date that this RSS feed was last viewed by the user
-            List<Item> items = channel.getItems();
             // Reverse-order sort the items on their published date
-            Collections.sort(items, (lhs, rhs) ->
+            Collections.sort(channel.getItems(), (lhs, rhs) ->
                     -lhs.getPubdate().compareTo(rhs.getPubdate()));
+        }
+        if (seenItems != null) {
+            // Items are new if the user did not see them before, regardless of their order or dates
+            for (Item item : channel.getItems()) {
+                boolean isNew = !seenItems.contains(item);
+                if (isNew) {
+                    newCount++;
+                }
+                item.setIsNew(isNew);
+            }
+        } else if (usePublishDate) {
+            // Count the number of new items, based on the date that this RSS feed was last viewed by the user
+            List<Item> items = channel.getItems();
             for (Item item : items) {
                 if (item.getPubdate() == null || setting.getLastViewed() == null || item.getPubdate().after(setting.getLastViewed())) {
                     newCount++;
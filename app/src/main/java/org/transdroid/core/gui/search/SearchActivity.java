@@ -44,6 +44,7 @@ import org.androidannotations.annotations.OptionsItem;
 import org.androidannotations.annotations.SystemService;
 import org.androidannotations.annotations.ViewById;
 import org.transdroid.R;
+import org.transdroid.core.app.search.MultiSearchSite;
 import org.transdroid.core.app.search.SearchHelper;
 import org.transdroid.core.app.search.SearchHelper.SearchSortOrder;
 import org.transdroid.core.app.search.SearchSite;
@@ -282,8 +283,21 @@ public class SearchActivity extends AppCompatActivity {
         TorrentsActivity_.intent(this).flags(Intent.FLAG_ACTIVITY_CLEAR_TOP).start();
     }
 
-    @OptionsItem(R.id.action_refresh)
     protected void refreshSearch() {
+        refreshSearch(true);
+    }
+
+    @OptionsItem(R.id.action_refresh)
+    protected void reloadSearch() {
+        refreshSearch(false);
+    }
+
+    /**
+     * Searches the last used site with the last used query.
+     *
+     * @param allowRecent Whether the results of a recent equal search may be shown, rather than searching again
+     */
+    private void refreshSearch(boolean allowRecent) {
 
         if (searchMenu != null) {
             // Close the search view in the action bar
@@ -297,7 +311,7 @@ public class SearchActivity extends AppCompatActivity {
             startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(websearch.getBaseUrl().replace("%s", lastUsedQuery))));
             finish();
 
-        } else if (lastUsedSite instanceof SearchSite) {
+        } else if (lastUsedSite instanceof SearchSite || lastUsedSite instanceof MultiSearchSite) {
 
             // Save the search site currently used to search for future usage
             applicationSettings.setLastUsedSearchSite(lastUsedSite);
@@ -306,7 +320,7 @@ public class SearchActivity extends AppCompatActivity {
                 getSupportActionBar()
                         .setTitle(NavigationHelper.buildCondensedFontString(getString(R.string.search_queryonsite, lastUsedQuery, lastUsedSite.getName())));
             // Ask the results fragment to start a search for the specified query
-            fragmentResults.startSearch(lastUsedQuery, (SearchSite) lastUsedSite, applicationSettings.getLastUsedSearchSortOrder());
+            fragmentResults.startSearch(lastUsedQuery, lastUsedSite, applicationSettings.getLastUsedSearchSortOrder(), allowRecent);
 
         }
     }
@@ -45,6 +45,7 @@ import org.androidannotations.annotations.ItemClick;
 import org.androidannotations.annotations.UiThread;
 import org.androidannotations.annotations.ViewById;
 import org.transdroid.R;
+import org.transdroid.core.app.search.MultiSearchSite;
 import org.transdroid.core.app.search.SearchHelper;
 import org.transdroid.core.app.search.SearchHelper.SearchSortOrder;
 import org.transdroid.core.app.search.SearchResult;
@@ -70,6 +71,7 @@ public class SearchResultsFragment extends Fragment {
     protected String resultsSource;
     @Bean
     protected SearchHelper searchHelper;
+    private int searchId = 0;
 
     // Views
     @ViewById(R.id.searchresults_list)
@@ -175,17 +177,62 @@ public class SearchResultsFragment extends Fragment {
 
     }
 
-    public void startSearch(String query, SearchSite site, SearchSortOrder sortBy) {
+    /**
+     * Starts a search on one or multiple in-app search sites, or shows the results of a recent equal search directly.
+     *
+     * @param query       The search query
+     * @param site        The {@link SearchSite} or {@link MultiSearchSite} to search
+     * @param sortBy      The sort order to request from the site(s)
+     * @param allowRecent Whether the results of a recent equal search may be shown instead of searching again
+     */
+    public void startSearch(String query, SearchSetting site, SearchSortOrder sortBy, boolean allowRecent) {
+        searchId++;
+        ArrayList<SearchResult> recent = allowRecent ? searchHelper.getRecentResults(query, site, sortBy) : null;
+        if (recent != null) {
+            results = recent;
+            resultsSource = getResultsSource(site);
+            showResults();
+            return;
+        }
         loadingProgress.setVisibility(View.VISIBLE);
         resultsList.setVisibility(View.GONE);
         emptyText.setVisibility(View.GONE);
-        performSearch(query, site, sortBy);
+        if (site instanceof MultiSearchSite) {
+            performMultiSearch(searchId, query, (MultiSearchSite) site, sortBy);
+        } else {
+            performSearch(searchId, query, (SearchSite) site, sortBy);
+        }
+    }
+
+    private String getResultsSource(SearchSetting site) {
+        return site instanceof SearchSite && ((SearchSite) site).isPrivate() ? site.getKey() : null;
     }
 
     @Background
-    protected void performSearch(String query, SearchSite site, SearchSortOrder sortBy) {
-        results = searchHelper.search(query, site, sortBy);
-        resultsSource = site.isPrivate() ? site.getKey() : null;
+    protected void performSearch(int searchId, String query, SearchSite site, SearchSortOrder sortBy) {
+        ArrayList<SearchResult> siteResults = searchHelper.search(query, site, sortBy);
+        onSearchResults(searchId, siteResults, getResultsSource(site));
+    }
+
+    @Background
+    protected void performMultiSearch(final int searchId, String query, MultiSearchSite site, SearchSortOrder sortBy) {
+        ArrayList<SearchResult> merged = searchHelper.search(query, site, sortBy, (siteResults, sitesCompleted, sitesTotal) -> {
+            // Stream the results of the sites that answered so far into the list
+            if (!siteResults.isEmpty() && sitesCompleted < sitesTotal) {
+                onSearchResults(searchId, siteResults, null);
+            }
+        });
+        onSearchResults(searchId, merged, null);
+    }
+
+    @UiThread
+    protected void onSearchResults(int searchId, ArrayList<SearchResult> searchResults, String source) {
+        if (searchId != this.searchId) {
+            // Another search was started since
+            return;
+        }
+        results = searchResults;
+        resultsSource = source;
         showResults();
     }
 
@@ -203,6 +250,7 @@ public class SearchResultsFragment extends Fragment {
     }
 
     public void clearResults() {
+        searchId++;
         loadingProgress.setVisibility(View.GONE);
         resultsList.setVisibility(View.GONE);
         emptyText.setVisibility(View.VISIBLE);
@@ -59,7 +59,9 @@ public class SearchSiteView extends LinearLayout {
         // Clear and then asynchronously load the site's favicon
         // Uses the g.etfv.co service to resolve the favicon of any URL
         faviconImage.setImageDrawable(null);
-        navigationHelper.getImageCache().displayImage(String.format(GETFVO_URL, rssfeedLoader.getBaseUrl()), faviconImage);
+        if (rssfeedLoader.getBaseUrl() != null) {
+            navigationHelper.getImageCache().displayImage(String.format(GETFVO_URL, rssfeedLoader.getBaseUrl()), faviconImage);
+        }
 
     }
 
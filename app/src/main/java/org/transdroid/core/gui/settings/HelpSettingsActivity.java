@@ -21,6 +21,7 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.preference.Preference;
 import androidx.preference.Preference.OnPreferenceClickListener;
 
@@ -33,6 +34,7 @@ import org.transdroid.core.app.settings.SettingsPersistence;
 import org.transdroid.core.gui.log.ErrorLogSender;
 import org.transdroid.core.gui.navigation.DialogHelper;
 import org.transdroid.core.gui.navigation.NavigationHelper;
+import org.transdroid.daemon.util.RequestMetrics;
 
 @EActivity
 public class HelpSettingsActivity extends PreferenceCompatActivity {
@@ -56,6 +58,10 @@ public class HelpSettingsActivity extends PreferenceCompatActivity {
             return true;
         }
     };
+    private OnPreferenceClickListener onDiagnosticsClick = preference -> {
+        showDiagnostics();
+        return true;
+    };
     private OnPreferenceClickListener onInstallHelpClick = preference -> {
         startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(INSTALLHELP_URI)));
         return true;
@@ -80,12 +86,25 @@ public class HelpSettingsActivity extends PreferenceCompatActivity {
 
         // Handle outgoing links and preference changes
         findPreference("system_sendlog").setOnPreferenceClickListener(onSendLogClick);
+        findPreference("system_diagnostics").setOnPreferenceClickListener(onDiagnosticsClick);
         findPreference("system_installhelp").setOnPreferenceClickListener(onInstallHelpClick);
         findPreference("system_changelog").setOnPreferenceClickListener(onChangeLogClick);
         findPreference("system_about").setTitle(getString(R.string.pref_about, getString(R.string.app_name)));
         findPreference("system_about").setOnPreferenceClickListener(onAboutClick);
     }
 
+    /**
+     * Shows the request metrics that were recorded (since the app started) for every server and daemon method.
+     */
+    private void showDiagnostics() {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.pref_diagnostics)
+                .setMessage(RequestMetrics.getReport())
+                .setPositiveButton(android.R.string.ok, null)
+                .setNeutralButton(R.string.pref_diagnostics_reset, (dialog, which) -> RequestMetrics.reset())
+                .show();
+    }
+
     @OptionsItem(android.R.id.home)
     protected void navigateUp() {
         MainSettingsActivity_.intent(this).flags(Intent.FLAG_ACTIVITY_CLEAR_TOP).start();
@@ -228,8 +228,8 @@ public abstract class KeyBoundPreferencesActivity extends PreferenceCompatActivi
             pref.setSummary(sharedPrefs.getString(prefKey, ""));
             return;
         } else if (sharedPrefs.contains(prefKey) && pref instanceof ListPreference
-                && ((ListPreference) pref).getValue() != null) {
-            // List preferences show the selected list value
+                && ((ListPreference) pref).findIndexOfValue(((ListPreference) pref).getValue()) >= 0) {
+            // List preferences show the selected list value, if it is (still) one of the entries
             ListPreference listPreference = (ListPreference) pref;
             pref.setSummary(listPreference.getEntries()[listPreference.findIndexOfValue(listPreference.getValue())]);
             return;
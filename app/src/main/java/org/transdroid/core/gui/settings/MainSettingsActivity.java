@@ -37,6 +37,7 @@ import org.androidannotations.annotations.EActivity;
 import org.androidannotations.annotations.OnActivityResult;
 import org.androidannotations.annotations.OptionsItem;
 import org.transdroid.R;
+import org.transdroid.core.app.search.MultiSearchSite;
 import org.transdroid.core.app.search.SearchHelper;
 import org.transdroid.core.app.search.SearchSite;
 import org.transdroid.core.app.settings.ApplicationSettings;
@@ -240,6 +241,11 @@ public class MainSettingsActivity extends PreferenceCompatActivity {
         }
         List<String> siteNames = new ArrayList<>(websearches.size() + searchsites.size());
         List<String> siteValues = new ArrayList<>(websearches.size() + searchsites.size());
+        MultiSearchSite multiSite = applicationSettings.getMultiSearchSite(searchsites);
+        if (multiSite != null) {
+            siteNames.add(multiSite.getName());
+            siteValues.add(multiSite.getKey());
+        }
         for (SearchSite searchSite : searchsites) {
             siteNames.add(searchSite.getName());
             siteValues.add(searchSite.getKey());
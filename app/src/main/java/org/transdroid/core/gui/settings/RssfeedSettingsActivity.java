@@ -21,12 +21,18 @@ import android.content.Intent;
 import android.os.Bundle;
 
 import androidx.appcompat.app.AlertDialog;
+import androidx.preference.ListPreference;
 
 import org.androidannotations.annotations.EActivity;
 import org.androidannotations.annotations.OptionsItem;
 import org.androidannotations.annotations.OptionsMenu;
 import org.transdroid.R;
+import org.transdroid.core.app.settings.ApplicationSettings;
 import org.transdroid.core.app.settings.ApplicationSettings_;
+import org.transdroid.core.app.settings.ServerSetting;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Activity that allows for a configuration of some RSS feed. The key can be supplied to update an existing RSS feed setting instead of creating a new
@@ -47,7 +53,8 @@ public class RssfeedSettingsActivity extends KeyBoundPreferencesActivity {
         getSupportActionBar().setDisplayHomeAsUpEnabled(true);
 
         // Load the raw preferences to show in this screen
-        init(R.xml.pref_rssfeed, ApplicationSettings_.getInstance_(this).getMaxRssfeed());
+        ApplicationSettings applicationSettings = ApplicationSettings_.getInstance_(this);
+        init(R.xml.pref_rssfeed, applicationSettings.getMaxRssfeed());
         initTextPreference("rssfeed_name");
         initTextPreference("rssfeed_url");
         initBooleanPreference("rssfeed_alarmnew");
@@ -56,6 +63,28 @@ public class RssfeedSettingsActivity extends KeyBoundPreferencesActivity {
         // TODO: Replace this for cookies support like web searches
         initBooleanPreference("rssfeed_reqauth");
 
+        // Automatic downloads can target the default or any specific server
+        List<String> serverCodes = new ArrayList<>();
+        List<String> serverNames = new ArrayList<>();
+        serverCodes.add(Integer.toString(ApplicationSettings.DEFAULTSERVER_LASTUSED));
+        serverNames.add(getString(R.string.pref_rssautoserver_default));
+        for (ServerSetting serverSetting : applicationSettings.getAllServerSettings()) {
+            if (serverSetting.getUniqueIdentifier() != null) {
+                serverCodes.add(Integer.toString(serverSetting.getOrder()));
+                serverNames.add(serverSetting.getName());
+            }
+        }
+        ListPreference autoServerPreference = (ListPreference) findPreference("rssfeed_autoserver");
+        autoServerPreference.setEntries(serverNames.toArray(new String[0]));
+        autoServerPreference.setEntryValues(serverCodes.toArray(new String[0]));
+        initBooleanPreference("rssfeed_autodownload");
+        initTextPreference("rssfeed_autopattern", null, "rssfeed_autodownload");
+        initTextPreference("rssfeed_autominsize", null, "rssfeed_autodownload");
+        initTextPreference("rssfeed_automaxsize", null, "rssfeed_autodownload");
+        initListPreference("rssfeed_autoserver", Integer.toString(ApplicationSettings.DEFAULTSERVER_LASTUSED))
+                .setDependency("rssfeed_autodownload_" + key);
+        initTextPreference("rssfeed_autolabel", null, "rssfeed_autodownload");
+
     }
 
     @OptionsItem(android.R.id.home)
@@ -80,6 +80,7 @@ public class ServerSettingsActivity extends KeyBoundPreferencesActivity {
         initBooleanPreference("server_disableauth");
         initBooleanPreference("server_sslenabled");
         initBooleanPreference("server_localsslenabled");
+        initBooleanPreference("server_localrace");
         initBooleanPreference("server_ssltrustall", false, "server_sslenabled");
         initTextPreference("server_ssltrustkey", null, "server_sslenabled");
         onPreferencesChanged();
@@ -24,6 +24,7 @@ public class Item implements Parcelable {
     private int id;
     private String title;
     private String link;
+    private String guid;
     private String description;
     private Date pubDate;
     private String enclosureUrl;
@@ -48,6 +49,7 @@ public class Item implements Parcelable {
         enclosureType = in.readString();
         enclosureLength = in.readLong();
         isNew = in.readInt() == 1;
+        guid = in.readString();
     }
 
     public int getId() {
@@ -82,6 +84,19 @@ public class Item implements Parcelable {
         this.link = link;
     }
 
+    /**
+     * Returns the unique identifier that the feed gave to this item, which often, but not necessarily, is a link
+     *
+     * @return The item's guid, or null if the feed did not supply one
+     */
+    public String getGuid() {
+        return this.guid;
+    }
+
+    public void setGuid(String guid) {
+        this.guid = guid;
+    }
+
     public Date getPubdate() {
         return this.pubDate;
     }
@@ -162,6 +177,7 @@ public class Item implements Parcelable {
         out.writeString(enclosureType);
         out.writeLong(enclosureLength);
         out.writeInt(isNew ? 1 : 0);
+        out.writeString(guid);
     }
 
 }
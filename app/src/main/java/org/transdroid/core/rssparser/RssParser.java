@@ -4,10 +4,12 @@
  */
 package org.transdroid.core.rssparser;
 
-import android.text.TextUtils;
-
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
@@ -18,6 +20,7 @@ import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.params.HttpProtocolParams;
 import org.transdroid.daemon.util.HttpHelper;
+import org.transdroid.daemon.util.KeywordFilter;
 import org.transdroid.daemon.util.TlsSniSocketFactory;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -25,8 +28,6 @@ import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.IOException;
 import java.util.Date;
-import java.util.Iterator;
-import java.util.Locale;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -34,13 +35,21 @@ import javax.xml.parsers.SAXParserFactory;
 
 public class RssParser extends DefaultHandler {
 
+    // All feeds are retrieved with the same client, such that connections to the same host are reused
+    private static DefaultHttpClient sharedHttpClient = null;
+
     private final String urlString;
-    private final String[] excludeFilters;
-    private final String[] includeFilters;
+    private final KeywordFilter filter;
     private Channel channel;
     private StringBuilder text;
     private Item item;
     private boolean imageStatus;
+    private String ifNoneMatch = null;
+    private String ifModifiedSince = null;
+    private boolean notModified = false;
+    private String eTag = null;
+    private String lastModified = null;
+    private int maxItems = 0;
 
     /**
      * The constructor for the RSS parser; call {@link #parse()} to synchronously create an HTTP connection and parse
@@ -52,22 +61,7 @@ public class RssParser extends DefaultHandler {
      */
     public RssParser(String url, String excludeFilter, String includeFilter) {
         this.urlString = url;
-        if (!TextUtils.isEmpty(excludeFilter)) {
-            this.excludeFilters = excludeFilter.split("\\|");
-            for (int i = 0; i < excludeFilters.length; i++) {
-                excludeFilters[i] = excludeFilters[i].toUpperCase(Locale.getDefault());
-            }
-        } else {
-            this.excludeFilters = null;
-        }
-        if (!TextUtils.isEmpty(includeFilter)) {
-            this.includeFilters = includeFilter.split("\\|");
-            for (int i = 0; i < includeFilters.length; i++) {
-                includeFilters[i] = includeFilters[i].toUpperCase(Locale.getDefault());
-            }
-        } else {
-            this.includeFilters = null;
-        }
+        this.filter = KeywordFilter.get(excludeFilter, includeFilter);
         this.text = new StringBuilder();
     }
 
@@ -80,6 +74,51 @@ public class RssParser extends DefaultHandler {
         return this.channel;
     }
 
+    /**
+     * Limits the number of items that are parsed; once this many items (that match the filters) are found, the rest of
+     * the feed is skipped.
+     *
+     * @param maxItems The maximum number of items to parse, or 0 for no limit
+     */
+    public void setMaxItems(int maxItems) {
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * Makes the next {@link #parse()} a conditional request, such that the feed content is only retrieved and parsed
+     * if it changed since the given validators were received. Call {@link #isNotModified()} after parsing to see if the
+     * server reported that the feed was not modified, in which case no channel is available.
+     *
+     * @param eTag         The ETag header value as earlier received, or null
+     * @param lastModified The Last-Modified header value as earlier received, or null
+     */
+    public void setConditional(String eTag, String lastModified) {
+        this.ifNoneMatch = eTag;
+        this.ifModifiedSince = lastModified;
+    }
+
+    /**
+     * Returns whether the server reported (via a 304 status) that the feed did not change since the conditional
+     * validators were received.
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * Returns the ETag header value that the server returned with the feed, or null if it did not supply any
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Returns the Last-Modified header value that the server returned with the feed, or null if it did not supply any
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
     /**
      * Initialises an HTTP connection, retrieves the content and parses the RSS feed as standard XML.
      *
@@ -89,63 +128,70 @@ public class RssParser extends DefaultHandler {
      */
     public void parse() throws ParserConfigurationException, SAXException, IOException {
 
-        DefaultHttpClient httpclient = initialise();
-        HttpResponse result = httpclient.execute(new HttpGet(urlString));
-        SAXParserFactory spf = SAXParserFactory.newInstance();
-        if (spf != null) {
-            SAXParser sp = spf.newSAXParser();
-            sp.parse(result.getEntity().getContent(), this);
+        HttpGet request = new HttpGet(urlString);
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
         }
-
-        // Apply filters
-        if (channel != null && (includeFilters != null || excludeFilters != null)) {
-            Iterator<Item> i = channel.getItems().iterator();
-            while (i.hasNext()) {
-                if (!matchesFilters(i.next()))
-                    i.remove();
-            }
+        if (ifModifiedSince != null) {
+            request.addHeader("If-Modified-Since", ifModifiedSince);
         }
-
-    }
-
-    private boolean matchesFilters(Item next) {
-        String title = next.getTitle().toUpperCase();
-        if (includeFilters != null) {
-            boolean include = false;
-            for (String includeWord : includeFilters) {
-                if (includeWord.equals("") || title.contains(includeWord)) {
-                    include = true;
-                    break;
-                }
+        HttpResponse result = getHttpClient().execute(request);
+        if (result.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            // Feed did not change since it was last retrieved; nothing to parse
+            notModified = true;
+            if (result.getEntity() != null) {
+                result.getEntity().consumeContent();
             }
-            if (!include)
-                return false;
+            return;
         }
-        if (excludeFilters != null) {
-            for (String excludeWord : excludeFilters) {
-                if (!excludeWord.equals("") && title.contains(excludeWord))
-                    return false;
+        Header eTagHeader = result.getFirstHeader("ETag");
+        eTag = eTagHeader == null ? null : eTagHeader.getValue();
+        Header lastModifiedHeader = result.getFirstHeader("Last-Modified");
+        lastModified = lastModifiedHeader == null ? null : lastModifiedHeader.getValue();
+
+        // Items are filtered while parsing, so only matching items are retained
+        boolean stoppedEarly = false;
+        try {
+            SAXParserFactory spf = SAXParserFactory.newInstance();
+            if (spf != null) {
+                SAXParser sp = spf.newSAXParser();
+                sp.parse(result.getEntity().getContent(), this);
+            }
+        } catch (MaxItemsReachedException e) {
+            stoppedEarly = true;
+        } finally {
+            if (stoppedEarly) {
+                // Do not download the remainder of the feed just to return the connection to the pool
+                request.abort();
+            } else if (result.getEntity() != null) {
+                result.getEntity().consumeContent();
             }
         }
-        return true;
+
     }
 
-    private DefaultHttpClient initialise() {
+    private static synchronized DefaultHttpClient getHttpClient() {
+        if (sharedHttpClient != null) {
+            return sharedHttpClient;
+        }
 
         SchemeRegistry registry = new SchemeRegistry();
         registry.register(new Scheme("http", new PlainSocketFactory(), 80));
-        registry.register(new Scheme("https", new TlsSniSocketFactory(), 443));
+        registry.register(new Scheme("https", TlsSniSocketFactory.get(false, null), 443));
 
         HttpParams httpparams = new BasicHttpParams();
         HttpConnectionParams.setConnectionTimeout(httpparams, 5000);
         HttpConnectionParams.setSoTimeout(httpparams, 5000);
         HttpProtocolParams.setUserAgent(httpparams, HttpHelper.userAgent);
+        ConnManagerParams.setMaxTotalConnections(httpparams, 8);
+        ConnManagerParams.setMaxConnectionsPerRoute(httpparams, new ConnPerRouteBean(4));
         DefaultHttpClient httpclient = new DefaultHttpClient(new ThreadSafeClientConnManager(httpparams, registry),
                 httpparams);
 
         httpclient.addRequestInterceptor(HttpHelper.gzipRequestInterceptor);
         httpclient.addResponseInterceptor(HttpHelper.gzipResponseInterceptor);
 
+        sharedHttpClient = httpclient;
         return httpclient;
 
     }
@@ -171,7 +217,6 @@ public class RssParser extends DefaultHandler {
         /** Now lets check for an item */
         if (localName.equalsIgnoreCase("item") && (this.channel != null)) {
             this.item = createNewItem();
-            this.channel.addItem(this.item);
         }
 
         /** Now lets check for an image */
@@ -200,15 +245,24 @@ public class RssParser extends DefaultHandler {
     /**
      * This is where we actually parse for the elements contents
      */
-    public final void endElement(String uri, String localName, String qName) {
+    public final void endElement(String uri, String localName, String qName) throws SAXException {
         /** Check we have an RSS Feed */
         if (this.channel == null) {
             return;
         }
 
-        /** Check are at the end of an item */
-        if (localName.equalsIgnoreCase("item")) {
+        /** Check are at the end of an item, which is only kept if it matches the filters */
+        if (localName.equalsIgnoreCase("item") && this.item != null) {
+            Item completed = this.item;
             this.item = null;
+            this.text.setLength(0);
+            if (filter.matches(completed.getTitle())) {
+                this.channel.addItem(completed);
+                if (maxItems > 0 && this.channel.getItems().size() >= maxItems) {
+                    throw new MaxItemsReachedException();
+                }
+            }
+            return;
         }
 
         /** Check we are at the end of an image */
@@ -240,6 +294,11 @@ public class RssParser extends DefaultHandler {
             }
         }
 
+        /** Checking for the item's unique identifier */
+        if (localName.equalsIgnoreCase("guid") && (this.item != null)) {
+            this.item.setGuid(this.text.toString().trim());
+        }
+
         /** Checking for a description */
         if (localName.equalsIgnoreCase("description")) {
             /** Lets check we are in an item */
@@ -296,4 +355,13 @@ public class RssParser extends DefaultHandler {
         this.text.append(ch, start, length);
     }
 
+    /**
+     * Thrown from the SAX callbacks to stop parsing once the maximum number of items was found.
+     */
+    private static class MaxItemsReachedException extends SAXException {
+
+        private static final long serialVersionUID = 1L;
+
+    }
+
 }
@@ -53,6 +53,7 @@ public class DediseedboxSettings extends SeedboxSettingsImpl implements SeedboxS
                 null,
                 443,
                 null,
+                false,
                 443,
                 true,
                 true,
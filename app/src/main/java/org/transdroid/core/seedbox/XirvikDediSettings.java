@@ -57,6 +57,7 @@ public class XirvikDediSettings extends SeedboxSettingsImpl implements SeedboxSe
                 null,
                 0,
                 null,
+                false,
                 type == Daemon.uTorrent ? 5010 : 443,
                 type != Daemon.uTorrent,
                 type != Daemon.uTorrent,
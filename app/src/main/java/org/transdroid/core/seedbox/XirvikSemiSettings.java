@@ -56,6 +56,7 @@ public class XirvikSemiSettings extends SeedboxSettingsImpl implements SeedboxSe
                 null,
                 0,
                 null,
+                false,
                 443,
                 true,
                 true,
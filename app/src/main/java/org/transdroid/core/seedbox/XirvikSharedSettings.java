@@ -58,6 +58,7 @@ public class XirvikSharedSettings extends SeedboxSettingsImpl implements Seedbox
                 null,
                 0,
                 null,
+                false,
                 443,
                 true,
                 true,
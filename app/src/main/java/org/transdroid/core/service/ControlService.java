@@ -5,6 +5,7 @@ import android.appwidget.AppWidgetManager;
 import android.content.Intent;
 import org.androidannotations.annotations.Bean;
 import org.androidannotations.annotations.EService;
+import org.transdroid.core.app.queue.PendingActionQueue;
 import org.transdroid.core.app.settings.ApplicationSettings;
 import org.transdroid.core.app.settings.ServerSetting;
 import org.transdroid.core.gui.log.Log;
@@ -13,6 +14,7 @@ import org.transdroid.core.widget.ListWidgetProvider;
 import org.transdroid.core.widget.ListWidgetProvider_;
 import org.transdroid.daemon.IDaemonAdapter;
 import org.transdroid.daemon.task.DaemonTask;
+import org.transdroid.daemon.task.DaemonTaskFailureResult;
 import org.transdroid.daemon.task.DaemonTaskResult;
 import org.transdroid.daemon.task.DaemonTaskSuccessResult;
 import org.transdroid.daemon.task.PauseAllTask;
@@ -40,6 +42,8 @@ public class ControlService extends IntentService {
     protected ConnectivityHelper connectivityHelper;
     @Bean
     protected ApplicationSettings applicationSettings;
+    @Bean
+    protected PendingActionQueue pendingActions;
 
     public ControlService() {
         super("ControlService");
@@ -133,6 +137,11 @@ public class ControlService extends IntentService {
         if (result instanceof DaemonTaskSuccessResult) {
             log.i(this,
                     task.getMethod().name() + " was successfully executed on " + server.getHumanReadableIdentifier());
+            pendingActions.supersede(server, task);
+        } else if (pendingActions.offer(server, (DaemonTaskFailureResult) result)) {
+            log.i(this, task.getMethod().name() + " could not be sent to " + server.getHumanReadableIdentifier() +
+                    " and is queued until the server is reachable");
+            return;
         } else {
             log.i(this, task.getMethod().name() + " was NOT succcessfully executed on " +
                     server.getHumanReadableIdentifier() + " (and we are NOT trying again)");
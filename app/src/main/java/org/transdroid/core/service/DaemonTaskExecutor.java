@@ -0,0 +1,214 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.service;
+
+import org.androidannotations.annotations.EBean;
+import org.androidannotations.annotations.EBean.Scope;
+import org.transdroid.daemon.IDaemonAdapter;
+import org.transdroid.daemon.util.TaskCancellation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the daemon tasks of the screens, on dedicated threads rather than on the shared background executor. Jobs are
+ * started in order of their {@link Lane}, so a queued refresh always goes before a queued file listing or warm-up, and
+ * every server only gets a limited number of concurrent jobs, of which one is always kept free for interactive reads.
+ * A slow or hanging server can therefore never starve the refreshes of the list screen, nor the jobs of other servers.
+ * Reads and prefetches can be cancelled (for example when the user switches server or leaves the screen): queued jobs
+ * are dropped and running jobs have their HTTP or socket requests aborted, see {@link TaskCancellation}. Mutations are
+ * never cancelled, as the server might already have applied them.
+ *
+ * @author Eric Kok
+ */
+@EBean(scope = Scope.Singleton)
+public class DaemonTaskExecutor {
+
+    private static final int MAX_THREADS = 6;
+    private static final int MAX_PER_SERVER = 3;
+
+    /**
+     * The priority lane of a job; jobs in earlier lanes are started first
+     */
+    public enum Lane {
+        /**
+         * Reads of which the user awaits the results on screen, such as the torrents listing and torrent details
+         */
+        Interactive,
+        /**
+         * Actions that change the state on the server, such as adding or pausing a torrent
+         */
+        Mutation,
+        /**
+         * Work of which no results are shown directly, such as warming up a connection
+         */
+        Prefetch
+    }
+
+    public interface DaemonJob {
+        void run(IDaemonAdapter connection);
+    }
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final ExecutorService threads = Executors.newCachedThreadPool(
+            runnable -> new Thread(runnable, "DaemonTask-" + threadCount.incrementAndGet()));
+    private final List<Job> queued = new ArrayList<>();
+    private final List<Job> running = new ArrayList<>();
+
+    /**
+     * Queues a job that communicates with some server. The job gets the connection passed in when it runs, which is
+     * the connection that was current when the job was queued (and not whatever connection is current by then).
+     *
+     * @param lane       The priority lane to queue the job in
+     * @param connection The connection to the server that the job will talk to
+     * @param owner      The object (typically the activity) that queued the job and can cancel it
+     * @param job        The work to perform on a background thread
+     */
+    public void execute(Lane lane, IDaemonAdapter connection, Object owner, DaemonJob job) {
+        synchronized (this) {
+            queued.add(new Job(lane, connection, owner, job));
+            dispatch();
+        }
+    }
+
+    /**
+     * Cancels all reads and prefetches of some owner, both queued and running. See
+     * {@link #cancel(Object, IDaemonAdapter)}.
+     */
+    public void cancel(Object owner) {
+        cancel(owner, null);
+    }
+
+    /**
+     * Cancels the reads and prefetches of some owner for one server: queued jobs are dropped and running jobs are
+     * aborted. Queued and running mutations are left alone.
+     *
+     * @param owner      The owner whose jobs to cancel
+     * @param connection The connection to the server whose jobs to cancel, or null to cancel the jobs for all servers
+     */
+    public void cancel(Object owner, IDaemonAdapter connection) {
+        String server = connection == null ? null : getServerKey(connection);
+        List<Job> cancelled = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Job> iterator = queued.iterator(); iterator.hasNext(); ) {
+                Job job = iterator.next();
+                if (job.isCancellable(owner, server)) {
+                    iterator.remove();
+                }
+            }
+            for (Job job : running) {
+                if (job.isCancellable(owner, server)) {
+                    cancelled.add(job);
+                }
+            }
+        }
+        for (Job job : cancelled) {
+            job.cancellation.cancel();
+        }
+    }
+
+    /**
+     * Starts as many queued jobs as the limits allow, picking the oldest job of the highest priority lane first; must
+     * be called while holding the lock on this executor
+     */
+    private void dispatch() {
+        while (running.size() < MAX_THREADS) {
+            Job next = null;
+            for (Job job : queued) {
+                if ((next == null || job.lane.ordinal() < next.lane.ordinal()) && canStart(job)) {
+                    next = job;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            queued.remove(next);
+            running.add(next);
+            final Job started = next;
+            threads.execute(() -> run(started));
+        }
+    }
+
+    private boolean canStart(Job job) {
+        int forServer = 0;
+        int background = 0;
+        int backgroundForServer = 0;
+        for (Job other : running) {
+            boolean sameServer = other.server.equals(job.server);
+            if (sameServer) {
+                forServer++;
+            }
+            if (other.lane != Lane.Interactive) {
+                background++;
+                if (sameServer) {
+                    backgroundForServer++;
+                }
+            }
+        }
+        if (forServer >= MAX_PER_SERVER) {
+            return false;
+        }
+        // Keep one thread, globally and per server, available for interactive reads
+        return job.lane == Lane.Interactive || (background < MAX_THREADS - 1 && backgroundForServer < MAX_PER_SERVER - 1);
+    }
+
+    private void run(Job job) {
+        job.cancellation.begin();
+        try {
+            job.work.run(job.connection);
+        } finally {
+            job.cancellation.end();
+            synchronized (this) {
+                running.remove(job);
+                dispatch();
+            }
+        }
+    }
+
+    private static String getServerKey(IDaemonAdapter connection) {
+        String id = connection.getSettings() == null ? null : connection.getSettings().getIdString();
+        return id == null ? "" : id;
+    }
+
+    private static final class Job {
+
+        final Lane lane;
+        final IDaemonAdapter connection;
+        final String server;
+        final Object owner;
+        final DaemonJob work;
+        final TaskCancellation cancellation = new TaskCancellation();
+
+        Job(Lane lane, IDaemonAdapter connection, Object owner, DaemonJob work) {
+            this.lane = lane;
+            this.connection = connection;
+            this.server = getServerKey(connection);
+            this.owner = owner;
+            this.work = work;
+        }
+
+        boolean isCancellable(Object owner, String server) {
+            return lane != Lane.Mutation && this.owner == owner && (server == null || server.equals(this.server));
+        }
+
+    }
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.service;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import org.androidannotations.annotations.Bean;
+import org.androidannotations.annotations.EBean;
+import org.androidannotations.annotations.EBean.Scope;
+import org.androidannotations.annotations.RootContext;
+import org.transdroid.core.app.settings.ApplicationSettings;
+import org.transdroid.core.app.settings.RssfeedSetting;
+import org.transdroid.core.app.settings.ServerSetting;
+import org.transdroid.core.gui.log.Log;
+import org.transdroid.core.rssparser.Channel;
+import org.transdroid.core.rssparser.Item;
+import org.transdroid.daemon.Daemon;
+import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.IDaemonAdapter;
+import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.task.AddByMagnetUrlTask;
+import org.transdroid.daemon.task.AddByUrlTask;
+import org.transdroid.daemon.task.DaemonTaskFailureResult;
+import org.transdroid.daemon.task.DaemonTaskResult;
+import org.transdroid.daemon.task.RetrieveTask;
+import org.transdroid.daemon.task.RetrieveTaskSuccessResult;
+import org.transdroid.daemon.task.SetLabelTask;
+import org.transdroid.daemon.util.KeywordFilter;
+import org.transdroid.daemon.util.MagnetLinks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adds new RSS feed items to a server automatically, for feeds on which the user enabled automatic downloads. Every
+ * feed has a rule that matches items on title (together with the feed's exclude filter) and size and that selects the
+ * target server and label. Only items that appeared in the feed since it was last evaluated are considered, so enabling
+ * the rule does not download the full feed history. Matching items are grouped per target server and submitted to
+ * that server in one batch, using a single connection. Added torrents are remembered by their info hash (or, if
+ * unknown, their url), such that a release that appears in multiple feeds is only added once.
+ *
+ * @author Eric Kok
+ */
+@EBean(scope = Scope.Singleton)
+public class RssAutoDownloader {
+
+    private static final String INDEX_PROCESSED = "autodownload:processed";
+    private static final String INDEX_EVALUATED = "autodownload:evaluated:";
+
+    @RootContext
+    protected Context context;
+    @Bean
+    protected Log log;
+    @Bean
+    protected ApplicationSettings applicationSettings;
+    @Bean
+    protected ConnectivityHelper connectivityHelper;
+    @Bean
+    protected RssSeenIndex rssSeenIndex;
+
+    /**
+     * Evaluates the automatic download rules against the new items of the given feeds and adds all matching items to
+     * their target servers. This contacts the servers and thus should never be called on the UI thread.
+     *
+     * @param feeds    The settings of the retrieved feeds
+     * @param channels The contents of the feeds, in the same order as the feeds, with null for feeds that could not be
+     *                 retrieved
+     * @return The items that were successfully added to a server
+     */
+    public synchronized List<Download> process(List<RssfeedSetting> feeds, List<Channel> channels) {
+
+        // Match the new items of every feed against its rule, queueing them per target server
+        RssSeenIndex.SeenItems processed = rssSeenIndex.get(INDEX_PROCESSED);
+        Map<Integer, List<Download>> batches = new LinkedHashMap<>();
+        Map<String, List<Item>> evaluatedItems = new LinkedHashMap<>();
+        Set<String> queued = new HashSet<>();
+        for (int i = 0; i < feeds.size(); i++) {
+            RssfeedSetting feed = feeds.get(i);
+            Channel channel = channels.get(i);
+            if (!feed.shouldAutoDownload() || channel == null) {
+                continue;
+            }
+            ServerSetting server = getTargetServer(feed);
+            if (server == null) {
+                log.d(this, "Skip automatic downloads of " + feed.getName() + " as its target server does not exist");
+                continue;
+            }
+            String evaluatedIndex = INDEX_EVALUATED + feed.getUrl();
+            RssSeenIndex.SeenItems evaluated = rssSeenIndex.get(evaluatedIndex);
+            evaluatedItems.put(evaluatedIndex, new ArrayList<>(channel.getItems()));
+            if (evaluated == null) {
+                // First evaluation of this feed: only remember the items that are in it now
+                continue;
+            }
+            KeywordFilter rule = KeywordFilter.get(feed.getExcludeFilter(), feed.getAutoDownloadPattern());
+            for (Item item : channel.getItems()) {
+                if (evaluated.contains(item) || !matches(feed, rule, item)) {
+                    continue;
+                }
+                String key = getDownloadKey(item);
+                if (key == null || (processed != null && processed.containsKey(key)) || !queued.add(key)) {
+                    continue;
+                }
+                List<Download> batch = batches.get(server.getOrder());
+                if (batch == null) {
+                    batch = new ArrayList<>();
+                    batches.put(server.getOrder(), batch);
+                }
+                batch.add(new Download(feed, server, item, key, evaluatedIndex));
+            }
+        }
+
+        // Submit each batch to its server; items that could not be added because the server was unreachable are
+        // evaluated again next time, while items that can never be added (such as magnets for a server without magnet
+        // support) stay evaluated
+        List<Download> added = new ArrayList<>();
+        for (List<Download> batch : batches.values()) {
+            List<Download> retry = new ArrayList<>();
+            added.addAll(submit(batch, retry));
+            for (Download download : retry) {
+                evaluatedItems.get(download.evaluatedIndex).remove(download.item);
+            }
+        }
+
+        // Remember what was added and which items were evaluated
+        if (!added.isEmpty()) {
+            List<String> keys = new ArrayList<>(added.size());
+            for (Download download : added) {
+                keys.add(download.key);
+            }
+            rssSeenIndex.markSeenKeys(INDEX_PROCESSED, keys);
+        }
+        for (Map.Entry<String, List<Item>> evaluated : evaluatedItems.entrySet()) {
+            rssSeenIndex.markSeen(evaluated.getKey(), evaluated.getValue());
+        }
+        return added;
+
+    }
+
+    private ServerSetting getTargetServer(RssfeedSetting feed) {
+        int order = feed.getAutoDownloadServer();
+        if (order < 0) {
+            return applicationSettings.getDefaultServer();
+        }
+        if (order > applicationSettings.getMaxOfAllServers()) {
+            return null;
+        }
+        return applicationSettings.getServerSetting(order);
+    }
+
+    /**
+     * Returns whether an item matches the title and size rule of the feed. Items of which the size is unknown never
+     * match a size bound.
+     */
+    private boolean matches(RssfeedSetting feed, KeywordFilter rule, Item item) {
+        if (!rule.matches(item.getTitle())) {
+            return false;
+        }
+        long size = item.getEnclosureLength();
+        if (feed.getAutoDownloadMinSize() >= 0 && (size <= 0 || size < feed.getAutoDownloadMinSize())) {
+            return false;
+        }
+        return feed.getAutoDownloadMaxSize() < 0 || (size > 0 && size <= feed.getAutoDownloadMaxSize());
+    }
+
+    /**
+     * Returns the key under which an added item is remembered: the info hash for magnet links or otherwise the url.
+     */
+    private String getDownloadKey(Item item) {
+        String infoHash = MagnetLinks.getInfoHash(item.getTheLink());
+        if (infoHash != null) {
+            return "btih:" + infoHash;
+        }
+        return TextUtils.isEmpty(item.getTheLink()) ? null : item.getTheLink();
+    }
+
+    /**
+     * Adds all items of one batch to their (shared) target server and afterwards applies the labels.
+     *
+     * @param batch The items to add to one server
+     * @param retry Receives the items that were not added because the server could not be reached or refused the
+     *              credentials, which are worth trying again later
+     * @return The items that were added
+     */
+    private List<Download> submit(List<Download> batch, List<Download> retry) {
+        ServerSetting server = batch.get(0).server;
+        IDaemonAdapter adapter = server.getServerAdapter(connectivityHelper.getConnectedNetworkName(), context);
+        List<Download> added = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Download download = batch.get(i);
+            String url = download.item.getTheLink();
+            DaemonTaskResult result;
+            if (url.startsWith("magnet:")) {
+                if (!Daemon.supportsAddByMagnetUrl(adapter.getType())) {
+                    log.i(this, "Cannot automatically add " + download.item.getTitle() + " as " + server.getName()
+                            + " does not support magnet links");
+                    continue;
+                }
+                result = AddByMagnetUrlTask.create(adapter, url).execute(log);
+            } else {
+                result = AddByUrlTask.create(adapter, url, download.item.getTitle()).execute(log);
+            }
+            if (result instanceof DaemonTaskFailureResult) {
+                DaemonTaskFailureResult failure = (DaemonTaskFailureResult) result;
+                log.i(this, "Cannot automatically add " + download.item.getTitle() + " to " + server.getName() + ": "
+                        + failure.getException().toString());
+                if (failure.getException().getType() == ExceptionType.ConnectionError
+                        || failure.getException().getType() == ExceptionType.AuthenticationFailure) {
+                    // The server is unreachable; leave the rest of the batch for next time
+                    retry.addAll(batch.subList(i, batch.size()));
+                    break;
+                }
+                continue;
+            }
+            log.d(this, "Automatically added " + download.item.getTitle() + " to " + server.getName());
+            added.add(download);
+        }
+        applyLabels(adapter, added);
+        return added;
+    }
+
+    private void applyLabels(IDaemonAdapter adapter, List<Download> added) {
+        boolean hasLabels = false;
+        for (Download download : added) {
+            hasLabels |= !TextUtils.isEmpty(download.feed.getAutoDownloadLabel());
+        }
+        if (!hasLabels || !Daemon.supportsSetLabel(adapter.getType())) {
+            return;
+        }
+
+        // Look up the new torrents (once for the whole batch) by info hash or otherwise by name
+        DaemonTaskResult result = RetrieveTask.create(adapter).execute(log);
+        if (!(result instanceof RetrieveTaskSuccessResult)) {
+            log.i(this, "Cannot label the automatically added torrents: " + result.toString());
+            return;
+        }
+        List<Torrent> torrents = ((RetrieveTaskSuccessResult) result).getTorrents();
+        for (Download download : added) {
+            String label = download.feed.getAutoDownloadLabel();
+            if (TextUtils.isEmpty(label)) {
+                continue;
+            }
+            String infoHash = MagnetLinks.getInfoHash(download.item.getTheLink());
+            for (Torrent torrent : torrents) {
+                if ((infoHash != null && infoHash.equalsIgnoreCase(torrent.getUniqueID()))
+                        || (download.item.getTitle() != null && download.item.getTitle().equals(torrent.getName()))) {
+                    SetLabelTask.create(adapter, torrent, label).execute(log);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * An RSS item that is (to be) added automatically to some server.
+     */
+    public static final class Download {
+
+        private final RssfeedSetting feed;
+        private final ServerSetting server;
+        private final Item item;
+        private final String key;
+        private final String evaluatedIndex;
+
+        Download(RssfeedSetting feed, ServerSetting server, Item item, String key, String evaluatedIndex) {
+            this.feed = feed;
+            this.server = server;
+            this.item = item;
+            this.key = key;
+            this.evaluatedIndex = evaluatedIndex;
+        }
+
+        public RssfeedSetting getFeed() {
+            return feed;
+        }
+
+        public ServerSetting getServer() {
+            return server;
+        }
+
+        public Item getItem() {
+            return item;
+        }
+
+    }
+
+}
@@ -32,14 +32,17 @@ import org.transdroid.R;
 import org.transdroid.core.app.settings.ApplicationSettings;
 import org.transdroid.core.app.settings.NotificationSettings;
 import org.transdroid.core.app.settings.RssfeedSetting;
+import org.transdroid.core.gui.TorrentsActivity_;
 import org.transdroid.core.gui.log.Log;
 import org.transdroid.core.gui.rss.RssFeedsActivity_;
+import org.transdroid.core.rssparser.Channel;
 import org.transdroid.core.rssparser.Item;
-import org.transdroid.core.rssparser.RssParser;
 import org.transdroid.daemon.util.Collections2;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 @EBean
@@ -55,6 +58,12 @@ public class RssCheckerJobRunner {
     protected NotificationSettings notificationSettings;
     @Bean
     protected ApplicationSettings applicationSettings;
+    @Bean
+    protected RssFeedFetcher rssFeedFetcher;
+    @Bean
+    protected RssSeenIndex rssSeenIndex;
+    @Bean
+    protected RssAutoDownloader rssAutoDownloader;
     @SystemService
     protected NotificationManager notificationManager;
 
@@ -66,31 +75,62 @@ public class RssCheckerJobRunner {
             return Worker.Result.retry();
         }
 
+        // Retrieve all RSS feeds that have alarms or automatic downloads enabled (concurrently)
+        List<RssfeedSetting> feeds = new ArrayList<>();
+        for (RssfeedSetting feed : applicationSettings.getRssfeedSettings()) {
+            if (!feed.shouldAlarmOnNewItems() && !feed.shouldAutoDownload()) {
+                log.d(this, "Skip checker for " + feed.getName() + " as alarms and automatic downloads are disabled");
+                continue;
+            }
+            feeds.add(feed);
+        }
+        List<Channel> channels;
+        try {
+            channels = rssFeedFetcher.fetchAll(feeds);
+        } catch (InterruptedException e) {
+            return Worker.Result.retry();
+        }
+
+        // Add the new items that match an automatic download rule
+        List<RssAutoDownloader.Download> added = rssAutoDownloader.process(feeds, channels);
+        if (!added.isEmpty()) {
+            notifyAdded(added);
+        }
+
         // Check every RSS feed for new items
         int unread = 0;
         Set<String> hasUnread = new LinkedHashSet<>();
-        for (RssfeedSetting feed : applicationSettings.getRssfeedSettings()) {
-            try {
+        for (int i = 0; i < feeds.size(); i++) {
+            RssfeedSetting feed = feeds.get(i);
+            Channel channel = channels.get(i);
+            if (channel == null || !feed.shouldAlarmOnNewItems()) {
+                // Ignore RSS feeds that could not be retrieved or parsed, or that were only retrieved for downloads
+                continue;
+            }
 
-                if (!feed.shouldAlarmOnNewItems()) {
-                    log.d(this, "Skip checker for " + feed.getName() + " as alarms are disabled");
-                    continue;
-                }
+            try {
 
-                log.d(this, "Try to parse " + feed.getName() + " (" + feed.getUrl() + ")");
-                RssParser parser = new RssParser(feed.getUrl(), feed.getExcludeFilter(), feed.getIncludeFilter());
-                parser.parse();
-                if (parser.getChannel() == null) {
+                // Count the items that the user did not see yet
+                RssSeenIndex.SeenItems seenItems = rssSeenIndex.get(feed.getUrl());
+                if (seenItems != null) {
+                    for (Item item : channel.getItems()) {
+                        if (!seenItems.contains(item)) {
+                            unread++;
+                            hasUnread.add(feed.getName());
+                        }
+                    }
+                    log.d(this,
+                            feed.getName() + " has " + (hasUnread.contains(feed.getName()) ? "" : "no ") + "unread items");
                     continue;
                 }
 
-                // Find the last item that is newer than the last viewed date
+                // Feed was never opened since seen items are tracked: find the last item newer than the last viewed date
                 boolean usePublishDate = false;
-                if (parser.getChannel().getItems().size() > 0) {
-                    Date pubDate = parser.getChannel().getItems().get(0).getPubdate();
+                if (channel.getItems().size() > 0) {
+                    Date pubDate = channel.getItems().get(0).getPubdate();
                     usePublishDate = pubDate != null && pubDate.getTime() > 0;
                 }
-                for (Item item : parser.getChannel().getItems()) {
+                for (Item item : channel.getItems()) {
                     if (usePublishDate
                             && item.getPubdate() != null
                             && item.getPubdate().before(feed.getLastViewed())) {
@@ -110,7 +150,7 @@ public class RssCheckerJobRunner {
                         feed.getName() + " has " + (hasUnread.contains(feed.getName()) ? "" : "no ") + "unread items");
 
             } catch (Exception e) {
-                // Ignore RSS feeds that could not be retrieved or parsed
+                // Ignore RSS feeds of which the items could not be checked
             }
         }
 
@@ -142,4 +182,25 @@ public class RssCheckerJobRunner {
         return Worker.Result.success();
     }
 
+    private void notifyAdded(List<RssAutoDownloader.Download> added) {
+        Set<String> servers = new LinkedHashSet<>();
+        for (RssAutoDownloader.Download download : added) {
+            servers.add(download.getServer().getName());
+        }
+        PendingIntent pi = PendingIntent
+                .getActivity(context, 80002, new Intent(context, TorrentsActivity_.class),
+                        PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        String title = context.getResources()
+                .getQuantityString(R.plurals.rss_service_added, added.size(), Integer.toString(added.size()));
+        final NotificationCompat.Builder builder = new NotificationCompat.Builder(context, NotificationChannels.CHANNEL_RSS_CHECKER)
+                .setSmallIcon(R.drawable.ic_stat_notification)
+                .setTicker(title)
+                .setContentTitle(title)
+                .setContentText(context.getString(R.string.rss_service_addedto, Collections2.joinString(servers, ", ")))
+                .setNumber(added.size())
+                .setAutoCancel(true)
+                .setContentIntent(pi);
+        notificationManager.notify(80003, builder.build());
+    }
+
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.service;
+
+import android.content.Context;
+import android.util.AtomicFile;
+
+import org.androidannotations.annotations.Bean;
+import org.androidannotations.annotations.EBean;
+import org.androidannotations.annotations.EBean.Scope;
+import org.androidannotations.annotations.RootContext;
+import org.transdroid.core.gui.log.Log;
+import org.transdroid.core.rssparser.Channel;
+import org.transdroid.core.rssparser.Item;
+import org.transdroid.daemon.util.BinaryFiles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Stores the last parsed contents of RSS feeds on disk, together with the HTTP validators (ETag and Last-Modified) that
+ * the server sent with it, such that feeds can be retrieved with conditional requests and need not be parsed again if
+ * the server reports that they did not change. Feeds are stored in the cache directory and may be removed at any time.
+ *
+ * @author Eric Kok
+ */
+@EBean(scope = Scope.Singleton)
+public class RssFeedCache {
+
+    private static final int MAGIC = 0x54445246; // TDRF
+    private static final int VERSION = 2;
+    private static final int MAX_ITEMS = 1000000;
+
+    @RootContext
+    protected Context context;
+    @Bean
+    protected Log log;
+
+    /**
+     * Loads the cached contents of some feed. This performs disk I/O and should not be called on the UI thread.
+     *
+     * @param key The feed key, which identifies the feed url and any filters applied to its items
+     * @return The cached feed, or null if it was never stored or could not be read
+     */
+    public CachedFeed load(String key) {
+        AtomicFile file = getFile(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.openRead()))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(BinaryFiles.readString(in))) {
+                return null;
+            }
+            String eTag = BinaryFiles.readString(in);
+            String lastModified = BinaryFiles.readString(in);
+            long fetchedAt = in.readLong();
+            Channel channel = new Channel();
+            channel.setTitle(BinaryFiles.readString(in));
+            channel.setLink(BinaryFiles.readString(in));
+            channel.setDescription(BinaryFiles.readString(in));
+            channel.setPubDate(readDate(in));
+            channel.setImage(BinaryFiles.readString(in));
+            int categoryCount = BinaryFiles.readCount(in, MAX_ITEMS);
+            for (int i = 0; i < categoryCount; i++) {
+                channel.addCategory(BinaryFiles.readString(in));
+            }
+            int itemCount = BinaryFiles.readCount(in, MAX_ITEMS);
+            for (int i = 0; i < itemCount; i++) {
+                Item item = new Item();
+                item.setTitle(BinaryFiles.readString(in));
+                item.setLink(BinaryFiles.readString(in));
+                item.setGuid(BinaryFiles.readString(in));
+                item.setDescription(BinaryFiles.readString(in));
+                item.setPubdate(readDate(in));
+                item.setEnclosureUrl(BinaryFiles.readString(in));
+                item.setEnclosureType(BinaryFiles.readString(in));
+                item.setEnclosureLength(in.readLong());
+                channel.addItem(item);
+            }
+            return new CachedFeed(channel, eTag, lastModified, fetchedAt);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            log.e(this, "Cached RSS feed " + key + " is unreadable; removing it: " + e.toString());
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the parsed contents of some feed, replacing what was cached before. This performs disk I/O and should not
+     * be called on the UI thread.
+     *
+     * @param key          The feed key, which identifies the feed url and any filters applied to its items
+     * @param channel      The parsed (and filtered) feed contents
+     * @param eTag         The ETag header value as received with the feed, or null
+     * @param lastModified The Last-Modified header value as received with the feed, or null
+     */
+    public void save(String key, Channel channel, String eTag, String lastModified) {
+        AtomicFile file = getFile(key);
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            BinaryFiles.writeString(out, key);
+            BinaryFiles.writeString(out, eTag);
+            BinaryFiles.writeString(out, lastModified);
+            out.writeLong(System.currentTimeMillis());
+            BinaryFiles.writeString(out, channel.getTitle());
+            BinaryFiles.writeString(out, channel.getLink());
+            BinaryFiles.writeString(out, channel.getDescription());
+            writeDate(out, channel.getPubDate());
+            BinaryFiles.writeString(out, channel.getImage());
+            out.writeInt(channel.getCategories().size());
+            for (String category : channel.getCategories()) {
+                BinaryFiles.writeString(out, category);
+            }
+            out.writeInt(channel.getItems().size());
+            for (Item item : channel.getItems()) {
+                BinaryFiles.writeString(out, item.getTitle());
+                BinaryFiles.writeString(out, item.getLink());
+                BinaryFiles.writeString(out, item.getGuid());
+                BinaryFiles.writeString(out, item.getDescription());
+                writeDate(out, item.getPubdate());
+                BinaryFiles.writeString(out, item.getEnclosureUrl());
+                BinaryFiles.writeString(out, item.getEnclosureType());
+                out.writeLong(item.getEnclosureLength());
+            }
+            out.flush();
+            file.finishWrite(fos);
+        } catch (IOException e) {
+            log.e(this, "Cannot write cached RSS feed " + key + ": " + e.toString());
+            if (fos != null) {
+                file.failWrite(fos);
+            }
+        }
+    }
+
+    private AtomicFile getFile(String key) {
+        return BinaryFiles.getFile(context.getCacheDir(), "rss", "feed_", key);
+    }
+
+    private void writeDate(DataOutputStream out, Date date) throws IOException {
+        out.writeLong(date == null ? -1 : date.getTime());
+    }
+
+    private Date readDate(DataInputStream in) throws IOException {
+        long time = in.readLong();
+        return time == -1 ? null : new Date(time);
+    }
+
+    /**
+     * The cached contents of a feed, with the validators to use in a conditional request for it.
+     */
+    public static final class CachedFeed {
+
+        private final Channel channel;
+        private final String eTag;
+        private final String lastModified;
+        private final long fetchedAt;
+
+        CachedFeed(Channel channel, String eTag, String lastModified, long fetchedAt) {
+            this.channel = channel;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+        }
+
+        public Channel getChannel() {
+            return channel;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Returns the moment (in epoch milliseconds) the feed contents were last retrieved from the server.
+         */
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.service;
+
+import org.androidannotations.annotations.Bean;
+import org.androidannotations.annotations.EBean;
+import org.androidannotations.annotations.EBean.Scope;
+import org.transdroid.core.app.settings.RssfeedSetting;
+import org.transdroid.core.gui.log.Log;
+import org.transdroid.core.rssparser.Channel;
+import org.transdroid.core.rssparser.RssParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Retrieves and parses RSS feeds for both the RSS screens and the background RSS checker. At most a few feeds are
+ * retrieved at the same time. Feeds are requested conditionally, using the validators of the copy in the
+ * {@link RssFeedCache}, such that unchanged feeds are neither downloaded nor parsed again.
+ *
+ * @author Eric Kok
+ */
+@EBean(scope = Scope.Singleton)
+public class RssFeedFetcher {
+
+    private static final int MAX_CONCURRENT_FETCHES = 4;
+    /**
+     * Huge feeds are only parsed up to this many (matching) items
+     */
+    private static final int MAX_ITEMS_PER_FEED = 1000;
+
+    @Bean
+    protected Log log;
+    @Bean
+    protected RssFeedCache rssFeedCache;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENT_FETCHES);
+
+    /**
+     * Retrieves the contents of a single feed. This blocks until the feed was retrieved (possibly waiting for other
+     * feeds to be retrieved first) and should never be called on the UI thread.
+     *
+     * @param feed The settings of the feed to retrieve
+     * @return The feed contents, with the feed's filters applied
+     * @throws Exception Thrown when the feed could not be retrieved or parsed
+     */
+    public Channel fetch(RssfeedSetting feed) throws Exception {
+        try {
+            return executor.submit(createFetch(feed)).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Retrieves the contents of multiple feeds, concurrently. This blocks until all feeds were retrieved and should
+     * never be called on the UI thread.
+     *
+     * @param feeds The settings of the feeds to retrieve
+     * @return The contents of the feeds, in the same order as the given feeds, with null for feeds that could not be
+     * retrieved or parsed
+     */
+    public List<Channel> fetchAll(List<RssfeedSetting> feeds) throws InterruptedException {
+        List<Future<Channel>> futures = new ArrayList<>(feeds.size());
+        for (RssfeedSetting feed : feeds) {
+            futures.add(executor.submit(createFetch(feed)));
+        }
+        List<Channel> channels = new ArrayList<>(feeds.size());
+        for (int i = 0; i < feeds.size(); i++) {
+            try {
+                channels.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                log.i(this, "RSS feed " + feeds.get(i).getUrl() + " error: " + e.getCause().toString());
+                channels.add(null);
+            }
+        }
+        return channels;
+    }
+
+    private Callable<Channel> createFetch(final RssfeedSetting feed) {
+        return () -> {
+            // Filters are applied while parsing, so the cached contents are specific to the filters as well
+            String key = feed.getUrl() + "\n" + feed.getExcludeFilter() + "\n" + feed.getIncludeFilter();
+            RssFeedCache.CachedFeed cached = rssFeedCache.load(key);
+            RssParser parser = new RssParser(feed.getUrl(), feed.getExcludeFilter(), feed.getIncludeFilter());
+            parser.setMaxItems(MAX_ITEMS_PER_FEED);
+            if (cached != null) {
+                parser.setConditional(cached.getETag(), cached.getLastModified());
+            }
+            parser.parse();
+            if (parser.isNotModified() && cached != null) {
+                log.d(this, "RSS feed " + feed.getName() + " is not modified; using the cached contents");
+                return cached.getChannel();
+            }
+            if (parser.getChannel() != null) {
+                rssFeedCache.save(key, parser.getChannel(), parser.getETag(), parser.getLastModified());
+            }
+            return parser.getChannel();
+        };
+    }
+
+}
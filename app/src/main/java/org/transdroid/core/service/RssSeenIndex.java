@@ -0,0 +1,304 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.service;
+
+import android.content.Context;
+import android.util.AtomicFile;
+
+import org.androidannotations.annotations.Bean;
+import org.androidannotations.annotations.EBean;
+import org.androidannotations.annotations.EBean.Scope;
+import org.androidannotations.annotations.RootContext;
+import org.transdroid.core.gui.log.Log;
+import org.transdroid.core.rssparser.Item;
+import org.transdroid.daemon.util.BinaryFiles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers per RSS feed which items the user has seen, as 64-bit hashes of the item guid (or link if the feed has no
+ * guids). Whether an item is new is then a constant time lookup that does not depend on the order of the items or on
+ * the feed supplying publish dates. The index of a feed is bounded to the most recently seen items and forgets items
+ * that were last seen long ago. Besides feeds, the index can track arbitrary keys under some index name.
+ *
+ * @author Eric Kok
+ */
+@EBean(scope = Scope.Singleton)
+public class RssSeenIndex {
+
+    private static final int MAGIC = 0x54445349; // TDSI
+    private static final int VERSION = 1;
+    private static final int MAX_ENTRIES = 5000;
+    private static final long MAX_AGE = 90L * 24 * 60 * 60 * 1000; // 90 days
+
+    @RootContext
+    protected Context context;
+    @Bean
+    protected Log log;
+
+    private final Map<String, SeenItems> loaded = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the seen items of some feed. This may perform disk I/O and should not be called on the UI thread.
+     *
+     * @param feedUrl The url of the RSS feed
+     * @return The items that were seen in the feed, or null if the feed was never marked as seen at all
+     */
+    public SeenItems get(String feedUrl) {
+        SeenItems seen = loaded.get(feedUrl);
+        if (seen == null) {
+            seen = read(feedUrl);
+            if (seen != null) {
+                loaded.put(feedUrl, seen);
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * Marks the given items of a feed as seen, in addition to the earlier seen items that are still remembered. This
+     * performs disk I/O and should not be called on the UI thread.
+     *
+     * @param feedUrl The url of the RSS feed
+     * @param items   The items that the user has now seen
+     */
+    public void markSeen(String feedUrl, List<Item> items) {
+        long[] hashes = new long[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            hashes[i] = hash(items.get(i));
+        }
+        markSeen(feedUrl, hashes);
+    }
+
+    /**
+     * Marks arbitrary keys as seen in some index, such as the info hashes of torrents that were added automatically.
+     * This performs disk I/O and should not be called on the UI thread.
+     *
+     * @param index The name of the index, which should not collide with a feed url
+     * @param keys  The keys that are now seen, to be checked with {@link SeenItems#containsKey(String)}
+     */
+    public void markSeenKeys(String index, Collection<String> keys) {
+        long[] hashes = new long[keys.size()];
+        int i = 0;
+        for (String key : keys) {
+            hashes[i++] = hash(key);
+        }
+        markSeen(index, hashes);
+    }
+
+    private synchronized void markSeen(String feedUrl, long[] newHashes) {
+        long now = System.currentTimeMillis();
+        SeenItems old = get(feedUrl);
+
+        // Combine the old (but not too old) entries with the newly seen items, the latter taking precedence
+        int oldCount = old == null ? 0 : old.hashes.length;
+        long[] hashes = new long[oldCount + newHashes.length];
+        long[] seenAt = new long[oldCount + newHashes.length];
+        int count = 0;
+        for (long hash : newHashes) {
+            hashes[count] = hash;
+            seenAt[count] = now;
+            count++;
+        }
+        SeenItems fresh = new SeenItems(Arrays.copyOf(hashes, count), Arrays.copyOf(seenAt, count));
+        for (int i = 0; i < oldCount; i++) {
+            if (now - old.seenAt[i] <= MAX_AGE && !fresh.contains(old.hashes[i])) {
+                hashes[count] = old.hashes[i];
+                seenAt[count] = old.seenAt[i];
+                count++;
+            }
+        }
+
+        // Keep only the most recently seen entries
+        if (count > MAX_ENTRIES) {
+            long[] sortedSeenAt = Arrays.copyOf(seenAt, count);
+            Arrays.sort(sortedSeenAt);
+            long threshold = sortedSeenAt[count - MAX_ENTRIES];
+            int kept = 0;
+            for (int i = 0; i < count && kept < MAX_ENTRIES; i++) {
+                if (seenAt[i] >= threshold) {
+                    hashes[kept] = hashes[i];
+                    seenAt[kept] = seenAt[i];
+                    kept++;
+                }
+            }
+            count = kept;
+        }
+
+        SeenItems seen = new SeenItems(Arrays.copyOf(hashes, count), Arrays.copyOf(seenAt, count));
+        loaded.put(feedUrl, seen);
+        write(feedUrl, seen);
+    }
+
+    /**
+     * Returns the 64-bit (FNV-1a) hash that identifies some item in the index, based on its guid or otherwise its link
+     * or title.
+     */
+    static long hash(Item item) {
+        String id = item.getGuid();
+        if (id == null || id.isEmpty()) {
+            id = item.getTheLink();
+        }
+        if (id == null || id.isEmpty()) {
+            id = item.getTitle();
+        }
+        return hash(id);
+    }
+
+    /**
+     * Returns the 64-bit (FNV-1a) hash of some key in the index.
+     */
+    static long hash(String id) {
+        long hash = 0xcbf29ce484222325L;
+        if (id != null) {
+            for (int i = 0; i < id.length(); i++) {
+                hash ^= id.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    private SeenItems read(String feedUrl) {
+        AtomicFile file = getFile(feedUrl);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.openRead()))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !feedUrl.equals(in.readUTF())) {
+                return null;
+            }
+            int count = BinaryFiles.readCount(in, MAX_ENTRIES);
+            long[] hashes = new long[count];
+            long[] seenAt = new long[count];
+            for (int i = 0; i < count; i++) {
+                hashes[i] = in.readLong();
+                seenAt[i] = in.readLong();
+            }
+            return new SeenItems(hashes, seenAt);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            log.e(this, "Seen items index of RSS feed " + feedUrl + " is unreadable; removing it: " + e.toString());
+            file.delete();
+            return null;
+        }
+    }
+
+    private void write(String feedUrl, SeenItems seen) {
+        AtomicFile file = getFile(feedUrl);
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(feedUrl);
+            out.writeInt(seen.hashes.length);
+            for (int i = 0; i < seen.hashes.length; i++) {
+                out.writeLong(seen.hashes[i]);
+                out.writeLong(seen.seenAt[i]);
+            }
+            out.flush();
+            file.finishWrite(fos);
+        } catch (IOException e) {
+            log.e(this, "Cannot write seen items index of RSS feed " + feedUrl + ": " + e.toString());
+            if (fos != null) {
+                file.failWrite(fos);
+            }
+        }
+    }
+
+    private AtomicFile getFile(String feedUrl) {
+        // Unlike the feed contents cache, this is user state and thus not stored in the cache directory
+        return BinaryFiles.getFile(context.getFilesDir(), "rss_seen", "seen_", feedUrl);
+    }
+
+    /**
+     * The set of seen item hashes of one feed, with open addressing for constant time lookups.
+     */
+    public static final class SeenItems {
+
+        private final long[] hashes;
+        private final long[] seenAt;
+        private final long[] table;
+        private final boolean hasZero;
+
+        private SeenItems(long[] hashes, long[] seenAt) {
+            this.hashes = hashes;
+            this.seenAt = seenAt;
+            int capacity = Integer.highestOneBit(Math.max(4, hashes.length * 2 - 1)) << 1;
+            this.table = new long[capacity];
+            boolean zero = false;
+            for (long hash : hashes) {
+                if (hash == 0) {
+                    // 0 marks an empty slot in the table
+                    zero = true;
+                    continue;
+                }
+                int slot = slot(hash);
+                while (table[slot] != 0 && table[slot] != hash) {
+                    slot = (slot + 1) & (table.length - 1);
+                }
+                table[slot] = hash;
+            }
+            this.hasZero = zero;
+        }
+
+        private int slot(long hash) {
+            return (int) (hash ^ (hash >>> 32)) & (table.length - 1);
+        }
+
+        private boolean contains(long hash) {
+            if (hash == 0) {
+                return hasZero;
+            }
+            int slot = slot(hash);
+            while (table[slot] != 0) {
+                if (table[slot] == hash) {
+                    return true;
+                }
+                slot = (slot + 1) & (table.length - 1);
+            }
+            return false;
+        }
+
+        /**
+         * Returns whether the given item was seen before by the user.
+         */
+        public boolean contains(Item item) {
+            return contains(hash(item));
+        }
+
+        /**
+         * Returns whether the given key, as marked with {@link #markSeenKeys(String, Collection)}, was seen before.
+         */
+        public boolean containsKey(String key) {
+            return contains(hash(key));
+        }
+
+    }
+
+}
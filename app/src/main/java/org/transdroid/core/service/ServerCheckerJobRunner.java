@@ -20,7 +20,6 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
-import android.text.TextUtils;
 import androidx.core.app.NotificationCompat;
 import androidx.work.Worker;
 import org.androidannotations.annotations.Bean;
@@ -34,13 +33,14 @@ import org.transdroid.R;
 import org.transdroid.core.app.settings.ApplicationSettings;
 import org.transdroid.core.app.settings.NotificationSettings;
 import org.transdroid.core.app.settings.ServerSetting;
+import org.transdroid.core.app.snapshot.TorrentsSnapshotProvider;
 import org.transdroid.core.gui.TorrentsActivity_;
 import org.transdroid.core.gui.log.Log;
-import org.transdroid.daemon.IDaemonAdapter;
 import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.task.DaemonTaskResult;
-import org.transdroid.daemon.task.RetrieveTask;
+import org.transdroid.daemon.task.RetrieveTask.Projection;
 import org.transdroid.daemon.task.RetrieveTaskSuccessResult;
+import org.transdroid.daemon.util.KeywordFilter;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -58,6 +58,8 @@ public class ServerCheckerJobRunner {
     protected NotificationSettings notificationSettings;
     @Bean
     protected ApplicationSettings applicationSettings;
+    @Bean
+    protected TorrentsSnapshotProvider snapshotProvider;
     @SystemService
     protected NotificationManager notificationManager;
 
@@ -81,9 +83,9 @@ public class ServerCheckerJobRunner {
             // Get the statistics for the last time we checked this server
             JSONArray lastStats = applicationSettings.getServerLastStats(server);
 
-            // Synchronously retrieve torrents listing
-            IDaemonAdapter adapter = server.getServerAdapter(connectivityHelper.getConnectedNetworkName(), context);
-            DaemonTaskResult result = RetrieveTask.create(adapter).execute(log);
+            // Synchronously retrieve torrents listing (or reuse one that the app or a widget just retrieved)
+            DaemonTaskResult result = snapshotProvider.retrieve(server, TorrentsSnapshotProvider.DEFAULT_MAX_AGE,
+                    Projection.Notifier);
             if (!(result instanceof RetrieveTaskSuccessResult)) {
                 // Cannot retrieve torrents at this time
                 continue;
@@ -92,20 +94,7 @@ public class ServerCheckerJobRunner {
             log.d(this, server.getName() + ": Retrieved torrent listing");
 
             // Preload filters to match torrent names
-            String[] excludeFilters = null;
-            String[] includeFilters = null;
-            if (!TextUtils.isEmpty(server.getExcludeFilter())) {
-                excludeFilters = server.getExcludeFilter().split("\\|");
-                for (int i = 0; i < excludeFilters.length; i++) {
-                    excludeFilters[i] = excludeFilters[i].toUpperCase();
-                }
-            }
-            if (!TextUtils.isEmpty(server.getIncludeFilter())) {
-                includeFilters = server.getIncludeFilter().split("\\|");
-                for (int i = 0; i < includeFilters.length; i++) {
-                    includeFilters[i] = includeFilters[i].toUpperCase();
-                }
-            }
+            KeywordFilter filter = KeywordFilter.get(server.getExcludeFilter(), server.getIncludeFilter());
 
             // Check for differences between the last and the current stats
             JSONArray currentStats = new JSONArray();
@@ -124,7 +113,7 @@ public class ServerCheckerJobRunner {
                 // See if this torrent was done the last time we checked
                 if (lastStats != null) {
                     Boolean wasDone = findLastDoneStat(lastStats, torrent);
-                    boolean shouldNotify = matchFilters(torrent.getName(), excludeFilters, includeFilters);
+                    boolean shouldNotify = filter.matches(torrent.getName());
                     if (server.shouldAlarmOnNewTorrent() && shouldNotify && wasDone == null) {
                         // This torrent wasn't present earlier
                         newTorrents.add(torrent);
@@ -211,9 +200,13 @@ public class ServerCheckerJobRunner {
     }
 
     private Boolean findLastDoneStat(JSONArray lastStats, Torrent torrent) {
+        // Transmission torrents used to be identified by their numeric id rather than their hash; stats stored by an
+        // older version still use that id, so match on that as well until the stats are stored again
+        String legacyId = torrent.getHash() == null ? null : Long.toString(torrent.getId());
         for (int i = 0; i < lastStats.length(); i++) {
             try {
-                if (lastStats.getJSONObject(i).getString("id").equals(torrent.getUniqueID()))
+                String id = lastStats.getJSONObject(i).getString("id");
+                if (id.equals(torrent.getUniqueID()) || id.equals(legacyId))
                     return lastStats.getJSONObject(i).getBoolean("done");
             } catch (JSONException e) {
                 return null;
@@ -222,26 +215,4 @@ public class ServerCheckerJobRunner {
         return null;
     }
 
-    private boolean matchFilters(String name, String[] excludeFilters, String[] includeFilters) {
-        String upperName = name.toUpperCase();
-        if (includeFilters != null) {
-            boolean include = false;
-            for (String includeWord : includeFilters) {
-                if (includeWord.equals("") || upperName.contains(includeWord)) {
-                    include = true;
-                    break;
-                }
-            }
-            if (!include)
-                return false;
-        }
-        if (excludeFilters != null) {
-            for (String excludeWord : excludeFilters) {
-                if (!excludeWord.equals("") && upperName.contains(excludeWord))
-                    return false;
-            }
-        }
-        return true;
-    }
-
 }
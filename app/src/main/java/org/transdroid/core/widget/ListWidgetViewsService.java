@@ -31,16 +31,17 @@ import org.transdroid.core.app.settings.ApplicationSettings_;
 import org.transdroid.core.app.settings.ServerSetting;
 import org.transdroid.core.app.settings.SystemSettings;
 import org.transdroid.core.app.settings.SystemSettings_;
+import org.transdroid.core.app.snapshot.TorrentsSnapshot;
+import org.transdroid.core.app.snapshot.TorrentsSnapshotProvider;
+import org.transdroid.core.app.snapshot.TorrentsSnapshotProvider_;
 import org.transdroid.core.gui.lists.LocalTorrent;
 import org.transdroid.core.gui.log.Log;
 import org.transdroid.core.gui.log.Log_;
-import org.transdroid.core.service.ConnectivityHelper_;
 import org.transdroid.daemon.Daemon;
-import org.transdroid.daemon.IDaemonAdapter;
 import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentsComparator;
 import org.transdroid.daemon.task.DaemonTaskResult;
-import org.transdroid.daemon.task.RetrieveTask;
+import org.transdroid.daemon.task.RetrieveTask.Projection;
 import org.transdroid.daemon.task.RetrieveTaskSuccessResult;
 import org.transdroid.daemon.util.FileSizeConverter;
 
@@ -104,24 +105,31 @@ class WidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory {
             return;
         }
 
-        // Load the torrents; synchronously
-        IDaemonAdapter connection =
-                server.getServerAdapter(ConnectivityHelper_.getInstance_(context).getConnectedNetworkName(),
-                        context);
-        DaemonTaskResult result = RetrieveTask.create(connection).execute(log);
-        if (!(result instanceof RetrieveTaskSuccessResult)) {
-            // TODO: Show error text somehow in the remote view, perhaps via the EmptyView's text?
-            log.e(context, "The torrents could not be retrieved at this time; probably a connection issue");
-            if (torrents != null) {
-                torrents.clear();
+        // Load the torrents; synchronously, but shared with other widgets, the app and the background services
+        TorrentsSnapshotProvider snapshotProvider = TorrentsSnapshotProvider_.getInstance_(context);
+        DaemonTaskResult result = snapshotProvider.retrieve(server, TorrentsSnapshotProvider.DEFAULT_MAX_AGE,
+                Projection.Widget);
+        List<Torrent> allTorrents;
+        if (result instanceof RetrieveTaskSuccessResult) {
+            allTorrents = ((RetrieveTaskSuccessResult) result).getTorrents();
+        } else {
+            // Fall back to the torrents as they were last retrieved from this server, if we have them at all
+            TorrentsSnapshot snapshot = snapshotProvider.getLastKnown(server);
+            if (snapshot == null) {
+                // TODO: Show error text somehow in the remote view, perhaps via the EmptyView's text?
+                log.e(context, "The torrents could not be retrieved at this time; probably a connection issue");
+                if (torrents != null) {
+                    torrents.clear();
+                }
+                return;
             }
-            return;
+            log.d(context, "The torrents could not be retrieved at this time; showing the stored snapshot instead");
+            allTorrents = snapshot.getTorrents();
         }
 
         // We have data; filter, sort and store it to use later when getViewAt gets called
         SystemSettings systemSettings = SystemSettings_.getInstance_(context);
         ArrayList<Torrent> filteredTorrents = new ArrayList<>();
-        List<Torrent> allTorrents = ((RetrieveTaskSuccessResult) result).getTorrents();
         for (Torrent torrent : allTorrents) {
             if (config.getStatusType().getFilterItem(context)
                     .matches(torrent, systemSettings.treatDormantAsInactive())) {
@@ -0,0 +1,53 @@
+/*
+ *	This file is part of Transdroid <http://www.transdroid.org>
+ *
+ *	Transdroid is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	Transdroid is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.transdroid.daemon;
+
+import org.transdroid.core.gui.log.Log;
+import org.transdroid.daemon.task.DaemonTask;
+import org.transdroid.daemon.task.DaemonTaskResult;
+
+import java.util.List;
+
+/**
+ * Interface for daemon adapters that can apply some action to multiple torrents in a single request, such as pausing
+ * a list of torrent ids at once. This is used to replay actions that were queued while the server was unreachable.
+ *
+ * @author erickok
+ */
+public interface BatchExecutable {
+
+    /**
+     * Tells whether tasks of some method can be executed as batch with {@link #executeBatch(Log, List)}
+     *
+     * @param method The daemon method of the tasks to batch
+     * @return True if the adapter (and the version of the server that it is connected to) supports it, false otherwise
+     */
+    boolean canBatch(DaemonMethod method);
+
+    /**
+     * Executes a number of tasks in a single request. All tasks are of the same method and have the same parameters
+     * (such as whether to remove the data of a torrent as well), only their target torrent differs. This contacts the
+     * server and thus should never be called on the UI thread.
+     *
+     * @param log   The logger to report to
+     * @param tasks The tasks to execute, which all are of a method for which {@link #canBatch(DaemonMethod)} is true
+     * @return The result of the request, which applies to all tasks and refers to the first task
+     */
+    DaemonTaskResult executeBatch(Log log, List<DaemonTask> tasks);
+
+}
@@ -53,7 +53,9 @@ import java.util.Random;
 
 /**
  * A dummy adapter that does not communicate with some server, but maintains a local list of dummy data (reset every
- * time it is recreated) to simplify testing.
+ * time it is recreated) to simplify testing. If the server address is set to "scale" (optionally followed by the number
+ * of torrents and a seed, as in "scale:50000:7") it instead serves large, deterministic and continuously changing data
+ * from {@link SyntheticTorrents}, to profile the UI with production sized data.
  *
  * @author erickok
  */
@@ -64,6 +66,7 @@ public class DummyAdapter implements IDaemonAdapter {
     private DaemonSettings settings;
     private List<Torrent> dummyTorrents;
     private List<Label> dummyLabels;
+    private SyntheticTorrents synthetic;
     private boolean alternativeModeEnabled = false;
     private List<String> trackersList = new ArrayList<>(Arrays.asList("udp://tracker.com/announce:80",
             "https://torrents.org/announce:443"));
@@ -75,6 +78,10 @@ public class DummyAdapter implements IDaemonAdapter {
         this.settings = settings;
         this.dummyTorrents = new ArrayList<>();
         this.dummyLabels = new ArrayList<>();
+        this.synthetic = SyntheticTorrents.fromAddress(settings.getAddress(), settings.getType());
+        if (synthetic != null) {
+            return;
+        }
         String[] names = new String[]{"Documentary ", "Book ", "CD Image ", "Mix tape ", "App "};
         String[] labels = new String[]{"docs", "books", "isos", "music", "software"};
         TorrentStatus[] statuses = new TorrentStatus[]{TorrentStatus.Seeding, TorrentStatus.Downloading,
@@ -128,6 +135,12 @@ public class DummyAdapter implements IDaemonAdapter {
     public DaemonTaskResult executeTask(Log log, DaemonTask task) {
 
         try {
+            if (synthetic != null) {
+                DaemonTaskResult result = executeSyntheticTask(task);
+                if (result != null) {
+                    return result;
+                }
+            }
             switch (task.getMethod()) {
                 case Retrieve:
 
@@ -298,6 +311,65 @@ public class DummyAdapter implements IDaemonAdapter {
         }
     }
 
+    /**
+     * Executes a task against the synthetic torrents, or returns null if the task is handled as for the normal dummy
+     * data. Changes to a torrent are applied to the model (as the torrent objects are recreated on every retrieval) and
+     * are left to the normal handling to mimic them on the target torrent as well.
+     */
+    private DaemonTaskResult executeSyntheticTask(DaemonTask task) {
+        switch (task.getMethod()) {
+            case Retrieve:
+                return new RetrieveTaskSuccessResult((RetrieveTask) task, synthetic.retrieve(), synthetic.getLabels());
+            case GetTorrentDetails:
+                return new GetTorrentDetailsTaskSuccessResult((GetTorrentDetailsTask) task,
+                        synthetic.getDetails(task.getTargetTorrent(), trackersList));
+            case GetFileList:
+                return new GetFileListTaskSuccessResult((GetFileListTask) task,
+                        synthetic.getFiles(task.getTargetTorrent()));
+            case AddByFile:
+                synthetic.add(new File(URI.create(((AddByFileTask) task).getFile())).getName());
+                return new DaemonTaskSuccessResult(task);
+            case AddByUrl:
+                synthetic.add(Uri.parse(((AddByUrlTask) task).getUrl()).getLastPathSegment());
+                return new DaemonTaskSuccessResult(task);
+            case AddByMagnetUrl:
+                Uri magnet = Uri.parse(((AddByMagnetUrlTask) task).getUrl());
+                String name = magnet.getQueryParameter("dn");
+                synthetic.add(name == null ? "Magnet " + magnet.hashCode() : name);
+                return new DaemonTaskSuccessResult(task);
+            case Remove:
+                synthetic.remove(task.getTargetTorrent());
+                return new DaemonTaskSuccessResult(task);
+            case Pause:
+            case Stop:
+                synthetic.setStatus(task.getTargetTorrent(), TorrentStatus.Paused);
+                return null;
+            case Resume:
+            case Start:
+                synthetic.setStatus(task.getTargetTorrent(), TorrentStatus.Downloading);
+                return null;
+            case PauseAll:
+            case StopAll:
+                synthetic.setStatus(null, TorrentStatus.Paused);
+                return new DaemonTaskSuccessResult(task);
+            case ResumeAll:
+            case StartAll:
+                synthetic.setStatus(null, TorrentStatus.Downloading);
+                return new DaemonTaskSuccessResult(task);
+            case ForceRecheck:
+                synthetic.setStatus(task.getTargetTorrent(), TorrentStatus.Checking);
+                return null;
+            case SetLabel:
+                synthetic.setLabel(task.getTargetTorrent(), ((SetLabelTask) task).getNewLabel());
+                return null;
+            case SetDownloadLocation:
+                synthetic.setLocation(task.getTargetTorrent(), ((SetDownloadLocationTask) task).getNewLocation());
+                return null;
+            default:
+                return null;
+        }
+    }
+
     @Override
     public Daemon getType() {
         return settings.getType();
@@ -0,0 +1,406 @@
+/*
+ *	This file is part of Transdroid <http://www.transdroid.org>
+ *
+ *	Transdroid is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	Transdroid is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.transdroid.daemon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic, large scale synthetic torrent data for the {@link DummyAdapter}, to profile the UI with production
+ * sized data. All torrents are generated from a seed and keep stable ids and hashes. Every time the torrents are
+ * retrieved the simulation advances one fixed step: downloads progress, transfer rates drift and some torrents change
+ * status. As the simulation depends only on the seed and the sequence of calls, a profiling run can be repeated
+ * exactly. Some torrents have thousands of files and all torrents have piece maps of thousands of pieces. The state is
+ * kept in flat arrays, such that even the maximum number of torrents takes little memory between calls.
+ *
+ * @author erickok
+ */
+final class SyntheticTorrents {
+
+    static final int MAX_TORRENTS = 50000;
+    static final int DEFAULT_TORRENTS = 10000;
+    private static final String ADDRESS_PREFIX = "scale";
+    private static final int STEP_SECONDS = 5;
+    private static final double STATUS_CHANGE_CHANCE = 0.002;
+    private static final int MAX_RATE = 4 * 1024 * 1024;
+    private static final long MIN_SIZE = 16L * 1024 * 1024;
+    private static final long MAX_SIZE = 64L * 1024 * 1024 * 1024;
+    private static final int MIN_PIECE_SIZE = 256 * 1024;
+    private static final int MAX_PIECE_SIZE = 16 * 1024 * 1024;
+    private static final int TARGET_PIECES = 8000;
+    private static final String[] WORDS = {"Ubuntu", "Debian", "Fedora", "Documentary", "Lecture", "Concert",
+            "Podcast", "Audiobook", "Dataset", "Archive", "Backup", "Collection", "Season", "Volume", "Edition",
+            "Remastered", "Complete", "Extended", "Anthology", "Series"};
+    private static final String[] LABELS = {"docs", "books", "isos", "music", "software", "video"};
+    private static final TorrentStatus[] CHURN_STATUSES = {TorrentStatus.Paused, TorrentStatus.Paused,
+            TorrentStatus.Queued, TorrentStatus.Checking, TorrentStatus.Error};
+
+    private final long seed;
+    private final Daemon daemon;
+    private final Random random;
+    private final long startTime;
+    private int count = 0;
+    private int step = 0;
+
+    // Per torrent state, indexed by the torrent id minus 1
+    private String[] names;
+    private byte[] labels;
+    private long[] sizes;
+    private long[] done;
+    private long[] uploaded;
+    private int[] rateDownload;
+    private int[] rateUpload;
+    private TorrentStatus[] statuses;
+    private int[] fileCounts;
+    private int[] pieceSizes;
+    private long[] addedAt;
+    private long[] doneAt;
+    private String[] locations;
+    private boolean[] removed;
+
+    private SyntheticTorrents(int initialCount, long seed, Daemon daemon) {
+        this.seed = seed;
+        this.daemon = daemon;
+        this.random = new Random(seed);
+        // Start at a whole day, such that dates shown in the UI are the same for every run on the same day
+        this.startTime = System.currentTimeMillis() / (24 * 60 * 60 * 1000) * (24 * 60 * 60 * 1000);
+        allocate(initialCount);
+        for (int i = 0; i < initialCount; i++) {
+            generate(null, startTime - (long) (random.nextDouble() * 365 * 24 * 60 * 60 * 1000));
+        }
+    }
+
+    /**
+     * Creates the synthetic torrents as configured in the address of a dummy server, which is "scale", optionally
+     * followed by the number of torrents and the seed, as in "scale:50000:7".
+     *
+     * @param address The address as configured for the dummy server
+     * @param daemon  The type of the dummy server
+     * @return The synthetic torrents, or null if the address does not enable the scale mode
+     */
+    static SyntheticTorrents fromAddress(String address, Daemon daemon) {
+        if (address == null || !address.trim().toLowerCase(Locale.US).startsWith(ADDRESS_PREFIX)) {
+            return null;
+        }
+        String[] parts = address.trim().split(":");
+        int count = DEFAULT_TORRENTS;
+        long seed = 1;
+        try {
+            if (parts.length > 1) {
+                count = Math.max(1, Math.min(MAX_TORRENTS, Integer.parseInt(parts[1].trim())));
+            }
+            if (parts.length > 2) {
+                seed = Long.parseLong(parts[2].trim());
+            }
+        } catch (NumberFormatException e) {
+            // Use the defaults for whatever could not be parsed
+        }
+        return new SyntheticTorrents(count, seed, daemon);
+    }
+
+    /**
+     * Advances the simulation by one step and returns all (not removed) torrents, directly as a table.
+     */
+    synchronized TorrentTable retrieve() {
+        step();
+        TorrentTable torrents = new TorrentTable(count);
+        for (int i = 0; i < count; i++) {
+            if (!removed[i]) {
+                addTorrent(torrents, i);
+            }
+        }
+        return torrents;
+    }
+
+    synchronized List<Label> getLabels() {
+        int[] labelCounts = new int[LABELS.length];
+        for (int i = 0; i < count; i++) {
+            if (!removed[i] && labels[i] >= 0) {
+                labelCounts[labels[i]]++;
+            }
+        }
+        List<Label> result = new ArrayList<>(LABELS.length);
+        for (int l = 0; l < LABELS.length; l++) {
+            result.add(new Label(LABELS[l], labelCounts[l]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the piece map of a torrent. Pieces complete in a (per torrent) random but fixed order, so the map fills
+     * up steadily as the torrent progresses.
+     */
+    synchronized TorrentDetails getDetails(Torrent torrent, List<String> trackers) {
+        int i = indexOf(torrent);
+        List<Integer> pieces = new ArrayList<>();
+        List<String> errors = null;
+        if (i >= 0) {
+            int pieceCount = (int) ((sizes[i] + pieceSizes[i] - 1) / pieceSizes[i]);
+            double progress = (double) done[i] / sizes[i];
+            boolean downloading = statuses[i] == TorrentStatus.Downloading;
+            Random order = new Random(seed ^ (i * 0x9E3779B97F4A7C15L));
+            for (int p = 0; p < pieceCount; p++) {
+                double position = order.nextDouble();
+                // 0 is missing, 1 is downloading and 2 is done
+                pieces.add(position < progress ? 2 : downloading && position < progress + 0.002 ? 1 : 0);
+            }
+            if (statuses[i] == TorrentStatus.Error) {
+                errors = Arrays.asList("Tracker gave HTTP response code 404 (Not Found)", "Files not available.");
+            }
+        }
+        return new TorrentDetails(trackers, errors, pieces);
+    }
+
+    /**
+     * Returns the file list of a torrent, which is generated from the seed and thus the same on every call.
+     */
+    synchronized List<TorrentFile> getFiles(Torrent torrent) {
+        int i = indexOf(torrent);
+        List<TorrentFile> files = new ArrayList<>();
+        if (i < 0) {
+            return files;
+        }
+        int fileCount = fileCounts[i];
+        double progress = (double) done[i] / sizes[i];
+        Random generator = new Random(seed ^ (i * 0xC2B2AE3D27D4EB4FL));
+        Priority[] priorities = {Priority.Normal, Priority.Normal, Priority.Normal, Priority.High, Priority.Low,
+                Priority.Off};
+        long fileSize = sizes[i] / fileCount;
+        for (int f = 0; f < fileCount; f++) {
+            long size = f == fileCount - 1 ? sizes[i] - fileSize * (fileCount - 1) : fileSize;
+            String path = fileCount == 1 ? names[i] : String.format(Locale.US, "%s/Disc %d/%s %05d.%s", names[i],
+                    1 + f / 500, WORDS[generator.nextInt(WORDS.length)], f + 1, f % 10 == 0 ? "nfo" : "bin");
+            Priority priority = priorities[generator.nextInt(priorities.length)];
+            files.add(new TorrentFile(String.valueOf(f), path.substring(path.lastIndexOf('/') + 1), path,
+                    locations[i] + "/" + path, size, (long) (size * progress), priority));
+        }
+        return files;
+    }
+
+    /**
+     * Changes the status of one torrent, as for a pause or start, or of all torrents if null is given.
+     */
+    synchronized void setStatus(Torrent torrent, TorrentStatus status) {
+        if (torrent == null) {
+            for (int i = 0; i < count; i++) {
+                setStatus(i, status);
+            }
+        } else if (indexOf(torrent) >= 0) {
+            setStatus(indexOf(torrent), status);
+        }
+    }
+
+    synchronized void setLabel(Torrent torrent, String label) {
+        int i = indexOf(torrent);
+        if (i >= 0) {
+            labels[i] = (byte) Arrays.asList(LABELS).indexOf(label);
+        }
+    }
+
+    synchronized void setLocation(Torrent torrent, String location) {
+        int i = indexOf(torrent);
+        if (i >= 0) {
+            locations[i] = location;
+        }
+    }
+
+    synchronized void remove(Torrent torrent) {
+        int i = indexOf(torrent);
+        if (i >= 0) {
+            removed[i] = true;
+        }
+    }
+
+    synchronized void add(String name) {
+        if (count == sizes.length) {
+            allocate(count * 2);
+        }
+        int i = generate(name, startTime + (long) step * STEP_SECONDS * 1000);
+        statuses[i] = TorrentStatus.Queued;
+        done[i] = 0;
+        uploaded[i] = 0;
+        doneAt[i] = 0;
+    }
+
+    private void setStatus(int i, TorrentStatus status) {
+        // Pausing and stopping always works, but resuming and starting only affects inactive torrents
+        if (status == TorrentStatus.Paused || status == TorrentStatus.Queued || status == TorrentStatus.Checking) {
+            statuses[i] = status;
+        } else if (statuses[i] != TorrentStatus.Downloading && statuses[i] != TorrentStatus.Seeding) {
+            statuses[i] = done[i] >= sizes[i] ? TorrentStatus.Seeding : TorrentStatus.Downloading;
+        }
+    }
+
+    private void step() {
+        step++;
+        long now = startTime + (long) step * STEP_SECONDS * 1000;
+        for (int i = 0; i < count; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            if (random.nextDouble() < STATUS_CHANGE_CHANCE) {
+                if (statuses[i] == TorrentStatus.Downloading || statuses[i] == TorrentStatus.Seeding) {
+                    statuses[i] = CHURN_STATUSES[random.nextInt(CHURN_STATUSES.length)];
+                } else {
+                    statuses[i] = done[i] >= sizes[i] ? TorrentStatus.Seeding : TorrentStatus.Downloading;
+                }
+            }
+            boolean downloading = statuses[i] == TorrentStatus.Downloading;
+            boolean active = downloading || statuses[i] == TorrentStatus.Seeding;
+            rateDownload[i] = downloading ? drift(rateDownload[i]) : 0;
+            rateUpload[i] = active && random.nextInt(3) > 0 ? drift(rateUpload[i]) / 4 : 0;
+            uploaded[i] += (long) rateUpload[i] * STEP_SECONDS;
+            if (downloading) {
+                done[i] = Math.min(sizes[i], done[i] + (long) rateDownload[i] * STEP_SECONDS);
+                if (done[i] >= sizes[i]) {
+                    statuses[i] = TorrentStatus.Seeding;
+                    rateDownload[i] = 0;
+                    doneAt[i] = now;
+                }
+            }
+        }
+    }
+
+    private int drift(int rate) {
+        // Random walk, occasionally jumping to a fresh rate
+        if (rate <= 0 || random.nextInt(20) == 0) {
+            return random.nextInt(MAX_RATE);
+        }
+        return (int) Math.min(MAX_RATE, rate * (0.8 + random.nextDouble() * 0.4));
+    }
+
+    private void addTorrent(TorrentTable torrents, int i) {
+        int seeders = rateDownload[i] > 0 ? 1 + rateDownload[i] / (64 * 1024) : 0;
+        int leechers = rateUpload[i] > 0 ? 1 + rateUpload[i] / (32 * 1024) : 0;
+        float partDone = (float) done[i] / sizes[i];
+        torrents.add(
+                i + 1,
+                getHash(i),
+                names[i],
+                statuses[i],
+                locations[i],
+                rateDownload[i],
+                rateUpload[i],
+                seeders,
+                seeders * 4,
+                leechers,
+                leechers * 4,
+                rateDownload[i] > 0 ? (int) ((sizes[i] - done[i]) / rateDownload[i]) : -1,
+                done[i],
+                uploaded[i],
+                sizes[i],
+                partDone,
+                1F,
+                labels[i] < 0 ? null : LABELS[labels[i]],
+                addedAt[i],
+                doneAt[i] == 0 ? Long.MIN_VALUE : doneAt[i],
+                statuses[i] == TorrentStatus.Error ? "Tracker gave HTTP response code 404 (Not Found)" : null,
+                daemon);
+    }
+
+    /**
+     * Returns the (stable) hash of a torrent, which starts with its index such that it can be found back cheaply.
+     */
+    private String getHash(int i) {
+        long mixed = mix(seed + i);
+        return String.format(Locale.US, "%08x%016x%016x", i, mixed, mix(mixed));
+    }
+
+    private int indexOf(Torrent torrent) {
+        String hash = torrent.getUniqueID();
+        if (hash == null || hash.length() != 40) {
+            return -1;
+        }
+        try {
+            int i = Integer.parseInt(hash.substring(0, 8), 16);
+            return i < count && !removed[i] ? i : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long mix(long value) {
+        // SplitMix64 finaliser
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    private int generate(String name, long added) {
+        int i = count++;
+        if (name == null) {
+            StringBuilder generated = new StringBuilder();
+            int words = 2 + random.nextInt(4);
+            for (int w = 0; w < words; w++) {
+                generated.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            name = generated.append(1990 + random.nextInt(36)).toString();
+        }
+        names[i] = name;
+        labels[i] = (byte) (random.nextInt(4) == 0 ? -1 : random.nextInt(LABELS.length));
+        sizes[i] = MIN_SIZE + (long) (Math.pow(random.nextDouble(), 3) * (MAX_SIZE - MIN_SIZE));
+        pieceSizes[i] = (int) Math.max(MIN_PIECE_SIZE, Math.min(MAX_PIECE_SIZE,
+                Long.highestOneBit(sizes[i] / TARGET_PIECES)));
+        // Most torrents have one or a few files, but some have thousands
+        int fileKind = random.nextInt(100);
+        fileCounts[i] = fileKind < 60 ? 1 : fileKind < 95 ? 2 + random.nextInt(50) : fileKind < 99 ?
+                50 + random.nextInt(1000) : 1000 + random.nextInt(9000);
+        addedAt[i] = added;
+        locations[i] = "/downloads/" + (labels[i] < 0 ? "" : LABELS[labels[i]] + "/") + name.replace(' ', '_');
+        int kind = random.nextInt(100);
+        if (kind < 50) {
+            statuses[i] = TorrentStatus.Seeding;
+            done[i] = sizes[i];
+            doneAt[i] = added + random.nextInt(24 * 60 * 60 * 1000);
+        } else if (kind < 75) {
+            statuses[i] = TorrentStatus.Downloading;
+            done[i] = (long) (random.nextDouble() * sizes[i]);
+        } else if (kind < 90) {
+            statuses[i] = TorrentStatus.Paused;
+            done[i] = random.nextBoolean() ? sizes[i] : (long) (random.nextDouble() * sizes[i]);
+            doneAt[i] = done[i] >= sizes[i] ? added + random.nextInt(24 * 60 * 60 * 1000) : 0;
+        } else if (kind < 98) {
+            statuses[i] = TorrentStatus.Queued;
+        } else {
+            statuses[i] = TorrentStatus.Error;
+        }
+        uploaded[i] = (long) (random.nextDouble() * 3 * done[i]);
+        return i;
+    }
+
+    private void allocate(int capacity) {
+        names = names == null ? new String[capacity] : Arrays.copyOf(names, capacity);
+        labels = labels == null ? new byte[capacity] : Arrays.copyOf(labels, capacity);
+        sizes = sizes == null ? new long[capacity] : Arrays.copyOf(sizes, capacity);
+        done = done == null ? new long[capacity] : Arrays.copyOf(done, capacity);
+        uploaded = uploaded == null ? new long[capacity] : Arrays.copyOf(uploaded, capacity);
+        rateDownload = rateDownload == null ? new int[capacity] : Arrays.copyOf(rateDownload, capacity);
+        rateUpload = rateUpload == null ? new int[capacity] : Arrays.copyOf(rateUpload, capacity);
+        statuses = statuses == null ? new TorrentStatus[capacity] : Arrays.copyOf(statuses, capacity);
+        fileCounts = fileCounts == null ? new int[capacity] : Arrays.copyOf(fileCounts, capacity);
+        pieceSizes = pieceSizes == null ? new int[capacity] : Arrays.copyOf(pieceSizes, capacity);
+        addedAt = addedAt == null ? new long[capacity] : Arrays.copyOf(addedAt, capacity);
+        doneAt = doneAt == null ? new long[capacity] : Arrays.copyOf(doneAt, capacity);
+        locations = locations == null ? new String[capacity] : Arrays.copyOf(locations, capacity);
+        removed = removed == null ? new boolean[capacity] : Arrays.copyOf(removed, capacity);
+    }
+
+}
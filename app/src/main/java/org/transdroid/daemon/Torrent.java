@@ -125,24 +125,7 @@ public final class Torrent implements Parcelable, Comparable<Torrent>, Finishabl
         this.firstLastPieceDownload = false;
 
         this.dateAdded = dateAdded;
-        if (realDateDone != null) {
-            this.dateDone = realDateDone;
-        } else {
-            if (this.partDone == 1) {
-                // Finished but no finished date: set so move to bottom of list
-                Calendar cal = Calendar.getInstance();
-                cal.clear();
-                cal.set(1900, Calendar.DECEMBER, 31);
-                this.dateDone = cal.getTime();
-            } else if (eta == -1 || eta == -2) {
-                // UNknown eta: move to the top of the list
-                this.dateDone = new Date(Long.MAX_VALUE);
-            } else {
-                Calendar cal = Calendar.getInstance();
-                cal.add(Calendar.SECOND, eta);
-                this.dateDone = cal.getTime();
-            }
-        }
+        this.dateDone = realDateDone != null ? realDateDone : new Date(estimateDateDone(partDone, eta));
         this.error = error;
         this.daemon = daemon;
     }
@@ -170,24 +153,7 @@ public final class Torrent implements Parcelable, Comparable<Torrent>, Finishabl
         this.label = builder.label;
 
         this.dateAdded = builder.dateAdded;
-        if (builder.realDateDone != null) {
-            this.dateDone = builder.realDateDone;
-        } else {
-            if (this.partDone == 1) {
-                // Finished but no finished date: set so move to bottom of list
-                Calendar cal = Calendar.getInstance();
-                cal.clear();
-                cal.set(1900, Calendar.DECEMBER, 31);
-                this.dateDone = cal.getTime();
-            } else if (eta == -1 || eta == -2) {
-                // UNknown eta: move to the top of the list
-                this.dateDone = new Date(Long.MAX_VALUE);
-            } else {
-                Calendar cal = Calendar.getInstance();
-                cal.add(Calendar.SECOND, eta);
-                this.dateDone = cal.getTime();
-            }
-        }
+        this.dateDone = builder.realDateDone != null ? builder.realDateDone : new Date(estimateDateDone(partDone, eta));
         this.error = builder.error;
         this.daemon = builder.daemon;
         this.sequentialDownload = builder.sequentialDownload;
@@ -195,6 +161,34 @@ public final class Torrent implements Parcelable, Comparable<Torrent>, Finishabl
 
     }
 
+    /**
+     * Returns the moment (in epoch milliseconds) that is used as done date for torrents of which the server did not
+     * report it: far in the past for finished torrents, far in the future when the eta is unknown or otherwise the eta.
+     */
+    static long estimateDateDone(float partDone, int eta) {
+        if (partDone == 1) {
+            // Finished but no finished date: set so move to bottom of list
+            Calendar cal = Calendar.getInstance();
+            cal.clear();
+            cal.set(1900, Calendar.DECEMBER, 31);
+            return cal.getTimeInMillis();
+        } else if (eta == -1 || eta == -2) {
+            // UNknown eta: move to the top of the list
+            return Long.MAX_VALUE;
+        }
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.SECOND, eta);
+        return cal.getTimeInMillis();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
     public String getName() {
         return name;
     }
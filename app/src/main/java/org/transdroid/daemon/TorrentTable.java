@@ -0,0 +1,586 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, column-oriented list of torrents, for servers with tens of thousands of torrents. Every property is stored
+ * in a primitive array (dates as epoch milliseconds) and repeated strings such as labels, locations and errors are
+ * stored only once in a string pool, so a table costs a fraction of the memory of the equivalent {@link Torrent}
+ * objects and creates hardly any garbage. Rows can be inspected (to filter and sort) through a reusable {@link Row}
+ * cursor; {@link Torrent} objects are only created for the rows that are actually requested, for example the visible
+ * items in a list. Tables are not thread-safe: fill a table on one thread before handing it over to another.
+ *
+ * @author Eric Kok
+ */
+public final class TorrentTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * The date to pass when adding a row of which the date is unknown.
+     */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    private int size = 0;
+    private long[] ids;
+    private String[] hashes;
+    private String[] names;
+    private byte[] statuses;
+    private int[] locationDirs;
+    private int[] rateDownloads;
+    private int[] rateUploads;
+    private int[] seedersConnected;
+    private int[] seedersKnown;
+    private int[] leechersConnected;
+    private int[] leechersKnown;
+    private int[] etas;
+    private long[] downloadedEver;
+    private long[] uploadedEver;
+    private long[] totalSizes;
+    private float[] partDone;
+    private float[] available;
+    private int[] labels;
+    private long[] datesAdded;
+    private long[] datesDone;
+    private int[] errors;
+    private byte[] daemons;
+    private byte[] flags;
+    private int[] numbersOfTrackers;
+
+    // Interned strings, where index 0 represents null
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private String[] pool = new String[16];
+    private int poolSize = 1;
+
+    private static final byte FLAG_SEQUENTIAL = 1;
+    private static final byte FLAG_FIRST_LAST_PIECE = 2;
+    private static final TorrentStatus[] STATUSES = TorrentStatus.values();
+    private static final Daemon[] DAEMONS = Daemon.values();
+
+    public TorrentTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty table.
+     *
+     * @param capacity The number of torrents that is expected to be added, such that the columns need not grow
+     */
+    public TorrentTable(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    /**
+     * Creates a table with the same contents as the given torrents.
+     */
+    public static TorrentTable fromTorrents(List<Torrent> torrents) {
+        if (torrents instanceof TorrentList && ((TorrentList) torrents).rows == null) {
+            // A view on a full table can be copied column by column
+            return ((TorrentList) torrents).table.copy();
+        }
+        TorrentTable table = new TorrentTable(torrents.size());
+        for (Torrent torrent : torrents) {
+            table.add(torrent);
+        }
+        return table;
+    }
+
+    /**
+     * Adds a torrent as a new row; its properties are copied so the torrent object itself is not retained.
+     */
+    public void add(Torrent torrent) {
+        int row = add(torrent.getId(), torrent.getHash(), torrent.getName(), torrent.getStatusCode(),
+                torrent.getLocationDir(), torrent.getRateDownload(), torrent.getRateUpload(),
+                torrent.getSeedersConnected(), torrent.getSeedersKnown(), torrent.getLeechersConnected(),
+                torrent.getLeechersKnown(), torrent.getEta(), torrent.getDownloadedEver(), torrent.getUploadedEver(),
+                torrent.getTotalSize(), torrent.getPartDone(), torrent.getAvailability(), torrent.getLabelName(),
+                torrent.getDateAdded() == null ? NO_DATE : torrent.getDateAdded().getTime(),
+                torrent.getDateDone() == null ? NO_DATE : torrent.getDateDone().getTime(), torrent.getError(),
+                torrent.getDaemon());
+        setDownloadOrder(row, torrent.isSequentiallyDownloading(), torrent.isDownloadingFirstLastPieceFirst());
+        numbersOfTrackers[row] = torrent.getNumberOfTrackers();
+    }
+
+    /**
+     * Adds a torrent as a new row, directly from its properties, such that adapters can fill a table without creating
+     * {@link Torrent} objects. The arguments are as for the {@link Torrent} constructor, but with dates as epoch
+     * milliseconds.
+     *
+     * @param dateAdded    The moment the torrent was added, or {@link #NO_DATE} if unknown
+     * @param realDateDone The moment the torrent finished, or {@link #NO_DATE} if unknown (in which case it is
+     *                     estimated from the progress and eta)
+     * @return The index of the new row
+     */
+    public int add(long id, String hash, String name, TorrentStatus statusCode, String locationDir, int rateDownload,
+                   int rateUpload, int seedersConnected, int seedersKnown, int leechersConnected, int leechersKnown,
+                   int eta, long downloadedEver, long uploadedEver, long totalSize, float partDone, float available,
+                   String label, long dateAdded, long realDateDone, String error, Daemon daemon) {
+        if (size == ids.length) {
+            allocate(size * 2);
+        }
+        int row = size++;
+        this.ids[row] = id;
+        this.hashes[row] = hash;
+        this.names[row] = name;
+        this.statuses[row] = (byte) statusCode.ordinal();
+        this.locationDirs[row] = intern(locationDir);
+        this.rateDownloads[row] = rateDownload;
+        this.rateUploads[row] = rateUpload;
+        this.seedersConnected[row] = seedersConnected;
+        this.seedersKnown[row] = seedersKnown;
+        this.leechersConnected[row] = leechersConnected;
+        this.leechersKnown[row] = leechersKnown;
+        this.etas[row] = eta;
+        this.downloadedEver[row] = downloadedEver;
+        this.uploadedEver[row] = uploadedEver;
+        this.totalSizes[row] = totalSize;
+        this.partDone[row] = partDone;
+        this.available[row] = available;
+        this.labels[row] = intern(label);
+        this.datesAdded[row] = dateAdded;
+        this.datesDone[row] = realDateDone != NO_DATE ? realDateDone : Torrent.estimateDateDone(partDone, eta);
+        this.errors[row] = intern(error);
+        this.daemons[row] = (byte) (daemon == null ? -1 : daemon.ordinal());
+        this.flags[row] = 0;
+        this.numbersOfTrackers[row] = 0;
+        return row;
+    }
+
+    /**
+     * Replaces the row of the given torrent (by unique id) with its new properties, or adds it if it was not in the
+     * table yet.
+     */
+    public void update(Torrent torrent) {
+        int row = indexOf(torrent.getUniqueID());
+        if (row >= 0) {
+            remove(row);
+        }
+        add(torrent);
+    }
+
+    /**
+     * Removes a row; the rows after it move up one place.
+     */
+    public void remove(int row) {
+        checkRow(row);
+        int moved = size - row - 1;
+        for (Object column : columns()) {
+            System.arraycopy(column, row + 1, column, row, moved);
+        }
+        size--;
+        hashes[size] = null;
+        names[size] = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the row of the torrent with the given unique id (see {@link Torrent#getUniqueID()}), or -1 if there is no
+     * such torrent in the table.
+     */
+    public int indexOf(String uniqueId) {
+        if (uniqueId == null) {
+            return -1;
+        }
+        for (int row = 0; row < size; row++) {
+            if (hashes[row] != null ? uniqueId.equals(hashes[row]) : uniqueId.equals(Long.toString(ids[row]))) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates a new {@link Torrent} object with the properties of some row. The object is not backed by the table; use
+     * {@link #update(Torrent)} to write back changes.
+     */
+    public Torrent get(int row) {
+        checkRow(row);
+        Torrent torrent = new Torrent.Builder()
+                .setId(ids[row])
+                .setHash(hashes[row])
+                .setName(names[row])
+                .setStatusCode(STATUSES[statuses[row]])
+                .setLocationDir(pool[locationDirs[row]])
+                .setRateDownload(rateDownloads[row])
+                .setRateUpload(rateUploads[row])
+                .setSeedersConnected(seedersConnected[row])
+                .setSeedersKnown(seedersKnown[row])
+                .setLeechersConnected(leechersConnected[row])
+                .setLeechersKnown(leechersKnown[row])
+                .setEta(etas[row])
+                .setDownloadedEver(downloadedEver[row])
+                .setUploadedEver(uploadedEver[row])
+                .setTotalSize(totalSizes[row])
+                .setPartDone(partDone[row])
+                .setAvailable(available[row])
+                .setLabel(pool[labels[row]])
+                .setDateAdded(datesAdded[row] == NO_DATE ? null : new Date(datesAdded[row]))
+                .setRealDateDone(datesDone[row] == NO_DATE ? null : new Date(datesDone[row]))
+                .setError(pool[errors[row]])
+                .setDaemon(daemons[row] < 0 ? null : DAEMONS[daemons[row]])
+                .setSequentialDownload((flags[row] & FLAG_SEQUENTIAL) != 0)
+                .setFirstLastPieceDownload((flags[row] & FLAG_FIRST_LAST_PIECE) != 0)
+                .createTorrent();
+        torrent.setNumberOfTrackers(numbersOfTrackers[row]);
+        return torrent;
+    }
+
+    public void setNumberOfTrackers(int row, int numberOfTrackers) {
+        checkRow(row);
+        numbersOfTrackers[row] = numberOfTrackers;
+    }
+
+    /**
+     * Sets the download order of a row, as reported by servers that support sequential downloading.
+     */
+    public void setDownloadOrder(int row, boolean sequentialDownload, boolean firstLastPieceDownload) {
+        checkRow(row);
+        flags[row] = (byte) ((sequentialDownload ? FLAG_SEQUENTIAL : 0)
+                | (firstLastPieceDownload ? FLAG_FIRST_LAST_PIECE : 0));
+    }
+
+    /**
+     * Returns a new cursor to inspect the rows of this table without creating {@link Torrent} objects.
+     */
+    public Row row() {
+        return new Row();
+    }
+
+    /**
+     * Returns a read-only list view of all rows; its items are created (as {@link #get(int)}) whenever requested. The
+     * view is not updated when rows are added or removed later.
+     */
+    public List<Torrent> asList() {
+        return new TorrentList(this, null, size);
+    }
+
+    /**
+     * Returns a read-only list view of a selection of the rows, in the given order.
+     *
+     * @param rows  The row indexes to include
+     * @param count The number of row indexes to use from the start of the array
+     */
+    public List<Torrent> asList(int[] rows, int count) {
+        return new TorrentList(this, rows, count);
+    }
+
+    /**
+     * Sorts a selection of row indexes (stable, as {@link java.util.Collections#sort(List, Comparator)}) on the
+     * properties of the rows.
+     *
+     * @param rows       The row indexes to sort
+     * @param count      The number of row indexes to sort from the start of the array
+     * @param comparator The comparator, which is given two (reused) row cursors
+     */
+    public void sort(int[] rows, int count, Comparator<Row> comparator) {
+        Row left = new Row();
+        Row right = new Row();
+        int[] buffer = new int[count];
+        // Bottom-up merge sort, with insertion sort on small runs
+        final int run = 16;
+        for (int start = 0; start < count; start += run) {
+            int end = Math.min(start + run, count);
+            for (int i = start + 1; i < end; i++) {
+                int value = rows[i];
+                int j = i - 1;
+                while (j >= start && comparator.compare(left.moveTo(rows[j]), right.moveTo(value)) > 0) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = value;
+            }
+        }
+        int[] from = rows;
+        int[] to = buffer;
+        for (int width = run; width < count; width *= 2) {
+            for (int start = 0; start < count; start += 2 * width) {
+                int middle = Math.min(start + width, count);
+                int end = Math.min(start + 2 * width, count);
+                int i = start, j = middle, k = start;
+                while (i < middle && j < end) {
+                    to[k++] = comparator.compare(left.moveTo(from[i]), right.moveTo(from[j])) <= 0 ? from[i++] : from[j++];
+                }
+                while (i < middle) {
+                    to[k++] = from[i++];
+                }
+                while (j < end) {
+                    to[k++] = from[j++];
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != rows) {
+            System.arraycopy(from, 0, rows, 0, count);
+        }
+    }
+
+    /**
+     * Returns an independent copy of this table, such that it can be changed without affecting this table.
+     */
+    public TorrentTable copy() {
+        TorrentTable copy = new TorrentTable(size);
+        Object[] source = columns();
+        Object[] target = copy.columns();
+        for (int c = 0; c < source.length; c++) {
+            System.arraycopy(source[c], 0, target[c], 0, size);
+        }
+        copy.size = size;
+        copy.pool = Arrays.copyOf(pool, pool.length);
+        copy.poolSize = poolSize;
+        copy.poolIndex.putAll(poolIndex);
+        return copy;
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer index = poolIndex.get(value);
+        if (index == null) {
+            if (poolSize == pool.length) {
+                pool = Arrays.copyOf(pool, poolSize * 2);
+            }
+            index = poolSize++;
+            pool[index] = value;
+            poolIndex.put(value, index);
+        }
+        return index;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    private Object[] columns() {
+        return new Object[]{ids, hashes, names, statuses, locationDirs, rateDownloads, rateUploads, seedersConnected,
+                seedersKnown, leechersConnected, leechersKnown, etas, downloadedEver, uploadedEver, totalSizes, partDone,
+                available, labels, datesAdded, datesDone, errors, daemons, flags, numbersOfTrackers};
+    }
+
+    private void allocate(int capacity) {
+        if (ids == null) {
+            ids = new long[capacity];
+            hashes = new String[capacity];
+            names = new String[capacity];
+            statuses = new byte[capacity];
+            locationDirs = new int[capacity];
+            rateDownloads = new int[capacity];
+            rateUploads = new int[capacity];
+            seedersConnected = new int[capacity];
+            seedersKnown = new int[capacity];
+            leechersConnected = new int[capacity];
+            leechersKnown = new int[capacity];
+            etas = new int[capacity];
+            downloadedEver = new long[capacity];
+            uploadedEver = new long[capacity];
+            totalSizes = new long[capacity];
+            partDone = new float[capacity];
+            available = new float[capacity];
+            labels = new int[capacity];
+            datesAdded = new long[capacity];
+            datesDone = new long[capacity];
+            errors = new int[capacity];
+            daemons = new byte[capacity];
+            flags = new byte[capacity];
+            numbersOfTrackers = new int[capacity];
+            return;
+        }
+        ids = Arrays.copyOf(ids, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        names = Arrays.copyOf(names, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        locationDirs = Arrays.copyOf(locationDirs, capacity);
+        rateDownloads = Arrays.copyOf(rateDownloads, capacity);
+        rateUploads = Arrays.copyOf(rateUploads, capacity);
+        seedersConnected = Arrays.copyOf(seedersConnected, capacity);
+        seedersKnown = Arrays.copyOf(seedersKnown, capacity);
+        leechersConnected = Arrays.copyOf(leechersConnected, capacity);
+        leechersKnown = Arrays.copyOf(leechersKnown, capacity);
+        etas = Arrays.copyOf(etas, capacity);
+        downloadedEver = Arrays.copyOf(downloadedEver, capacity);
+        uploadedEver = Arrays.copyOf(uploadedEver, capacity);
+        totalSizes = Arrays.copyOf(totalSizes, capacity);
+        partDone = Arrays.copyOf(partDone, capacity);
+        available = Arrays.copyOf(available, capacity);
+        labels = Arrays.copyOf(labels, capacity);
+        datesAdded = Arrays.copyOf(datesAdded, capacity);
+        datesDone = Arrays.copyOf(datesDone, capacity);
+        errors = Arrays.copyOf(errors, capacity);
+        daemons = Arrays.copyOf(daemons, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        numbersOfTrackers = Arrays.copyOf(numbersOfTrackers, capacity);
+    }
+
+    /**
+     * A cursor over the rows of the table, with the same accessors as {@link Torrent} (but with dates as epoch
+     * milliseconds). Move it with {@link #moveTo(int)}; it does not copy any data.
+     */
+    public final class Row {
+
+        private int row;
+
+        private Row() {
+        }
+
+        public Row moveTo(int row) {
+            checkRow(row);
+            this.row = row;
+            return this;
+        }
+
+        public int getIndex() {
+            return row;
+        }
+
+        public long getId() {
+            return ids[row];
+        }
+
+        public String getHash() {
+            return hashes[row];
+        }
+
+        public String getName() {
+            return names[row];
+        }
+
+        public String getUniqueID() {
+            return hashes[row] == null ? Long.toString(ids[row]) : hashes[row];
+        }
+
+        public TorrentStatus getStatusCode() {
+            return STATUSES[statuses[row]];
+        }
+
+        public String getLocationDir() {
+            return pool[locationDirs[row]];
+        }
+
+        public int getRateDownload() {
+            return rateDownloads[row];
+        }
+
+        public int getRateUpload() {
+            return rateUploads[row];
+        }
+
+        public int getEta() {
+            return etas[row];
+        }
+
+        public long getDownloadedEver() {
+            return downloadedEver[row];
+        }
+
+        public long getUploadedEver() {
+            return uploadedEver[row];
+        }
+
+        public long getTotalSize() {
+            return totalSizes[row];
+        }
+
+        public float getPartDone() {
+            return partDone[row];
+        }
+
+        public String getLabelName() {
+            return pool[labels[row]];
+        }
+
+        /**
+         * Returns the moment the torrent was added in epoch milliseconds, or {@link Long#MIN_VALUE} if unknown.
+         */
+        public long getDateAddedTime() {
+            return datesAdded[row];
+        }
+
+        /**
+         * Returns the (real or estimated) moment the torrent finished in epoch milliseconds, as
+         * {@link Torrent#getDateDone()}.
+         */
+        public long getDateDoneTime() {
+            return datesDone[row];
+        }
+
+        public String getError() {
+            return pool[errors[row]];
+        }
+
+        public int getNumberOfTrackers() {
+            return numbersOfTrackers[row];
+        }
+
+        public double getRatio() {
+            return ((double) uploadedEver[row]) / ((double) downloadedEver[row]);
+        }
+
+        public boolean isDownloading(boolean dormantAsInactive) {
+            return getStatusCode() == TorrentStatus.Downloading && (!dormantAsInactive || rateDownloads[row] > 0);
+        }
+
+        public boolean isSeeding(boolean dormantAsInactive) {
+            return getStatusCode() == TorrentStatus.Seeding && (!dormantAsInactive || rateUploads[row] > 0);
+        }
+
+    }
+
+    /**
+     * Read-only list view on (a selection of) the rows, creating {@link Torrent} objects on request only.
+     */
+    private static final class TorrentList extends AbstractList<Torrent> {
+
+        private final TorrentTable table;
+        private final int[] rows;
+        private final int count;
+
+        TorrentList(TorrentTable table, int[] rows, int count) {
+            this.table = table;
+            this.rows = rows;
+            this.count = count;
+        }
+
+        @Override
+        public Torrent get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + count);
+            }
+            return table.get(rows == null ? index : rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+    }
+
+}
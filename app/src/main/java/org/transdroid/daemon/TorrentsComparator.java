@@ -54,61 +54,92 @@ public class TorrentsComparator implements Comparator<Torrent> {
 
     @Override
     public int compare(Torrent tor1, Torrent tor2) {
-        if (!reversed) {
-            switch (sortBy) {
-                case Status:
-                    return tor1.getStatusCode().compareStatusCodeTo(tor2.getStatusCode());
-                case DateAdded:
-                    if (tor1.getDateAdded() == null)
-                        return -1;
-                    if (tor2.getDateAdded() == null)
-                        return 1;
-                    return tor1.getDateAdded().compareTo(tor2.getDateAdded());
-                case DateDone:
-                    return tor1.getDateDone().compareTo(tor2.getDateDone());
-                case Percent:
-                    return Float.compare(tor1.getDownloadedPercentage(), tor2.getDownloadedPercentage());
-                case DownloadSpeed:
-                    return Integer.compare(tor1.getRateDownload(), tor2.getRateDownload());
-                case UploadSpeed:
-                    return Integer.compare(tor1.getRateUpload(), tor2.getRateUpload());
-                case Ratio:
-                    return Double.compare(tor1.getRatio(), tor2.getRatio());
-                case Size:
-                    return Double.compare(tor1.getTotalSize(), (double) tor2.getTotalSize());
-                case NumberOfTrackers:
-                    return Integer.compare(tor1.getNumberOfTrackers(), tor2.getNumberOfTrackers());
-                default:
-                    return alphanumComparator.compare(tor1.getName().toLowerCase(), tor2.getName().toLowerCase());
-            }
-        } else {
-            switch (sortBy) {
-                case Status:
-                    return -tor1.getStatusCode().compareStatusCodeTo(tor2.getStatusCode());
-                case DateAdded:
-                    if (tor1.getDateAdded() == null)
-                        return 1;
-                    if (tor2.getDateAdded() == null)
-                        return -1;
-                    return -tor1.getDateAdded().compareTo(tor2.getDateAdded());
-                case DateDone:
-                    return -tor1.getDateDone().compareTo(tor2.getDateDone());
-                case Percent:
-                    return -(Float.compare(tor1.getDownloadedPercentage(), tor2.getDownloadedPercentage()));
-                case DownloadSpeed:
-                    return -(Integer.compare(tor1.getRateDownload(), tor2.getRateDownload()));
-                case UploadSpeed:
-                    return -(Integer.compare(tor1.getRateUpload(), tor2.getRateUpload()));
-                case Ratio:
-                    return -Double.compare(tor1.getRatio(), tor2.getRatio());
-                case Size:
-                    return -Double.compare(tor1.getTotalSize(), (double) tor2.getTotalSize());
-                case NumberOfTrackers:
-                    return -Integer.compare(tor1.getNumberOfTrackers(), tor2.getNumberOfTrackers());
-                default:
-                    return -alphanumComparator.compare(tor1.getName().toLowerCase(), tor2.getName().toLowerCase());
-            }
+        int result;
+        switch (sortBy) {
+            case Status:
+                result = tor1.getStatusCode().compareStatusCodeTo(tor2.getStatusCode());
+                break;
+            case DateAdded:
+                if (tor1.getDateAdded() == null)
+                    result = -1;
+                else if (tor2.getDateAdded() == null)
+                    result = 1;
+                else
+                    result = tor1.getDateAdded().compareTo(tor2.getDateAdded());
+                break;
+            case DateDone:
+                result = tor1.getDateDone().compareTo(tor2.getDateDone());
+                break;
+            case Percent:
+                result = Float.compare(tor1.getDownloadedPercentage(), tor2.getDownloadedPercentage());
+                break;
+            case DownloadSpeed:
+                result = Integer.compare(tor1.getRateDownload(), tor2.getRateDownload());
+                break;
+            case UploadSpeed:
+                result = Integer.compare(tor1.getRateUpload(), tor2.getRateUpload());
+                break;
+            case Ratio:
+                result = Double.compare(tor1.getRatio(), tor2.getRatio());
+                break;
+            case Size:
+                result = Double.compare(tor1.getTotalSize(), (double) tor2.getTotalSize());
+                break;
+            case NumberOfTrackers:
+                result = Integer.compare(tor1.getNumberOfTrackers(), tor2.getNumberOfTrackers());
+                break;
+            default:
+                result = alphanumComparator.compare(tor1.getName().toLowerCase(), tor2.getName().toLowerCase());
+        }
+        return reversed ? -result : result;
+    }
+
+    /**
+     * Returns a comparator with the same ordering as this comparator, but for the rows of a {@link TorrentTable}.
+     */
+    public Comparator<TorrentTable.Row> forRows() {
+        return this::compare;
+    }
+
+    private int compare(TorrentTable.Row tor1, TorrentTable.Row tor2) {
+        int result;
+        switch (sortBy) {
+            case Status:
+                result = tor1.getStatusCode().compareStatusCodeTo(tor2.getStatusCode());
+                break;
+            case DateAdded:
+                if (tor1.getDateAddedTime() == Long.MIN_VALUE)
+                    result = -1;
+                else if (tor2.getDateAddedTime() == Long.MIN_VALUE)
+                    result = 1;
+                else
+                    result = Long.compare(tor1.getDateAddedTime(), tor2.getDateAddedTime());
+                break;
+            case DateDone:
+                result = Long.compare(tor1.getDateDoneTime(), tor2.getDateDoneTime());
+                break;
+            case Percent:
+                result = Float.compare(tor1.getPartDone(), tor2.getPartDone());
+                break;
+            case DownloadSpeed:
+                result = Integer.compare(tor1.getRateDownload(), tor2.getRateDownload());
+                break;
+            case UploadSpeed:
+                result = Integer.compare(tor1.getRateUpload(), tor2.getRateUpload());
+                break;
+            case Ratio:
+                result = Double.compare(tor1.getRatio(), tor2.getRatio());
+                break;
+            case Size:
+                result = Long.compare(tor1.getTotalSize(), tor2.getTotalSize());
+                break;
+            case NumberOfTrackers:
+                result = Integer.compare(tor1.getNumberOfTrackers(), tor2.getNumberOfTrackers());
+                break;
+            default:
+                result = alphanumComparator.compare(tor1.getName().toLowerCase(), tor2.getName().toLowerCase());
         }
+        return reversed ? -result : result;
     }
 
 }
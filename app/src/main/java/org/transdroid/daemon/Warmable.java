@@ -0,0 +1,39 @@
+/*
+ *	This file is part of Transdroid <http://www.transdroid.org>
+ *
+ *	Transdroid is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	Transdroid is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.transdroid.daemon;
+
+import org.transdroid.core.gui.log.Log;
+
+/**
+ * Interface for daemon adapters that can set up their connection to the server (such as the login, session token and
+ * version detection) ahead of the first task, such that this can be done while the screens are still being shown.
+ *
+ * @author erickok
+ */
+public interface Warmable {
+
+    /**
+     * Sets up the connection to the server, if this was not done already. This contacts the server and thus should
+     * never be called on the UI thread. Failures need no handling, as the next task simply tries again.
+     *
+     * @param log The logger to report to
+     * @throws DaemonException Thrown when the server could not be reached or rejected the login
+     */
+    void warmUp(Log log) throws DaemonException;
+
+}
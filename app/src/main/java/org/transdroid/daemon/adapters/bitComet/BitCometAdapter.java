@@ -53,6 +53,7 @@ import org.transdroid.daemon.task.RetrieveTask;
 import org.transdroid.daemon.task.RetrieveTaskSuccessResult;
 import org.transdroid.daemon.task.SetTransferRatesTask;
 import org.transdroid.daemon.util.HttpHelper;
+import org.transdroid.daemon.util.RequestMetrics;
 import org.transdroid.multipart.BitCometFilePart;
 import org.transdroid.multipart.Utf8StringPart;
 import org.xmlpull.v1.XmlPullParser;
@@ -133,16 +134,20 @@ public class BitCometAdapter implements IDaemonAdapter {
                     try {
                         String xmlResult = makeRequest(log, "/panel/task_list_xml");
                         if (xmlResult.startsWith("<?xml")) {
-                            return new RetrieveTaskSuccessResult((RetrieveTask) task, parseXmlTorrents(xmlResult),
-                                    null);
+                            long parseStart = RequestMetrics.startParsing();
+                            ArrayList<Torrent> retrieved = parseXmlTorrents(xmlResult);
+                            RequestMetrics.recordParsing(parseStart, retrieved.size());
+                            return new RetrieveTaskSuccessResult((RetrieveTask) task, retrieved, null);
                         }
                     } catch (DaemonException e) {
                         throw e;
                     } catch (Exception e) {
                         // it's probably an old client, parse HTML instead
                         String htmlResult = makeRequest(log, "/panel/task_list");
-                        return new RetrieveTaskSuccessResult((RetrieveTask) task, parseHttpTorrents(log, htmlResult),
-                                null);
+                        long parseStart = RequestMetrics.startParsing();
+                        ArrayList<Torrent> retrieved = parseHttpTorrents(log, htmlResult);
+                        RequestMetrics.recordParsing(parseStart, retrieved.size());
+                        return new RetrieveTaskSuccessResult((RetrieveTask) task, retrieved, null);
                     }
 
                 case GetFileList:
@@ -564,7 +569,7 @@ public class BitCometAdapter implements IDaemonAdapter {
      * @return The parsed list of torrents from the XML
      * @throws DaemonException
      */
-    private ArrayList<Torrent> parseXmlTorrents(String response) throws DaemonException {
+    ArrayList<Torrent> parseXmlTorrents(String response) throws DaemonException {
 
         ArrayList<Torrent> torrents = new ArrayList<>();
 
@@ -43,6 +43,7 @@ import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentDetails;
 import org.transdroid.daemon.TorrentFile;
 import org.transdroid.daemon.TorrentStatus;
+import org.transdroid.daemon.Warmable;
 import org.transdroid.daemon.task.AddByFileTask;
 import org.transdroid.daemon.task.AddByMagnetUrlTask;
 import org.transdroid.daemon.task.AddByUrlTask;
@@ -65,6 +66,8 @@ import org.transdroid.daemon.task.SetLabelTask;
 import org.transdroid.daemon.task.SetTrackersTask;
 import org.transdroid.daemon.task.SetTransferRatesTask;
 import org.transdroid.daemon.util.HttpHelper;
+import org.transdroid.daemon.util.RequestMetrics;
+import org.transdroid.daemon.util.ServerCapabilities;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -79,7 +82,6 @@ import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_DETAILS;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_DETAILS_FIELDS_ARRAY;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_DOWNLOADEDEVER;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_ETA;
-import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_FIELDS_ARRAY;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_FILE;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_FILEPRIORITIES;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_FILEPROGRESS;
@@ -93,6 +95,7 @@ import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_METHOD;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_METHOD_ADD;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_METHOD_ADD_MAGNET;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_METHOD_AUTH_LOGIN;
+import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_METHOD_CONNECTED;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_METHOD_FORCERECHECK;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_METHOD_GET;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_METHOD_MOVESTORAGE;
@@ -136,7 +139,7 @@ import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_URL;
  *
  * @author erickok
  */
-public class DelugeAdapter implements IDaemonAdapter {
+public class DelugeAdapter implements IDaemonAdapter, Warmable {
 
     private static final String LOG_NAME = "Deluge daemon";
 
@@ -145,15 +148,19 @@ public class DelugeAdapter implements IDaemonAdapter {
 
     private static final String RPC_ID = "id";
     private static final String RPC_METHOD_ADD_FILE = "web.add_torrents";
+    private static final String CAPABILITY_VERSION = "version";
 
     private DaemonSettings settings;
     private DefaultHttpClient httpclient;
     private Cookie sessionCookie;
-    private int version = -1;
+    private final ServerCapabilities capabilities;
+    private int version;
     private long lastAuthTime = -1;
 
     public DelugeAdapter(DaemonSettings settings) {
         this.settings = settings;
+        this.capabilities = ServerCapabilities.get(settings);
+        this.version = capabilities.getInt(CAPABILITY_VERSION, -1);
     }
 
     private JSONArray addTorrentByFile(String file, Log log) throws JSONException, IOException, DaemonException {
@@ -196,6 +203,15 @@ public class DelugeAdapter implements IDaemonAdapter {
 
     @Override
     public DaemonTaskResult executeTask(Log log, DaemonTask task) {
+        DaemonTaskResult result = performTask(log, task);
+        if (capabilities.invalidateOnFailure(result)) {
+            // What we remembered about the server may be outdated; discover it again on the next task
+            forgetCapabilities();
+        }
+        return result;
+    }
+
+    private DaemonTaskResult performTask(Log log, DaemonTask task) {
 
         try {
             ensureVersion(log);
@@ -211,9 +227,9 @@ public class DelugeAdapter implements IDaemonAdapter {
             switch (task.getMethod()) {
                 case Retrieve:
 
-                    // Request all torrents from server
+                    // Request all torrents from server, with only the fields that the caller needs
                     JSONArray fields = new JSONArray();
-                    for (String field : RPC_FIELDS_ARRAY) {
+                    for (String field : DelugeCommon.getRetrieveFields(((RetrieveTask) task).getProjection())) {
                         fields.put(field);
                     }
                     params.put(fields); // keys
@@ -221,7 +237,10 @@ public class DelugeAdapter implements IDaemonAdapter {
                     // params.put(-1); // cache_id
 
                     JSONObject result = makeRequest(buildRequest(RPC_METHOD_GET, params), log);
-                    return new RetrieveTaskSuccessResult((RetrieveTask) task, parseJsonRetrieveTorrents(result.getJSONObject(RPC_RESULT)),
+                    long parseStart = RequestMetrics.startParsing();
+                    ArrayList<Torrent> retrieved = parseJsonRetrieveTorrents(result.getJSONObject(RPC_RESULT));
+                    RequestMetrics.recordParsing(parseStart, retrieved.size());
+                    return new RetrieveTaskSuccessResult((RetrieveTask) task, retrieved,
                             parseJsonRetrieveLabels(result.getJSONObject(RPC_RESULT)));
 
                 case GetTorrentDetails:
@@ -428,7 +447,18 @@ public class DelugeAdapter implements IDaemonAdapter {
 		return params;
 	}*/
 
-    private void ensureVersion(Log log) throws DaemonException {
+    @Override
+    public void warmUp(Log log) throws DaemonException {
+        ensureVersion(log);
+        try {
+            // Logs in as well
+            makeRequest(buildRequest(RPC_METHOD_CONNECTED, null), log);
+        } catch (JSONException e) {
+            throw new DaemonException(ExceptionType.ParsingFailed, e.toString());
+        }
+    }
+
+    private synchronized void ensureVersion(Log log) throws DaemonException {
         if (version > 0) {
             return;
         }
@@ -456,6 +486,11 @@ public class DelugeAdapter implements IDaemonAdapter {
         }
         // Unable to establish version number; assume an old version by setting it to version 1
         version = 10000;
+        capabilities.put(CAPABILITY_VERSION, version);
+    }
+
+    private synchronized void forgetCapabilities() {
+        version = -1;
     }
 
     private JSONObject buildRequest(String sendMethod, JSONArray params) throws JSONException {
@@ -616,10 +651,10 @@ public class DelugeAdapter implements IDaemonAdapter {
             for (int j = 0; j < names.length(); j++) {
 
                 JSONObject tor = objects.getJSONObject(names.getString(j));
-                // Add the parsed torrent to the list
-                TorrentStatus status = DelugeCommon.convertDelugeState(tor.getString(RPC_STATUS));
-                String error = tor.getString(RPC_MESSAGE);
-                if (tor.getString(RPC_TRACKER_STATUS).indexOf("Error") > 0) {
+                // Add the parsed torrent to the list; fields outside of the requested projection are simply absent
+                TorrentStatus status = DelugeCommon.convertDelugeState(tor.optString(RPC_STATUS));
+                String error = tor.optString(RPC_MESSAGE);
+                if (tor.optString(RPC_TRACKER_STATUS).indexOf("Error") > 0) {
                     error += (error.length() > 0 ? "\n" : "") + tor.getString(RPC_TRACKER_STATUS);
                     //status = TorrentStatus.Error; // Don't report this as blocking error
                 }
@@ -628,17 +663,17 @@ public class DelugeAdapter implements IDaemonAdapter {
                         names.getString(j),
                         tor.getString(RPC_NAME),
                         status,
-                        tor.getString(RPC_SAVEPATH) + settings.getOS().getPathSeperator(),
-                        tor.getInt(RPC_RATEDOWNLOAD),
-                        tor.getInt(RPC_RATEUPLOAD),
-                        tor.getInt(RPC_NUMSEEDS),
-                        tor.getInt(RPC_TOTALSEEDS),
-                        tor.getInt(RPC_NUMPEERS),
-                        tor.getInt(RPC_TOTALPEERS),
-                        tor.getInt(RPC_ETA),
-                        tor.getLong(RPC_DOWNLOADEDEVER),
-                        tor.getLong(RPC_UPLOADEDEVER),
-                        tor.getLong(RPC_TOTALSIZE),
+                        tor.has(RPC_SAVEPATH) ? tor.getString(RPC_SAVEPATH) + settings.getOS().getPathSeperator() : null,
+                        tor.optInt(RPC_RATEDOWNLOAD),
+                        tor.optInt(RPC_RATEUPLOAD),
+                        tor.optInt(RPC_NUMSEEDS),
+                        tor.optInt(RPC_TOTALSEEDS),
+                        tor.optInt(RPC_NUMPEERS),
+                        tor.optInt(RPC_TOTALPEERS),
+                        tor.optInt(RPC_ETA, -1),
+                        tor.optLong(RPC_DOWNLOADEDEVER),
+                        tor.optLong(RPC_UPLOADEDEVER),
+                        tor.optLong(RPC_TOTALSIZE),
                         ((float) tor.getDouble(RPC_PARTDONE)) / 100f, // Percentage to [0..1]
                         0f, // Not available
                         tor.has(RPC_LABEL) ? tor.getString(RPC_LABEL) : null,
@@ -21,6 +21,7 @@ import androidx.annotation.NonNull;
 
 import org.transdroid.daemon.Priority;
 import org.transdroid.daemon.TorrentStatus;
+import org.transdroid.daemon.task.RetrieveTask.Projection;
 
 /**
  * Common constants and methods used by both adapters.
@@ -48,6 +49,7 @@ class DelugeCommon {
     static final String RPC_METHOD_ADD_FILE = "core.add_torrent_file";
     static final String RPC_METHOD_ADD_MAGNET = "core.add_torrent_magnet";
     static final String RPC_METHOD_AUTH_LOGIN = "auth.login";
+    static final String RPC_METHOD_CONNECTED = "web.connected";
     static final String RPC_METHOD_DAEMON_LOGIN = "daemon.login";
     static final String RPC_METHOD_FORCERECHECK = "core.force_recheck";
     static final String RPC_METHOD_GET = "web.update_ui";
@@ -101,8 +103,22 @@ class DelugeCommon {
     static final String[] RPC_FIELDS_ARRAY = {RPC_HASH, RPC_NAME, RPC_STATUS, RPC_SAVEPATH, RPC_RATEDOWNLOAD, RPC_RATEUPLOAD, RPC_NUMPEERS,
             RPC_NUMSEEDS, RPC_TOTALPEERS, RPC_TOTALSEEDS, RPC_ETA, RPC_DOWNLOADEDEVER, RPC_UPLOADEDEVER, RPC_TOTALSIZE, RPC_PARTDONE, RPC_LABEL,
             RPC_MESSAGE, RPC_TIMEADDED, RPC_TRACKER_STATUS,};
+    static final String[] RPC_WIDGET_FIELDS_ARRAY = {RPC_HASH, RPC_NAME, RPC_STATUS, RPC_RATEDOWNLOAD, RPC_RATEUPLOAD, RPC_ETA,
+            RPC_DOWNLOADEDEVER, RPC_UPLOADEDEVER, RPC_TOTALSIZE, RPC_PARTDONE, RPC_TIMEADDED,};
+    static final String[] RPC_NOTIFIER_FIELDS_ARRAY = {RPC_HASH, RPC_NAME, RPC_PARTDONE,};
     static final String[] RPC_FILE_FIELDS_ARRAY = {RPC_DETAILS, RPC_FILEPROGRESS, RPC_FILEPRIORITIES,};
 
+    static String[] getRetrieveFields(Projection projection) {
+        switch (projection) {
+            case Notifier:
+                return RPC_NOTIFIER_FIELDS_ARRAY;
+            case Widget:
+                return RPC_WIDGET_FIELDS_ARRAY;
+            default:
+                return RPC_FIELDS_ARRAY;
+        }
+    }
+
     static TorrentStatus convertDelugeState(String state) {
         // Deluge sends a string with status code
         if (state.compareTo("Paused") == 0) {
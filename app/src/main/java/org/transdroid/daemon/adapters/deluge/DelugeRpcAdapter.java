@@ -38,6 +38,7 @@ import org.transdroid.daemon.Priority;
 import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentDetails;
 import org.transdroid.daemon.TorrentFile;
+import org.transdroid.daemon.Warmable;
 import org.transdroid.daemon.task.AddByFileTask;
 import org.transdroid.daemon.task.AddByMagnetUrlTask;
 import org.transdroid.daemon.task.AddByUrlTask;
@@ -52,12 +53,15 @@ import org.transdroid.daemon.task.GetTorrentDetailsTask;
 import org.transdroid.daemon.task.GetTorrentDetailsTaskSuccessResult;
 import org.transdroid.daemon.task.RemoveTask;
 import org.transdroid.daemon.task.RetrieveTask;
+import org.transdroid.daemon.task.RetrieveTask.Projection;
 import org.transdroid.daemon.task.RetrieveTaskSuccessResult;
 import org.transdroid.daemon.task.SetDownloadLocationTask;
 import org.transdroid.daemon.task.SetFilePriorityTask;
 import org.transdroid.daemon.task.SetLabelTask;
 import org.transdroid.daemon.task.SetTrackersTask;
 import org.transdroid.daemon.task.SetTransferRatesTask;
+import org.transdroid.daemon.util.RequestMetrics;
+import org.transdroid.daemon.util.ServerCapabilities;
 import org.xml.sax.SAXException;
 
 import java.io.BufferedInputStream;
@@ -85,7 +89,6 @@ import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_DETAILS_FIE
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_DOWNLOADEDEVER;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_DOWNLOAD_LOCATION;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_ETA;
-import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_FIELDS_ARRAY;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_FILEPRIORITIES;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_FILEPROGRESS;
 import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_FILE_FIELDS_ARRAY;
@@ -146,22 +149,39 @@ import static org.transdroid.daemon.adapters.deluge.DelugeCommon.RPC_URL;
  *
  * @author alon.albert
  */
-public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
+public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier, Warmable {
 
     public static final int DEFAULT_PORT = 58846;
 
+    private static final String CAPABILITY_VERSION = "version";
+    private static final String CAPABILITY_LABEL_PLUGIN = "label-plugin";
+
     private final DaemonSettings settings;
     private final boolean isVersion2;
+    private final ServerCapabilities capabilities;
 
-    private int version = -1;
+    private int version;
+    private Boolean hasLabelPlugin;
 
     public DelugeRpcAdapter(DaemonSettings settings, boolean isVersion2) {
         this.settings = settings;
         this.isVersion2 = isVersion2;
+        this.capabilities = ServerCapabilities.get(settings);
+        this.version = capabilities.getInt(CAPABILITY_VERSION, -1);
+        this.hasLabelPlugin = capabilities.getBoolean(CAPABILITY_LABEL_PLUGIN);
     }
 
     @Override
     public DaemonTaskResult executeTask(Log log, DaemonTask task) {
+        DaemonTaskResult result = performTask(log, task);
+        if (capabilities.invalidateOnFailure(result)) {
+            // What we remembered about the server may be outdated; discover it again on the next task
+            forgetCapabilities();
+        }
+        return result;
+    }
+
+    private DaemonTaskResult performTask(Log log, DaemonTask task) {
         try (DelugeRpcClient client = new DelugeRpcClient(isVersion2)) {
             client.connect(settings);
             switch (task.getMethod()) {
@@ -301,7 +321,7 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
             client.connect(settings);
             final String torrentId = (String) client
                     .sendRequest(item.isMagnetLink() ? RPC_METHOD_ADD_MAGNET : RPC_METHOD_ADD, item.getLink(), options);
-            if (label != null && hasMethod(client, RPC_METHOD_SETLABEL)) {
+            if (label != null && hasLabelPlugin(client)) {
                 client.sendRequest(RPC_METHOD_SETLABEL, torrentId, label);
             }
         }
@@ -309,14 +329,20 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
 
     @NonNull
     private RetrieveTaskSuccessResult doRetrieve(DelugeRpcClient client, RetrieveTask task) throws DaemonException {
-        // Get torrents
+        // Get torrents, with only the fields that the caller needs
         //noinspection unchecked
         final Map<String, Map<String, Object>> torrentsStatus = (Map<String, Map<String, Object>>) client.sendRequest
-                (RPC_METHOD_GET_TORRENTS_STATUS, new HashMap<>(), RPC_FIELDS_ARRAY);
+                (RPC_METHOD_GET_TORRENTS_STATUS, new HashMap<>(), DelugeCommon.getRetrieveFields(task.getProjection()));
+        final long parseStart = RequestMetrics.startParsing();
         final List<Torrent> torrents = getTorrents(torrentsStatus.values());
+        RequestMetrics.recordParsing(parseStart, torrents.size());
+        if (!task.getProjection().covers(Projection.List)) {
+            // Labels are only shown in the torrents list; save the extra requests
+            return new RetrieveTaskSuccessResult(task, torrents, null);
+        }
 
         // Check if Label plugin is enabled
-        final boolean hasLabelPlugin = hasMethod(client, RPC_METHOD_GET_LABELS);
+        final boolean hasLabelPlugin = hasLabelPlugin(client);
 
         // Get label list from server
         //noinspection unchecked
@@ -389,7 +415,7 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
 
     @NonNull
     private DaemonTaskResult doSetLabel(DelugeRpcClient client, SetLabelTask task) throws DaemonException {
-        if (!hasMethod(client, RPC_METHOD_SETLABEL)) {
+        if (!hasLabelPlugin(client)) {
             throw new DaemonException(ExceptionType.MethodUnsupported, "Label plugin not installed");
         }
         final String torrentId = task.getTargetTorrent().getUniqueID();
@@ -461,7 +487,7 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
     }
 
     @NonNull
-    private List<Torrent> getTorrents(Collection<Map<String, Object>> torrentMaps) {
+    List<Torrent> getTorrents(Collection<Map<String, Object>> torrentMaps) {
         final List<Torrent> torrents = new ArrayList<>();
         int id = 0;
         for (Map<String, Object> torrentMap : torrentMaps) {
@@ -474,8 +500,8 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
                 timeAddedDate = null;
             }
 
-            final String message = (String) torrentMap.get(RPC_MESSAGE);
-            final String trackerStatus = (String) torrentMap.get(RPC_TRACKER_STATUS);
+            final String message = getString(torrentMap, RPC_MESSAGE);
+            final String trackerStatus = getString(torrentMap, RPC_TRACKER_STATUS);
             final String error;
             if (trackerStatus.indexOf("Error") > 0) {
                 error = message + (message.length() > 0 ? "\n" : "") + trackerStatus;
@@ -483,19 +509,33 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
                 error = message;
             }
 
+            // Fields outside of the requested projection are simply absent
+            final Object savePath = torrentMap.get(RPC_SAVEPATH);
             torrents.add(new Torrent(id++, (String) torrentMap.get(RPC_HASH), (String) torrentMap.get(RPC_NAME), DelugeCommon.convertDelugeState(
-                    (String) torrentMap.get(RPC_STATUS)), torrentMap.get(RPC_SAVEPATH) + settings.getOS().getPathSeperator(), ((Number) torrentMap
-                    .get(RPC_RATEDOWNLOAD)).intValue(), ((Number) torrentMap.get(RPC_RATEUPLOAD)).intValue(), ((Number) torrentMap.get
-                    (RPC_NUMSEEDS)).intValue(), ((Number) torrentMap.get(RPC_TOTALSEEDS)).intValue(), ((Number) torrentMap.get(RPC_NUMPEERS))
-                    .intValue(), ((Number) torrentMap.get(RPC_TOTALPEERS)).intValue(), ((Number) torrentMap.get(RPC_ETA)).intValue(), ((Number)
-                    torrentMap.get(RPC_DOWNLOADEDEVER)).longValue(), ((Number) torrentMap.get(RPC_UPLOADEDEVER)).longValue(), ((Number) torrentMap
-                    .get(RPC_TOTALSIZE)).longValue(), ((Number) torrentMap.get(RPC_PARTDONE)).floatValue() / 100f, 0f, // Not available
+                    getString(torrentMap, RPC_STATUS)), savePath == null ? null : savePath + settings.getOS().getPathSeperator(), getNumber
+                    (torrentMap, RPC_RATEDOWNLOAD, 0).intValue(), getNumber(torrentMap, RPC_RATEUPLOAD, 0).intValue(), getNumber(torrentMap,
+                    RPC_NUMSEEDS, 0).intValue(), getNumber(torrentMap, RPC_TOTALSEEDS, 0).intValue(), getNumber(torrentMap, RPC_NUMPEERS, 0)
+                    .intValue(), getNumber(torrentMap, RPC_TOTALPEERS, 0).intValue(), getNumber(torrentMap, RPC_ETA, -1).intValue(), getNumber
+                    (torrentMap, RPC_DOWNLOADEDEVER, 0).longValue(), getNumber(torrentMap, RPC_UPLOADEDEVER, 0).longValue(), getNumber
+                    (torrentMap, RPC_TOTALSIZE, 0).longValue(), ((Number) torrentMap.get(RPC_PARTDONE)).floatValue() / 100f, 0f, // Not available
                     (String) torrentMap.get(RPC_LABEL), timeAddedDate, null, // Not available
                     error, getType()));
         }
         return torrents;
     }
 
+    @NonNull
+    private static Number getNumber(Map<String, Object> map, String key, int fallback) {
+        final Number value = (Number) map.get(key);
+        return value == null ? fallback : value;
+    }
+
+    @NonNull
+    private static String getString(Map<String, Object> map, String key) {
+        final String value = (String) map.get(key);
+        return value == null ? "" : value;
+    }
+
     @NonNull
     private List<Label> getLabels(List<String> labelsResponse, List<Torrent> torrents) {
         // First get all labels that torrents and count them
@@ -596,11 +636,34 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
         return DelugeCommon.convertPriority(priority, version);
     }
 
-    private void ensureVersion(DelugeRpcClient client) throws DaemonException {
+    @Override
+    public void warmUp(Log log) throws DaemonException {
+        // Also leaves a TLS session to resume for the sockets of the coming tasks
+        try (DelugeRpcClient client = new DelugeRpcClient(isVersion2)) {
+            client.connect(settings);
+            ensureVersion(client);
+        }
+    }
+
+    private synchronized void ensureVersion(DelugeRpcClient client) throws DaemonException {
         if (version > 0) {
             return;
         }
         version = DelugeCommon.getVersionString((String) client.sendRequest(RPC_METHOD_INFO));
+        capabilities.put(CAPABILITY_VERSION, version);
+    }
+
+    private synchronized boolean hasLabelPlugin(DelugeRpcClient client) throws DaemonException {
+        if (hasLabelPlugin == null) {
+            hasLabelPlugin = hasMethod(client, RPC_METHOD_GET_LABELS);
+            capabilities.put(CAPABILITY_LABEL_PLUGIN, hasLabelPlugin);
+        }
+        return hasLabelPlugin;
+    }
+
+    private synchronized void forgetCapabilities() {
+        version = -1;
+        hasLabelPlugin = null;
     }
 
     // Return an Object so it doesn't confuse our varargs sendRequest methods.
@@ -22,6 +22,8 @@ import androidx.annotation.NonNull;
 import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.DaemonException.ExceptionType;
 import org.transdroid.daemon.DaemonSettings;
+import org.transdroid.daemon.util.RequestMetrics;
+import org.transdroid.daemon.util.TaskCancellation;
 import org.transdroid.daemon.util.TlsSniSocketFactory;
 
 import java.io.ByteArrayOutputStream;
@@ -63,6 +65,7 @@ class DelugeRpcClient implements Closeable {
     void connect(DaemonSettings settings) throws DaemonException {
         try {
             socket = openSocket(settings);
+            TaskCancellation.register(socket);
             if (isVersion2) {
                 sendRequest(RPC_METHOD_INFO);
             }
@@ -98,6 +101,7 @@ class DelugeRpcClient implements Closeable {
             throw new DaemonException(ExceptionType.ConnectionError, "Failed to encode request: " + e.getMessage());
         }
         try {
+            RequestMetrics.recordRequest(requestBytes.length + (isVersion2 ? V2_HEADER_SIZE : 0));
             if (isVersion2) {
                 socket.getOutputStream().write(
                         ByteBuffer.allocate(V2_HEADER_SIZE + requestBytes.length)
@@ -151,6 +155,7 @@ class DelugeRpcClient implements Closeable {
             }
         }
         final byte[] bytes = out.toByteArray();
+        RequestMetrics.recordResponse(bytes.length);
         final Object responseObject = Rencode.decode(bytes);
 
         if (!(responseObject instanceof List)) {
@@ -180,14 +185,9 @@ class DelugeRpcClient implements Closeable {
             // Non-ssl connections
             throw new DaemonException(ExceptionType.ConnectionError, "Deluge RPC Adapter must have SSL enabled");
         }
-        final TlsSniSocketFactory socketFactory;
-        if (settings.getSslTrustKey() != null && settings.getSslTrustKey().length() != 0) {
-            socketFactory = new TlsSniSocketFactory(settings.getSslTrustKey());
-        } else if (settings.getSslTrustAll()) {
-            socketFactory = new TlsSniSocketFactory(true);
-        } else {
-            socketFactory = new TlsSniSocketFactory();
-        }
+        // The shared factory resumes earlier TLS sessions, so reconnecting for every task is cheap
+        final TlsSniSocketFactory socketFactory =
+                TlsSniSocketFactory.get(settings.getSslTrustAll(), settings.getSslTrustKey());
         return socketFactory.createSocket(null, settings.getAddress(), settings.getPort(), false);
     }
 
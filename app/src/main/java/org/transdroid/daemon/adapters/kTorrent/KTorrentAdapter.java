@@ -52,6 +52,7 @@ import org.transdroid.daemon.task.RetrieveTask;
 import org.transdroid.daemon.task.RetrieveTaskSuccessResult;
 import org.transdroid.daemon.task.SetFilePriorityTask;
 import org.transdroid.daemon.util.HttpHelper;
+import org.transdroid.daemon.util.RequestMetrics;
 
 import java.io.File;
 import java.io.InputStream;
@@ -255,8 +256,10 @@ public class KTorrentAdapter implements IDaemonAdapter {
 
             // Read XML response
             InputStream instream = response.getEntity().getContent();
+            long parseStart = RequestMetrics.startParsing();
             List<Torrent> torrents = StatsParser.parse(new InputStreamReader(instream), settings.getDownloadDir(),
                     settings.getOS().getPathSeperator());
+            RequestMetrics.recordParsing(parseStart, torrents.size());
             instream.close();
             return torrents;
 
@@ -33,9 +33,11 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.transdroid.core.gui.log.Log;
+import org.transdroid.daemon.BatchExecutable;
 import org.transdroid.daemon.Daemon;
 import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.DaemonMethod;
 import org.transdroid.daemon.DaemonSettings;
 import org.transdroid.daemon.IDaemonAdapter;
 import org.transdroid.daemon.Label;
@@ -44,6 +46,8 @@ import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentDetails;
 import org.transdroid.daemon.TorrentFile;
 import org.transdroid.daemon.TorrentStatus;
+import org.transdroid.daemon.TorrentTable;
+import org.transdroid.daemon.Warmable;
 import org.transdroid.daemon.task.AddByFileTask;
 import org.transdroid.daemon.task.AddByMagnetUrlTask;
 import org.transdroid.daemon.task.AddByUrlTask;
@@ -65,6 +69,7 @@ import org.transdroid.daemon.task.SetFilePriorityTask;
 import org.transdroid.daemon.task.SetLabelTask;
 import org.transdroid.daemon.task.SetTransferRatesTask;
 import org.transdroid.daemon.util.HttpHelper;
+import org.transdroid.daemon.util.ServerCapabilities;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -72,7 +77,6 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -82,12 +86,14 @@ import java.util.Map;
  *
  * @author erickok
  */
-public class QBittorrentAdapter implements IDaemonAdapter {
+public class QBittorrentAdapter implements IDaemonAdapter, Warmable, BatchExecutable {
 
     private static final String LOG_NAME = "qBittorrent daemon";
+    private static final String CAPABILITY_VERSION = "version";
 
     private DaemonSettings settings;
     private DefaultHttpClient httpclient;
+    private final ServerCapabilities capabilities;
     private int version = -1;
     private long lastAuthTime = -1;
     private int qbNoPriority = 0;
@@ -99,6 +105,11 @@ public class QBittorrentAdapter implements IDaemonAdapter {
 
     public QBittorrentAdapter(DaemonSettings settings) {
         this.settings = settings;
+        this.capabilities = ServerCapabilities.get(settings);
+        int knownVersion = capabilities.getInt(CAPABILITY_VERSION, -1);
+        if (knownVersion > 0) {
+            setVersion(knownVersion);
+        }
     }
 
     private synchronized void ensureVersion(Log log) {
@@ -129,10 +140,8 @@ public class QBittorrentAdapter implements IDaemonAdapter {
                 }
             }
 
-            version = parseVersionNumber(versionText);
-            if (version >= 30200) {
-              qbNormalPriority = 6;
-            }
+            setVersion(parseVersionNumber(versionText));
+            capabilities.put(CAPABILITY_VERSION, version);
 
         } catch (Exception e) {
             // Unable to establish version number; assume an old version by setting it to version 1
@@ -142,6 +151,18 @@ public class QBittorrentAdapter implements IDaemonAdapter {
 
     }
 
+    void setVersion(int version) {
+        this.version = version;
+        if (version >= 30200) {
+          qbNormalPriority = 6;
+        }
+    }
+
+    private synchronized void forgetCapabilities() {
+        version = -1;
+        qbNormalPriority = 2;
+    }
+
     private int parseVersionNumber(String versionText) {
         // String found: now parse a version like 2.9.7 as a number like 20907 (allowing 10 places for each .)
         int version = -1;
@@ -213,8 +234,72 @@ public class QBittorrentAdapter implements IDaemonAdapter {
         return false;
     }
 
+    @Override
+    public boolean canBatch(DaemonMethod method) {
+        // Only the v2 Web API accepts multiple (|-separated) hashes
+        return version >= 40100 && (method == DaemonMethod.Pause || method == DaemonMethod.Resume ||
+                method == DaemonMethod.Remove || method == DaemonMethod.ForceRecheck);
+    }
+
+    @Override
+    public DaemonTaskResult executeBatch(Log log, List<DaemonTask> tasks) {
+        DaemonTask first = tasks.get(0);
+        try {
+            initialise();
+            ensureAuthenticated(log);
+            ensureVersion(log);
+
+            StringBuilder hashes = new StringBuilder();
+            for (DaemonTask task : tasks) {
+                if (hashes.length() > 0) {
+                    hashes.append("|");
+                }
+                hashes.append(task.getTargetTorrent().getUniqueID());
+            }
+            switch (first.getMethod()) {
+                case Pause:
+                    makeRequest(log, version >= 50000 ? "/api/v2/torrents/stop" : "/api/v2/torrents/pause",
+                            new BasicNameValuePair("hashes", hashes.toString()));
+                    break;
+                case Resume:
+                    makeRequest(log, version >= 50000 ? "/api/v2/torrents/start" : "/api/v2/torrents/resume",
+                            new BasicNameValuePair("hashes", hashes.toString()));
+                    break;
+                case Remove:
+                    makeRequest(log, "/api/v2/torrents/delete", new BasicNameValuePair("hashes", hashes.toString()),
+                            new BasicNameValuePair("deleteFiles", ((RemoveTask) first).includingData() ? "true" : "false"));
+                    break;
+                case ForceRecheck:
+                    makeRequest(log, "/api/v2/torrents/recheck", new BasicNameValuePair("hashes", hashes.toString()));
+                    break;
+                default:
+                    return new DaemonTaskFailureResult(first, new DaemonException(ExceptionType.MethodUnsupported,
+                            first.getMethod() + " can not be batched by " + getType()));
+            }
+            return new DaemonTaskSuccessResult(first);
+        } catch (DaemonException e) {
+            return new DaemonTaskFailureResult(first, e);
+        }
+    }
+
+    @Override
+    public void warmUp(Log log) throws DaemonException {
+        initialise();
+        ensureAuthenticated(log);
+        ensureVersion(log);
+    }
+
     @Override
     public DaemonTaskResult executeTask(Log log, DaemonTask task) {
+        DaemonTaskResult result = performTask(log, task);
+        if (capabilities.invalidateOnFailure(result)) {
+            // What we remembered about the server may be outdated; discover it again on the next task
+            forgetCapabilities();
+        }
+        return result;
+    }
+
+    private DaemonTaskResult performTask(Log log, DaemonTask task) {
 
         try {
             initialise();
@@ -237,7 +322,7 @@ public class QBittorrentAdapter implements IDaemonAdapter {
                     }
 
                     JSONArray allTorrentsResult = new JSONArray(makeRequest(log, path));
-                    final List<Torrent> torrentsList = parseJsonTorrents(allTorrentsResult);
+                    final TorrentTable torrentsList = parseJsonTorrents(allTorrentsResult);
 
                     JSONArray allLabelsResult = null;
                     if (version >= 40100) {
@@ -704,10 +789,10 @@ public class QBittorrentAdapter implements IDaemonAdapter {
 
     }
 
-    private ArrayList<Torrent> parseJsonTorrents(JSONArray response) throws JSONException {
+    TorrentTable parseJsonTorrents(JSONArray response) throws JSONException {
 
-        // Parse response
-        ArrayList<Torrent> torrents = new ArrayList<>();
+        // Parse response directly into a table, without creating Torrent objects
+        TorrentTable torrents = new TorrentTable(response.length());
         for (int i = 0; i < response.length(); i++) {
             JSONObject tor = response.getJSONObject(i);
             double progress = tor.getDouble("progress");
@@ -716,32 +801,33 @@ public class QBittorrentAdapter implements IDaemonAdapter {
             long uploaded;
             int dlspeed;
             int upspeed;
-
-            Torrent.Builder torrentBuilder = new Torrent.Builder()
-                    .setId(i)
-                    .setHash(tor.getString("hash"))
-                    .setName(tor.getString("name"))
-                    .setStatusCode(parseStatus(tor.getString("state")))
-                    .setDaemon(settings.getType())
-                    .setPartDone((float) progress);
+            String locationDir = null;
+            int leechersConnected;
+            int leechersKnown;
+            int seedersConnected;
+            int seedersKnown;
+            boolean sequentialDownload = false;
+            boolean firstLastPieceDownload = false;
+            long dateAdded = TorrentTable.NO_DATE;
+            long dateDone = TorrentTable.NO_DATE;
+            String label = null;
 
             if (version >= 30200) {
-                torrentBuilder
-                        .setLocationDir(tor.getString("save_path"))
-                        .setLeechersConnected(tor.getInt("num_leechs"))
-                        .setLeechersKnown(tor.getInt("num_complete") + tor.getInt("num_incomplete"))
-                        .setSeedersConnected(tor.getInt("num_seeds"))
-                        .setSeedersKnown(tor.getInt("num_complete"));
+                locationDir = tor.getString("save_path");
+                leechersConnected = tor.getInt("num_leechs");
+                leechersKnown = tor.getInt("num_complete") + tor.getInt("num_incomplete");
+                seedersConnected = tor.getInt("num_seeds");
+                seedersKnown = tor.getInt("num_complete");
 
                 size = tor.getLong("size");
                 ratio = tor.getDouble("ratio");
                 dlspeed = tor.getInt("dlspeed");
                 upspeed = tor.getInt("upspeed");
                 if (tor.has("seq_dl")) {
-                    torrentBuilder.setSequentialDownload(tor.getBoolean("seq_dl"));
+                    sequentialDownload = tor.getBoolean("seq_dl");
                 }
                 if (tor.has("f_l_piece_prio")) {
-                    torrentBuilder.setFirstLastPieceDownload(tor.getBoolean("f_l_piece_prio"));
+                    firstLastPieceDownload = tor.getBoolean("f_l_piece_prio");
                 }
                 if (tor.has("uploaded")) {
                     uploaded = tor.getLong("uploaded");
@@ -750,25 +836,24 @@ public class QBittorrentAdapter implements IDaemonAdapter {
                 }
                 final long addedOnTime = tor.optLong("added_on");
                 if(addedOnTime > 0) {
-                    torrentBuilder.setDateAdded(new Date(addedOnTime * 1000L));
+                    dateAdded = addedOnTime * 1000L;
                 }
                 final long completionOnTime = tor.optLong("completion_on");
                 if(completionOnTime > 0) {
-                    torrentBuilder.setRealDateDone(new Date(completionOnTime * 1000L));
+                    dateDone = completionOnTime * 1000L;
                 }
 
-                String label = tor.optString("category");
-                if (!label.isEmpty()) {
-                    torrentBuilder.setLabel(label);
+                String category = tor.optString("category");
+                if (!category.isEmpty()) {
+                    label = category;
                 }
             } else {
                 int[] leechers = parsePeers(tor.getString("num_leechs"));
                 int[] seeders = parsePeers(tor.getString("num_seeds"));
-                torrentBuilder
-                        .setSeedersConnected(seeders[0])
-                        .setSeedersKnown(seeders[1])
-                        .setLeechersConnected(leechers[0])
-                        .setLeechersKnown(leechers[1]);
+                seedersConnected = seeders[0];
+                seedersKnown = seeders[1];
+                leechersConnected = leechers[0];
+                leechersKnown = leechers[1];
 
                 size = parseSize(tor.getString("size"));
                 ratio = parseRatio(tor.getString("ratio"));
@@ -782,21 +867,36 @@ public class QBittorrentAdapter implements IDaemonAdapter {
                 eta = (long) (size - (size * progress)) / dlspeed;
             }
 
-            Torrent torrent = torrentBuilder
-                    .setRateDownload(dlspeed)
-                    .setRateUpload(upspeed)
-                    .setEta((int) eta)
-                    .setDownloadedEver((long) (size * progress))
-                    .setUploadedEver(uploaded)
-                    .setTotalSize(size)
-                    .setAvailable(0f)
-                    .createTorrent();
-
-            // Add the parsed torrent to the list
-            torrents.add(torrent);
+            // Add the parsed torrent to the table
+            // @formatter:off
+            int row = torrents.add(
+                    i,
+                    tor.getString("hash"),
+                    tor.getString("name"),
+                    parseStatus(tor.getString("state")),
+                    locationDir,
+                    dlspeed,
+                    upspeed,
+                    seedersConnected,
+                    seedersKnown,
+                    leechersConnected,
+                    leechersKnown,
+                    (int) eta,
+                    (long) (size * progress),
+                    uploaded,
+                    size,
+                    (float) progress,
+                    0f,
+                    label,
+                    dateAdded,
+                    dateDone,
+                    null,
+                    settings.getType());
+            // @formatter:on
+            torrents.setDownloadOrder(row, sequentialDownload, firstLastPieceDownload);
         }
 
-        // Return the list
+        // Return the table
         return torrents;
     }
 
@@ -33,6 +33,8 @@ import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentDetails;
 import org.transdroid.daemon.TorrentFile;
 import org.transdroid.daemon.TorrentStatus;
+import org.transdroid.daemon.TorrentTable;
+import org.transdroid.daemon.Warmable;
 import org.transdroid.daemon.task.AddByFileTask;
 import org.transdroid.daemon.task.AddByMagnetUrlTask;
 import org.transdroid.daemon.task.AddByUrlTask;
@@ -46,11 +48,14 @@ import org.transdroid.daemon.task.GetTorrentDetailsTask;
 import org.transdroid.daemon.task.GetTorrentDetailsTaskSuccessResult;
 import org.transdroid.daemon.task.RemoveTask;
 import org.transdroid.daemon.task.RetrieveTask;
+import org.transdroid.daemon.task.RetrieveTask.Projection;
 import org.transdroid.daemon.task.RetrieveTaskSuccessResult;
 import org.transdroid.daemon.task.SetFilePriorityTask;
 import org.transdroid.daemon.task.SetLabelTask;
 import org.transdroid.daemon.task.SetTransferRatesTask;
 import org.transdroid.daemon.util.HttpHelper;
+import org.transdroid.daemon.util.RequestMetrics;
+import org.transdroid.daemon.util.ServerCapabilities;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -62,7 +67,6 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URLDecoder;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -74,33 +78,74 @@ import java.util.Map.Entry;
  *
  * @author erickok
  */
-public class RTorrentAdapter implements IDaemonAdapter {
+public class RTorrentAdapter implements IDaemonAdapter, Warmable {
 
     private static final String LOG_NAME = "rTorrent daemon";
 
     private static final String DEFAULT_RPC_URL = "/RPC2";
+    private static final String CAPABILITY_VERSION = "version";
     private static final int XMLRPC_MINIMUM_SIZE = 2 * 1024 * 1024;
     private static final int XMLRPC_EXTRA_PADDING = 1280;
+    // The torrent fields to retrieve, which are parsed by their position in onTorrentsRetrieved
+    // @formatter:off
+    static final String[] RPC_FIELDS = new String[]{
+            "d.hash=",
+            "d.name=",
+            "d.state=",
+            "d.down.rate=",
+            "d.up.rate=",
+            "d.peers_connected=",
+            "d.peers_not_connected=",
+            "d.peers_accounted=",
+            "d.bytes_done=",
+            "d.up.total=",
+            "d.size_bytes=",
+            "d.creation_date=",
+            "d.left_bytes=",
+            "d.complete=",
+            "d.is_active=",
+            "d.is_hash_checking=",
+            "d.is_multi_file=",
+            "d.base_filename=",
+            "d.message=",
+            "d.custom=addtime",
+            "d.custom=seedingtime",
+            "d.custom1=",
+            "d.peers_complete=",
+            "d.peers_accounted=",
+            "d.is_open="};
+    // @formatter:on
 
     private DaemonSettings settings;
     private XMLRPCClient rpcclient;
     private List<Label> lastKnownLabels = null;
+    private final ServerCapabilities capabilities;
     private Integer version = null;
 
     public RTorrentAdapter(DaemonSettings settings) {
         this.settings = settings;
+        this.capabilities = ServerCapabilities.get(settings);
+        int knownVersion = capabilities.getInt(CAPABILITY_VERSION, -1);
+        this.version = knownVersion > 0 ? knownVersion : null;
     }
 
     @Override
     public DaemonTaskResult executeTask(Log log, DaemonTask task) {
+        DaemonTaskResult result = performTask(log, task);
+        if (capabilities.invalidateOnFailure(result)) {
+            // What we remembered about the server may be outdated; discover it again on the next task
+            forgetCapabilities();
+        }
+        return result;
+    }
+
+    private DaemonTaskResult performTask(Log log, DaemonTask task) {
 
         try {
             // Ensure a version number is know to switch to the right methods
             if (version == null) {
                 try {
-                    Object versionObject = makeRtorrentCall(log, "system.client_version", new String[0]);
-                    String[] versionRaw = versionObject.toString().split("\\.");
-                    version = (Integer.parseInt(versionRaw[0]) * 10000) + (Integer.parseInt(versionRaw[1]) * 100) + Integer.parseInt(versionRaw[2]);
+                    ensureVersion(log);
                 } catch (Exception e) {
                     version = 10000;
                 }
@@ -108,37 +153,21 @@ public class RTorrentAdapter implements IDaemonAdapter {
             switch (task.getMethod()) {
                 case Retrieve:
 
-                    // @formatter:off
-                    Object result = makeRtorrentCall(log, "d.multicall2",
-                            new String[]{"", "main",
-                                    "d.hash=",
-                                    "d.name=",
-                                    "d.state=",
-                                    "d.down.rate=",
-                                    "d.up.rate=",
-                                    "d.peers_connected=",
-                                    "d.peers_not_connected=",
-                                    "d.peers_accounted=",
-                                    "d.bytes_done=",
-                                    "d.up.total=",
-                                    "d.size_bytes=",
-                                    "d.creation_date=",
-                                    "d.left_bytes=",
-                                    "d.complete=",
-                                    "d.is_active=",
-                                    "d.is_hash_checking=",
-                                    "d.is_multi_file=",
-                                    "d.base_filename=",
-                                    "d.message=",
-                                    "d.custom=addtime",
-                                    "d.custom=seedingtime",
-                                    "d.custom1=",
-                                    "d.peers_complete=",
-                                    "d.peers_accounted=",
-                                    "d.is_open="});
-                    // @formatter:on
-                    return new RetrieveTaskSuccessResult((RetrieveTask) task, onTorrentsRetrieved(result),
-                            lastKnownLabels);
+                    if (((RetrieveTask) task).getProjection() == Projection.Notifier) {
+                        // Only the progress is needed, which saves most of the (positional) fields
+                        Object progressResult = makeRtorrentCall(log, "d.multicall2",
+                                buildMulticallArguments("d.hash=", "d.name=", "d.bytes_done=", "d.size_bytes="));
+                        long parseStart = RequestMetrics.startParsing();
+                        TorrentTable retrieved = onTorrentsProgressRetrieved(progressResult);
+                        RequestMetrics.recordParsing(parseStart, retrieved.size());
+                        return new RetrieveTaskSuccessResult((RetrieveTask) task, retrieved, lastKnownLabels);
+                    }
+
+                    Object result = makeRtorrentCall(log, "d.multicall2", buildMulticallArguments(RPC_FIELDS));
+                    long parseStart = RequestMetrics.startParsing();
+                    TorrentTable retrieved = onTorrentsRetrieved(result);
+                    RequestMetrics.recordParsing(parseStart, retrieved.size());
+                    return new RetrieveTaskSuccessResult((RetrieveTask) task, retrieved, lastKnownLabels);
 
                 case GetTorrentDetails:
 
@@ -324,6 +353,31 @@ public class RTorrentAdapter implements IDaemonAdapter {
         }
     }
 
+    @Override
+    public void warmUp(Log log) throws DaemonException {
+        try {
+            // Unlike when executing a task, a connection failure here is not taken as an old server version
+            ensureVersion(log);
+        } catch (MalformedURLException e) {
+            throw new DaemonException(ExceptionType.ConnectionError, e.toString());
+        } catch (RuntimeException e) {
+            version = 10000;
+        }
+    }
+
+    private synchronized void ensureVersion(Log log) throws DaemonException, MalformedURLException {
+        if (version == null) {
+            Object versionObject = makeRtorrentCall(log, "system.client_version", new String[0]);
+            String[] versionRaw = versionObject.toString().split("\\.");
+            version = (Integer.parseInt(versionRaw[0]) * 10000) + (Integer.parseInt(versionRaw[1]) * 100) + Integer.parseInt(versionRaw[2]);
+            capabilities.put(CAPABILITY_VERSION, version);
+        }
+    }
+
+    private synchronized void forgetCapabilities() {
+        version = null;
+    }
+
     private Object makeRtorrentCall(Log log, String serverMethod, Object[] arguments)
             throws DaemonException, MalformedURLException {
 
@@ -384,7 +438,18 @@ public class RTorrentAdapter implements IDaemonAdapter {
                 (TextUtils.isEmpty(folder) ? DEFAULT_RPC_URL : folder);
     }
 
-    private List<Torrent> onTorrentsRetrieved(Object response) throws DaemonException {
+    /**
+     * Returns the arguments of a d.multicall2 on all torrents in the main view, retrieving the given fields.
+     */
+    private static String[] buildMulticallArguments(String... fields) {
+        String[] arguments = new String[fields.length + 2];
+        arguments[0] = "";
+        arguments[1] = "main";
+        System.arraycopy(fields, 0, arguments, 2, fields.length);
+        return arguments;
+    }
+
+    TorrentTable onTorrentsRetrieved(Object response) throws DaemonException {
 
         if (!(response instanceof Object[])) {
 
@@ -395,9 +460,9 @@ public class RTorrentAdapter implements IDaemonAdapter {
 
             // Parse torrent list from response
             // Formatted as Object[][], see http://libtorrent.rakshasa.no/wiki/RTorrentCommands#Download
-            List<Torrent> torrents = new ArrayList<>();
             Map<String, Integer> labels = new HashMap<>();
             Object[] responseList = (Object[]) response;
+            TorrentTable torrents = new TorrentTable(responseList.length);
             for (int i = 0; i < responseList.length; i++) {
 
                 Object[] info = (Object[]) responseList[i];
@@ -405,7 +470,7 @@ public class RTorrentAdapter implements IDaemonAdapter {
                 error = error.equals("") ? null : error;
 
                 // Determine the time added
-                Date added;
+                long added;
                 Long addtime = null;
                 try {
                     addtime = Long.valueOf(((String) info[19]).trim());
@@ -415,18 +480,18 @@ public class RTorrentAdapter implements IDaemonAdapter {
                 if (addtime != null)
                 // Successfully received the addtime from rTorrent (which is a String like '1337089336\n')
                 {
-                    added = new Date(addtime * 1000L);
+                    added = addtime * 1000L;
                 } else {
                     // rTorrent didn't have the addtime (missing plugin?): base it on creationtime instead
                     if (info[11] instanceof Long) {
-                        added = new Date((Long) info[11] * 1000L);
+                        added = (Long) info[11] * 1000L;
                     } else {
-                        added = new Date((Integer) info[11] * 1000L);
+                        added = (Integer) info[11] * 1000L;
                     }
                 }
 
                 // Determine the seeding time
-                Date finished = null;
+                long finished = TorrentTable.NO_DATE;
                 Long seedingtime = null;
                 try {
                     seedingtime = Long.valueOf(((String) info[20]).trim());
@@ -436,7 +501,7 @@ public class RTorrentAdapter implements IDaemonAdapter {
                 if (seedingtime != null)
                 // Successfully received the seedingtime from rTorrent (which is a String like '1337089336\n')
                 {
-                    finished = new Date(seedingtime * 1000L);
+                    finished = seedingtime * 1000L;
                 }
 
                 // Determine the label
@@ -460,7 +525,7 @@ public class RTorrentAdapter implements IDaemonAdapter {
                     long rateDownload = (Long) info[3];
 
                     // @formatter:off
-                    torrents.add(new Torrent(
+                    torrents.add(
                             i,
                             (String) info[0], // hash
                             (String) info[1], // name
@@ -482,7 +547,7 @@ public class RTorrentAdapter implements IDaemonAdapter {
                             added,
                             finished,
                             error,
-                            settings.getType()));
+                            settings.getType());
                     // @formatter:on
 
                 } else {
@@ -491,7 +556,7 @@ public class RTorrentAdapter implements IDaemonAdapter {
                     int rateDownload = (Integer) info[3];
 
                     // @formatter:off
-                    torrents.add(new Torrent(
+                    torrents.add(
                             i,
                             (String) info[0], // hash
                             (String) info[1], // name
@@ -513,7 +578,7 @@ public class RTorrentAdapter implements IDaemonAdapter {
                             added,
                             finished,
                             error,
-                            settings.getType()));
+                            settings.getType());
                     // @formatter:on
 
                 }
@@ -530,6 +595,51 @@ public class RTorrentAdapter implements IDaemonAdapter {
 
     }
 
+    private TorrentTable onTorrentsProgressRetrieved(Object response) throws DaemonException {
+
+        if (!(response instanceof Object[])) {
+
+            throw new DaemonException(ExceptionType.ParsingFailed,
+                    "Response on retrieveing torrents did not return a list of objects");
+
+        } else {
+
+            // Parse the hash, name, bytes done and size of every torrent; other properties are left empty
+            Object[] responseList = (Object[]) response;
+            TorrentTable torrents = new TorrentTable(responseList.length);
+            for (int i = 0; i < responseList.length; i++) {
+
+                Object[] info = (Object[]) responseList[i];
+                // Works with both the i8 (64-bit) and the default (32-bit) integer dialect
+                long done = ((Number) info[2]).longValue();
+                long size = ((Number) info[3]).longValue();
+                // @formatter:off
+                torrents.add(
+                        i,
+                        (String) info[0], // hash
+                        (String) info[1], // name
+                        TorrentStatus.Unknown,
+                        null,
+                        0, 0, 0, 0, 0, 0, -1,
+                        done, // downloadedEver
+                        0,
+                        size, // totalSize
+                        size == 0 ? 0f : (float) done / (float) size, // partDone
+                        0f,
+                        null,
+                        TorrentTable.NO_DATE,
+                        TorrentTable.NO_DATE,
+                        null,
+                        settings.getType());
+                // @formatter:on
+
+            }
+            return torrents;
+
+        }
+
+    }
+
     private List<TorrentFile> onTorrentFilesRetrieved(Object response, Torrent torrent) throws DaemonException {
 
         if (!(response instanceof Object[])) {
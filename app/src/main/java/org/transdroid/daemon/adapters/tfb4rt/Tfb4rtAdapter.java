@@ -41,6 +41,7 @@ import org.transdroid.daemon.task.RemoveTask;
 import org.transdroid.daemon.task.RetrieveTask;
 import org.transdroid.daemon.task.RetrieveTaskSuccessResult;
 import org.transdroid.daemon.util.HttpHelper;
+import org.transdroid.daemon.util.RequestMetrics;
 
 import java.io.File;
 import java.io.InputStream;
@@ -183,7 +184,9 @@ public class Tfb4rtAdapter implements IDaemonAdapter {
 
             // Read XML response
             InputStream instream = response.getEntity().getContent();
+            long parseStart = RequestMetrics.startParsing();
             List<Torrent> torrents = StatsParser.parse(new InputStreamReader(instream));
+            RequestMetrics.recordParsing(parseStart, torrents.size());
             instream.close();
             return torrents;
 
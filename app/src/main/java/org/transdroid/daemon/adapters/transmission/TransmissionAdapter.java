@@ -19,18 +19,15 @@ package org.transdroid.daemon.adapters.transmission;
 
 import net.iharder.Base64;
 import net.iharder.Base64.InputStream;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.transdroid.core.gui.log.Log;
+import org.transdroid.daemon.BatchExecutable;
 import org.transdroid.daemon.Daemon;
 import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.DaemonMethod;
 import org.transdroid.daemon.DaemonSettings;
 import org.transdroid.daemon.IDaemonAdapter;
 import org.transdroid.daemon.Priority;
@@ -38,6 +35,8 @@ import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentDetails;
 import org.transdroid.daemon.TorrentFile;
 import org.transdroid.daemon.TorrentStatus;
+import org.transdroid.daemon.TorrentTable;
+import org.transdroid.daemon.Warmable;
 import org.transdroid.daemon.task.AddByFileTask;
 import org.transdroid.daemon.task.AddByMagnetUrlTask;
 import org.transdroid.daemon.task.AddByUrlTask;
@@ -56,12 +55,16 @@ import org.transdroid.daemon.task.PauseTask;
 import org.transdroid.daemon.task.RemoveTask;
 import org.transdroid.daemon.task.ResumeTask;
 import org.transdroid.daemon.task.RetrieveTask;
+import org.transdroid.daemon.task.RetrieveTask.Projection;
 import org.transdroid.daemon.task.RetrieveTaskSuccessResult;
 import org.transdroid.daemon.task.SetAlternativeModeTask;
 import org.transdroid.daemon.task.SetDownloadLocationTask;
 import org.transdroid.daemon.task.SetFilePriorityTask;
 import org.transdroid.daemon.task.SetTransferRatesTask;
 import org.transdroid.daemon.util.HttpHelper;
+import org.transdroid.daemon.util.HttpTransport;
+import org.transdroid.daemon.util.RequestMetrics;
+import org.transdroid.daemon.util.ServerCapabilities;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -70,7 +73,6 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 /**
@@ -78,13 +80,14 @@ import java.util.List;
  *
  * @author erickok
  */
-public class TransmissionAdapter implements IDaemonAdapter {
+public class TransmissionAdapter implements IDaemonAdapter, Warmable, BatchExecutable {
 
     private static final String LOG_NAME = "Transdroid daemon";
 
     private static final int FOR_ALL = -1;
 
     private static final String RPC_ID = "id";
+    private static final String RPC_HASH = "hashString";
     private static final String RPC_NAME = "name";
     private static final String RPC_STATUS = "status";
     private static final String RPC_ERROR = "error";
@@ -104,52 +107,71 @@ public class TransmissionAdapter implements IDaemonAdapter {
     private static final String RPC_DATEDONE = "doneDate";
     private static final String RPC_AVAILABLE = "desiredAvailable";
     private static final String RPC_COMMENT = "comment";
+    private static final String[] RPC_FIELDS_FULL =
+            new String[]{RPC_ID, RPC_HASH, RPC_NAME, RPC_ERROR, RPC_ERRORSTRING, RPC_STATUS, RPC_DOWNLOADDIR, RPC_RATEDOWNLOAD,
+                    RPC_RATEUPLOAD, RPC_PEERSGETTING, RPC_PEERSSENDING, RPC_PEERSCONNECTED, RPC_ETA, RPC_DOWNLOADSIZE1,
+                    RPC_DOWNLOADSIZE2, RPC_UPLOADEDEVER, RPC_TOTALSIZE, RPC_DATEADDED, RPC_DATEDONE, RPC_AVAILABLE,
+                    RPC_COMMENT};
+    private static final String[] RPC_FIELDS_WIDGET =
+            new String[]{RPC_ID, RPC_HASH, RPC_NAME, RPC_ERROR, RPC_STATUS, RPC_RATEDOWNLOAD, RPC_RATEUPLOAD, RPC_ETA,
+                    RPC_DOWNLOADSIZE1, RPC_DOWNLOADSIZE2, RPC_UPLOADEDEVER, RPC_TOTALSIZE, RPC_DATEADDED, RPC_DATEDONE};
+    private static final String[] RPC_FIELDS_NOTIFIER =
+            new String[]{RPC_ID, RPC_HASH, RPC_NAME, RPC_DOWNLOADSIZE1, RPC_DOWNLOADSIZE2, RPC_TOTALSIZE};
 
     private static final String RPC_FILE_NAME = "name";
     private static final String RPC_FILE_LENGTH = "length";
     private static final String RPC_FILE_COMPLETED = "bytesCompleted";
     private static final String RPC_FILESTAT_WANTED = "wanted";
     private static final String RPC_FILESTAT_PRIORITY = "priority";
+    private static final String CAPABILITY_RPC_VERSION = "rpc-version";
+    private static final String CAPABILITY_SESSION_ID = "session-id";
     private static String sessionToken;
     private DaemonSettings settings;
-    private DefaultHttpClient httpclient;
-    private long rpcVersion = -1;
+    private HttpTransport transport;
+    private final ServerCapabilities capabilities;
+    long rpcVersion;
 
     public TransmissionAdapter(DaemonSettings settings) {
         this.settings = settings;
+        this.capabilities = ServerCapabilities.get(settings);
+        this.rpcVersion = capabilities.getInt(CAPABILITY_RPC_VERSION, -1);
+        if (sessionToken == null) {
+            sessionToken = capabilities.getString(CAPABILITY_SESSION_ID);
+        }
     }
 
     @Override
     public DaemonTaskResult executeTask(Log log, DaemonTask task) {
+        DaemonTaskResult result = performTask(log, task);
+        if (capabilities.invalidateOnFailure(result)) {
+            // What we remembered about the server may be outdated; discover it again on the next task
+            forgetCapabilities();
+        }
+        return result;
+    }
+
+    private DaemonTaskResult performTask(Log log, DaemonTask task) {
 
         try {
 
-            // Get the server version
-            if (rpcVersion <= -1) {
-                // Get server session statistics
-                JSONObject response = makeRequest(log, buildRequestObject("session-get", new JSONObject()));
-                rpcVersion = response.getJSONObject("arguments").getInt("rpc-version");
-            }
+            ensureRpcVersion(log);
 
             JSONObject request = new JSONObject();
             switch (task.getMethod()) {
                 case Retrieve:
 
-                    // Request all torrents from server
+                    // Request all torrents from server, with only the fields that the caller needs
                     JSONArray fields = new JSONArray();
-                    final String[] fieldsArray =
-                            new String[]{RPC_ID, RPC_NAME, RPC_ERROR, RPC_ERRORSTRING, RPC_STATUS, RPC_DOWNLOADDIR,
-                                    RPC_RATEDOWNLOAD, RPC_RATEUPLOAD, RPC_PEERSGETTING, RPC_PEERSSENDING,
-                                    RPC_PEERSCONNECTED, RPC_ETA, RPC_DOWNLOADSIZE1, RPC_DOWNLOADSIZE2, RPC_UPLOADEDEVER,
-                                    RPC_TOTALSIZE, RPC_DATEADDED, RPC_DATEDONE, RPC_AVAILABLE, RPC_COMMENT};
-                    for (String field : fieldsArray) {
+                    for (String field : getRetrieveFields(((RetrieveTask) task).getProjection())) {
                         fields.put(field);
                     }
                     request.put("fields", fields);
 
                     JSONObject result = makeRequest(log, buildRequestObject("torrent-get", request));
-                    return new RetrieveTaskSuccessResult((RetrieveTask) task,
-                            parseJsonRetrieveTorrents(result.getJSONObject("arguments")), null);
+                    long parseStart = RequestMetrics.startParsing();
+                    TorrentTable retrieved = parseJsonRetrieveTorrents(result.getJSONObject("arguments"));
+                    RequestMetrics.recordParsing(parseStart, retrieved.size());
+                    return new RetrieveTaskSuccessResult((RetrieveTask) task, retrieved, null);
 
                 case GetStats:
 
@@ -167,7 +189,7 @@ public class TransmissionAdapter implements IDaemonAdapter {
                     dfields.put("trackerStats");
 
                     JSONObject buildDGet =
-                            buildTorrentRequestObject(task.getTargetTorrent().getUniqueID(), null, false);
+                            buildTorrentRequestObject(task.getTargetTorrent(), null, false);
                     buildDGet.put("fields", dfields);
                     JSONObject getDResult = makeRequest(log, buildRequestObject("torrent-get", buildDGet));
                     return new GetTorrentDetailsTaskSuccessResult((GetTorrentDetailsTask) task,
@@ -180,7 +202,7 @@ public class TransmissionAdapter implements IDaemonAdapter {
                     ffields.put("files");
                     ffields.put("fileStats");
 
-                    JSONObject buildGet = buildTorrentRequestObject(task.getTargetTorrent().getUniqueID(), null, false);
+                    JSONObject buildGet = buildTorrentRequestObject(task.getTargetTorrent(), null, false);
                     buildGet.put("fields", ffields);
                     JSONObject getResult = makeRequest(log, buildRequestObject("torrent-get", buildGet));
                     return new GetFileListTaskSuccessResult((GetFileListTask) task,
@@ -230,7 +252,7 @@ public class TransmissionAdapter implements IDaemonAdapter {
                     // Remove a torrent
                     RemoveTask removeTask = (RemoveTask) task;
                     makeRequest(log, buildRequestObject("torrent-remove",
-                            buildTorrentRequestObject(removeTask.getTargetTorrent().getUniqueID(), "delete-local-data",
+                            buildTorrentRequestObject(removeTask.getTargetTorrent(), "delete-local-data",
                                     removeTask.includingData())));
                     return new DaemonTaskSuccessResult(task);
 
@@ -239,7 +261,7 @@ public class TransmissionAdapter implements IDaemonAdapter {
                     // Pause a torrent
                     PauseTask pauseTask = (PauseTask) task;
                     makeRequest(log, buildRequestObject("torrent-stop",
-                            buildTorrentRequestObject(pauseTask.getTargetTorrent().getUniqueID(), null, false)));
+                            buildTorrentRequestObject(pauseTask.getTargetTorrent(), null, false)));
                     return new DaemonTaskSuccessResult(task);
 
                 case PauseAll:
@@ -254,7 +276,7 @@ public class TransmissionAdapter implements IDaemonAdapter {
                     // Resume a torrent
                     ResumeTask resumeTask = (ResumeTask) task;
                     makeRequest(log, buildRequestObject("torrent-start",
-                            buildTorrentRequestObject(resumeTask.getTargetTorrent().getUniqueID(), null, false)));
+                            buildTorrentRequestObject(resumeTask.getTargetTorrent(), null, false)));
                     return new DaemonTaskSuccessResult(task);
 
                 case ResumeAll:
@@ -271,7 +293,7 @@ public class TransmissionAdapter implements IDaemonAdapter {
                     // Build request
                     JSONObject sdlrequest = new JSONObject();
                     JSONArray sdlids = new JSONArray();
-                    sdlids.put(Long.parseLong(task.getTargetTorrent().getUniqueID()));
+                    sdlids.put(getRpcId(task.getTargetTorrent()));
                     sdlrequest.put("ids", sdlids);
                     sdlrequest.put("location", sdlTask.getNewLocation());
                     sdlrequest.put("move", true);
@@ -286,7 +308,7 @@ public class TransmissionAdapter implements IDaemonAdapter {
                     // Build request
                     JSONObject prequest = new JSONObject();
                     JSONArray ids = new JSONArray();
-                    ids.put(Long.parseLong(task.getTargetTorrent().getUniqueID()));
+                    ids.put(getRpcId(task.getTargetTorrent()));
                     prequest.put("ids", ids);
                     JSONArray fileids = new JSONArray();
                     for (TorrentFile forfile : prioTask.getForFiles()) {
@@ -347,7 +369,7 @@ public class TransmissionAdapter implements IDaemonAdapter {
                     // Verify torrent data integrity
                     ForceRecheckTask verifyTask = (ForceRecheckTask) task;
                     makeRequest(log, buildRequestObject("torrent-verify",
-                            buildTorrentRequestObject(verifyTask.getTargetTorrent().getUniqueID(), null, false)));
+                            buildTorrentRequestObject(verifyTask.getTargetTorrent(), null, false)));
                     return new DaemonTaskSuccessResult(task);
 
                 default:
@@ -365,9 +387,13 @@ public class TransmissionAdapter implements IDaemonAdapter {
         }
     }
 
-    private JSONObject buildTorrentRequestObject(String torrentID, String extraKey, boolean extraValue)
+    private JSONObject buildTorrentRequestObject(Torrent torrent, String extraKey, boolean extraValue)
             throws JSONException {
-        return buildTorrentRequestObject(Long.parseLong(torrentID), extraKey, extraValue);
+        JSONObject request = buildTorrentRequestObject(FOR_ALL, extraKey, extraValue);
+        JSONArray ids = new JSONArray();
+        ids.put(getRpcId(torrent)); // The only id to add
+        request.put("ids", ids);
+        return request;
     }
 
     private JSONObject buildTorrentRequestObject(long torrentID, String extraKey, boolean extraValue)
@@ -387,6 +413,87 @@ public class TransmissionAdapter implements IDaemonAdapter {
 
     }
 
+    /**
+     * Returns how to address a torrent in the ids argument of a request. Transmission accepts hash strings there as
+     * well, which are preferred as the numeric ids are reassigned when the daemon restarts.
+     */
+    private Object getRpcId(Torrent torrent) {
+        return torrent.getHash() != null ? torrent.getHash() : (Object) torrent.getId();
+    }
+
+    @Override
+    public boolean canBatch(DaemonMethod method) {
+        return method == DaemonMethod.Pause || method == DaemonMethod.Resume || method == DaemonMethod.Remove ||
+                method == DaemonMethod.ForceRecheck;
+    }
+
+    @Override
+    public DaemonTaskResult executeBatch(Log log, List<DaemonTask> tasks) {
+        DaemonTask first = tasks.get(0);
+        try {
+
+            ensureRpcVersion(log);
+
+            // All torrent actions accept a list of ids, so request the action once for all torrents
+            JSONObject request = new JSONObject();
+            JSONArray ids = new JSONArray();
+            for (DaemonTask task : tasks) {
+                ids.put(getRpcId(task.getTargetTorrent()));
+            }
+            request.put("ids", ids);
+            String method;
+            switch (first.getMethod()) {
+                case Pause:
+                    method = "torrent-stop";
+                    break;
+                case Resume:
+                    method = "torrent-start";
+                    break;
+                case Remove:
+                    method = "torrent-remove";
+                    request.put("delete-local-data", ((RemoveTask) first).includingData());
+                    break;
+                case ForceRecheck:
+                    method = "torrent-verify";
+                    break;
+                default:
+                    return new DaemonTaskFailureResult(first, new DaemonException(ExceptionType.MethodUnsupported,
+                            first.getMethod() + " can not be batched by " + getType()));
+            }
+            makeRequest(log, buildRequestObject(method, request));
+            return new DaemonTaskSuccessResult(first);
+
+        } catch (JSONException e) {
+            return new DaemonTaskFailureResult(first, new DaemonException(ExceptionType.ParsingFailed, e.toString()));
+        } catch (DaemonException e) {
+            return new DaemonTaskFailureResult(first, e);
+        }
+    }
+
+    @Override
+    public void warmUp(Log log) throws DaemonException {
+        try {
+            // Obtains the session token as well
+            ensureRpcVersion(log);
+        } catch (JSONException e) {
+            throw new DaemonException(ExceptionType.ParsingFailed, e.toString());
+        }
+    }
+
+    private synchronized void ensureRpcVersion(Log log) throws DaemonException, JSONException {
+        // Get the server version
+        if (rpcVersion <= -1) {
+            // Get server session statistics
+            JSONObject response = makeRequest(log, buildRequestObject("session-get", new JSONObject()));
+            rpcVersion = response.getJSONObject("arguments").getInt("rpc-version");
+            capabilities.put(CAPABILITY_RPC_VERSION, rpcVersion);
+        }
+    }
+
+    private synchronized void forgetCapabilities() {
+        rpcVersion = -1;
+    }
+
     private JSONObject buildRequestObject(String sendMethod, JSONObject arguments) throws JSONException {
 
         // Build request for method
@@ -401,61 +508,64 @@ public class TransmissionAdapter implements IDaemonAdapter {
 
         try {
 
-            // Initialise the HTTP client
+            // Initialise the HTTP transport
             initialise();
             final String sessionHeader = "X-Transmission-Session-Id";
 
             // Setup request using POST stream with URL and data
-            HttpPost httppost = new HttpPost(buildWebUIUrl());
-            StringEntity se = new StringEntity(data.toString(), "UTF-8");
-            httppost.setEntity(se);
+            HttpTransport.Request request =
+                    HttpTransport.Request.post(buildWebUIUrl(), data.toString(), "application/json; charset=UTF-8");
 
             // Send the stored session token as a header
             if (sessionToken != null) {
-                httppost.addHeader(sessionHeader, sessionToken);
+                request.setHeader(sessionHeader, sessionToken);
             }
 
             // Execute
-            log.d(LOG_NAME, "Execute " + data.getString("method") + " request to " + httppost.getURI().toString());
-            HttpResponse response = httpclient.execute(httppost);
+            log.d(LOG_NAME, "Execute " + data.getString("method") + " request to " + request.getUrl());
+            HttpTransport.Response response = transport.execute(request);
+            try {
+
+                // Authentication error?
+                if (response.getStatusCode() == 401) {
+                    throw new DaemonException(ExceptionType.AuthenticationFailure,
+                            "401 HTTP response (username or password incorrect)");
+                }
 
-            // Authentication error?
-            if (response.getStatusLine().getStatusCode() == 401) {
-                throw new DaemonException(ExceptionType.AuthenticationFailure,
-                        "401 HTTP response (username or password incorrect)");
-            }
+                // 409 error because of a session id?
+                if (response.getStatusCode() == 409) {
 
-            // 409 error because of a session id?
-            if (response.getStatusLine().getStatusCode() == 409) {
+                    // Retry post, but this time with the new session token that was encapsulated in the 409 response
+                    log.d(LOG_NAME, "Receive HTTP 409 with new session code; now try again for the actual request");
+                    sessionToken = response.getHeader(sessionHeader);
+                    capabilities.put(CAPABILITY_SESSION_ID, sessionToken);
+                    request.setHeader(sessionHeader, sessionToken);
+                    log.d(LOG_NAME,
+                            "Retry to execute " + data.getString("method") + " request, now with " + sessionHeader +
+                                    ": " + sessionToken);
+                    response.close();
+                    response = transport.execute(request);
 
-                // Retry post, but this time with the new session token that was encapsulated in the 409 response
-                log.d(LOG_NAME, "Receive HTTP 409 with new session code; now try again for the actual request");
-                sessionToken = response.getFirstHeader(sessionHeader).getValue();
-                httppost.addHeader(sessionHeader, sessionToken);
-                log.d(LOG_NAME,
-                        "Retry to execute " + data.getString("method") + " request, now with " + sessionHeader + ": " +
-                                sessionToken);
-                response = httpclient.execute(httppost);
+                }
 
-            }
+                if (response.getBody() != null) {
 
-            HttpEntity entity = response.getEntity();
-            if (entity != null) {
+                    // Read JSON response
+                    String result = HttpHelper.convertStreamToString(response.getBody());
+                    log.d(LOG_NAME, "Received " + response.getProtocol() + " content response starting with " +
+                            (result.length() > 100 ? result.substring(0, 100) + "..." : result));
+                    JSONObject json = new JSONObject(result);
 
-                // Read JSON response
-                java.io.InputStream instream = entity.getContent();
-                String result = HttpHelper.convertStreamToString(instream);
-                log.d(LOG_NAME, "Received content response starting with " +
-                        (result.length() > 100 ? result.substring(0, 100) + "..." : result));
-                JSONObject json = new JSONObject(result);
-                instream.close();
+                    // Return the JSON object
+                    return json;
+                }
 
-                // Return the JSON object
-                return json;
-            }
+                log.d(LOG_NAME, "Error: No entity in HTTP response");
+                throw new DaemonException(ExceptionType.UnexpectedResponse, "No HTTP entity object in response.");
 
-            log.d(LOG_NAME, "Error: No entity in HTTP response");
-            throw new DaemonException(ExceptionType.UnexpectedResponse, "No HTTP entity object in response.");
+            } finally {
+                response.close();
+            }
 
         } catch (DaemonException e) {
             throw e;
@@ -470,13 +580,13 @@ public class TransmissionAdapter implements IDaemonAdapter {
     }
 
     /**
-     * Instantiates an HTTP client with proper credentials that can be used for all Transmission requests.
+     * Instantiates an HTTP transport with proper credentials that can be used for all Transmission requests.
      *
      * @throws DaemonException On conflicting or missing settings
      */
     private synchronized void initialise() throws DaemonException {
-        if(httpclient == null) {
-            httpclient = HttpHelper.createStandardHttpClient(settings, true);
+        if (transport == null) {
+            transport = HttpHelper.createTransport(settings, true);
         }
     }
 
@@ -499,61 +609,82 @@ public class TransmissionAdapter implements IDaemonAdapter {
                 folder + "/rpc";
     }
 
-    private ArrayList<Torrent> parseJsonRetrieveTorrents(JSONObject response) throws JSONException {
+    TorrentTable parseJsonRetrieveTorrents(JSONObject response) throws JSONException {
 
-        // Parse response
-        ArrayList<Torrent> torrents = new ArrayList<>();
+        // Parse response directly into a table, without creating Torrent objects
         JSONArray rarray = response.getJSONArray("torrents");
+        TorrentTable torrents = new TorrentTable(rarray.length());
         for (int i = 0; i < rarray.length(); i++) {
             JSONObject tor = rarray.getJSONObject(i);
-            // Add the parsed torrent to the list
-            float have = (float) (tor.getLong(RPC_DOWNLOADSIZE1) + tor.getLong(RPC_DOWNLOADSIZE2));
-            long total = tor.getLong(RPC_TOTALSIZE);
+            // Add the parsed torrent to the table; fields outside of the requested projection are simply absent
+            float have = (float) (tor.optLong(RPC_DOWNLOADSIZE1) + tor.optLong(RPC_DOWNLOADSIZE2));
+            long total = tor.optLong(RPC_TOTALSIZE);
             // Error is a number, see https://trac.transmissionbt.com/browser/trunk/libtransmission/transmission.h#L1747
             // We only consider it a real error if it is local (blocking), which is error code 3
-            boolean hasError = tor.getInt(RPC_ERROR) == 3;
-            String errorString = tor.getString(RPC_ERRORSTRING).trim();
-            String commentString = tor.getString(RPC_COMMENT).trim();
+            boolean hasError = tor.optInt(RPC_ERROR) == 3;
+            String errorString = tor.optString(RPC_ERRORSTRING).trim();
+            String commentString = tor.optString(RPC_COMMENT).trim();
             if (!commentString.equals("")) {
                 errorString = errorString.equals("") ? commentString : errorString + "\n" + commentString;
             }
-            String locationDir = tor.getString(RPC_DOWNLOADDIR);
-            if (!locationDir.endsWith(settings.getOS().getPathSeperator())) {
-                locationDir += settings.getOS().getPathSeperator();
+            String locationDir = null;
+            if (tor.has(RPC_DOWNLOADDIR)) {
+                locationDir = tor.getString(RPC_DOWNLOADDIR);
+                if (!locationDir.endsWith(settings.getOS().getPathSeperator())) {
+                    locationDir += settings.getOS().getPathSeperator();
+                }
+            }
+            TorrentStatus status = TorrentStatus.Unknown;
+            if (hasError) {
+                status = TorrentStatus.Error;
+            } else if (tor.has(RPC_STATUS)) {
+                status = getStatus(tor.getInt(RPC_STATUS));
             }
             // @formatter:off
-            torrents.add(new Torrent(
+            torrents.add(
                     tor.getInt(RPC_ID),
-                    null,
+                    tor.optString(RPC_HASH, null),
                     tor.getString(RPC_NAME),
-                    hasError ? TorrentStatus.Error : getStatus(tor.getInt(RPC_STATUS)),
+                    status,
                     locationDir,
-                    tor.getInt(RPC_RATEDOWNLOAD),
-                    tor.getInt(RPC_RATEUPLOAD),
-                    tor.getInt(RPC_PEERSSENDING),
-                    tor.getInt(RPC_PEERSCONNECTED),
-                    tor.getInt(RPC_PEERSGETTING),
-                    tor.getInt(RPC_PEERSCONNECTED),
-                    tor.getInt(RPC_ETA),
-                    tor.getLong(RPC_DOWNLOADSIZE1) + tor.getLong(RPC_DOWNLOADSIZE2),
-                    tor.getLong(RPC_UPLOADEDEVER),
-                    tor.getLong(RPC_TOTALSIZE),
+                    tor.optInt(RPC_RATEDOWNLOAD),
+                    tor.optInt(RPC_RATEUPLOAD),
+                    tor.optInt(RPC_PEERSSENDING),
+                    tor.optInt(RPC_PEERSCONNECTED),
+                    tor.optInt(RPC_PEERSGETTING),
+                    tor.optInt(RPC_PEERSCONNECTED),
+                    tor.optInt(RPC_ETA, -1),
+                    tor.optLong(RPC_DOWNLOADSIZE1) + tor.optLong(RPC_DOWNLOADSIZE2),
+                    tor.optLong(RPC_UPLOADEDEVER),
+                    total,
                     //(float) tor.getDouble(RPC_PERCENTDONE),
                     (total == 0 ? 0 : have / (float) total),
-                    (total == 0 ? 0 : (have + (float) tor.getLong(RPC_AVAILABLE)) / (float) total),
+                    (total == 0 ? 0 : (have + (float) tor.optLong(RPC_AVAILABLE)) / (float) total),
                     // No label/category/group support in the RPC API for now
                     null,
-                    new Date(tor.getLong(RPC_DATEADDED) * 1000L),
-                    new Date(tor.getLong(RPC_DATEDONE) * 1000L),
-                    errorString, settings.getType()));
+                    tor.has(RPC_DATEADDED) ? tor.getLong(RPC_DATEADDED) * 1000L : TorrentTable.NO_DATE,
+                    tor.has(RPC_DATEDONE) ? tor.getLong(RPC_DATEDONE) * 1000L : TorrentTable.NO_DATE,
+                    errorString, settings.getType());
             // @formatter:on
         }
 
-        // Return the list
+        // Return the table
         return torrents;
 
     }
 
+    String[] getRetrieveFields(Projection projection) {
+        switch (projection) {
+            case Notifier:
+                return RPC_FIELDS_NOTIFIER;
+            case Widget:
+                return RPC_FIELDS_WIDGET;
+            default:
+                // The torrents list shows (nearly) all fields anyway
+                return RPC_FIELDS_FULL;
+        }
+    }
+
     private TorrentStatus getStatus(int status) {
         if (rpcVersion <= -1) {
             return TorrentStatus.Unknown;
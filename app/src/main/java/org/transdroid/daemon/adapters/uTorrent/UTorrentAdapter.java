@@ -21,9 +21,11 @@ import com.android.internal.http.multipart.FilePart;
 import com.android.internal.http.multipart.MultipartEntity;
 import com.android.internal.http.multipart.Part;
 import org.apache.http.HttpResponse;
+import org.apache.http.cookie.Cookie;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.cookie.BasicClientCookie;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -63,6 +65,7 @@ import org.transdroid.daemon.task.SetTrackersTask;
 import org.transdroid.daemon.task.SetTransferRatesTask;
 import org.transdroid.daemon.task.StartTask;
 import org.transdroid.daemon.util.HttpHelper;
+import org.transdroid.daemon.util.ServerCapabilities;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -114,20 +117,36 @@ public class UTorrentAdapter implements IDaemonAdapter, RemoteRssSupplier {
     private static final int RPC_FILESIZE_IDX = 1;
     private static final int RPC_FILEDOWNLOADED_IDX = 2;
     private static final int RPC_FILEPRIORITY_IDX = 3;
+    // The token is bound to the GUID session cookie, so both are remembered
+    private static final String CAPABILITY_TOKEN = "token";
+    private static final String CAPABILITY_GUID = "guid";
+    private static final String COOKIE_GUID = "GUID";
     private String authtoken;
     private static ArrayList<RemoteRssChannel> remoteRssChannels = new ArrayList<>();
     private DaemonSettings settings;
     private DefaultHttpClient httpclient;
+    private final ServerCapabilities capabilities;
 
     /**
      * Initialises an adapter that provides operations to the uTorrent web daemon
      */
     public UTorrentAdapter(DaemonSettings settings) {
         this.settings = settings;
+        this.capabilities = ServerCapabilities.get(settings);
+        this.authtoken = capabilities.getString(CAPABILITY_TOKEN);
     }
 
     @Override
     public DaemonTaskResult executeTask(Log log, DaemonTask task) {
+        DaemonTaskResult result = performTask(log, task);
+        if (capabilities.invalidateOnFailure(result)) {
+            // What we remembered about the server may be outdated; discover it again on the next task
+            forgetCapabilities();
+        }
+        return result;
+    }
+
+    private DaemonTaskResult performTask(Log log, DaemonTask task) {
 
         try {
             switch (task.getMethod()) {
@@ -420,11 +439,21 @@ public class UTorrentAdapter implements IDaemonAdapter, RemoteRssSupplier {
             InputStream instream = response.getEntity().getContent();
             String result = HttpHelper.convertStreamToString(instream);
             authtoken = result.replaceAll("<.*?>", "").trim();
+            capabilities.put(CAPABILITY_TOKEN, authtoken);
+            for (Cookie cookie : httpclient.getCookieStore().getCookies()) {
+                if (cookie.getName().equals(COOKIE_GUID)) {
+                    capabilities.put(CAPABILITY_GUID, cookie.getValue());
+                }
+            }
 
         }
 
     }
 
+    private synchronized void forgetCapabilities() {
+        authtoken = null;
+    }
+
     public JSONObject uploadTorrentFile(String file) throws DaemonException, IOException, JSONException {
 
         // Initialise the HTTP client
@@ -455,6 +484,14 @@ public class UTorrentAdapter implements IDaemonAdapter, RemoteRssSupplier {
     private synchronized void initialise() throws DaemonException {
         if(httpclient == null) {
             httpclient = HttpHelper.createStandardHttpClient(settings, true);
+            // Restore the session of the remembered token
+            String guid = capabilities.getString(CAPABILITY_GUID);
+            if (authtoken != null && guid != null) {
+                BasicClientCookie cookie = new BasicClientCookie(COOKIE_GUID, guid);
+                cookie.setDomain(settings.getAddress());
+                cookie.setPath("/");
+                httpclient.getCookieStore().addCookie(cookie);
+            }
         }
     }
 
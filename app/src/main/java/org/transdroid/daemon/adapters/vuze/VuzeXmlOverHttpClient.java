@@ -40,6 +40,7 @@ import org.apache.http.params.HttpProtocolParams;
 import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.DaemonException.ExceptionType;
 import org.transdroid.daemon.DaemonSettings;
+import org.transdroid.daemon.util.HttpHelper;
 import org.transdroid.daemon.util.TlsSniSocketFactory;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -114,18 +115,12 @@ public class VuzeXmlOverHttpClient {
         HttpConnectionParams.setSoTimeout(httpParams, settings.getTimeoutInMilliseconds());
 
         SchemeRegistry registry = new SchemeRegistry();
-        SocketFactory httpsSocketFactory;
-        if (settings.getSslTrustKey() != null) {
-            httpsSocketFactory = new TlsSniSocketFactory(settings.getSslTrustKey());
-        } else if (settings.getSslTrustAll()) {
-            httpsSocketFactory = new TlsSniSocketFactory(true);
-        } else {
-            httpsSocketFactory = new TlsSniSocketFactory();
-        }
+        SocketFactory httpsSocketFactory = TlsSniSocketFactory.get(settings.getSslTrustAll(), settings.getSslTrustKey());
         registry.register(new Scheme("http", new PlainSocketFactory(), 80));
         registry.register(new Scheme("https", httpsSocketFactory, 443));
 
         client = new DefaultHttpClient(new ThreadSafeClientConnManager(httpParams, registry), httpParams);
+        HttpHelper.addTaskInterceptors(client);
         if (settings.shouldUseAuthentication()) {
             if (settings.getUsername() == null || settings.getPassword() == null) {
                 throw new DaemonException(DaemonException.ExceptionType.AuthenticationFailure, "No username or password set, while authentication was enabled.");
@@ -22,10 +22,15 @@ import android.os.Parcel;
 import android.os.Parcelable;
 
 import org.transdroid.core.gui.log.Log;
+import org.transdroid.daemon.BatchExecutable;
 import org.transdroid.daemon.Daemon;
 import org.transdroid.daemon.DaemonMethod;
 import org.transdroid.daemon.IDaemonAdapter;
 import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.util.RequestMetrics;
+import org.transdroid.daemon.util.ServerHealth;
+
+import java.util.List;
 
 /**
  * A daemon task represents some action that needs to be performed on the server daemon. It has no capabilities on
@@ -73,12 +78,45 @@ public class DaemonTask implements Parcelable {
     }
 
     /**
-     * Execute the task on the appropriate daemon adapter
+     * Execute the task on the appropriate daemon adapter, or fail directly if the server is known to be unreachable
+     * (see {@link ServerHealth})
      *
      * @param log The logger to use when writing exceptions and debug information
      */
     public DaemonTaskResult execute(Log log) {
-        return adapter.executeTask(log, this);
+        return execute(() -> adapter.executeTask(log, this));
+    }
+
+    /**
+     * Execute a number of tasks in a single request on an adapter that supports this, guarded and recorded just like a
+     * single task (see {@link #execute(Log)}). The first task stands for the whole batch.
+     *
+     * @param log     The logger to use when writing exceptions and debug information
+     * @param adapter The adapter of the tasks, which is able to batch them
+     * @param tasks   The tasks to execute, see {@link BatchExecutable#executeBatch(Log, List)}
+     */
+    public static DaemonTaskResult executeBatch(Log log, BatchExecutable adapter, List<DaemonTask> tasks) {
+        return tasks.get(0).execute(() -> adapter.executeBatch(log, tasks));
+    }
+
+    private DaemonTaskResult execute(Request request) {
+        ServerHealth health = ServerHealth.get(adapter.getSettings());
+        if (health != null && !health.tryAcquire()) {
+            return new DaemonTaskFailureResult(this, health.createFastFailure());
+        }
+        RequestMetrics.Call call = RequestMetrics.begin(adapter.getSettings(), method);
+        long start = System.nanoTime();
+        DaemonTaskResult result = null;
+        try {
+            result = request.send();
+            return result;
+        } finally {
+            call.end(result instanceof DaemonTaskSuccessResult,
+                    result instanceof DaemonTaskFailureResult ? ((DaemonTaskFailureResult) result).getException() : null);
+            if (health != null) {
+                health.record(result, System.nanoTime() - start);
+            }
+        }
     }
 
     public DaemonMethod getMethod() {
@@ -120,4 +158,10 @@ public class DaemonTask implements Parcelable {
                 (extras == null ? "" : extras.toString());
     }
 
+    private interface Request {
+
+        DaemonTaskResult send();
+
+    }
+
 }
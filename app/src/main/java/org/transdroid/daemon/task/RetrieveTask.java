@@ -17,15 +17,61 @@
  */
 package org.transdroid.daemon.task;
 
+import android.os.Bundle;
+
 import org.transdroid.daemon.DaemonMethod;
 import org.transdroid.daemon.IDaemonAdapter;
 
 public class RetrieveTask extends DaemonTask {
-    protected RetrieveTask(IDaemonAdapter adapter) {
-        super(adapter, DaemonMethod.Retrieve, null, null);
+
+    /**
+     * The set of torrent properties that the consumer of a torrents listing actually needs. Adapters that can select
+     * fields on the server side only request those, which keeps the listings for widgets and background services small.
+     * Adapters that can not will simply return the full listing. Properties outside the projection get a neutral value
+     * (0, null or {@link org.transdroid.daemon.TorrentStatus#Unknown}).
+     */
+    public enum Projection {
+        /**
+         * Every property, as needed by the details screen
+         */
+        Full,
+        /**
+         * Everything that is shown, filtered or sorted on in the torrents list
+         */
+        List,
+        /**
+         * Name, status, speeds, sizes, ETA and dates, as needed to filter, sort and show torrents in a list widget
+         */
+        Widget,
+        /**
+         * Only the unique id, name and progress, as needed to notify about new and finished torrents
+         */
+        Notifier;
+
+        /**
+         * Returns whether a listing retrieved with this projection holds every property of the given projection.
+         */
+        public boolean covers(Projection other) {
+            return ordinal() <= other.ordinal();
+        }
+    }
+
+    protected RetrieveTask(IDaemonAdapter adapter, Bundle data) {
+        super(adapter, DaemonMethod.Retrieve, null, data);
     }
 
     public static RetrieveTask create(IDaemonAdapter adapter) {
-        return new RetrieveTask(adapter);
+        return create(adapter, Projection.Full);
+    }
+
+    public static RetrieveTask create(IDaemonAdapter adapter, Projection projection) {
+        Bundle data = new Bundle();
+        data.putString("PROJECTION", projection.name());
+        return new RetrieveTask(adapter, data);
+    }
+
+    public Projection getProjection() {
+        String projection = extras.getString("PROJECTION");
+        return projection == null ? Projection.Full : Projection.valueOf(projection);
     }
 }
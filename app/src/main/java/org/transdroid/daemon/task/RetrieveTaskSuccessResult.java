@@ -19,6 +19,7 @@ package org.transdroid.daemon.task;
 
 import org.transdroid.daemon.Label;
 import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.TorrentTable;
 
 import java.util.List;
 
@@ -30,6 +31,7 @@ import java.util.List;
 public class RetrieveTaskSuccessResult extends DaemonTaskSuccessResult {
 
     private List<Torrent> torrents;
+    private TorrentTable table;
     private List<Label> labels;
 
     public RetrieveTaskSuccessResult(RetrieveTask executedTask, List<Torrent> torrents, List<Label> labels) {
@@ -38,10 +40,31 @@ public class RetrieveTaskSuccessResult extends DaemonTaskSuccessResult {
         this.labels = labels;
     }
 
+    /**
+     * Creates a result for adapters that fill a {@link TorrentTable} directly, which for large lists is far cheaper
+     * than creating {@link Torrent} objects.
+     */
+    public RetrieveTaskSuccessResult(RetrieveTask executedTask, TorrentTable table, List<Label> labels) {
+        super(executedTask);
+        this.table = table;
+        this.torrents = table.asList();
+        this.labels = labels;
+    }
+
     public List<Torrent> getTorrents() {
         return torrents;
     }
 
+    /**
+     * Returns the retrieved torrents as a compact table, converting the list of torrents only once, on first request.
+     */
+    public synchronized TorrentTable getTorrentTable() {
+        if (table == null) {
+            table = TorrentTable.fromTorrents(torrents);
+        }
+        return table;
+    }
+
     public List<Label> getLabels() {
         return labels;
     }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.util;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Transport on top of a legacy Apache HttpClient, for adapters that move to the {@link HttpTransport} abstraction but
+ * (for now) still need their client, for example for its cookie store.
+ *
+ * @author Eric Kok
+ */
+public class ApacheHttpTransport implements HttpTransport {
+
+    private final DefaultHttpClient httpclient;
+
+    public ApacheHttpTransport(DefaultHttpClient httpclient) {
+        this.httpclient = httpclient;
+    }
+
+    public DefaultHttpClient getHttpClient() {
+        return httpclient;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        HttpRequestBase method;
+        if (request.getBody() != null) {
+            HttpPost post = new HttpPost(request.getUrl());
+            ByteArrayEntity entity = new ByteArrayEntity(request.getBody());
+            entity.setContentType(request.getContentType());
+            post.setEntity(entity);
+            method = post;
+        } else {
+            method = new HttpGet(request.getUrl());
+        }
+        for (String[] header : request.getHeaders()) {
+            method.addHeader(header[0], header[1]);
+        }
+
+        HttpResponse response = httpclient.execute(method);
+        Map<String, String> headers = new HashMap<>();
+        for (Header header : response.getAllHeaders()) {
+            if (!headers.containsKey(header.getName().toLowerCase())) {
+                headers.put(header.getName().toLowerCase(), header.getValue());
+            }
+        }
+        final HttpEntity entity = response.getEntity();
+        return new Response(response.getStatusLine().getStatusCode(),
+                response.getStatusLine().getProtocolVersion().toString().toLowerCase(), headers,
+                entity == null ? null : entity.getContent(), () -> {
+            if (entity != null) {
+                entity.consumeContent();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.util;
+
+import android.util.AtomicFile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Helpers on the small binary files in which the app keeps state per server or feed, such as torrent snapshots and
+ * queued actions.
+ *
+ * @author Eric Kok
+ */
+public class BinaryFiles {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MAX_LENGTH = 1000000;
+
+    /**
+     * Returns the file for some key (such as a server identifier or feed url) in a directory, creating the directory
+     * if needed. Files are named by the hash of the key, so the key should be stored in the file itself as well, to
+     * detect hash collisions.
+     *
+     * @param parent    The app directory, such as the files or cache directory
+     * @param directory The name of the sub-directory to store the files in
+     * @param prefix    The prefix of the file name
+     * @param key       The key that identifies the file
+     * @return The file for the key, which may or may not exist yet
+     */
+    public static AtomicFile getFile(File parent, String directory, String prefix, String key) {
+        File dir = new File(parent, directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return new AtomicFile(new File(dir, prefix + Integer.toHexString(key.hashCode()) + ".bin"));
+    }
+
+    /**
+     * Writes some string, which may be null. Unlike {@link DataOutputStream#writeUTF(String)} this is not limited to
+     * 64KB, as names, error texts and magnet links may be arbitrarily long.
+     */
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string as written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @throws IOException If the string could not be read or has an invalid length, i.e. the file is corrupt
+     */
+    public static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Reads a number of items that follow, as written with {@link DataOutputStream#writeInt(int)}.
+     *
+     * @param max The maximum number of items that may be stored
+     * @throws IOException If the count could not be read or is invalid, i.e. the file is corrupt
+     */
+    public static int readCount(DataInputStream in, int max) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > max) {
+            throw new IOException("Invalid item count " + count);
+        }
+        return count;
+    }
+
+}
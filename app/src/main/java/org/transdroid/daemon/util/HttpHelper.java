@@ -22,11 +22,13 @@ import android.net.Uri;
 import org.apache.http.Header;
 import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponseInterceptor;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.conn.ConnectionReleaseTrigger;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
@@ -38,15 +40,18 @@ import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.ExecutionContext;
 import org.apache.http.protocol.HttpContext;
 import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.DaemonException.ExceptionType;
 import org.transdroid.daemon.DaemonSettings;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.Collections;
 import java.util.HashMap;
@@ -93,6 +98,33 @@ public class HttpHelper {
         }
     };
 
+    /**
+     * HTTP request interceptor that records the request with the {@link RequestMetrics} of the running daemon task
+     */
+    public static HttpRequestInterceptor metricsRequestInterceptor = (request, context) -> {
+        HttpEntity entity = request instanceof HttpEntityEnclosingRequest ? ((HttpEntityEnclosingRequest) request).getEntity() : null;
+        RequestMetrics.recordRequest(entity == null ? 0 : entity.getContentLength());
+    };
+    /**
+     * HTTP response interceptor that counts the (still encoded) bytes received for the running daemon task
+     */
+    public static HttpResponseInterceptor metricsResponseInterceptor = (response, context) -> {
+        RequestMetrics.Call call = RequestMetrics.current();
+        if (call != null && response.getEntity() != null) {
+            response.setEntity(new CountingEntity(response.getEntity(), call));
+        }
+    };
+    /**
+     * HTTP request interceptor that allows the connection of the request to be aborted when the running daemon task is
+     * cancelled, see {@link TaskCancellation}
+     */
+    public static HttpRequestInterceptor cancellationRequestInterceptor = (request, context) -> {
+        Object connection = context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+        if (connection instanceof ConnectionReleaseTrigger) {
+            TaskCancellation.register(((ConnectionReleaseTrigger) connection)::abortConnection);
+        }
+    };
+
     /**
      * Creates a standard Apache HttpClient that is thread safe, supports different SSL auth methods and basic
      * authentication
@@ -126,14 +158,7 @@ public class HttpHelper {
 
         // Register http and https sockets
         SchemeRegistry registry = new SchemeRegistry();
-        SocketFactory httpsSocketFactory;
-        if (sslTrustKey != null && sslTrustKey.length() != 0) {
-            httpsSocketFactory = new TlsSniSocketFactory(sslTrustKey);
-        } else if (sslTrustAll) {
-            httpsSocketFactory = new TlsSniSocketFactory(true);
-        } else {
-            httpsSocketFactory = new TlsSniSocketFactory();
-        }
+        SocketFactory httpsSocketFactory = TlsSniSocketFactory.get(sslTrustAll, sslTrustKey);
         registry.register(new Scheme("http", new PlainSocketFactory(), 80));
         registry.register(new Scheme("https", httpsSocketFactory, 443));
 
@@ -147,6 +172,7 @@ public class HttpHelper {
 
         DefaultHttpClient httpclient =
                 new DefaultHttpClient(new ThreadSafeClientConnManager(httpparams, registry), httpparams);
+        addTaskInterceptors(httpclient);
 
         // Authentication credentials
         if (userBasicAuth) {
@@ -173,6 +199,40 @@ public class HttpHelper {
 
     }
 
+    /**
+     * Creates the transport for the HTTP requests to some server, which uses HTTP/2 where the server supports it and
+     * shares pooled connections with all other adapters that target the same host. Adapters should prefer this over
+     * {@link #createStandardHttpClient(DaemonSettings, boolean)} and store the transport to reuse for every request.
+     *
+     * @param settings      The server settings to adhere
+     * @param userBasicAuth Whether to authenticate with the username and password of the settings (if enabled)
+     * @return A transport that should be stored locally and reused for every new request
+     * @throws DaemonException Thrown when information (such as username/password) is missing
+     */
+    public static HttpTransport createTransport(DaemonSettings settings, boolean userBasicAuth) throws DaemonException {
+        boolean useAuth = userBasicAuth && settings.shouldUseAuthentication();
+        if (useAuth && (settings.getUsername() == null || settings.getPassword() == null)) {
+            throw new DaemonException(ExceptionType.AuthenticationFailure,
+                    "No username or password was provided while we had authentication enabled");
+        }
+        return new OkHttpTransport(useAuth ? settings.getUsername() : null, settings.getPassword(),
+                settings.getAuthToken(), settings.getSslTrustAll(), settings.getSslTrustKey(),
+                settings.getTimeoutInMilliseconds());
+    }
+
+    /**
+     * Registers the interceptors that record the requests and traffic of daemon tasks with the {@link RequestMetrics}
+     * and that allow requests to be aborted when their task is cancelled. These are registered before any other (such
+     * as gzip decoding) interceptors, such that the bytes on the wire are counted.
+     *
+     * @param httpclient The client to instrument
+     */
+    public static void addTaskInterceptors(DefaultHttpClient httpclient) {
+        httpclient.addRequestInterceptor(cancellationRequestInterceptor);
+        httpclient.addRequestInterceptor(metricsRequestInterceptor);
+        httpclient.addResponseInterceptor(metricsResponseInterceptor);
+    }
+
     /*
      * To convert the InputStream to String we use the BufferedReader.readLine() method. We iterate until the
      * BufferedReader return null which means there's no more data to read. Each line will appended to a StringBuilder
@@ -274,4 +334,50 @@ public class HttpHelper {
 
     }
 
+    /**
+     * HTTP entity wrapper that counts the bytes that are read from a response
+     */
+    private static class CountingEntity extends HttpEntityWrapper {
+
+        private final RequestMetrics.Call call;
+
+        public CountingEntity(final HttpEntity entity, RequestMetrics.Call call) {
+            super(entity);
+            this.call = call;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(wrappedEntity.getContent()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        RequestMetrics.recordResponse(call, 1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int count) throws IOException {
+                    int read = super.read(buffer, offset, count);
+                    RequestMetrics.recordResponse(call, read);
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (InputStream in = getContent()) {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+        }
+
+    }
+
 }
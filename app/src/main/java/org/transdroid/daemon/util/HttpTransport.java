@@ -0,0 +1,192 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Transport that executes the HTTP requests of a daemon adapter, hiding which HTTP stack is used. Adapters obtain one
+ * via {@link HttpHelper#createTransport(org.transdroid.daemon.DaemonSettings, boolean)}, which uses a pooled HTTP/2
+ * capable client, or wrap their existing Apache client in an {@link ApacheHttpTransport} while they migrate.
+ * Transports are thread safe and should be reused for every request of the adapter.
+ *
+ * @author Eric Kok
+ */
+public interface HttpTransport {
+
+    /**
+     * Executes a request. The returned response should always be closed, which releases the connection for reuse.
+     *
+     * @param request The request to execute
+     * @return The response of the server, of any status code
+     * @throws IOException Thrown when the server could not be reached or the connection was interrupted
+     */
+    Response execute(Request request) throws IOException;
+
+    /**
+     * An HTTP request, with an optional body.
+     */
+    final class Request {
+
+        private static final Charset UTF8 = Charset.forName("UTF-8");
+
+        private final String method;
+        private final String url;
+        private final List<String[]> headers = new ArrayList<>();
+        private byte[] body;
+        private String contentType;
+
+        private Request(String method, String url) {
+            this.method = method;
+            this.url = url;
+        }
+
+        public static Request get(String url) {
+            return new Request("GET", url);
+        }
+
+        public static Request post(String url, String body, String contentType) {
+            return new Request("POST", url).setBody(body.getBytes(UTF8), contentType);
+        }
+
+        public static Request post(String url, byte[] body, String contentType) {
+            return new Request("POST", url).setBody(body, contentType);
+        }
+
+        private Request setBody(byte[] body, String contentType) {
+            this.body = body;
+            this.contentType = contentType;
+            return this;
+        }
+
+        /**
+         * Adds a header to the request; existing headers with the same name are kept.
+         */
+        public Request addHeader(String name, String value) {
+            headers.add(new String[]{name, value});
+            return this;
+        }
+
+        /**
+         * Sets a header of the request, replacing any existing headers with the same name.
+         */
+        public Request setHeader(String name, String value) {
+            for (int i = headers.size() - 1; i >= 0; i--) {
+                if (headers.get(i)[0].equalsIgnoreCase(name)) {
+                    headers.remove(i);
+                }
+            }
+            return addHeader(name, value);
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public List<String[]> getHeaders() {
+            return Collections.unmodifiableList(headers);
+        }
+
+        /**
+         * Returns the request body, or null for requests without body.
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+    }
+
+    /**
+     * The response to a request, of which the body is streamed and which must be closed after use.
+     */
+    final class Response implements Closeable {
+
+        private final int statusCode;
+        private final String protocol;
+        private final Map<String, String> headers;
+        private final InputStream body;
+        private final Closeable resource;
+
+        /**
+         * @param statusCode The HTTP status code
+         * @param protocol   The protocol that was used, such as http/1.1 or h2
+         * @param headers    The response headers, where only the first value of repeated headers is used
+         * @param body       The (decoded) response body, or null if the response had no body
+         * @param resource   The underlying response to close when done, or null
+         */
+        public Response(int statusCode, String protocol, Map<String, String> headers, InputStream body,
+                        Closeable resource) {
+            this.statusCode = statusCode;
+            this.protocol = protocol;
+            this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            this.headers.putAll(headers);
+            this.body = body;
+            this.resource = resource;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getProtocol() {
+            return protocol;
+        }
+
+        /**
+         * Returns the (first) value of a response header, case insensitive, or null if not present.
+         */
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.US));
+        }
+
+        /**
+         * Returns the response body stream, or null if the response has no body.
+         */
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (body != null) {
+                body.close();
+            }
+            if (resource != null) {
+                resource.close();
+            }
+        }
+
+    }
+
+}
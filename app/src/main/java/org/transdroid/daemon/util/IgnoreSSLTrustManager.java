@@ -35,7 +35,8 @@ public class IgnoreSSLTrustManager implements X509TrustManager {
 
     @Override
     public X509Certificate[] getAcceptedIssuers() {
-        return null;
+        // An empty array rather than null, as some HTTP stacks index the accepted issuers
+        return new X509Certificate[0];
     }
 
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Case-insensitive include/exclude keyword filter, as used for RSS feed items and torrent names. Filters are given as
+ * |-separated lists of words: a text passes if it contains any of the include words (or no include words are given, or
+ * one of them is empty) and none of the exclude words. All words are compiled into a single Aho-Corasick automaton,
+ * such that a text is checked in one pass regardless of the number of words. Compiled filters are cached, so
+ * {@link #get(String, String)} may be called for every text that needs to be checked.
+ *
+ * @author Eric Kok
+ */
+public final class KeywordFilter {
+
+    private static final int CACHE_SIZE = 32;
+    private static final byte MATCH_INCLUDE = 1;
+    private static final byte MATCH_EXCLUDE = 2;
+    private static final KeywordFilter PASS_ALL = new KeywordFilter(false, false);
+
+    private static final Map<String, KeywordFilter> cache = new LinkedHashMap<String, KeywordFilter>(CACHE_SIZE, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, KeywordFilter> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final boolean hasIncludes;
+    private final boolean hasExcludes;
+    // The automaton: per state the sorted outgoing characters, their target states, the failure link and the match type
+    private char[][] edgeChars;
+    private int[][] edgeTargets;
+    private int[] fail;
+    private byte[] output;
+
+    private KeywordFilter(boolean hasIncludes, boolean hasExcludes) {
+        this.hasIncludes = hasIncludes;
+        this.hasExcludes = hasExcludes;
+    }
+
+    /**
+     * Returns the compiled filter for some exclude and include filter configuration, compiling it if it was not
+     * recently used.
+     *
+     * @param excludeFilter A |-separated list of words that may not be included in the text, or null
+     * @param includeFilter A |-separated list of words of which one needs to be included in the text, or null
+     * @return The compiled filter
+     */
+    public static KeywordFilter get(String excludeFilter, String includeFilter) {
+        if (isEmpty(excludeFilter) && isEmpty(includeFilter)) {
+            return PASS_ALL;
+        }
+        String key = excludeFilter + "\n" + includeFilter;
+        synchronized (cache) {
+            KeywordFilter filter = cache.get(key);
+            if (filter == null) {
+                filter = compile(excludeFilter, includeFilter);
+                cache.put(key, filter);
+            }
+            return filter;
+        }
+    }
+
+    private static KeywordFilter compile(String excludeFilter, String includeFilter) {
+        String[] includes = isEmpty(includeFilter) ? null : includeFilter.split("\\|");
+        String[] excludes = isEmpty(excludeFilter) ? null : excludeFilter.split("\\|");
+        if (includes != null) {
+            for (String include : includes) {
+                if (include.isEmpty()) {
+                    // An empty include word matches everything
+                    includes = null;
+                    break;
+                }
+            }
+        }
+        KeywordFilter filter = new KeywordFilter(includes != null, excludes != null);
+        if (!filter.hasIncludes && !filter.hasExcludes) {
+            return PASS_ALL;
+        }
+
+        // Build the trie of all (upper-cased) words
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Byte> outputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        outputs.add((byte) 0);
+        if (includes != null) {
+            for (String include : includes) {
+                addWord(trie, outputs, include, MATCH_INCLUDE);
+            }
+        }
+        if (excludes != null) {
+            for (String exclude : excludes) {
+                if (!exclude.isEmpty()) {
+                    addWord(trie, outputs, exclude, MATCH_EXCLUDE);
+                }
+            }
+        }
+
+        // Freeze the trie into arrays
+        int stateCount = trie.size();
+        filter.edgeChars = new char[stateCount][];
+        filter.edgeTargets = new int[stateCount][];
+        filter.fail = new int[stateCount];
+        filter.output = new byte[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            TreeMap<Character, Integer> edges = trie.get(s);
+            filter.edgeChars[s] = new char[edges.size()];
+            filter.edgeTargets[s] = new int[edges.size()];
+            int e = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                filter.edgeChars[s][e] = edge.getKey();
+                filter.edgeTargets[s][e] = edge.getValue();
+                e++;
+            }
+            filter.output[s] = outputs.get(s);
+        }
+
+        // Compute the failure links breadth-first, inheriting the matches of the failure state
+        int[] queue = new int[stateCount];
+        int head = 0, tail = 0;
+        for (int target : filter.edgeTargets[0]) {
+            filter.fail[target] = 0;
+            queue[tail++] = target;
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int e = 0; e < filter.edgeChars[state].length; e++) {
+                char c = filter.edgeChars[state][e];
+                int target = filter.edgeTargets[state][e];
+                int f = filter.fail[state];
+                while (f != 0 && filter.next(f, c) < 0) {
+                    f = filter.fail[f];
+                }
+                int fallback = filter.next(f, c);
+                filter.fail[target] = fallback < 0 || fallback == target ? 0 : fallback;
+                filter.output[target] |= filter.output[filter.fail[target]];
+                queue[tail++] = target;
+            }
+        }
+        return filter;
+    }
+
+    private static void addWord(List<TreeMap<Character, Integer>> trie, List<Byte> outputs, String word, byte type) {
+        int state = 0;
+        for (int i = 0; i < word.length(); i++) {
+            char c = Character.toUpperCase(word.charAt(i));
+            Integer target = trie.get(state).get(c);
+            if (target == null) {
+                target = trie.size();
+                trie.add(new TreeMap<>());
+                outputs.add((byte) 0);
+                trie.get(state).put(c, target);
+            }
+            state = target;
+        }
+        outputs.set(state, (byte) (outputs.get(state) | type));
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.length() == 0;
+    }
+
+    private int next(int state, char c) {
+        int e = Arrays.binarySearch(edgeChars[state], c);
+        return e < 0 ? -1 : edgeTargets[state][e];
+    }
+
+    /**
+     * Checks some text against this filter, in a single pass over its characters.
+     *
+     * @param text The text (such as an RSS item title or torrent name) to check
+     * @return True if the text contains one of the include words (or there are none) and none of the exclude words
+     */
+    public boolean matches(String text) {
+        if (!hasIncludes && !hasExcludes) {
+            return true;
+        }
+        if (text == null) {
+            text = "";
+        }
+        boolean included = !hasIncludes;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toUpperCase(text.charAt(i));
+            int target = next(state, c);
+            while (target < 0 && state != 0) {
+                state = fail[state];
+                target = next(state, c);
+            }
+            state = target < 0 ? 0 : target;
+            if ((output[state] & MATCH_EXCLUDE) != 0) {
+                return false;
+            }
+            if ((output[state] & MATCH_INCLUDE) != 0) {
+                included = true;
+                if (!hasExcludes) {
+                    return true;
+                }
+            }
+        }
+        return included;
+    }
+
+}
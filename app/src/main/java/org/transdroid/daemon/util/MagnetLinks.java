@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.util;
+
+import java.util.Locale;
+
+/**
+ * Helpers on magnet links.
+ *
+ * @author Eric Kok
+ */
+public class MagnetLinks {
+
+    private static final String MAGNET_HASH = "xt=urn:btih:";
+
+    /**
+     * Returns the info hash of a magnet link, as upper-case hexadecimal string, such that the same torrent can be
+     * recognised regardless of the other parameters in the link or the encoding of the hash.
+     *
+     * @param url The url, which may or may not be a magnet link
+     * @return The info hash, or null if the url is no magnet link or has no (valid) info hash
+     */
+    public static String getInfoHash(String url) {
+        if (url == null || !url.startsWith("magnet:")) {
+            return null;
+        }
+        int start = url.indexOf(MAGNET_HASH);
+        if (start < 0) {
+            return null;
+        }
+        start += MAGNET_HASH.length();
+        int end = url.indexOf('&', start);
+        String hash = (end < 0 ? url.substring(start) : url.substring(start, end)).toUpperCase(Locale.US);
+        if (hash.length() == 40 && hash.matches("[0-9A-F]+")) {
+            return hash;
+        }
+        if (hash.length() == 32 && hash.matches("[A-Z2-7]+")) {
+            // Base32 encoded: convert to the more common hexadecimal form
+            StringBuilder hex = new StringBuilder(40);
+            long buffer = 0;
+            int bits = 0;
+            for (int i = 0; i < hash.length(); i++) {
+                char c = hash.charAt(i);
+                buffer = (buffer << 5) | (c >= 'A' ? c - 'A' : c - '2' + 26);
+                bits += 5;
+                while (bits >= 4) {
+                    bits -= 4;
+                    hex.append(Character.toUpperCase(Character.forDigit((int) (buffer >> bits) & 0xF, 16)));
+                }
+            }
+            return hex.toString();
+        }
+        return null;
+    }
+
+}
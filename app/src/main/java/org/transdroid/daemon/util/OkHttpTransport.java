@@ -0,0 +1,217 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.util;
+
+import org.transdroid.daemon.DaemonException;
+import org.transdroid.daemon.DaemonException.ExceptionType;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.X509TrustManager;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Credentials;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+
+/**
+ * Transport on top of OkHttp, which speaks HTTP/2 to servers that support it (typically seedboxes behind an nginx or
+ * Caddy reverse proxy) and thereby multiplexes all requests of an adapter over a single connection. All transports
+ * share one connection pool, so adapters that target the same host (with the same TLS settings) reuse each other's
+ * connections instead of setting up new TCP and TLS sessions. Basic authentication credentials are sent preemptively,
+ * which saves the 401 round trip that the Apache client does for every request.
+ *
+ * @author Eric Kok
+ */
+public class OkHttpTransport implements HttpTransport {
+
+    /**
+     * Idle connections are kept somewhat longer than the usual auto-refresh interval, yet shorter than the keep-alive
+     * timeout of most reverse proxies (nginx: 75 seconds), so they are reused rather than found closed
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final HostnameVerifier ACCEPT_ALL_HOSTNAMES = (hostname, session) -> true;
+
+    private static final OkHttpClient sharedClient = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS))
+            .retryOnConnectionFailure(true)
+            .build();
+    private static final Map<String, TlsConfig> tlsConfigs = new HashMap<>();
+
+    private final OkHttpClient client;
+
+    /**
+     * Creates a transport for a single server.
+     *
+     * @param username    The username for basic authentication, or null to not authenticate
+     * @param password    The password for basic authentication
+     * @param authToken   A token to send in the X-QR-Auth header, or null
+     * @param sslTrustAll Whether to trust all SSL certificates (and host names)
+     * @param sslTrustKey A specific SSL certificate (SHA-1) key to accept exclusively, or null
+     * @param timeout     The connection and read timeout for all requests, in milliseconds
+     * @throws DaemonException Thrown when the TLS settings could not be applied
+     */
+    public OkHttpTransport(String username, String password, String authToken, boolean sslTrustAll,
+                           String sslTrustKey, int timeout) throws DaemonException {
+        // Derived clients share the connection pool and dispatcher of the shared client
+        OkHttpClient.Builder builder = sharedClient.newBuilder()
+                .connectTimeout(timeout, TimeUnit.MILLISECONDS)
+                .readTimeout(timeout, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeout, TimeUnit.MILLISECONDS);
+        TlsConfig tls = getTlsConfig(sslTrustAll, sslTrustKey);
+        if (tls != null) {
+            builder.sslSocketFactory(tls.socketFactory, tls.trustManager).hostnameVerifier(ACCEPT_ALL_HOSTNAMES);
+        }
+        final String authorization = username == null ? null : Credentials.basic(username, password);
+        final String agent = HttpHelper.userAgent;
+        builder.addInterceptor(chain -> {
+            okhttp3.Request.Builder request = chain.request().newBuilder();
+            if (agent != null) {
+                request.header("User-Agent", agent);
+            }
+            if (authorization != null && chain.request().header("Authorization") == null) {
+                request.header("Authorization", authorization);
+            }
+            if (authToken != null) {
+                request.addHeader("X-QR-Auth", authToken);
+            }
+            return chain.proceed(request.build());
+        });
+        this.client = builder.build();
+    }
+
+    /**
+     * Returns the TLS configuration for certificates that are not verified by the platform, or null to use the
+     * platform default. Configurations are cached, as pooled connections are only shared between clients that use
+     * the very same socket factory.
+     */
+    private static TlsConfig getTlsConfig(boolean sslTrustAll, String sslTrustKey) throws DaemonException {
+        boolean hasKey = sslTrustKey != null && sslTrustKey.length() != 0;
+        if (!hasKey && !sslTrustAll) {
+            return null;
+        }
+        String key = hasKey ? "key:" + sslTrustKey : "all";
+        synchronized (tlsConfigs) {
+            TlsConfig config = tlsConfigs.get(key);
+            if (config == null) {
+                X509TrustManager trustManager =
+                        hasKey ? new SelfSignedTrustManager(sslTrustKey) : new IgnoreSSLTrustManager();
+                try {
+                    SSLContext context = SSLContext.getInstance("TLS");
+                    context.init(null, new X509TrustManager[]{trustManager}, null);
+                    config = new TlsConfig(context.getSocketFactory(), trustManager);
+                } catch (GeneralSecurityException e) {
+                    throw new DaemonException(ExceptionType.ConnectionError, e.toString());
+                }
+                tlsConfigs.put(key, config);
+            }
+            return config;
+        }
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        okhttp3.Request.Builder builder = new okhttp3.Request.Builder().url(request.getUrl());
+        for (String[] header : request.getHeaders()) {
+            builder.addHeader(header[0], header[1]);
+        }
+        if (request.getBody() != null) {
+            MediaType type = request.getContentType() == null ? null : MediaType.parse(request.getContentType());
+            builder.method(request.getMethod(), RequestBody.create(request.getBody(), type));
+            RequestMetrics.recordRequest(request.getBody().length);
+        } else {
+            builder.method(request.getMethod(), null);
+            RequestMetrics.recordRequest(0);
+        }
+
+        Call httpCall = client.newCall(builder.build());
+        TaskCancellation.register(httpCall::cancel);
+        okhttp3.Response response = httpCall.execute();
+        Map<String, String> headers = new HashMap<>();
+        for (String name : response.headers().names()) {
+            List<String> values = response.headers(name);
+            headers.put(name, values.get(0));
+        }
+        ResponseBody body = response.body();
+        InputStream stream = null;
+        if (body != null) {
+            stream = body.byteStream();
+            RequestMetrics.Call call = RequestMetrics.current();
+            if (call != null) {
+                stream = new CountingInputStream(stream, call);
+            }
+        }
+        return new Response(response.code(), response.protocol().toString(), headers, stream, response);
+    }
+
+    private static final class TlsConfig {
+
+        private final SSLSocketFactory socketFactory;
+        private final X509TrustManager trustManager;
+
+        TlsConfig(SSLSocketFactory socketFactory, X509TrustManager trustManager) {
+            this.socketFactory = socketFactory;
+            this.trustManager = trustManager;
+        }
+
+    }
+
+    /**
+     * Counts the (decoded) response bytes that are read with the {@link RequestMetrics} of the daemon task
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final RequestMetrics.Call call;
+
+        CountingInputStream(InputStream in, RequestMetrics.Call call) {
+            super(in);
+            this.call = call;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                RequestMetrics.recordResponse(call, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            RequestMetrics.recordResponse(call, read);
+            return read;
+        }
+
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.util;
+
+import org.transdroid.daemon.DaemonException;
+import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.DaemonMethod;
+import org.transdroid.daemon.DaemonSettings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects per server and per daemon method how requests perform: a latency histogram, the bytes sent and received,
+ * the number of extra round trips (retries and re-authentication) and the types of errors. All counters are atomic, so
+ * recording never blocks the calling thread. Daemon tasks record their duration and outcome via
+ * {@link #begin(DaemonSettings, DaemonMethod)}; the HTTP and socket transports add their traffic to the call that runs
+ * on the current thread via {@link #recordRequest(long)} and {@link #recordResponse(long)}. Adapters also record how
+ * long it takes to parse the retrieved torrents, per torrent, such that parser performance can be compared across
+ * servers of different size.
+ *
+ * @author Eric Kok
+ */
+public final class RequestMetrics {
+
+    /**
+     * Upper bounds (in milliseconds) of the latency histogram buckets; the last bucket holds all slower requests
+     */
+    private static final long[] LATENCY_BOUNDS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private static final ConcurrentMap<String, ConcurrentMap<DaemonMethod, MethodMetrics>> servers = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Call> current = new ThreadLocal<>();
+
+    private RequestMetrics() {
+    }
+
+    /**
+     * Starts recording a call of some daemon method. The returned call must always be ended, also when the call fails.
+     *
+     * @param settings The settings of the server that is called, or null if unknown
+     * @param method   The daemon method that is called
+     * @return The call that records the traffic on the current thread until it is ended
+     */
+    public static Call begin(DaemonSettings settings, DaemonMethod method) {
+        String server = settings == null ? "Unknown server" : settings.getType().name() + " " + settings.getHumanReadableIdentifier();
+        ConcurrentMap<DaemonMethod, MethodMetrics> methods = servers.get(server);
+        if (methods == null) {
+            ConcurrentMap<DaemonMethod, MethodMetrics> created = new ConcurrentHashMap<>();
+            methods = servers.putIfAbsent(server, created);
+            if (methods == null) {
+                methods = created;
+            }
+        }
+        MethodMetrics metrics = methods.get(method);
+        if (metrics == null) {
+            MethodMetrics created = new MethodMetrics();
+            metrics = methods.putIfAbsent(method, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        Call call = new Call(metrics, current.get());
+        current.set(call);
+        return call;
+    }
+
+    /**
+     * Registers that a request is sent to the server by the call running on this thread, if any.
+     *
+     * @param bytes The size of the request body, or a negative number if unknown
+     */
+    public static void recordRequest(long bytes) {
+        Call call = current.get();
+        if (call != null) {
+            call.requests++;
+            if (bytes > 0) {
+                call.metrics.bytesSent.addAndGet(bytes);
+            }
+        }
+    }
+
+    /**
+     * Registers that response data is received for the call running on this thread, if any.
+     *
+     * @param bytes The number of bytes received
+     */
+    public static void recordResponse(long bytes) {
+        recordResponse(current.get(), bytes);
+    }
+
+    /**
+     * Registers that response data is received for some call, which may be read after the call ended.
+     *
+     * @param call  The call as returned by {@link #current()}, or null
+     * @param bytes The number of bytes received
+     */
+    public static void recordResponse(Call call, long bytes) {
+        if (call != null && bytes > 0) {
+            call.metrics.bytesReceived.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * Registers that the call running on this thread, if any, did a TLS handshake.
+     *
+     * @param nanos   The duration of the handshake
+     * @param resumed Whether an earlier session was resumed (an abbreviated handshake)
+     */
+    public static void recordHandshake(long nanos, boolean resumed) {
+        Call call = current.get();
+        if (call != null) {
+            call.metrics.handshakes.incrementAndGet();
+            call.metrics.handshakeNanos.addAndGet(nanos);
+            if (resumed) {
+                call.metrics.resumedHandshakes.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the moment at which parsing of a server response starts, to pass to {@link #recordParsing(long, int)}.
+     */
+    public static long startParsing() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Registers that the call running on this thread, if any, parsed a server response.
+     *
+     * @param startedAt The moment parsing started, as returned by {@link #startParsing()}
+     * @param items     The number of items (such as torrents) that were parsed
+     */
+    public static void recordParsing(long startedAt, int items) {
+        Call call = current.get();
+        if (call != null) {
+            call.metrics.parses.incrementAndGet();
+            call.metrics.parseNanos.addAndGet(System.nanoTime() - startedAt);
+            call.metrics.parsedItems.addAndGet(items);
+        }
+    }
+
+    /**
+     * Returns the call that is running on this thread, or null if no call is recorded.
+     */
+    public static Call current() {
+        return current.get();
+    }
+
+    /**
+     * Forgets all recorded metrics.
+     */
+    public static void reset() {
+        servers.clear();
+    }
+
+    /**
+     * Returns a readable report of all recorded metrics, per server and per daemon method, such as to show on screen or
+     * include in an error report.
+     */
+    public static String getReport() {
+        StringBuilder report = new StringBuilder();
+        List<String> names = new ArrayList<>(servers.keySet());
+        Collections.sort(names);
+        for (String name : names) {
+            report.append(name).append('\n');
+            for (Map.Entry<DaemonMethod, MethodMetrics> method : servers.get(name).entrySet()) {
+                report.append("  ").append(method.getKey().name()).append(": ");
+                method.getValue().appendTo(report);
+                report.append('\n');
+            }
+        }
+        return report.length() == 0 ? "(No requests recorded)" : report.toString();
+    }
+
+    /**
+     * A single daemon method call that is being recorded.
+     */
+    public static final class Call {
+
+        private final MethodMetrics metrics;
+        private final Call outer;
+        private final long startedAt = System.nanoTime();
+        // Only touched by the thread that runs the call
+        private int requests = 0;
+
+        private Call(MethodMetrics metrics, Call outer) {
+            this.metrics = metrics;
+            this.outer = outer;
+        }
+
+        /**
+         * Ends recording this call.
+         *
+         * @param success Whether the call succeeded
+         * @param error   The error with which the call failed, or null
+         */
+        public void end(boolean success, DaemonException error) {
+            if (current.get() == this) {
+                current.set(outer);
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            metrics.record(millis, requests, success, error == null ? null : error.getType());
+        }
+
+    }
+
+    private static final class MethodMetrics {
+
+        private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_BOUNDS.length + 1);
+        private final AtomicLongArray errors = new AtomicLongArray(ExceptionType.values().length + 1);
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+        private final AtomicLong extraRequests = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private final AtomicLong parses = new AtomicLong();
+        private final AtomicLong parseNanos = new AtomicLong();
+        private final AtomicLong parsedItems = new AtomicLong();
+        private final AtomicLong handshakes = new AtomicLong();
+        private final AtomicLong resumedHandshakes = new AtomicLong();
+        private final AtomicLong handshakeNanos = new AtomicLong();
+
+        private void record(long millis, int requests, boolean success, ExceptionType errorType) {
+            int bucket = 0;
+            while (bucket < LATENCY_BOUNDS.length && millis > LATENCY_BOUNDS[bucket]) {
+                bucket++;
+            }
+            latencies.incrementAndGet(bucket);
+            calls.incrementAndGet();
+            totalMillis.addAndGet(millis);
+            long max = maxMillis.get();
+            while (millis > max && !maxMillis.compareAndSet(max, millis)) {
+                max = maxMillis.get();
+            }
+            if (requests > 1) {
+                extraRequests.addAndGet(requests - 1);
+            }
+            if (!success) {
+                failures.incrementAndGet();
+                errors.incrementAndGet(errorType == null ? errors.length() - 1 : errorType.ordinal());
+            }
+        }
+
+        private String getPercentile(long count, double percentile) {
+            long target = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < latencies.length(); i++) {
+                seen += latencies.get(i);
+                if (seen >= target) {
+                    return i < LATENCY_BOUNDS.length ? "<=" + LATENCY_BOUNDS[i] + "ms" : ">" + LATENCY_BOUNDS[LATENCY_BOUNDS.length - 1] + "ms";
+                }
+            }
+            return "?";
+        }
+
+        private void appendTo(StringBuilder report) {
+            long count = calls.get();
+            report.append(count).append(" calls");
+            if (count == 0) {
+                return;
+            }
+            report.append(String.format(Locale.US, ", avg %dms, p50 %s, p95 %s, max %dms", totalMillis.get() / count,
+                    getPercentile(count, 0.5), getPercentile(count, 0.95), maxMillis.get()));
+            if (extraRequests.get() > 0) {
+                report.append(", ").append(extraRequests.get()).append(" retries");
+            }
+            report.append(", sent ").append(FileSizeConverter.getSize(bytesSent.get()));
+            report.append(", received ").append(FileSizeConverter.getSize(bytesReceived.get()));
+            if (parses.get() > 0) {
+                long items = parsedItems.get();
+                report.append(String.format(Locale.US, ", parse avg %.1fms for %d items (%.1fus per item)",
+                        parseNanos.get() / 1e6 / parses.get(), items / parses.get(),
+                        items == 0 ? 0D : parseNanos.get() / 1e3 / items));
+            }
+            if (handshakes.get() > 0) {
+                report.append(String.format(Locale.US, ", %d TLS handshakes avg %.1fms (%d resumed)", handshakes.get(),
+                        handshakeNanos.get() / 1e6 / handshakes.get(), resumedHandshakes.get()));
+            }
+            if (failures.get() > 0) {
+                report.append(", ").append(failures.get()).append(" failed (");
+                boolean first = true;
+                for (int i = 0; i < errors.length(); i++) {
+                    if (errors.get(i) > 0) {
+                        report.append(first ? "" : ", ")
+                                .append(i < ExceptionType.values().length ? ExceptionType.values()[i].name() : "Other")
+                                .append(' ').append(errors.get(i));
+                        first = false;
+                    }
+                }
+                report.append(')');
+            }
+        }
+
+    }
+
+}
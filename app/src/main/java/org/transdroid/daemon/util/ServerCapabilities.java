@@ -0,0 +1,171 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.util;
+
+import android.content.SharedPreferences;
+
+import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.DaemonSettings;
+import org.transdroid.daemon.task.DaemonTaskFailureResult;
+import org.transdroid.daemon.task.DaemonTaskResult;
+
+import java.util.Map;
+
+/**
+ * Remembers what adapters discovered about a server, such as its version number, session token or installed plugins,
+ * across adapter instances and app restarts. A fresh adapter then starts with these values known and needs no
+ * discovery round trip before its first request. Remembered values are trusted until a task fails in a way that may be
+ * caused by outdated values (see {@link #invalidateOnFailure(DaemonTaskResult)}), after which the adapter discovers
+ * them again. Values are also forgotten after a day, such that for example a newly installed plugin is noticed.
+ * <p/>
+ * Values are stored per server endpoint (type, address, port, folder and user name) in the shared preferences that are
+ * set with {@link #setStorage(SharedPreferences)}. Without storage nothing is remembered.
+ *
+ * @author Eric Kok
+ */
+public final class ServerCapabilities {
+
+    private static final long MAX_AGE = 24 * 60 * 60 * 1000; // 1 day
+
+    private static volatile SharedPreferences storage = null;
+
+    private final String prefix;
+
+    private ServerCapabilities(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Sets the preferences in which capabilities are stored. This should be set before any adapter is created.
+     *
+     * @param preferences The (private) shared preferences to use
+     */
+    public static void setStorage(SharedPreferences preferences) {
+        storage = preferences;
+    }
+
+    /**
+     * Returns the remembered capabilities of some server.
+     *
+     * @param settings The settings of the server (endpoint)
+     * @return The capabilities of the server, which is empty if nothing was remembered yet
+     */
+    public static ServerCapabilities get(DaemonSettings settings) {
+        return new ServerCapabilities(settings.getType().name() + "|" + settings.getAddress() + ":" +
+                settings.getPort() + "|" + settings.getFolder() + "|" + settings.getUsername() + "|");
+    }
+
+    /**
+     * Returns some remembered value, or null if it is unknown or was remembered too long ago.
+     */
+    public String getString(String name) {
+        SharedPreferences preferences = storage;
+        if (preferences == null) {
+            return null;
+        }
+        String stored = preferences.getString(prefix + name, null);
+        int split = stored == null ? -1 : stored.indexOf('|');
+        if (split < 0) {
+            return null;
+        }
+        try {
+            if (System.currentTimeMillis() - Long.parseLong(stored.substring(0, split)) > MAX_AGE) {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return stored.substring(split + 1);
+    }
+
+    /**
+     * Returns some remembered number, or the default value if it is unknown or was remembered too long ago.
+     */
+    public int getInt(String name, int defaultValue) {
+        String value = getString(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns some remembered flag, or null if it is unknown or was remembered too long ago.
+     */
+    public Boolean getBoolean(String name) {
+        String value = getString(name);
+        return value == null ? null : Boolean.valueOf(value);
+    }
+
+    /**
+     * Remembers some discovered value; a null value forgets it.
+     */
+    public void put(String name, Object value) {
+        SharedPreferences preferences = storage;
+        if (preferences == null) {
+            return;
+        }
+        if (value == null) {
+            preferences.edit().remove(prefix + name).apply();
+        } else {
+            preferences.edit().putString(prefix + name, System.currentTimeMillis() + "|" + value).apply();
+        }
+    }
+
+    /**
+     * Forgets all remembered values of this server.
+     */
+    public void invalidate() {
+        SharedPreferences preferences = storage;
+        if (preferences == null) {
+            return;
+        }
+        SharedPreferences.Editor editor = preferences.edit();
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                editor.remove(entry.getKey());
+            }
+        }
+        editor.apply();
+    }
+
+    /**
+     * Forgets all remembered values of this server if the result of some task is a failure that may have been caused
+     * by outdated values, such as an unexpected response or a rejected session. Failures to connect (or to access local
+     * files) do not count.
+     *
+     * @param result The result of a task that was executed with the remembered values
+     * @return True if the values were forgotten, in which case the adapter should discover them again
+     */
+    public boolean invalidateOnFailure(DaemonTaskResult result) {
+        if (!(result instanceof DaemonTaskFailureResult)) {
+            return false;
+        }
+        ExceptionType type = ((DaemonTaskFailureResult) result).getException().getType();
+        if (type != ExceptionType.MethodUnsupported && type != ExceptionType.UnexpectedResponse &&
+                type != ExceptionType.ParsingFailed && type != ExceptionType.AuthenticationFailure) {
+            return false;
+        }
+        invalidate();
+        return true;
+    }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.util;
+
+import org.transdroid.daemon.DaemonException;
+import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.DaemonSettings;
+import org.transdroid.daemon.task.DaemonTaskFailureResult;
+import org.transdroid.daemon.task.DaemonTaskResult;
+import org.transdroid.daemon.task.DaemonTaskSuccessResult;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks per server address whether it is reachable, acting as a circuit breaker for all daemon tasks. After a number
+ * of consecutive connection errors the server is considered unreachable and tasks fail directly, rather than each
+ * waiting for the connection timeout; this spares the threads and battery of the screens, widgets and background
+ * services alike. While unreachable, the server is probed in the background with a plain TCP connection, backing off
+ * exponentially between attempts. Once a probe succeeds or the back-off time has passed, a single task is let through
+ * to try the server for real; its outcome either restores the server or opens the circuit again. Any response of the
+ * server, including an error, counts as reachable, and a {@link Listener} is told when a server responds again. The
+ * listener is also told when a probe succeeds, so that it may send the trial task rather than wait for the user to
+ * do something. The latency of successful tasks is tracked as moving average.
+ *
+ * @author Eric Kok
+ */
+public final class ServerHealth {
+
+    public enum State {
+        /**
+         * Tasks are executed normally
+         */
+        Reachable,
+        /**
+         * Tasks fail directly until the retry time has passed or a background probe succeeded
+         */
+        Unreachable,
+        /**
+         * A single task is allowed to try if the server is reachable again; other tasks still fail directly
+         */
+        Recovering
+    }
+
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long INITIAL_BACKOFF = 10 * 1000; // 10 seconds
+    private static final long MAX_BACKOFF = 2 * 60 * 1000; // 2 minutes
+    private static final int MAX_PROBE_TIMEOUT = 5000;
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    /**
+     * Listener that is told when a server responds again after it was unreachable, or for the first time since the
+     * app started
+     */
+    public interface Listener {
+        void onReachable(ServerHealth health);
+
+        /**
+         * Called when a background probe could connect to a server that was unreachable; the next task is let through
+         * to try it for real
+         */
+        void onProbeSucceeded(ServerHealth health);
+    }
+
+    private static final ConcurrentMap<String, ServerHealth> servers = new ConcurrentHashMap<>();
+    private static volatile Listener listener;
+    private static final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ServerHealthProbe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String address;
+    private final int port;
+    private volatile int probeTimeout;
+    private State state = State.Reachable;
+    private int consecutiveFailures = 0;
+    private long backoff = 0;
+    private long retryAt = 0;
+    private boolean trialInFlight = false;
+    private int generation = 0;
+    private double averageLatency = -1;
+    private boolean reached = false;
+
+    private ServerHealth(String address, int port) {
+        this.address = address;
+        this.port = port;
+    }
+
+    /**
+     * Returns the health of the server that some settings point to; servers that run on the same address and port
+     * share their health
+     *
+     * @param settings The settings of the server
+     * @return The health tracker of the server, or null if the settings have no address to connect to
+     */
+    public static ServerHealth get(DaemonSettings settings) {
+        if (settings == null || settings.getAddress() == null || settings.getAddress().isEmpty()) {
+            return null;
+        }
+        String key = settings.getAddress() + ":" + settings.getPort();
+        ServerHealth health = servers.get(key);
+        if (health == null) {
+            ServerHealth created = new ServerHealth(settings.getAddress(), settings.getPort());
+            health = servers.putIfAbsent(key, created);
+            if (health == null) {
+                health = created;
+            }
+        }
+        health.probeTimeout = Math.min(settings.getTimeoutInMilliseconds(), MAX_PROBE_TIMEOUT);
+        return health;
+    }
+
+    /**
+     * Sets the listener that is told when servers become reachable
+     *
+     * @param reachableListener The listener, or null to no longer report this
+     */
+    public static void setListener(Listener reachableListener) {
+        listener = reachableListener;
+    }
+
+    /**
+     * Asks whether a task may be sent to the server now. If allowed, the outcome of the task must always be reported
+     * via {@link #record(DaemonTaskResult, long)}.
+     *
+     * @return True if the task may be executed, false if it should fail directly
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case Unreachable:
+                if (System.currentTimeMillis() < retryAt) {
+                    return false;
+                }
+                state = State.Recovering;
+                trialInFlight = true;
+                return true;
+            case Recovering:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Creates the failure that is reported to tasks that were not executed because the server is unreachable
+     */
+    public DaemonException createFastFailure() {
+        long seconds = Math.max(1, (getRetryAt() - System.currentTimeMillis() + 999) / 1000);
+        return new DaemonException(ExceptionType.ConnectionError,
+                "Server at " + address + ":" + port + " is unreachable; retrying in " + seconds + "s");
+    }
+
+    /**
+     * Records the outcome of a task that was allowed by {@link #tryAcquire()}
+     *
+     * @param result        The task result, or null if the task did not produce a result (for example because it threw
+     *                      an exception)
+     * @param durationNanos The time it took to execute the task
+     */
+    public void record(DaemonTaskResult result, long durationNanos) {
+        boolean recovered;
+        synchronized (this) {
+            trialInFlight = false;
+            if (result instanceof DaemonTaskFailureResult &&
+                    ((DaemonTaskFailureResult) result).getException().getType() == ExceptionType.ConnectionError) {
+                if (TaskCancellation.isCancelled()) {
+                    // The request was aborted by ourselves, which tells nothing about the server
+                    return;
+                }
+                consecutiveFailures++;
+                if (state == State.Recovering || consecutiveFailures >= FAILURE_THRESHOLD) {
+                    open();
+                }
+                return;
+            }
+            if (result == null) {
+                return;
+            }
+            // The server responded, whether successful or with an error
+            recovered = !reached || state != State.Reachable;
+            reached = true;
+            consecutiveFailures = 0;
+            backoff = 0;
+            state = State.Reachable;
+            if (result instanceof DaemonTaskSuccessResult) {
+                double latency = durationNanos / 1000000D;
+                averageLatency = averageLatency < 0 ? latency : averageLatency + LATENCY_WEIGHT * (latency - averageLatency);
+            }
+        }
+        Listener reachableListener = listener;
+        if (recovered && reachableListener != null) {
+            reachableListener.onReachable(this);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the time (in milliseconds since epoch) after which a task is let through again to try the server
+     */
+    public synchronized long getRetryAt() {
+        return retryAt;
+    }
+
+    /**
+     * Returns the moving average of the time it took to successfully execute a task, in milliseconds, or -1 if no task
+     * succeeded yet
+     */
+    public synchronized long getAverageLatency() {
+        return Math.round(averageLatency);
+    }
+
+    private void open() {
+        backoff = backoff == 0 ? INITIAL_BACKOFF : Math.min(backoff * 2, MAX_BACKOFF);
+        retryAt = System.currentTimeMillis() + backoff;
+        state = State.Unreachable;
+        final int probeGeneration = ++generation;
+        prober.schedule(() -> probe(probeGeneration), backoff, TimeUnit.MILLISECONDS);
+    }
+
+    private void probe(int probeGeneration) {
+        synchronized (this) {
+            if (probeGeneration != generation || state != State.Unreachable) {
+                // The server was tried or probed in the meantime
+                return;
+            }
+        }
+        boolean reachable;
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(address, port), probeTimeout);
+            reachable = true;
+        } catch (IOException | IllegalArgumentException e) {
+            reachable = false;
+        }
+        synchronized (this) {
+            if (probeGeneration != generation || state != State.Unreachable) {
+                return;
+            }
+            if (!reachable) {
+                open();
+                return;
+            }
+            // Let the next task try the server for real
+            state = State.Recovering;
+        }
+        Listener probeListener = listener;
+        if (probeListener != null) {
+            probeListener.onProbeSucceeded(this);
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010-2024 Eric Kok et al.
+ *
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.daemon.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allows a running daemon task to be cancelled from another thread. While a job runs, the HTTP and socket transports
+ * register every request that they start on the job's thread via {@link #register(Closeable)}; cancelling the job
+ * aborts all of these, such that a blocking read returns (with an error) immediately instead of waiting for the server
+ * to respond. Requests that are started after cancellation are aborted right away, so a cancelled job quickly falls
+ * through the remainder of its work. Code that runs outside a job is never affected.
+ *
+ * @author Eric Kok
+ */
+public final class TaskCancellation {
+
+    private static final ThreadLocal<TaskCancellation> current = new ThreadLocal<>();
+
+    private final List<Closeable> inFlight = new ArrayList<>();
+    private boolean cancelled = false;
+
+    /**
+     * Runs this job on the current thread from now on. The job may already be cancelled (before it was started), in
+     * which case any request is aborted directly. The job must always be ended, also when it fails.
+     */
+    public void begin() {
+        current.set(this);
+    }
+
+    /**
+     * Tells whether the job that runs on the current thread was cancelled, in which case its results are no longer of
+     * interest and any errors are a consequence of the cancellation
+     *
+     * @return True if the current thread runs a job that was cancelled; false otherwise or if no job is running
+     */
+    public static boolean isCancelled() {
+        TaskCancellation job = current.get();
+        return job != null && job.wasCancelled();
+    }
+
+    /**
+     * Registers a request that is about to be sent, such that it can be aborted when the job on the current thread is
+     * cancelled
+     *
+     * @param request The handle that aborts the request when closed
+     */
+    public static void register(Closeable request) {
+        TaskCancellation job = current.get();
+        if (job == null) {
+            return;
+        }
+        synchronized (job) {
+            if (!job.cancelled) {
+                job.inFlight.add(request);
+                return;
+            }
+        }
+        abort(request);
+    }
+
+    /**
+     * Cancels this job, aborting any request that it is executing
+     */
+    public void cancel() {
+        List<Closeable> requests;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            requests = new ArrayList<>(inFlight);
+            inFlight.clear();
+        }
+        for (Closeable request : requests) {
+            abort(request);
+        }
+    }
+
+    public synchronized boolean wasCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Ends the job on the current thread, after which no requests are registered with it anymore
+     */
+    public void end() {
+        current.remove();
+        synchronized (this) {
+            inFlight.clear();
+        }
+    }
+
+    private static void abort(Closeable request) {
+        try {
+            request.close();
+        } catch (IOException e) {
+            // The request was already closed or failed
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ package org.transdroid.daemon.util;
 
 import android.annotation.TargetApi;
 import android.net.SSLCertificateSocketFactory;
+import android.net.SSLSessionCache;
 import android.os.Build;
 import android.util.Log;
 
@@ -25,9 +26,12 @@ import org.apache.http.conn.scheme.LayeredSocketFactory;
 import org.apache.http.conn.ssl.StrictHostnameVerifier;
 import org.apache.http.params.HttpParams;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLPeerUnverifiedException;
@@ -53,13 +57,21 @@ import javax.net.ssl.TrustManager;
  * server certificate is given, such that the correct SHA-1 hash to use can be foudn in the log.
  * <p/>
  * Finally, the ignoring of all SSL certificates (and hostname) is possible (which is obviously very insecure!).
+ * <p/>
+ * The underlying SSL socket factory is created once per trust configuration (see {@link #get(boolean, String)}) and
+ * keeps a client session cache, such that reconnects to the same host and port resume the earlier TLS session with an
+ * abbreviated handshake. If a session cache directory is set, sessions are also resumed after an app restart. The
+ * handshake timings are recorded with the {@link RequestMetrics} of the running daemon task.
  */
 public class TlsSniSocketFactory implements LayeredSocketFactory {
 
     private final static HostnameVerifier hostnameVerifier = new StrictHostnameVerifier();
+    private final static Map<String, TlsSniSocketFactory> instances = new HashMap<>();
+    private static volatile File sessionCacheDir = null;
 
     private final boolean acceptAllCertificates;
     private final String selfSignedCertificateKey;
+    private SSLCertificateSocketFactory sslSocketFactory = null;
 
     public TlsSniSocketFactory() {
         this.acceptAllCertificates = false;
@@ -76,6 +88,67 @@ public class TlsSniSocketFactory implements LayeredSocketFactory {
         this.selfSignedCertificateKey = null;
     }
 
+    /**
+     * Returns the (shared) socket factory for some trust configuration, such that its TLS sessions can be resumed.
+     *
+     * @param sslTrustAll Whether to trust all SSL certificates
+     * @param sslTrustKey A specific SSL key to accept exclusively, or null
+     * @return The socket factory for the given trust configuration
+     */
+    public static TlsSniSocketFactory get(boolean sslTrustAll, String sslTrustKey) {
+        boolean hasKey = sslTrustKey != null && sslTrustKey.length() != 0;
+        String key = getConfigName(!hasKey && sslTrustAll, hasKey ? sslTrustKey : null);
+        synchronized (instances) {
+            TlsSniSocketFactory factory = instances.get(key);
+            if (factory == null) {
+                factory = hasKey ? new TlsSniSocketFactory(sslTrustKey) : new TlsSniSocketFactory(sslTrustAll);
+                instances.put(key, factory);
+            }
+            return factory;
+        }
+    }
+
+    /**
+     * Sets the directory in which TLS sessions are persisted, such that sessions can be resumed after an app restart.
+     * This should be set before any connection is made; every trust configuration uses its own sub directory, so that
+     * a session that was established without certificate checks is never resumed for a strictly checked connection.
+     *
+     * @param dir The (private) directory to store sessions in
+     */
+    public static void setSessionCacheDir(File dir) {
+        sessionCacheDir = dir;
+    }
+
+    private static String getConfigName(boolean acceptAll, String certKey) {
+        if (certKey != null) {
+            return "key-" + certKey.replaceAll("[^a-fA-F0-9]+", "").toLowerCase();
+        }
+        return acceptAll ? "all" : "default";
+    }
+
+    private synchronized SSLCertificateSocketFactory getSslSocketFactory() {
+        if (sslSocketFactory == null) {
+            SSLSessionCache sessionCache = null;
+            if (sessionCacheDir != null) {
+                String name = getConfigName(acceptAllCertificates, selfSignedCertificateKey);
+                try {
+                    sessionCache = new SSLSessionCache(new File(sessionCacheDir, name));
+                } catch (IOException e) {
+                    Log.d(TlsSniSocketFactory.class.getSimpleName(), "TLS session cache not usable: " + e);
+                }
+            }
+            sslSocketFactory = (SSLCertificateSocketFactory) SSLCertificateSocketFactory.getDefault(0, sessionCache);
+
+            // For self-signed certificates use a custom trust manager
+            if (acceptAllCertificates) {
+                sslSocketFactory.setTrustManagers(new TrustManager[]{new IgnoreSSLTrustManager()});
+            } else if (selfSignedCertificateKey != null) {
+                sslSocketFactory.setTrustManagers(new TrustManager[]{new SelfSignedTrustManager(selfSignedCertificateKey)});
+            }
+        }
+        return sslSocketFactory;
+    }
+
     // Plain TCP/IP (layer below TLS)
 
     @Override
@@ -106,15 +179,7 @@ public class TlsSniSocketFactory implements LayeredSocketFactory {
             plainSocket.close();
         }
 
-        SSLCertificateSocketFactory sslSocketFactory =
-                (SSLCertificateSocketFactory) SSLCertificateSocketFactory.getDefault(0);
-
-        // For self-signed certificates use a custom trust manager
-        if (acceptAllCertificates) {
-            sslSocketFactory.setTrustManagers(new TrustManager[]{new IgnoreSSLTrustManager()});
-        } else if (selfSignedCertificateKey != null) {
-            sslSocketFactory.setTrustManagers(new TrustManager[]{new SelfSignedTrustManager(selfSignedCertificateKey)});
-        }
+        SSLCertificateSocketFactory sslSocketFactory = getSslSocketFactory();
 
         // create and connect SSL socket, but don't do hostname/certificate verification yet
         SSLSocket ssl = (SSLSocket) sslSocketFactory.createSocket(InetAddress.getByName(host), port);
@@ -134,8 +199,14 @@ public class TlsSniSocketFactory implements LayeredSocketFactory {
             }
         }
 
-        // verify hostname and certificate
+        // handshake, which is abbreviated if the session cache has a session for this host and port
+        long handshakeStart = System.nanoTime();
+        long handshakeStartTime = System.currentTimeMillis();
+        ssl.startHandshake();
         SSLSession session = ssl.getSession();
+        RequestMetrics.recordHandshake(System.nanoTime() - handshakeStart, session.getCreationTime() < handshakeStartTime);
+
+        // verify hostname and certificate
         if (!(acceptAllCertificates || selfSignedCertificateKey != null) && !hostnameVerifier.verify(host, session)) {
             throw new SSLPeerUnverifiedException("Cannot verify hostname: " + host);
         }
@@ -187,8 +187,7 @@ public class RencodeOutputStream extends FilterOutputStream implements DataOutpu
             writeFloat(num.floatValue());
         } else if (num instanceof Double) {
             writeDouble(num.doubleValue());
-        }
-        if (0 <= num.intValue() && num.intValue() < TypeCode.EMBEDDED.INT_POS_COUNT) {
+        } else if (0 <= num.intValue() && num.intValue() < TypeCode.EMBEDDED.INT_POS_COUNT) {
             write(TypeCode.EMBEDDED.INT_POS_START + num.intValue());
         } else if (-TypeCode.EMBEDDED.INT_NEG_COUNT <= num.intValue() && num.intValue() < 0) {
             write(TypeCode.EMBEDDED.INT_NEG_START - 1 - num.intValue());